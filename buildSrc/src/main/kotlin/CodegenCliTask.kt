@@ -53,6 +53,11 @@ abstract class CodegenCliTask : DefaultTask() {
         val fallbackNodeTypeMapping: Map<String, String>,
         @get:Input
         val generateTypedQuery: Boolean,
+        @get:Input
+        @get:Optional
+        val findNodesEngine: String?,
+        @get:Input
+        val lazyChildrenLists: Boolean,
     )
 
     init {
@@ -109,6 +114,13 @@ abstract class CodegenCliTask : DefaultTask() {
         if (codeGenConfig.generateTypedQuery) {
             command.add("--generate-typed-query")
         }
+        codeGenConfig.findNodesEngine?.let {
+            command.add("--find-nodes-engine")
+            command.add(it)
+        }
+        if (codeGenConfig.lazyChildrenLists) {
+            command.add("--lazy-children-lists")
+        }
 
         val process = ProcessBuilder(command)
             .start()
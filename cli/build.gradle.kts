@@ -83,16 +83,21 @@ testing {
             // Don't generate typed query classes by default for the tests because it generates quite a lot of
             // additional classes, which can decrease build performance; only enable it for the tests which need it
             val generateTypedQuery: Boolean = false,
+            val findNodesEngine: String? = null,
+            val lazyChildrenLists: Boolean = false,
         )
 
         val codeGenTaskConfigs = listOf(
             CodeGenTaskConfig("java", generateTypedQuery = true),
             CodeGenTaskConfig("java", useOptional = true),
+            // For comparing the results of the cursor-based `findNodes` implementation with the query-based one
+            CodeGenTaskConfig("java", findNodesEngine = "cursor"),
             CodeGenTaskConfig("json"),
             // Note: `languageVersion` here can differ slightly from actual language version as long as version check
             //   in generated code still considers them compatible
             CodeGenTaskConfig("json", languageProvider = "languageField", languageVersion = "0.24.8", generateTypedQuery = true),
             CodeGenTaskConfig("json", languageProvider = "languageMethod()", languageVersion = "0.24.8"),
+            CodeGenTaskConfig("json", lazyChildrenLists = true),
             // Manually map type name due to missing / incorrect type information for alias, see https://github.com/tree-sitter/tree-sitter/issues/1654
             CodeGenTaskConfig("python", fallbackNodeTypeMapping = mapOf("as_pattern_target" to "expression")),
         )
@@ -115,6 +120,12 @@ testing {
             if (taskConfig.useOptional) {
                 packageName += "_optional"
             }
+            taskConfig.findNodesEngine?.let {
+                packageName += "_find_nodes_${it}"
+            }
+            if (taskConfig.lazyChildrenLists) {
+                packageName += "_lazy_children"
+            }
             val languageProvider = taskConfig.languageProvider?.let {
                 val transformedName = it.removeSuffix("()").replace(Regex("[a-z][A-Z]")) { matchResult ->
                     val match = matchResult.value
@@ -151,6 +162,8 @@ testing {
                         taskConfig.languageVersion,
                         taskConfig.fallbackNodeTypeMapping,
                         taskConfig.generateTypedQuery,
+                        taskConfig.findNodesEngine,
+                        taskConfig.lazyChildrenLists,
                     )
                 )
 
@@ -0,0 +1,389 @@
+package language.java;
+
+import com.example.java_find_nodes_cursor.*;
+import io.github.treesitter.jtreesitter.Node;
+import io.github.treesitter.jtreesitter.Point;
+import language.AbstractTypedTreeTest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.SegmentAllocator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the generated code for tree-sitter-java, using the cursor-based {@code findNodes} implementation.
+ * The results are compared with the ones of the query-based implementation ({@code com.example.java}) for
+ * the same tree.
+ *
+ * <p>Uses code generated for {@code node-types-java.json}.
+ */
+class JavaCursorFindNodesTest extends AbstractTypedTreeTest {
+    private JavaCursorFindNodesTest() {
+        super("java", ".java");
+    }
+
+    private TypedTree parseNoError(String source) {
+        var tree = TypedTree.fromTree(parse(source));
+        assertFalse(tree.hasError());
+        return tree;
+    }
+
+    @Override
+    protected String parseSourceCode(String sourceCode, Function<Object, String> rootNodeConsumer) {
+        try (var tree = parseNoError(sourceCode)) {
+            return rootNodeConsumer.apply(tree.getRootNode());
+        }
+    }
+
+    /**
+     * Finds nodes using the query-based implementation, starting at the given node of the same tree
+     */
+    private interface QueryFindNodes {
+        Stream<? extends com.example.java.TypedNode> findNodes(com.example.java.TypedNode startNode, SegmentAllocator allocator, com.example.java.QueryOptions options);
+    }
+
+    /**
+     * Finds nodes using the cursor-based implementation
+     */
+    private interface CursorFindNodes {
+        Stream<? extends TypedNode> findNodes(TypedNode startNode, SegmentAllocator allocator, QueryOptions options);
+    }
+
+    /**
+     * Asserts that the cursor-based and the query-based {@code findNodes} find the same nodes, in the same order.
+     *
+     * @return the found nodes
+     */
+    private static List<Node> assertSameNodes(
+        Node startNode,
+        Arena arena,
+        QueryFindNodes queryFindNodes,
+        com.example.java.QueryOptions queryOptions,
+        CursorFindNodes cursorFindNodes,
+        QueryOptions cursorOptions
+    ) {
+        List<Node> expected;
+        try (var nodes = queryFindNodes.findNodes(com.example.java.TypedNode.fromNodeThrowing(startNode), arena, queryOptions)) {
+            expected = nodes.map(com.example.java.TypedNode::getNode).toList();
+        }
+
+        List<Node> actual;
+        try (var nodes = cursorFindNodes.findNodes(TypedNode.fromNodeThrowing(startNode), arena, cursorOptions)) {
+            actual = nodes.map(TypedNode::getNode).toList();
+        }
+
+        assertEquals(expected, actual);
+        return actual;
+    }
+
+    private static List<Node> assertSameNodes(Node startNode, Arena arena, QueryFindNodes queryFindNodes, CursorFindNodes cursorFindNodes) {
+        return assertSameNodes(startNode, arena, queryFindNodes, com.example.java.QueryOptions.DEFAULT, cursorFindNodes, QueryOptions.DEFAULT);
+    }
+
+    private static List<String> getTexts(List<Node> nodes) {
+        return nodes.stream().map(Node::getText).toList();
+    }
+
+    @Test
+    void testFindNodes() {
+        String source = """
+            class A {
+                void a() {
+                    class Local {
+                        void local() {}
+                    }
+                    Runnable r = new Runnable() {
+                        @Override
+                        public void run() {}
+                    };
+                }
+
+                class B {
+                    void b() {}
+                }
+            }
+
+            interface I {
+                default void i() {}
+            }
+            """;
+
+        try (
+            var tree = parseNoError(source);
+            var arena = Arena.ofConfined()
+        ) {
+            var rootNode = tree.getRootNode().getNode();
+
+            var methods = assertSameNodes(rootNode, arena, com.example.java.NodeMethodDeclaration::findNodes, NodeMethodDeclaration::findNodes);
+            assertEquals(List.of("a", "local", "run", "b", "i"), methods.stream().map(n -> n.getChildByFieldName("name").orElseThrow().getText()).toList());
+
+            var classes = assertSameNodes(rootNode, arena, com.example.java.NodeClassDeclaration::findNodes, NodeClassDeclaration::findNodes);
+            assertEquals(3, classes.size());
+
+            // Supertype
+            var declarations = assertSameNodes(rootNode, arena, com.example.java.NodeDeclaration::findNodes, NodeDeclaration::findNodes);
+            assertThat(declarations).containsAll(classes);
+
+            // Start node inside the tree; should include the start node itself in case its type matches
+            var classA = classes.getFirst();
+            assertSameNodes(classA, arena, com.example.java.NodeClassDeclaration::findNodes, NodeClassDeclaration::findNodes);
+            var classB = classes.getLast();
+            assertEquals(List.of("void b() {}"), getTexts(assertSameNodes(classB, arena, com.example.java.NodeMethodDeclaration::findNodes, NodeMethodDeclaration::findNodes)));
+
+            // No results
+            assertEquals(List.of(), assertSameNodes(classB, arena, com.example.java.NodeInterfaceDeclaration::findNodes, NodeInterfaceDeclaration::findNodes));
+        }
+    }
+
+    /**
+     * The cursor-based implementation prunes subtrees of nodes which cannot contain the searched nodes. Verifies
+     * that this does not skip nodes which can only occur deeply nested below other nodes.
+     */
+    @Test
+    void testFindNodes_Pruning() {
+        String source = """
+            @Deprecated(since = "1")
+            class A<T extends Comparable<T>> {
+                int[] f = {1, 2, 3};
+
+                void m(@SuppressWarnings("unused") String s) throws Exception {
+                    switch (s) {
+                        case "a" -> {
+                            for (int i = 0; i < 1; i++) {
+                                if (s instanceof String t && t.isEmpty()) {
+                                    var l = (Runnable & java.io.Serializable) () -> System.out.println(t + "x");
+                                }
+                            }
+                        }
+                        default -> {}
+                    }
+                }
+            }
+            """;
+
+        try (
+            var tree = parseNoError(source);
+            var arena = Arena.ofConfined()
+        ) {
+            var rootNode = tree.getRootNode().getNode();
+
+            var strings = assertSameNodes(rootNode, arena, com.example.java.NodeStringLiteral::findNodes, NodeStringLiteral::findNodes);
+            assertEquals(List.of("\"1\"", "\"unused\"", "\"a\"", "\"x\""), getTexts(strings));
+            var lambdas = assertSameNodes(rootNode, arena, com.example.java.NodeLambdaExpression::findNodes, NodeLambdaExpression::findNodes);
+            assertEquals(1, lambdas.size());
+            var typeArguments = assertSameNodes(rootNode, arena, com.example.java.NodeTypeArguments::findNodes, NodeTypeArguments::findNodes);
+            assertEquals(List.of("<T>"), getTexts(typeArguments));
+            var identifiers = assertSameNodes(rootNode, arena, com.example.java.NodeIdentifier::findNodes, NodeIdentifier::findNodes);
+            assertThat(identifiers).isNotEmpty();
+            assertSameNodes(rootNode, arena, com.example.java.NodeExpression::findNodes, NodeExpression::findNodes);
+            assertSameNodes(rootNode, arena, com.example.java.NodeStatement::findNodes, NodeStatement::findNodes);
+        }
+    }
+
+    /**
+     * Comments are 'extra' nodes, which can occur anywhere in the tree.
+     */
+    @Test
+    void testFindNodes_Extras() {
+        String source = """
+            // a
+            class A /* b */ {
+                void m(/* c */ int i) {
+                    int x = 1 + /* d */ 2; // e
+                    foo(
+                        // f
+                        x
+                    );
+                }
+            }
+            """;
+
+        try (
+            var tree = parseNoError(source);
+            var arena = Arena.ofConfined()
+        ) {
+            var rootNode = tree.getRootNode().getNode();
+
+            var lineComments = assertSameNodes(rootNode, arena, com.example.java.NodeLineComment::findNodes, NodeLineComment::findNodes);
+            assertEquals(List.of("// a", "// e", "// f"), getTexts(lineComments));
+            var blockComments = assertSameNodes(rootNode, arena, com.example.java.NodeBlockComment::findNodes, NodeBlockComment::findNodes);
+            assertEquals(List.of("/* b */", "/* c */", "/* d */"), getTexts(blockComments));
+        }
+    }
+
+    /**
+     * Nodes containing syntax errors, and error nodes themselves, can contain any other nodes, so the cursor-based
+     * implementation must not prune them.
+     */
+    @Test
+    void testFindNodes_ParseError() {
+        String source = """
+            class A {
+                void a() {
+                    int x = ;
+                    class Local { void local() {} }
+                }
+                ) ) )
+                void b() { "s".length( }
+            }
+            class C { void c() { String s = "t"; } }
+            """;
+
+        try (
+            var tree = TypedTree.fromTree(parse(source));
+            var arena = Arena.ofConfined()
+        ) {
+            assertTrue(tree.hasError());
+            var rootNode = tree.getRootNode().getNode();
+
+            var methods = assertSameNodes(rootNode, arena, com.example.java.NodeMethodDeclaration::findNodes, NodeMethodDeclaration::findNodes);
+            assertThat(methods).isNotEmpty();
+            var classes = assertSameNodes(rootNode, arena, com.example.java.NodeClassDeclaration::findNodes, NodeClassDeclaration::findNodes);
+            assertThat(getTexts(classes)).contains("class Local { void local() {} }");
+            var strings = assertSameNodes(rootNode, arena, com.example.java.NodeStringLiteral::findNodes, NodeStringLiteral::findNodes);
+            assertThat(getTexts(strings)).contains("\"t\"");
+            assertSameNodes(rootNode, arena, com.example.java.NodeIdentifier::findNodes, NodeIdentifier::findNodes);
+            assertSameNodes(rootNode, arena, com.example.java.NodeExpression::findNodes, NodeExpression::findNodes);
+        }
+    }
+
+    @Test
+    void testFindNodes_Options() {
+        String source = """
+            class A {
+                void a() {}
+
+                void b() {
+                    int x = 1;
+                }
+
+                void c() {}
+            }
+            """;
+
+        try (
+            var tree = parseNoError(source);
+            var arena = Arena.ofConfined()
+        ) {
+            var rootNode = tree.getRootNode().getNode();
+
+            // Range covering only method `b`; starts and ends inside whitespace, to avoid differences for nodes
+            // ending exactly at the start of the range or starting exactly at the end of it
+            int startByte = source.indexOf("void b()") - 1;
+            int endByte = source.indexOf("void c()") - 1;
+            var methods = assertSameNodes(
+                rootNode,
+                arena,
+                com.example.java.NodeMethodDeclaration::findNodes,
+                com.example.java.QueryOptions.DEFAULT.withByteRange(startByte, endByte),
+                NodeMethodDeclaration::findNodes,
+                QueryOptions.DEFAULT.withByteRange(startByte, endByte)
+            );
+            assertEquals(1, methods.size());
+            assertThat(methods.getFirst().getText()).startsWith("void b()");
+            var numbers = assertSameNodes(
+                rootNode,
+                arena,
+                com.example.java.NodeDecimalIntegerLiteral::findNodes,
+                com.example.java.QueryOptions.DEFAULT.withByteRange(startByte, endByte),
+                NodeDecimalIntegerLiteral::findNodes,
+                QueryOptions.DEFAULT.withByteRange(startByte, endByte)
+            );
+            assertEquals(List.of("1"), getTexts(numbers));
+
+            // Point range covering only the line of method `c`
+            var startPoint = new Point(7, 1);
+            var endPoint = new Point(7, 14);
+            methods = assertSameNodes(
+                rootNode,
+                arena,
+                com.example.java.NodeMethodDeclaration::findNodes,
+                com.example.java.QueryOptions.DEFAULT.withPointRange(startPoint, endPoint),
+                NodeMethodDeclaration::findNodes,
+                QueryOptions.DEFAULT.withPointRange(startPoint, endPoint)
+            );
+            assertEquals(List.of("void c() {}"), getTexts(methods));
+
+            // Depth 0 is the start node, depth 1 its children
+            for (int maxStartDepth = 0; maxStartDepth <= 6; maxStartDepth++) {
+                assertSameNodes(
+                    rootNode,
+                    arena,
+                    com.example.java.NodeIdentifier::findNodes,
+                    com.example.java.QueryOptions.DEFAULT.withMaxStartDepth(maxStartDepth),
+                    NodeIdentifier::findNodes,
+                    QueryOptions.DEFAULT.withMaxStartDepth(maxStartDepth)
+                );
+            }
+            methods = assertSameNodes(
+                rootNode,
+                arena,
+                com.example.java.NodeMethodDeclaration::findNodes,
+                com.example.java.QueryOptions.DEFAULT.withMaxStartDepth(1),
+                NodeMethodDeclaration::findNodes,
+                QueryOptions.DEFAULT.withMaxStartDepth(1)
+            );
+            assertEquals(List.of(), methods);
+            methods = assertSameNodes(
+                rootNode,
+                arena,
+                com.example.java.NodeMethodDeclaration::findNodes,
+                com.example.java.QueryOptions.DEFAULT.withMaxStartDepth(3),
+                NodeMethodDeclaration::findNodes,
+                QueryOptions.DEFAULT.withMaxStartDepth(3)
+            );
+            assertEquals(3, methods.size());
+        }
+    }
+
+    @Test
+    void testFindNodes_Cancellation() {
+        // Use a large source, because the query-based implementation only checks for cancellation periodically
+        var sourceBuilder = new StringBuilder("class A {\n");
+        for (int i = 0; i < 2000; i++) {
+            sourceBuilder.append("    void m").append(i).append("() { int x = ").append(i).append("; }\n");
+        }
+        sourceBuilder.append("}\n");
+        String source = sourceBuilder.toString();
+
+        try (var tree = parseNoError(source)) {
+            var rootNode = tree.getRootNode();
+
+            var token = new QueryOptions.CancellationToken();
+            token.cancel();
+            try (var nodes = NodeMethodDeclaration.findNodes(rootNode, QueryOptions.DEFAULT.withCancellationToken(token))) {
+                var e = assertThrows(CancellationException.class, nodes::toList);
+                assertEquals("Execution was cancelled", e.getMessage());
+            }
+
+            var queryToken = new com.example.java.QueryOptions.CancellationToken();
+            queryToken.cancel();
+            var queryRootNode = com.example.java.NodeProgram.fromNodeThrowing(rootNode.getNode());
+            try (var nodes = com.example.java.NodeMethodDeclaration.findNodes(queryRootNode, com.example.java.QueryOptions.DEFAULT.withCancellationToken(queryToken))) {
+                var e = assertThrows(CancellationException.class, nodes::toList);
+                assertEquals("Execution was cancelled", e.getMessage());
+            }
+
+            // Cancel while consuming the stream
+            token = new QueryOptions.CancellationToken();
+            try (var nodes = NodeMethodDeclaration.findNodes(rootNode, QueryOptions.DEFAULT.withCancellationToken(token))) {
+                var iterator = nodes.iterator();
+                assertEquals("m0", iterator.next().getFieldName().getText());
+                token.cancel();
+                assertThrows(CancellationException.class, iterator::hasNext);
+            }
+
+            // Not cancelled
+            token = new QueryOptions.CancellationToken();
+            try (var nodes = NodeMethodDeclaration.findNodes(rootNode, QueryOptions.DEFAULT.withCancellationToken(token))) {
+                assertEquals(2000, nodes.count());
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package language.java;
 import com.example.java.*;
 import io.github.treesitter.jtreesitter.Node;
 import io.github.treesitter.jtreesitter.Parser;
+import io.github.treesitter.jtreesitter.Point;
+import io.github.treesitter.jtreesitter.TreeCursor;
 import language.AbstractTypedTreeTest;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -13,8 +15,11 @@ import util.TestHelper;
 
 import java.lang.foreign.Arena;
 import java.lang.foreign.SegmentAllocator;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -214,6 +219,205 @@ class JavaNullableTest extends AbstractTypedTreeTest {
         }
     }
 
+    /**
+     * {@code readFields} should return the same values as the individual field getters.
+     */
+    @Test
+    void testReadFields() {
+        String source = """
+            abstract class Main {
+                int a, b = 1;
+                abstract <T> T first(List<T> list);
+                int[] array() [] {
+                    return null;
+                }
+            }
+            """;
+
+        try (var tree = parseNoError(source)) {
+            var classDeclaration = (NodeClassDeclaration) tree.getRootNode().getChildren().getFirst();
+            var classFields = classDeclaration.readFields();
+            assertEquals(classDeclaration.getFieldName(), classFields.fieldName());
+            assertEquals(classDeclaration.getFieldBody(), classFields.fieldBody());
+            assertNull(classFields.fieldSuperclass());
+            assertNull(classFields.fieldInterfaces());
+
+            var members = classFields.fieldBody().getChildren();
+            assertEquals(3, members.size());
+
+            // Field with multiple children
+            var fieldDeclaration = (NodeFieldDeclaration) members.get(0);
+            var fieldFields = fieldDeclaration.readFields();
+            assertEquals(fieldDeclaration.getFieldType(), fieldFields.fieldType());
+            assertEquals(fieldDeclaration.getFieldDeclarator(), fieldFields.fieldDeclarator());
+            assertEquals(List.of("a", "b = 1"), fieldFields.fieldDeclarator().stream().map(TypedNode::getText).toList());
+
+            // Optional fields which are absent
+            var abstractMethod = (NodeMethodDeclaration) members.get(1);
+            var abstractMethodFields = abstractMethod.readFields();
+            assertEquals("first", abstractMethodFields.fieldName().getText());
+            assertEquals("<T>", requireNonNull(abstractMethodFields.fieldTypeParameters()).getText());
+            assertEquals("T", abstractMethodFields.fieldType().getText());
+            assertEquals("(List<T> list)", abstractMethodFields.fieldParameters().getText());
+            assertNull(abstractMethodFields.fieldBody());
+            assertNull(abstractMethodFields.fieldDimensions());
+
+            var method = (NodeMethodDeclaration) members.get(2);
+            var expectedFields = new NodeMethodDeclaration.Fields(
+                method.getFieldBody(),
+                method.getFieldDimensions(),
+                method.getFieldName(),
+                method.getFieldParameters(),
+                method.getFieldType(),
+                method.getFieldTypeParameters()
+            );
+            assertEquals(expectedFields, method.readFields());
+            assertEquals("[]", requireNonNull(method.readFields().fieldDimensions()).getText());
+        }
+    }
+
+    @Test
+    void testReadFields_Allocator() {
+        String source = "class Main extends Base {}";
+
+        try (var tree = parseNoError(source)) {
+            var classDeclaration = (NodeClassDeclaration) tree.getRootNode().getChildren().getFirst();
+
+            NodeClassDeclaration.Fields fields;
+            try (var arena = Arena.ofConfined()) {
+                fields = classDeclaration.readFields(arena);
+                assertEquals(classDeclaration.readFields(), fields);
+                assertEquals("Main", fields.fieldName().getText());
+                assertEquals("extends Base", requireNonNull(fields.fieldSuperclass()).getText());
+            }
+            // Nodes were allocated with the arena, so they cannot be used anymore after it has been closed
+            var nameNode = fields.fieldName().getNode();
+            assertThrows(IllegalStateException.class, nameNode::getType);
+        }
+    }
+
+    /**
+     * {@link TypedTree#buildIndex} should find the same nodes as separate {@code findNodes} calls.
+     */
+    @Test
+    void testBuildIndex() {
+        String source = """
+            // comment
+            class A {
+                int f = 1;
+
+                void a(String s) {
+                    class Local {
+                        void local() { /* nested */ }
+                    }
+                }
+            }
+            interface I {
+                void i();
+            }
+            """;
+
+        try (
+            var tree = parseNoError(source);
+            var arena = Arena.ofConfined()
+        ) {
+            var index = tree.buildIndex(Set.of(NodeMethodDeclaration.class, NodeIdentifier.class, NodeDeclaration.class, NodeLineComment.class, NodeBlockComment.class));
+            var rootNode = tree.getRootNode();
+
+            try (var nodes = NodeMethodDeclaration.findNodes(rootNode, arena)) {
+                var expected = nodes.toList();
+                assertEquals(3, expected.size());
+                assertEquals(expected, index.getNodes(NodeMethodDeclaration.class));
+            }
+            try (var nodes = NodeIdentifier.findNodes(rootNode, arena)) {
+                assertEquals(nodes.toList(), index.getNodes(NodeIdentifier.class));
+            }
+            // Supertype
+            try (var nodes = NodeDeclaration.findNodes(rootNode, arena)) {
+                var expected = nodes.toList();
+                assertThat(expected).isNotEmpty();
+                assertEquals(expected, index.getNodes(NodeDeclaration.class));
+            }
+            // Extras
+            try (var nodes = NodeLineComment.findNodes(rootNode, arena)) {
+                assertEquals(nodes.toList(), index.getNodes(NodeLineComment.class));
+            }
+            try (var nodes = NodeBlockComment.findNodes(rootNode, arena)) {
+                assertEquals(nodes.toList(), index.getNodes(NodeBlockComment.class));
+            }
+
+            var e = assertThrows(IllegalArgumentException.class, () -> index.getNodes(NodeClassDeclaration.class));
+            assertEquals("Node class was not indexed: " + NodeClassDeclaration.class, e.getMessage());
+        }
+    }
+
+    /**
+     * The cursor for iterating over the children of a node is cached per thread, and is only reused for nodes
+     * of the same tree.
+     */
+    @Test
+    void testCursorCache() throws Exception {
+        // The cache is internal, therefore access it using reflection
+        var cursorCacheClass = Class.forName(NodeProgram.class.getPackageName() + ".NodeUtils$CursorCache");
+        var acquireMethod = cursorCacheClass.getDeclaredMethod("acquire", Node.class);
+        acquireMethod.setAccessible(true);
+        var releaseMethod = cursorCacheClass.getDeclaredMethod("release", TreeCursor.class);
+        releaseMethod.setAccessible(true);
+
+        try (
+            var tree1 = parseNoError("class A { int i; }");
+            var tree2 = parseNoError("class B { int j; }")
+        ) {
+            var rootNode1 = tree1.getRootNode().getNode();
+            var cursor1 = (TreeCursor) acquireMethod.invoke(null, rootNode1);
+            // Reentrant call while the cached cursor is in use gets a separate cursor
+            var reentrantCursor = (TreeCursor) acquireMethod.invoke(null, rootNode1);
+            assertNotSame(cursor1, reentrantCursor);
+            releaseMethod.invoke(null, reentrantCursor);
+            releaseMethod.invoke(null, cursor1);
+
+            // Reused for other nodes of the same tree, and positioned at them
+            var classNode1 = rootNode1.getChild(0).orElseThrow();
+            var cursor = (TreeCursor) acquireMethod.invoke(null, classNode1);
+            assertSame(cursor1, cursor);
+            assertEquals(classNode1, cursor.getCurrentNode());
+            releaseMethod.invoke(null, cursor);
+
+            // Replaced for nodes of a different tree
+            var rootNode2 = tree2.getRootNode().getNode();
+            var cursor2 = (TreeCursor) acquireMethod.invoke(null, rootNode2);
+            assertNotSame(cursor1, cursor2);
+            assertEquals(rootNode2, cursor2.getCurrentNode());
+            releaseMethod.invoke(null, cursor2);
+
+            // Iterating over children and reading fields uses the cached cursor, without replacing it
+            var classDeclaration2 = (NodeClassDeclaration) tree2.getRootNode().getChildren().getFirst();
+            assertEquals("B", classDeclaration2.readFields().fieldName().getText());
+            assertEquals(1, classDeclaration2.getFieldBody().getChildren().size());
+            cursor = (TreeCursor) acquireMethod.invoke(null, rootNode2);
+            assertSame(cursor2, cursor);
+            releaseMethod.invoke(null, cursor);
+
+            // Virtual threads use the cache as well
+            var virtualThreadCursors = new ArrayList<TreeCursor>();
+            var virtualThread = Thread.ofVirtual().start(() -> {
+                try {
+                    for (int i = 0; i < 2; i++) {
+                        var c = (TreeCursor) acquireMethod.invoke(null, rootNode1);
+                        virtualThreadCursors.add(c);
+                        releaseMethod.invoke(null, c);
+                    }
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            virtualThread.join();
+            assertEquals(2, virtualThreadCursors.size());
+            assertSame(virtualThreadCursors.get(0), virtualThreadCursors.get(1));
+            assertNotSame(cursor1, virtualThreadCursors.getFirst());
+        }
+    }
+
     static Stream<Arguments.ArgumentSet> queryStringArgs() {
         var q = new TypedQuery.Builder<>();
 
@@ -861,6 +1065,315 @@ class JavaNullableTest extends AbstractTypedTreeTest {
         }
     }
 
+    /**
+     * Verifies that captures and custom predicates are dispatched to the handlers respectively predicates they were
+     * registered for, also when structurally identical queries share the same compiled query.
+     */
+    @Test
+    void typedQuery_CaptureAndPredicateDispatch() {
+        String source = """
+            class MyClass {
+                int a1 = 1;
+                int a2 = 0;
+                int b = 2;
+                int a3 = 3;
+            }
+            """;
+
+        var testedNames = new ArrayList<String>();
+        var testedValues = new ArrayList<String>();
+        var q = new TypedQuery.Builder<List<String>>();
+        var query = q.nodeVariableDeclarator()
+            .withFieldName(q.nodeIdentifier()
+                .matching(s -> s.allMatch(n -> {
+                    testedNames.add(n.getText());
+                    return requireNonNull(n.getText()).startsWith("a");
+                }))
+                .captured((c, n) -> c.add("name:" + n.getText()))
+            )
+            .withFieldValue(q.nodeDecimalIntegerLiteral()
+                .matching(s -> s.allMatch(n -> {
+                    testedValues.add(n.getText());
+                    return !"0".equals(n.getText());
+                }))
+                .captured((c, n) -> c.add("value:" + n.getText()))
+            )
+            .buildQuery(language);
+
+        // Structurally identical query, but with different predicates and capture handlers
+        var q2 = new TypedQuery.Builder<List<String>>();
+        var query2 = q2.nodeVariableDeclarator()
+            .withFieldName(q2.nodeIdentifier()
+                .matching(s -> s.allMatch(n -> "b".equals(n.getText())))
+                .captured((c, n) -> c.add("other-name:" + n.getText()))
+            )
+            .withFieldValue(q2.nodeDecimalIntegerLiteral()
+                .matching(s -> true)
+                .captured((c, n) -> c.add("other-value:" + n.getText()))
+            )
+            .buildQuery(language);
+
+        try (
+            query;
+            query2;
+            var tree = parseNoError(source);
+            var arena = Arena.ofConfined()
+        ) {
+            String expectedQueryString = "(variable_declarator name: ((identifier) @pc0 (#pc0?)) @c0 value: ((decimal_integer_literal) @pc1 (#pc1?)) @c1)";
+            assertEquals(expectedQueryString, TestHelper.getQueryString(query));
+            assertEquals(expectedQueryString, TestHelper.getQueryString(query2));
+
+            var startNode = tree.getRootNode().getNode();
+            var captures = new ArrayList<String>();
+            query.findMatchesAndCollect(startNode, arena, captures);
+            // Captures used only for the predicates are not passed to the capture handlers
+            assertEquals(List.of("name:a1", "value:1", "name:a3", "value:3"), captures);
+            // Each predicate only received the nodes of its own capture
+            assertThat(testedNames).contains("a1", "a2", "a3").isSubsetOf("a1", "a2", "b", "a3");
+            assertThat(testedValues).contains("1", "0", "3").isSubsetOf("1", "0", "2", "3");
+
+            captures = new ArrayList<>();
+            query2.findMatchesAndCollect(startNode, arena, captures);
+            assertEquals(List.of("other-name:b", "other-value:2"), captures);
+
+            // Executing the first query again is not affected by the second query
+            captures = new ArrayList<>();
+            try (var matches = query.findMatches(startNode)) {
+                var matchesCaptures = captures;
+                matches.forEach(m -> m.collectCaptures(matchesCaptures));
+            }
+            assertEquals(List.of("name:a1", "value:1", "name:a3", "value:3"), captures);
+        }
+    }
+
+    /**
+     * Query executions reuse query cursors; verifies that reused cursors do not retain the state of a previous
+     * execution, and that concurrently open executions do not affect each other.
+     */
+    @Test
+    void typedQuery_CursorReuse() {
+        String source = """
+            class MyClass {
+                int i = 1;
+                int j = 2;
+                int k = 3;
+            }
+            """;
+
+        var q = new TypedQuery.Builder<List<NodeDecimalIntegerLiteral>>();
+        var query = q.nodeDecimalIntegerLiteral().captured(List::add).buildQuery(language);
+
+        try (
+            var tree = parseNoError(source);
+            var otherTree = parseNoError("class Other { int x = 4; }")
+        ) {
+            var startNode = tree.getRootNode().getNode();
+
+            try (query) {
+                for (int i = 0; i < 20; i++) {
+                    // Stream which is closed without consuming all matches
+                    try (var matches = query.findMatches(startNode)) {
+                        var nodes = new ArrayList<NodeDecimalIntegerLiteral>();
+                        matches.limit(1).forEach(m -> m.collectCaptures(nodes));
+                        assertEquals(List.of("1"), nodes.stream().map(NodeDecimalIntegerLiteral::getText).toList());
+                    }
+
+                    // Options of the previous execution are not retained
+                    try (var matches = query.findMatches(startNode, QueryOptions.DEFAULT.withByteRange(0, source.indexOf("int j")))) {
+                        assertEquals(1, matches.count());
+                    }
+                    try (var matches = query.findMatches(startNode)) {
+                        assertEquals(3, matches.count());
+                    }
+                }
+
+                // Concurrently open executions for different trees
+                try (
+                    var matches = query.findMatches(startNode);
+                    var otherMatches = query.findMatches(otherTree.getRootNode().getNode())
+                ) {
+                    var iterator = matches.iterator();
+                    var otherIterator = otherMatches.iterator();
+                    var nodes = new ArrayList<NodeDecimalIntegerLiteral>();
+                    iterator.next().collectCaptures(nodes);
+                    otherIterator.next().collectCaptures(nodes);
+                    iterator.next().collectCaptures(nodes);
+                    assertFalse(otherIterator.hasNext());
+                    iterator.next().collectCaptures(nodes);
+                    assertFalse(iterator.hasNext());
+                    assertEquals(List.of("1", "4", "2", "3"), nodes.stream().map(NodeDecimalIntegerLiteral::getText).toList());
+                }
+
+                // Query is closed before the stream; closing the stream afterwards is still possible
+                var matches = query.findMatches(startNode);
+                assertEquals(3, matches.count());
+                query.close();
+                matches.close();
+            }
+
+            var e = assertThrows(IllegalStateException.class, () -> query.findMatches(startNode));
+            assertEquals("Query has been closed", e.getMessage());
+        }
+    }
+
+    @Test
+    void typedQuery_Options() {
+        String source = """
+            class A {
+                void a() {}
+
+                void b() {
+                    int x = 1;
+                }
+
+                void c() {}
+            }
+            """;
+
+        var q = new TypedQuery.Builder<List<NodeMethodDeclaration>>();
+        var query = q.nodeMethodDeclaration().captured(List::add).buildQuery(language);
+
+        try (
+            query;
+            var tree = parseNoError(source);
+            var arena = Arena.ofConfined()
+        ) {
+            var startNode = tree.getRootNode().getNode();
+            Function<QueryOptions, List<String>> findMethodNames = options -> {
+                var methods = new ArrayList<NodeMethodDeclaration>();
+                query.findMatchesAndCollect(startNode, arena, options, methods);
+                return methods.stream().map(m -> m.getFieldName().getText()).toList();
+            };
+
+            assertEquals(List.of("a", "b", "c"), findMethodNames.apply(QueryOptions.DEFAULT));
+
+            // Range covering only method `b`; starts and ends inside whitespace
+            int startByte = source.indexOf("void b()") - 1;
+            int endByte = source.indexOf("void c()") - 1;
+            assertEquals(List.of("b"), findMethodNames.apply(QueryOptions.DEFAULT.withByteRange(startByte, endByte)));
+            // Nodes intersecting the range are considered as well
+            assertEquals(List.of("b"), findMethodNames.apply(QueryOptions.DEFAULT.withByteRange(source.indexOf("int x"), source.indexOf("int x") + 1)));
+
+            // Point range covering only the line of method `c`
+            assertEquals(List.of("c"), findMethodNames.apply(QueryOptions.DEFAULT.withPointRange(new Point(7, 1), new Point(7, 14))));
+
+            // Depth 0 is the start node (`program`), then `class_declaration` and `class_body`
+            assertEquals(List.of(), findMethodNames.apply(QueryOptions.DEFAULT.withMaxStartDepth(2)));
+            assertEquals(List.of("a", "b", "c"), findMethodNames.apply(QueryOptions.DEFAULT.withMaxStartDepth(3)));
+
+            // Combination of options
+            var combinedOptions = QueryOptions.DEFAULT.withMaxStartDepth(3).withByteRange(startByte, source.length());
+            assertEquals(List.of("b", "c"), findMethodNames.apply(combinedOptions));
+
+            // The query has no in-progress matches which compete with each other, so the limit has no effect
+            assertEquals(List.of("a", "b", "c"), findMethodNames.apply(QueryOptions.DEFAULT.withMatchLimit(1)));
+
+            // Stream-based execution with options
+            try (var matches = query.findMatches(startNode, QueryOptions.DEFAULT.withByteRange(startByte, endByte))) {
+                assertEquals(1, matches.count());
+            }
+        }
+    }
+
+    @Test
+    void typedQuery_Options_Invalid() {
+        var options = QueryOptions.DEFAULT;
+
+        var e = assertThrows(IllegalArgumentException.class, () -> options.withByteRange(-1, 2));
+        assertEquals("Invalid byte range: -1, 2", e.getMessage());
+        e = assertThrows(IllegalArgumentException.class, () -> options.withByteRange(3, 2));
+        assertEquals("Invalid byte range: 3, 2", e.getMessage());
+
+        e = assertThrows(IllegalArgumentException.class, () -> options.withPointRange(new Point(1, 0), new Point(0, 5)));
+        assertThat(e).message().startsWith("Invalid point range: ");
+
+        e = assertThrows(IllegalArgumentException.class, () -> options.withMaxStartDepth(-1));
+        assertEquals("Invalid max start depth: -1", e.getMessage());
+
+        e = assertThrows(IllegalArgumentException.class, () -> options.withMatchLimit(0));
+        assertEquals("Invalid match limit: 0", e.getMessage());
+
+        // Options are immutable
+        String defaultString = options.toString();
+        var depthOptions = options.withMaxStartDepth(1);
+        assertEquals(defaultString, options.toString());
+        assertNotEquals(defaultString, depthOptions.toString());
+    }
+
+    @Test
+    void typedQuery_Cancellation() {
+        // Use a large source, because the query execution only checks for cancellation periodically
+        var sourceBuilder = new StringBuilder("class A {\n");
+        for (int i = 0; i < 2000; i++) {
+            sourceBuilder.append("    void m").append(i).append("() { int x = ").append(i).append("; }\n");
+        }
+        sourceBuilder.append("}\n");
+        String source = sourceBuilder.toString();
+
+        var q = new TypedQuery.Builder<List<NodeMethodDeclaration>>();
+        var query = q.nodeMethodDeclaration().captured(List::add).buildQuery(language);
+
+        try (
+            query;
+            var tree = parseNoError(source);
+            var arena = Arena.ofConfined()
+        ) {
+            var startNode = tree.getRootNode().getNode();
+
+            var token = new QueryOptions.CancellationToken();
+            token.cancel();
+            assertTrue(token.isCancelled());
+            var cancelledOptions = QueryOptions.DEFAULT.withCancellationToken(token);
+            try (var matches = query.findMatches(startNode, cancelledOptions)) {
+                var e = assertThrows(CancellationException.class, matches::count);
+                assertEquals("Execution was cancelled", e.getMessage());
+            }
+            var e = assertThrows(CancellationException.class, () -> query.findMatchesAndCollect(startNode, arena, cancelledOptions, new ArrayList<>()));
+            assertEquals("Execution was cancelled", e.getMessage());
+
+            // Cancel while consuming the stream
+            var token2 = new QueryOptions.CancellationToken();
+            try (var matches = query.findMatches(startNode, QueryOptions.DEFAULT.withCancellationToken(token2))) {
+                var iterator = matches.iterator();
+                assertNotNull(iterator.next());
+                token2.cancel();
+                assertThrows(CancellationException.class, () -> {
+                    while (iterator.hasNext()) {
+                        iterator.next();
+                    }
+                });
+            }
+
+            try (var matches = query.findMatches(startNode, QueryOptions.DEFAULT.withTimeout(Duration.ofNanos(1)))) {
+                e = assertThrows(CancellationException.class, matches::count);
+                assertEquals("Execution timed out", e.getMessage());
+            }
+
+            // Neither timed out nor cancelled
+            var options = QueryOptions.DEFAULT
+                .withTimeout(Duration.ofDays(1))
+                .withCancellationToken(new QueryOptions.CancellationToken());
+            var methods = new ArrayList<NodeMethodDeclaration>();
+            query.findMatchesAndCollect(startNode, arena, options, methods);
+            assertEquals(2000, methods.size());
+
+            // Timeout too large to be represented in nanoseconds
+            try (var matches = query.findMatches(startNode, QueryOptions.DEFAULT.withTimeout(Duration.ofSeconds(Long.MAX_VALUE)))) {
+                assertEquals(2000, matches.count());
+            }
+
+            // Stopped executions do not affect subsequent executions
+            try (var matches = query.findMatches(startNode)) {
+                assertEquals(2000, matches.count());
+            }
+        }
+
+        var e = assertThrows(IllegalArgumentException.class, () -> QueryOptions.DEFAULT.withTimeout(Duration.ZERO));
+        assertEquals("Invalid timeout: PT0S", e.getMessage());
+        e = assertThrows(IllegalArgumentException.class, () -> QueryOptions.DEFAULT.withTimeout(Duration.ofSeconds(-1)));
+        assertEquals("Invalid timeout: PT-1S", e.getMessage());
+    }
+
     /**
      * Tests using {@link TypedQuery#findMatches(Node, SegmentAllocator)}, with a custom allocator.
      */
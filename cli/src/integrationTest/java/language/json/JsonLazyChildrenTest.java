@@ -0,0 +1,128 @@
+package language.json;
+
+import com.example.json_lazy_children.*;
+import language.AbstractTypedTreeTest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the generated code for tree-sitter-json, with lazy children lists.
+ *
+ * <p>Uses code generated for {@code node-types-json.json}.
+ */
+class JsonLazyChildrenTest extends AbstractTypedTreeTest {
+    private JsonLazyChildrenTest() {
+        super("json", ".json");
+    }
+
+    private TypedTree parseNoError(String source) {
+        var tree = TypedTree.fromTree(parse(source));
+        assertFalse(tree.hasError());
+        return tree;
+    }
+
+    @Override
+    protected String parseSourceCode(String sourceCode, Function<Object, String> rootNodeConsumer) {
+        try (var tree = parseNoError(sourceCode)) {
+            return rootNodeConsumer.apply(tree.getRootNode());
+        }
+    }
+
+    @Test
+    void testChildren() {
+        String source = "[1, true, \"a\"]";
+
+        try (var tree = parseNoError(source)) {
+            var array = (NodeArray) tree.getRootNode().getChildren().getFirst();
+            var children = array.getChildren();
+            assertEquals(3, children.size());
+            assertEquals(List.of("1", "true", "\"a\""), children.stream().map(NodeValue::getText).toList());
+            assertInstanceOf(NodeNumber.class, children.get(0));
+            assertInstanceOf(NodeTrue.class, children.get(1));
+            assertInstanceOf(NodeString.class, children.get(2));
+
+            // Converted children are kept by the list
+            assertSame(children.get(0), children.get(0));
+            // Other list obtains new typed nodes, but they are equal
+            assertEquals(children, array.getChildren());
+
+            assertThrows(IndexOutOfBoundsException.class, () -> children.get(3));
+            assertThrows(UnsupportedOperationException.class, () -> children.add(children.getFirst()));
+            assertThrows(UnsupportedOperationException.class, () -> children.set(0, children.getFirst()));
+        }
+    }
+
+    @Test
+    void testChildren_SizeDoesNotConvert() {
+        String source = "[1, 2, 3]";
+
+        try (
+            var tree = parseNoError(source);
+            var cache = tree.openNodeCache()
+        ) {
+            var array = (NodeArray) tree.getRootNode().getChildren().getFirst();
+            long initialMisses = cache.getMissCount();
+
+            var children = array.getChildren();
+            assertEquals(3, children.size());
+            assertFalse(children.isEmpty());
+            // No typed nodes have been created for the children yet
+            assertEquals(initialMisses, cache.getMissCount());
+
+            assertEquals("2", children.get(1).getText());
+            assertEquals(initialMisses + 1, cache.getMissCount());
+
+            // Only the children which are accessed are converted
+            assertEquals("2", children.get(1).getText());
+            assertEquals(initialMisses + 1, cache.getMissCount());
+        }
+    }
+
+    /**
+     * Errors which occur when converting a child to a typed node are only thrown once the child is accessed.
+     */
+    @Test
+    void testChildren_DeferredConversionError() {
+        String source = "[1, 2]";
+
+        try (var tree = parseNoError(source)) {
+            var array = (NodeArray) tree.getRootNode().getChildren().getFirst();
+
+            List<NodeValue> children;
+            NodeValue firstChild;
+            try (var arena = Arena.ofConfined()) {
+                children = array.getChildren(arena);
+                firstChild = children.getFirst();
+            }
+
+            // Only the size is queried, which does not access the jtreesitter nodes
+            assertEquals(2, children.size());
+            // Already converted child is returned as is
+            assertSame(firstChild, children.getFirst());
+            // Converting the second child fails because the memory of its jtreesitter node has been released
+            assertThrows(IllegalStateException.class, () -> children.get(1));
+        }
+    }
+
+    /**
+     * Error and missing nodes are still detected when the children are obtained, not only once they are accessed.
+     */
+    @Test
+    void testErrorNode() {
+        String source = "{ : }";
+
+        try (var tree = TypedTree.fromTree(parse(source))) {
+            assertTrue(tree.hasError());
+
+            var objectNode = (NodeObject) tree.getRootNode().getChildren().getFirst();
+            var e = assertThrows(IllegalStateException.class, objectNode::getChildren);
+            assertThat(e).message().startsWith("Child is error or missing node: ");
+        }
+    }
+}
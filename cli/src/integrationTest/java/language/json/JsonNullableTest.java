@@ -1,15 +1,28 @@
 package language.json;
 
 import com.example.json.*;
+import io.github.treesitter.jtreesitter.InputEncoding;
+import io.github.treesitter.jtreesitter.Node;
+import io.github.treesitter.jtreesitter.Parser;
 import io.github.treesitter.jtreesitter.Point;
 import io.github.treesitter.jtreesitter.Range;
+import io.github.treesitter.jtreesitter.Tree;
 import language.AbstractTypedTreeTest;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
+import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -193,6 +206,386 @@ class JsonNullableTest extends AbstractTypedTreeTest {
         }
     }
 
+    /**
+     * Nodes whose memory is not managed by the garbage collector must not be cached, otherwise a later lookup would
+     * return a typed node whose jtreesitter node has already been freed.
+     */
+    @Test
+    void testNodeCache_ScopedNodes() {
+        String source = "[1, 2, 3]";
+
+        try (
+            var tree = parseNoError(source);
+            var cache = tree.openNodeCache()
+        ) {
+            List<NodeNumber> streamNodes;
+            try (var nodes = NodeNumber.findNodes(tree.getRootNode())) {
+                streamNodes = nodes.toList();
+            }
+
+            List<NodeNumber> allocatorNodes;
+            try (var arena = Arena.ofConfined()) {
+                try (var nodes = NodeNumber.findNodes(tree.getRootNode(), arena)) {
+                    allocatorNodes = nodes.toList();
+                }
+            }
+
+            // Look up the same nodes again after the stream and the arena have been closed
+            var array = (NodeArray) tree.getRootNode().getChildren().getFirst();
+            var children = array.getChildren();
+            assertEquals(List.of("1", "2", "3"), children.stream().map(NodeValue::getText).toList());
+            assertEquals(streamNodes, children);
+            assertEquals(allocatorNodes, children);
+            for (int i = 0; i < children.size(); i++) {
+                assertNotSame(streamNodes.get(i), children.get(i));
+                assertNotSame(allocatorNodes.get(i), children.get(i));
+            }
+
+            // Nodes with memory managed by the garbage collector are cached
+            var childrenAgain = array.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                assertSame(children.get(i), childrenAgain.get(i));
+            }
+            assertThat(cache.getHitCount()).isGreaterThanOrEqualTo(children.size());
+        }
+    }
+
+    private static void collectNodes(Node node, List<Node> nodes) {
+        nodes.add(node);
+        for (var child : node.getChildren()) {
+            collectNodes(child, nodes);
+        }
+    }
+
+    @Test
+    void testKind() {
+        String source = """
+            [{"a\\n": 1}, true, false, null] // comment
+            """;
+
+        try (var tree = parseNoError(source)) {
+            List<Node> allNodes = new ArrayList<>();
+            collectNodes(tree.getTree().getRootNode(), allNodes);
+
+            Set<TypedNodeKind> foundKinds = EnumSet.noneOf(TypedNodeKind.class);
+            for (var node : allNodes) {
+                var kind = TypedNodeKind.of(node);
+                foundKinds.add(kind);
+
+                var typedNode = TypedNode.fromNode(node);
+                if (typedNode == null) {
+                    assertFalse(node.isNamed());
+                    assertEquals(TypedNodeKind.OTHER, kind);
+                } else {
+                    assertEquals(typedNode.kind(), kind, node.getType());
+                }
+            }
+            // Source covers all node types
+            assertEquals(EnumSet.allOf(TypedNodeKind.class), foundKinds);
+
+            var rootNode = tree.getRootNode();
+            assertEquals(TypedNodeKind.NODE_DOCUMENT, rootNode.kind());
+            var array = (NodeArray) rootNode.getChildren().getFirst();
+            assertEquals(TypedNodeKind.NODE_ARRAY, array.kind());
+            List<TypedNodeKind> elementKinds = array.getChildren().stream().map(TypedNode::kind).toList();
+            assertEquals(List.of(TypedNodeKind.NODE_OBJECT, TypedNodeKind.NODE_TRUE, TypedNodeKind.NODE_FALSE, TypedNodeKind.NODE_NULL), elementKinds);
+        }
+    }
+
+    /** Visitor which records all calls; returns the result of {@code actionFunction} for each call */
+    private static class RecordingVisitor implements TypedVisitor {
+        private final List<String> events = new ArrayList<>();
+        private final Function<String, Action> actionFunction;
+
+        RecordingVisitor(Function<String, Action> actionFunction) {
+            this.actionFunction = actionFunction;
+        }
+
+        RecordingVisitor() {
+            this(event -> Action.CONTINUE);
+        }
+
+        @Override
+        public Action defaultVisit(TypedNode node) {
+            String event = "visit " + node.getNode().getType();
+            events.add(event);
+            return actionFunction.apply(event);
+        }
+
+        @Override
+        public Action defaultLeave(TypedNode node) {
+            String event = "leave " + node.getNode().getType();
+            events.add(event);
+            return actionFunction.apply(event);
+        }
+    }
+
+    @Test
+    void testAccept() {
+        String source = "[1, {\"a\": true}]";
+
+        try (var tree = parseNoError(source)) {
+            var visitor = new RecordingVisitor();
+            assertTrue(tree.accept(visitor));
+            // Unnamed nodes are not passed to the visitor; when the last child of a node is left, all ancestors
+            // for which it is the last child are left as well
+            var expectedEvents = List.of(
+                "visit document",
+                "visit array",
+                "visit number",
+                "leave number",
+                "visit object",
+                "visit pair",
+                "visit string",
+                "visit string_content",
+                "leave string_content",
+                "leave string",
+                "visit true",
+                "leave true",
+                "leave pair",
+                "leave object",
+                "leave array",
+                "leave document"
+            );
+            assertEquals(expectedEvents, visitor.events);
+
+            // Skipping the subtree still calls the leave method of the node
+            visitor = new RecordingVisitor(event -> event.equals("visit object") ? TypedVisitor.Action.SKIP_SUBTREE : TypedVisitor.Action.CONTINUE);
+            assertTrue(tree.accept(visitor));
+            expectedEvents = List.of(
+                "visit document",
+                "visit array",
+                "visit number",
+                "leave number",
+                "visit object",
+                "leave object",
+                "leave array",
+                "leave document"
+            );
+            assertEquals(expectedEvents, visitor.events);
+
+            // Stopping in a visit method
+            visitor = new RecordingVisitor(event -> event.equals("visit number") ? TypedVisitor.Action.STOP : TypedVisitor.Action.CONTINUE);
+            assertFalse(tree.accept(visitor));
+            assertEquals(List.of("visit document", "visit array", "visit number"), visitor.events);
+
+            // Stopping in a leave method, while leaving multiple ancestors
+            visitor = new RecordingVisitor(event -> event.equals("leave pair") ? TypedVisitor.Action.STOP : TypedVisitor.Action.CONTINUE);
+            assertFalse(tree.accept(visitor));
+            expectedEvents = List.of(
+                "visit document",
+                "visit array",
+                "visit number",
+                "leave number",
+                "visit object",
+                "visit pair",
+                "visit string",
+                "visit string_content",
+                "leave string_content",
+                "leave string",
+                "visit true",
+                "leave true",
+                "leave pair"
+            );
+            assertEquals(expectedEvents, visitor.events);
+        }
+    }
+
+    /**
+     * Typed nodes should only be created for nodes whose visitor methods are overridden.
+     */
+    @Test
+    void testAccept_OverriddenMethods() {
+        String source = "[1, [2, true]]";
+
+        try (
+            var tree = parseNoError(source);
+            var cache = tree.openNodeCache()
+        ) {
+            List<String> visitedNumbers = new ArrayList<>();
+            List<String> leftArrays = new ArrayList<>();
+            assertTrue(tree.accept(new TypedVisitor() {
+                @Override
+                public Action visitNodeNumber(NodeNumber node) {
+                    visitedNumbers.add(node.getText());
+                    return Action.CONTINUE;
+                }
+
+                @Override
+                public Action leaveNodeArray(NodeArray node) {
+                    leftArrays.add(node.getText());
+                    return Action.CONTINUE;
+                }
+            }));
+            assertEquals(List.of("1", "2"), visitedNumbers);
+            // Inner array is left first
+            assertEquals(List.of("[2, true]", source), leftArrays);
+
+            // Typed nodes were only created for the numbers and arrays
+            assertEquals(4, cache.getMissCount());
+            assertEquals(4, cache.size());
+        }
+    }
+
+    /**
+     * The text methods should have the same results as {@link TypedNode#getText()}, regardless of the charset
+     * used for parsing and retaining the source code.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"UTF-8", "UTF-16LE", "UTF-16BE"})
+    void testText_RetainedSource(String charsetName) {
+        var charset = Charset.forName(charsetName);
+        // Contains ASCII, non-ASCII and supplementary characters
+        String source = "[\"a\", \"é€😀\", \"x\"]";
+
+        Tree jtreesitterTree;
+        try (var parser = new Parser(language)) {
+            jtreesitterTree = parser.parse(source, InputEncoding.valueOf(charset)).orElseThrow();
+        }
+        try (var tree = TypedTree.fromTree(jtreesitterTree)) {
+            assertFalse(tree.hasError());
+            var strings = ((NodeArray) tree.getRootNode().getChildren().getFirst()).getChildren();
+            assertEquals(List.of("\"a\"", "\"é€😀\"", "\"x\""), strings.stream().map(NodeValue::getText).toList());
+
+            // Source is not retained yet; falls back to `getText()`
+            for (var string : strings) {
+                assertNull(string.getTextBytes());
+                assertEquals(string.getText(), requireNonNull(string.getTextView()).toString());
+                assertTrue(string.textEquals(requireNonNull(string.getText())));
+            }
+
+            tree.retainSource(charset);
+            for (var string : strings) {
+                String text = requireNonNull(string.getText());
+                assertEquals(ByteBuffer.wrap(text.getBytes(charset)), string.getTextBytes());
+
+                var textView = requireNonNull(string.getTextView());
+                assertEquals(text, textView.toString());
+                assertEquals(text.length(), textView.length());
+                assertEquals(text.charAt(1), textView.charAt(1));
+
+                assertTrue(string.textEquals(text));
+                assertTrue(string.textEquals(new StringBuilder(text)));
+                assertFalse(string.textEquals(text + "x"));
+                assertFalse(string.textEquals(text.substring(1)));
+                assertEquals(text.hashCode(), string.textHashCode());
+
+                for (int i = 0; i <= text.length(); i++) {
+                    assertTrue(string.textStartsWith(text.substring(0, i)), "Prefix length " + i);
+                }
+                assertFalse(string.textStartsWith(text + "x"));
+            }
+
+            tree.releaseSource();
+            assertNull(strings.getFirst().getTextBytes());
+            assertEquals("\"a\"", requireNonNull(strings.getFirst().getTextView()).toString());
+        }
+    }
+
+    @Test
+    void testSession() throws Exception {
+        String source = "[1, 2, 3]";
+
+        try (var tree = parseNoError(source)) {
+            List<NodeValue> sessionChildren;
+            var arena = Arena.ofConfined();
+            try (var session = tree.openSession(arena)) {
+                assertSame(arena, session.getArena());
+
+                var array = (NodeArray) tree.getRootNode().getChildren().getFirst();
+                sessionChildren = array.getChildren();
+                assertEquals(List.of("1", "2", "3"), sessionChildren.stream().map(NodeValue::getText).toList());
+
+                // Session must be closed by the thread which opened it
+                var thread = Thread.ofPlatform().unstarted(() -> {
+                    var e = assertThrows(IllegalStateException.class, session::close);
+                    assertEquals("Session must be closed by the thread which opened it", e.getMessage());
+                });
+                var threadFailure = new AtomicReference<Throwable>();
+                thread.setUncaughtExceptionHandler((t, e) -> threadFailure.set(e));
+                thread.start();
+                thread.join();
+                assertNull(threadFailure.get());
+                assertTrue(arena.scope().isAlive());
+            }
+
+            // Closing the session closes the arena, and the nodes obtained during the session cannot be used anymore
+            assertFalse(arena.scope().isAlive());
+            var node = sessionChildren.getFirst().getNode();
+            assertThrows(IllegalStateException.class, node::getType);
+
+            // Nodes obtained after the session was closed are not affected
+            var array = (NodeArray) tree.getRootNode().getChildren().getFirst();
+            assertEquals(List.of("1", "2", "3"), array.getChildren().stream().map(NodeValue::getText).toList());
+        }
+    }
+
+    @Test
+    void testSession_Nested() {
+        String source = "[1, [2]]";
+
+        try (var tree = parseNoError(source)) {
+            var outerArena = Arena.ofConfined();
+            var innerArena = Arena.ofConfined();
+            try (var outerSession = tree.openSession(outerArena)) {
+                var outerArray = (NodeArray) tree.getRootNode().getChildren().getFirst();
+
+                NodeNumber innerNumber;
+                try (var innerSession = tree.openSession(innerArena)) {
+                    assertSame(innerArena, innerSession.getArena());
+                    // Sessions must be closed in the reverse order in which they were opened
+                    var e = assertThrows(IllegalStateException.class, outerSession::close);
+                    assertEquals("Nested session has not been closed yet", e.getMessage());
+
+                    var innerArray = (NodeArray) outerArray.getChildren().get(1);
+                    innerNumber = (NodeNumber) innerArray.getChildren().getFirst();
+                    assertEquals("2", innerNumber.getText());
+                }
+                assertFalse(innerArena.scope().isAlive());
+                assertThrows(IllegalStateException.class, () -> innerNumber.getNode().getType());
+
+                // Outer session is still active
+                assertTrue(outerArena.scope().isAlive());
+                assertEquals("1", outerArray.getChildren().getFirst().getText());
+            }
+            assertFalse(outerArena.scope().isAlive());
+        }
+    }
+
+    /**
+     * While a session is open the node cache is bypassed, because the cached typed nodes would otherwise outlive the
+     * memory of their jtreesitter nodes.
+     */
+    @Test
+    void testSession_NodeCache() {
+        String source = "[1, 2]";
+
+        try (
+            var tree = parseNoError(source);
+            var cache = tree.openNodeCache()
+        ) {
+            var array = (NodeArray) tree.getRootNode().getChildren().getFirst();
+
+            try (var session = tree.openSession(Arena.ofConfined())) {
+                assertTrue(session.getArena().scope().isAlive());
+                var children = array.getChildren();
+                var childrenAgain = array.getChildren();
+                assertEquals(children, childrenAgain);
+                for (int i = 0; i < children.size(); i++) {
+                    assertNotSame(children.get(i), childrenAgain.get(i));
+                }
+            }
+            assertEquals(0, cache.getHitCount());
+
+            var children = array.getChildren();
+            var childrenAgain = array.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                assertSame(children.get(i), childrenAgain.get(i));
+            }
+            assertEquals(children.size(), cache.getHitCount());
+        }
+    }
+
     @Test
     void testNodeDelegatingMethods() {
         String source = "[]";
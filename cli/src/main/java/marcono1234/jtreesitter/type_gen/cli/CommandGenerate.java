@@ -286,6 +286,50 @@ class CommandGenerate implements Callable<Void> {
     // However, here for CLI this acts as opt-out flag (without requiring an explicit boolean argument), so it is fine
     private boolean noFindNodesMethods = false; // false -> generate `findNodes` methods by default
 
+    @CommandLine.Option(
+        names = {"--find-nodes-engine"},
+        paramLabel = "<engine>",
+        description = {
+            "Implementation used by the generated 'findNodes' methods",
+            "Possible values: 'query' (default), 'cursor'",
+            "'cursor' walks the tree and skips subtrees which cannot contain the searched nodes.",
+        },
+        converter = FindNodesEngineConverter.class,
+        defaultValue = "query"
+    )
+    private CodeGenConfig.FindNodesEngine findNodesEngine;
+
+    @CommandLine.Option(
+        names = {"--lazy-children-lists"},
+        paramLabel = "<boolean>",
+        description = {
+            "Whether getters for multiple children return a lazy list view",
+            "The children are only converted to typed nodes when they are accessed.",
+        }
+    )
+    private boolean lazyChildrenLists = false;
+
+    @CommandLine.Option(
+        names = {"--query-cache-max-size"},
+        paramLabel = "<size>",
+        description = {
+            "Initial maximum number of compiled queries cached by the generated code",
+            "The size can still be changed at runtime; 0 disables caching.",
+        },
+        defaultValue = "32"
+    )
+    private int queryCacheMaxSize;
+
+    @CommandLine.Option(
+        names = {"--report-method-sizes"},
+        paramLabel = "<boolean>",
+        description = {
+            "Whether to print the largest generated methods and their estimated bytecode size",
+            "Methods larger than the HotSpot 'HugeMethodLimit' (8000 bytes) are not JIT-compiled; they are always reported as warning.",
+        }
+    )
+    private boolean reportMethodSizes = false;
+
     @CommandLine.Option(
         names = {"--generate-typed-query"},
         paramLabel = "<boolean>",
@@ -611,7 +655,10 @@ class CommandGenerate implements Callable<Void> {
             .apply(this::applyNullableConfig)
             .childTypeAsTopLevel(childTypeAsTopLevel)
             .nameGenerator(nameGenerator)
-            .generateFindNodesMethods(!noFindNodesMethods);
+            .generateFindNodesMethods(!noFindNodesMethods)
+            .findNodesEngine(findNodesEngine)
+            .lazyChildrenLists(lazyChildrenLists)
+            .queryCacheMaxSize(queryCacheMaxSize);
 
         if (nonEmptyAnnotationSimpleName != null) {
             configBuilder.nonEmptyTypeName(nonEmptyAnnotationSimpleName);
@@ -628,9 +675,21 @@ class CommandGenerate implements Callable<Void> {
 
         var codeGenerator = new CodeGenerator(configBuilder.build());
         var languageConfig = getLanguageConfig();
-        codeGenerator.generate(nodeTypesFile, languageConfig, outputDir);
+        var report = codeGenerator.generateWithReport(nodeTypesFile, languageConfig, outputDir);
 
-        commandLine.getOut().println("[SUCCESS] Successfully generated code in directory: " + outputDir);
+        var out = commandLine.getOut();
+        for (var methodSize : report.largestMethods()) {
+            if (methodSize.exceedsHugeMethodLimit()) {
+                out.println("[WARNING] Generated method is probably too large to be JIT-compiled: " + methodSize);
+            }
+        }
+        if (reportMethodSizes) {
+            out.println("[INFO] Largest generated methods (estimated bytecode size):");
+            for (var methodSize : report.largestMethods()) {
+                out.println("  " + methodSize);
+            }
+        }
+        out.println("[SUCCESS] Successfully generated code in directory: " + outputDir);
 
         return null;
     }
@@ -0,0 +1,9 @@
+package marcono1234.jtreesitter.type_gen.cli.converter;
+
+import marcono1234.jtreesitter.type_gen.CodeGenConfig;
+
+public class FindNodesEngineConverter extends EnumConverter<CodeGenConfig.FindNodesEngine> {
+    public FindNodesEngineConverter() {
+        super(CodeGenConfig.FindNodesEngine.class);
+    }
+}
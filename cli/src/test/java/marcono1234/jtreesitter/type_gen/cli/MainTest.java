@@ -136,7 +136,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java", "com/example/TypedTree.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java", "com/example/TypedTree.java", "com/example/TypedTreeCursor.java", "com/example/TypedVisitor.java"));
         // Verify that `findNodes(...)` methods are generated by default
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8).contains(FIND_NODES_METHOD_SNIPPET);
     }
@@ -166,7 +166,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("NodeFirst.java", "NodeUtils.java", "NonEmpty.java", "TypedNode.java"));
+        assertFiles(outputDir, List.of("NodeFirst.java", "NodeUtils.java", "NonEmpty.java", "QueryOptions.java", "TypedNode.java", "TypedNodeKind.java"));
     }
 
     @Test
@@ -198,7 +198,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java", "com/example/TypedTree.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java", "com/example/TypedTree.java", "com/example/TypedTreeCursor.java", "com/example/TypedVisitor.java"));
         assertThat(outputDir.resolve("com/example/TypedTree.java")).content(UTF_8).contains("public NodeSecond getRootNode() {");
     }
 
@@ -279,7 +279,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeAsPattern.java", "com/example/NodeMyNode.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeAsPattern.java", "com/example/NodeMyNode.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         // Should contain getter method for field 'alias' which has mapped type 'my_node' as result
         assertThat(outputDir.resolve("com/example/NodeAsPattern.java")).content(UTF_8).contains("public NodeMyNode getFieldAlias() {");
     }
@@ -309,7 +309,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/LanguageUtils.java", "com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/LanguageUtils.java", "com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/LanguageUtils.java")).content(UTF_8).contains("MyClass.method()");
     }
 
@@ -338,7 +338,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/LanguageUtils.java", "com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/LanguageUtils.java", "com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/LanguageUtils.java")).content(UTF_8).contains("MyClass.field");
     }
 
@@ -368,7 +368,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/LanguageUtils.java", "com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/LanguageUtils.java", "com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/LanguageUtils.java")).content(UTF_8)
             .contains("checkLanguageVersion();")
             .contains("int expectedMajor = 1;")
@@ -434,7 +434,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8).contains("@MyNullable");
     }
 
@@ -464,7 +464,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java", "com/example/package-info.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java", "com/example/package-info.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8).contains("@MyNullable");
         assertThat(outputDir.resolve("com/example/package-info.java")).content(UTF_8).contains("@MyNullMarked");
     }
@@ -496,7 +496,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java", "com/example/package-info.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java", "com/example/package-info.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8)
             .contains(Nullable.class.getName())
             .contains("@" + Nullable.class.getSimpleName());
@@ -533,7 +533,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8)
             .contains(Nullable.class.getName())
             .contains("@" + Nullable.class.getSimpleName());
@@ -597,7 +597,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/MyNonEmpty.java", "com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/MyNonEmpty.java", "com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
     }
 
     @Test
@@ -648,7 +648,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeThird$Child.java", "com/example/NodeThird.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeThird$Child.java", "com/example/NodeThird.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
     }
 
     @Test
@@ -676,7 +676,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/TypedNode.java")).content(UTF_8).contains("interface TypedNode extends TypedNodeSuper");
     }
 
@@ -705,7 +705,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/A_MyNode_B.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/A_MyNode_B.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/A_MyNode_B.java")).content(UTF_8).contains("class A_MyNode_B implements");
         assertThat(outputDir.resolve("com/example/TypedNode.java")).content(UTF_8).contains("new A_MyNode_B(node)");
     }
@@ -767,7 +767,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeMyNode.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeMyNode.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/NodeMyNode.java")).content(UTF_8)
             .contains("LEFT(\"<\")", "RIGHT(\">\")");
     }
@@ -857,7 +857,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8).doesNotContain(FIND_NODES_METHOD_SNIPPET);
     }
 
@@ -890,7 +890,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QNodeFirst.java", "com/example/TypedNode.java", "com/example/TypedQuery.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QNodeFirst.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java", "com/example/TypedQuery.java"));
     }
 
     @Test
@@ -1048,7 +1048,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeThird.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java", "com/example/TypedTree.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeThird.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java", "com/example/TypedTree.java", "com/example/TypedTreeCursor.java", "com/example/TypedVisitor.java"));
 
         assertThat(outputDir.resolve("com/example/TypedTree.java")).content(UTF_8)
             .contains("custom javadoc typed-tree");
@@ -1145,7 +1145,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java", "com/example/TypedTree.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeSecond.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java", "com/example/TypedTree.java", "com/example/TypedTreeCursor.java", "com/example/TypedVisitor.java"));
         assertThat(outputDir.resolve("com/example/TypedTree.java")).content(UTF_8).contains(
             """
               public void myMethod() {
@@ -1205,7 +1205,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8).contains("@MyGenerated");
     }
 
@@ -1235,7 +1235,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8).doesNotContain("@Generated");
     }
 
@@ -1265,7 +1265,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8).contains("date = \"" + time + "\"");
     }
 
@@ -1295,7 +1295,7 @@ class MainTest {
             stdErr -> assertEquals("", stdErr)
         );
 
-        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/TypedNode.java"));
+        assertFiles(outputDir, List.of("com/example/NodeFirst.java", "com/example/NodeUtils.java", "com/example/NonEmpty.java", "com/example/QueryOptions.java", "com/example/TypedNode.java", "com/example/TypedNodeKind.java"));
         assertThat(outputDir.resolve("com/example/NodeFirst.java")).content(UTF_8).contains(comment);
     }
 
@@ -49,10 +49,22 @@ import java.util.function.Consumer;
  *      useful to reduce the size of the generated code when it is known that these methods will not be used.
  *      For example when the tree is always traversed manually or when the more powerful {@linkplain #typedQueryNameGenerator() 'typed query'}
  *      is used instead.
+ * @param findNodesEngine
+ *      Implementation which the generated {@code findNodes(...)} methods use for finding the nodes. Has no effect
+ *      if {@code generateFindNodesMethods} is {@code false}.
+ * @param lazyChildrenLists
+ *      Whether the generated getters for multiple children and fields return a lazy {@link java.util.List List} view.
+ *      Such a view only converts a child to a typed node when the element is accessed; for example {@code size()}
+ *      and {@code isEmpty()} do not create any typed nodes. This can improve performance when callers often only
+ *      access a few of the children. If {@code false}, all children are converted eagerly.
  * @param typedQueryNameGenerator
  *      Determines the names for the generated 'typed query' code. The generated code allows building a Tree-sitter
  *      query and consuming captures, both in a type-safe way.<br>
  *      If an empty {@link Optional} is given, no 'typed query' code will be generated.
+ * @param queryCacheMaxSize
+ *      Initial maximum number of compiled Tree-sitter queries which the generated code caches, see the generated
+ *      {@code QueryCache} class of the 'typed query' code. The maximum size can still be changed at runtime;
+ *      0 disables caching. Must not be negative.
  * @param customJavadocProvider
  *      Provides custom Javadoc text for the elements in the generated code.<br>
  *      If an empty {@link Optional} is given, no custom Javadoc will be added.
@@ -78,7 +90,10 @@ public record CodeGenConfig(
     NameGenerator nameGenerator,
     // This config for `findNodes()` mainly exists at the request of users (see https://github.com/Marcono1234/jtreesitter-type-gen/issues/4)
     boolean generateFindNodesMethods,
+    FindNodesEngine findNodesEngine,
+    boolean lazyChildrenLists,
     Optional<TypedQueryNameGenerator> typedQueryNameGenerator,
+    int queryCacheMaxSize,
     Optional<CustomJavadocProvider> customJavadocProvider,
     Optional<CustomMethodsProvider> customMethodsProvider,
     Optional<GeneratedAnnotationConfig> generatedAnnotationConfig
@@ -96,7 +111,11 @@ public record CodeGenConfig(
         Objects.requireNonNull(childTypeAsTopLevel);
         Objects.requireNonNull(typedNodeSuperinterface);
         nameGenerator = validatingNameGenerator(nameGenerator);
+        Objects.requireNonNull(findNodesEngine);
         typedQueryNameGenerator = typedQueryNameGenerator.map(CodeGenConfig::validatingTypedQueryNameGenerator);
+        if (queryCacheMaxSize < 0) {
+            throw new IllegalArgumentException("Query cache max size must not be negative: " + queryCacheMaxSize);
+        }
         Objects.requireNonNull(customJavadocProvider);
         Objects.requireNonNull(customMethodsProvider);
         Objects.requireNonNull(generatedAnnotationConfig);
@@ -127,7 +146,10 @@ public record CodeGenConfig(
      * <li>{@link CodeGenConfig#typedNodeSuperinterface() typedNodeSuperinterface}: none
      * <li>{@link CodeGenConfig#nameGenerator() nameGenerator}: {@link NameGenerator.DefaultNameGenerator}
      * <li>{@link CodeGenConfig#generateFindNodesMethods() generateFindNodesMethods}: true
+     * <li>{@link CodeGenConfig#findNodesEngine() findNodesEngine}: {@link FindNodesEngine#QUERY QUERY}
+     * <li>{@link CodeGenConfig#lazyChildrenLists() lazyChildrenLists}: false
      * <li>{@link CodeGenConfig#typedQueryNameGenerator() typedQueryNameGenerator}: none (that means no 'typed query' code is generated)
+     * <li>{@link CodeGenConfig#queryCacheMaxSize() queryCacheMaxSize}: {@value Builder#DEFAULT_QUERY_CACHE_MAX_SIZE}
      * <li>{@link CodeGenConfig#customJavadocProvider() customJavadocProvider}: none
      * <li>{@link CodeGenConfig#customMethodsProvider() customMethodsProvider}: none
      * <li>{@link CodeGenConfig#generatedAnnotationConfig() generatedAnnotationConfig}: Javax {@link Generated @Generated}, using the current time (when code generation is performed) as 'generation time'
@@ -227,6 +249,26 @@ public record CodeGenConfig(
             return this;
         }
 
+        private FindNodesEngine findNodesEngine = FindNodesEngine.QUERY;
+
+        /**
+         * @see CodeGenConfig#findNodesEngine()
+         */
+        public Builder findNodesEngine(FindNodesEngine findNodesEngine) {
+            this.findNodesEngine = Objects.requireNonNull(findNodesEngine);
+            return this;
+        }
+
+        private boolean lazyChildrenLists = false;
+
+        /**
+         * @see CodeGenConfig#lazyChildrenLists()
+         */
+        public Builder lazyChildrenLists(boolean lazyChildrenLists) {
+            this.lazyChildrenLists = lazyChildrenLists;
+            return this;
+        }
+
         private Optional<TypedQueryNameGenerator> typedQueryNameGenerator = Optional.empty();
 
         /**
@@ -237,6 +279,17 @@ public record CodeGenConfig(
             return this;
         }
 
+        private static final int DEFAULT_QUERY_CACHE_MAX_SIZE = 32;
+        private int queryCacheMaxSize = DEFAULT_QUERY_CACHE_MAX_SIZE;
+
+        /**
+         * @see CodeGenConfig#queryCacheMaxSize()
+         */
+        public Builder queryCacheMaxSize(int queryCacheMaxSize) {
+            this.queryCacheMaxSize = queryCacheMaxSize;
+            return this;
+        }
+
         private Optional<CustomJavadocProvider> customJavadocProvider = Optional.empty();
 
         /**
@@ -301,7 +354,10 @@ public record CodeGenConfig(
                 typedNodeSuperinterface,
                 nameGenerator,
                 generateFindNodesMethods,
+                findNodesEngine,
+                lazyChildrenLists,
                 typedQueryNameGenerator,
+                queryCacheMaxSize,
                 customJavadocProvider,
                 customMethodsProvider,
                 generatedAnnotationConfig
@@ -338,6 +394,24 @@ public record CodeGenConfig(
         AS_NEEDED
     }
 
+    /**
+     * Implementation used by the generated {@code findNodes(...)} methods.
+     */
+    public enum FindNodesEngine {
+        /**
+         * Creates a Tree-sitter query which matches the node types, and runs it starting at the given node.
+         */
+        QUERY,
+        /**
+         * Walks the tree with a tree cursor and compares the numeric type IDs of the nodes.
+         *
+         * <p>Based on the {@code node-types.json} information the generated code knows which node types can
+         * contain which other node types, directly or indirectly. This allows skipping subtrees which cannot
+         * contain the searched nodes. Subtrees containing errors, or nodes of unknown type, are always searched.
+         */
+        CURSOR
+    }
+
     /*
      * Note: `@Generated` is in the `javax.annotation.processing` package, which is actually for annotation processing,
      * but maybe it is fine nonetheless to use the annotation, even though code generation here is not doing annotation
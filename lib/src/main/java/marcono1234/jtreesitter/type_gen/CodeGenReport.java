@@ -0,0 +1,52 @@
+package marcono1234.jtreesitter.type_gen;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Report about the generated code, returned by {@link CodeGenerator#generate(java.nio.file.Path, LanguageConfig, java.nio.file.Path)}.
+ *
+ * @param largestMethods
+ *      the largest generated methods, sorted by descending estimated size
+ */
+public record CodeGenReport(List<MethodSize> largestMethods) {
+    /**
+     * Default HotSpot {@code HugeMethodLimit}; by default methods with more bytecode are not JIT-compiled.
+     */
+    public static final int HUGE_METHOD_LIMIT = 8000;
+
+    public CodeGenReport {
+        largestMethods = List.copyOf(largestMethods);
+    }
+
+    /**
+     * Estimated size of a generated method. The size is only estimated based on the generated source code, because
+     * the code is not compiled during code generation.
+     *
+     * @param className
+     *      qualified name of the class declaring the method, using {@code .} as separator for nested classes
+     * @param methodName
+     *      name of the method; {@code <init>} for constructors
+     * @param estimatedBytecodeSize
+     *      estimated size in bytes of the bytecode of the method
+     */
+    public record MethodSize(String className, String methodName, int estimatedBytecodeSize) {
+        public MethodSize {
+            Objects.requireNonNull(className);
+            Objects.requireNonNull(methodName);
+        }
+
+        /**
+         * Whether the estimated size exceeds the {@linkplain #HUGE_METHOD_LIMIT huge method limit}, that is, whether
+         * the method is probably not JIT-compiled.
+         */
+        public boolean exceedsHugeMethodLimit() {
+            return estimatedBytecodeSize > HUGE_METHOD_LIMIT;
+        }
+
+        @Override
+        public String toString() {
+            return className + "#" + methodName + " (~" + estimatedBytecodeSize + " bytes)";
+        }
+    }
+}
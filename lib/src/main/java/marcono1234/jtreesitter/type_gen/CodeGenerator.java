@@ -1,6 +1,7 @@
 package marcono1234.jtreesitter.type_gen;
 
 import com.palantir.javapoet.JavaFile;
+import com.palantir.javapoet.TypeSpec;
 import marcono1234.jtreesitter.type_gen.internal.gen.*;
 import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.*;
 import marcono1234.jtreesitter.type_gen.internal.gen.typed_query.TypedQueryGenerator;
@@ -51,9 +52,29 @@ public class CodeGenerator {
      * @param languageConfig language / {@code node-types.json} specific configuration
      * @param outputDir directory where the generated source code files are written; is created if it does not exist yet
      * @throws CodeGenException if code generation failed
+     * @see #generateWithReport(Path, LanguageConfig, Path)
      */
     // Note: Internally this library uses `@Nullable`, but externally it uses `Optional`
     public void generate(Path nodeTypesFile, LanguageConfig languageConfig, Path outputDir) throws CodeGenException {
+        generateWithReport(nodeTypesFile, languageConfig, outputDir);
+    }
+
+    /**
+     * Performs the code generation, and reports information about the generated code, such as the largest methods.
+     * Otherwise the same as {@link #generate(Path, LanguageConfig, Path)}.
+     *
+     * <h4>Security</h4>
+     * Only use {@code node-types.json} from trusted sources, for example from one of the official tree-sitter
+     * repositories. Using an untrusted file could for example lead to code injection or remote code execution,
+     * possibly even during code generation.
+     *
+     * @param nodeTypesFile path to the {@code node-types.json} file
+     * @param languageConfig language / {@code node-types.json} specific configuration
+     * @param outputDir directory where the generated source code files are written; is created if it does not exist yet
+     * @return report about the generated code
+     * @throws CodeGenException if code generation failed
+     */
+    public CodeGenReport generateWithReport(Path nodeTypesFile, LanguageConfig languageConfig, Path outputDir) throws CodeGenException {
         Objects.requireNonNull(nodeTypesFile);
         Objects.requireNonNull(languageConfig);
         Objects.requireNonNull(outputDir);
@@ -98,7 +119,7 @@ public class CodeGenerator {
         };
 
         try {
-            generate(nodeTypesFile, languageConfig, codeWriter, version());
+            return generate(nodeTypesFile, languageConfig, codeWriter, version());
         } catch (RuntimeException e) {
             throw new CodeGenException("Failed generating code", e);
         }
@@ -113,28 +134,69 @@ public class CodeGenerator {
     }
 
     // Visible for testing
-    void generate(Path nodeTypesFile, LanguageConfig languageConfig, JavaCodeWriter codeWriter, Version versionInfo) throws CodeGenException {
+    CodeGenReport generate(Path nodeTypesFile, LanguageConfig languageConfig, JavaCodeWriter codeWriter, Version versionInfo) throws CodeGenException {
         List<NodeType> nodeTypes;
         try {
             nodeTypes = verboseJsonMapper.readValue(nodeTypesFile.toFile(), new TypeReference<>() {});
         } catch (JacksonException e) {
             throw new CodeGenException("Failed reading node types file: " + nodeTypesFile, e);
         }
-        generate(nodeTypes, languageConfig, codeWriter, versionInfo);
+        return generate(nodeTypes, languageConfig, codeWriter, versionInfo);
     }
 
     // Visible for testing
-    void generate(Reader nodeTypesReader, LanguageConfig languageConfig, JavaCodeWriter codeWriter, Version versionInfo) throws CodeGenException {
+    CodeGenReport generate(Reader nodeTypesReader, LanguageConfig languageConfig, JavaCodeWriter codeWriter, Version versionInfo) throws CodeGenException {
         List<NodeType> nodeTypes;
         try {
             nodeTypes = verboseJsonMapper.readValue(nodeTypesReader, new TypeReference<>() {});
         } catch (JacksonException e) {
             throw new CodeGenException("Failed reading node types", e);
         }
-        generate(nodeTypes, languageConfig, codeWriter, versionInfo);
+        return generate(nodeTypes, languageConfig, codeWriter, versionInfo);
+    }
+
+    /** Number of methods included in {@link CodeGenReport#largestMethods()} */
+    private static final int REPORTED_METHODS_COUNT = 10;
+
+    /**
+     * Adds the estimated sizes of all methods of the type and its nested types to {@code methodSizes}.
+     */
+    private static void collectMethodSizes(TypeSpec typeSpec, String className, List<CodeGenReport.MethodSize> methodSizes) {
+        for (var method : typeSpec.methodSpecs()) {
+            int size = MethodSplitter.estimateBytecodeSize(method);
+            // Ignore methods without body
+            if (size > 0) {
+                methodSizes.add(new CodeGenReport.MethodSize(className, method.isConstructor() ? "<init>" : method.name(), size));
+            }
+        }
+        for (var nestedType : typeSpec.typeSpecs()) {
+            collectMethodSizes(nestedType, className + "." + nestedType.name(), methodSizes);
+        }
     }
 
-    private void generate(List<NodeType> nodeTypes, LanguageConfig languageConfig, JavaCodeWriter codeWriter, Version versionInfo) throws CodeGenException {
+    private CodeGenReport generate(List<NodeType> nodeTypes, LanguageConfig languageConfig, JavaCodeWriter codeWriter, Version versionInfo) throws CodeGenException {
+        List<CodeGenReport.MethodSize> methodSizes = new ArrayList<>();
+        // Wrap the code writer to collect the method sizes of all written classes
+        generateCode(nodeTypes, languageConfig, new JavaCodeWriter() {
+            @Override
+            public void write(JavaFile javaCode) throws CodeGenException {
+                var typeSpec = javaCode.typeSpec();
+                String packagePrefix = javaCode.packageName().isEmpty() ? "" : javaCode.packageName() + ".";
+                collectMethodSizes(typeSpec, packagePrefix + typeSpec.name(), methodSizes);
+                codeWriter.write(javaCode);
+            }
+
+            @Override
+            public void writePackageInfo(String packageName, String content) throws CodeGenException {
+                codeWriter.writePackageInfo(packageName, content);
+            }
+        }, versionInfo);
+
+        methodSizes.sort(Comparator.comparingInt(CodeGenReport.MethodSize::estimatedBytecodeSize).reversed());
+        return new CodeGenReport(methodSizes.subList(0, Math.min(methodSizes.size(), REPORTED_METHODS_COUNT)));
+    }
+
+    private void generateCode(List<NodeType> nodeTypes, LanguageConfig languageConfig, JavaCodeWriter codeWriter, Version versionInfo) throws CodeGenException {
         /*
          * Phase 1: Create code structure and names
          */
@@ -171,7 +233,8 @@ public class CodeGenerator {
         /*
          * Phase 2: Generate code
          */
-        CodeGenHelper codeGenHelper = new CodeGenHelper(config, versionInfo, languageUtilsConfigData, typeNameCreator, nodeGens.nodeTypeLookup);
+        var nodeTypeReachability = new NodeTypeReachability(nodeGens.nodeTypes, nodeGens.rootNode);
+        CodeGenHelper codeGenHelper = new CodeGenHelper(config, versionInfo, languageUtilsConfigData, typeNameCreator, nodeGens.nodeTypeLookup, nodeTypeReachability, nodeGens.rootNode != null);
 
         var nullMarkedAnnotation = config.nullMarkedPackageAnnotationTypeName().map(CodeGenHelper::createClassName).orElse(null);
         if (nullMarkedAnnotation != null) {
@@ -181,7 +244,7 @@ public class CodeGenerator {
 
         var languageUtilsConfig = codeGenHelper.languageUtilsConfig();
         if (languageUtilsConfig != null) {
-            codeWriter.write(new LanguageUtilsGenerator(codeGenHelper, languageUtilsConfig).generateCode());
+            codeWriter.write(new LanguageUtilsGenerator(codeGenHelper, languageUtilsConfig).generateCode(nodeGens.nodeTypes));
         }
 
         codeWriter.write(new NodeUtilsGenerator(codeGenHelper).generateCode());
@@ -191,6 +254,10 @@ public class CodeGenerator {
             nodeGens.typedNodeSubtypes
         ));
         codeWriter.write(new NonEmptyAnnotationGenerator(typeNameCreator).generateCode(codeGenHelper));
+        codeWriter.write(new TypedNodeKindGenerator(codeGenHelper).generateCode());
+        if (codeGenHelper.generatesQueryOptions()) {
+            codeWriter.write(new QueryOptionsGenerator(codeGenHelper).generateCode());
+        }
 
         for (var nodeGen : nodeGens.nodeTypes) {
             for (var javaCode : nodeGen.generateJavaCode(codeGenHelper)) {
@@ -201,6 +268,8 @@ public class CodeGenerator {
         if (nodeGens.rootNode != null) {
             var customMethods = customMethodsProvider.customMethodsForTypedTree();
             codeWriter.write(new TypedTreeClassGenerator(typeNameCreator, codeGenHelper, customMethods).generateCode(nodeGens.rootNode));
+            codeWriter.write(new TypedTreeCursorGenerator(typeNameCreator, codeGenHelper).generateCode());
+            codeWriter.write(new TypedVisitorGenerator(typeNameCreator, codeGenHelper).generateCode());
         }
 
         /*
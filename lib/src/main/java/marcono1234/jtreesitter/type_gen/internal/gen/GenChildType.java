@@ -1,7 +1,6 @@
 package marcono1234.jtreesitter.type_gen.internal.gen;
 
 import com.palantir.javapoet.*;
-import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.NodeUtilsGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.TypedNodeInterfaceGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.*;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CustomJavadocProviderImpl.SpecificCustomJavadocProvider;
@@ -12,7 +11,6 @@ import javax.lang.model.element.Modifier;
 import java.util.*;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper.createInitializingConstructor;
@@ -35,6 +33,11 @@ public sealed interface GenChildType {
         return null;
     }
 
+    /**
+     * Gets the named node types which can appear as child. Supertypes are not resolved to their subtypes.
+     */
+    List<GenNodeType> getNamedNodeTypes();
+
     /**
      * Information about the token enum generated by the child type.
      *
@@ -54,10 +57,11 @@ public sealed interface GenChildType {
     @Nullable TokenEnumInfo getTokenEnumInfo(CodeGenHelper codeGenHelper);
 
     /**
-     * Generates code for converting jtreesitter {@code List<Node>} {@code childrenVar} to a
-     * {@code List<T extends TypedNode>} and creates a local variable {@code resultVar} with the result.
+     * Generates code for converting the jtreesitter {@code Node} {@code nodeVar} to the Java type of this child
+     * type, and assigning the result to {@code resultTarget} (for example a local variable or an array element).
+     * The generated code throws an exception if the node cannot be converted.
      */
-    void addConvertingCall(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String childrenVar, String resultVar);
+    void addConvertingStatements(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String nodeVar, CodeBlock resultTarget);
 
     /**
      * Returns whether this child type generates a Java interface which directly or indirectly
@@ -191,23 +195,30 @@ public sealed interface GenChildType {
     }
 
     /**
-     * Adds a mapper variable with the given {@code mapperVar} name, which is used by the {@link NodeUtilsGenerator}
-     * methods to convert from a jtreesitter Node to a TypedNode.
+     * Creates code which converts the named jtreesitter {@code Node} {@code nodeVar} to {@code javaType}.
      */
-    private static void addMapperVariable(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String mapperVar, GenJavaType javaType) {
+    private static CodeBlock createNamedConvertingCode(CodeGenHelper codeGenHelper, String nodeVar, GenJavaType javaType) {
         ClassName javaTypeName = javaType.getJavaTypeName();
 
         // Only GenNodeType classes have dedicated `fromNode` methods
         if (javaType instanceof GenNodeType) {
-            var nodeType = codeGenHelper.jtreesitterConfig().node().className();
-            var mapperType = ParameterizedTypeName.get(ClassName.get(Function.class), nodeType, javaTypeName);
-            builder.addStatement("$T $N = $T::$N", mapperType, mapperVar, javaTypeName, codeGenHelper.typedNodeConfig().methodFromNodeThrowing());
+            return CodeBlock.of("$T.$N($N)", javaTypeName, codeGenHelper.typedNodeConfig().methodFromNodeThrowing(), nodeVar);
         } else {
-            // Specify mapper as `Class`
-            builder.addStatement("var $N = $T.class", mapperVar, javaTypeName);
+            var nodeUtils = codeGenHelper.nodeUtilsConfig();
+            return CodeBlock.of("$T.$N($N, $T.class)", nodeUtils.className(), nodeUtils.methodFromNodeThrowing(), nodeVar, javaTypeName);
         }
     }
 
+    /**
+     * Adds a statement which throws an exception if the jtreesitter {@code Node} {@code nodeVar} is (non-)named.
+     */
+    private static void addUnexpectedNamedCheck(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String nodeVar, boolean named) {
+        var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
+        String condition = named ? "$N.$N()" : "!$N.$N()";
+        String message = named ? "Unexpected named child: " : "Unexpected non-named child: ";
+        builder.addStatement("if (" + condition + ") throw new $T($S + $N)", nodeVar, jtreesitterNode.methodIsNamed(), IllegalArgumentException.class, message, nodeVar);
+    }
+
     /**
      * Child type which represents a single named type.
      */
@@ -222,6 +233,11 @@ public sealed interface GenChildType {
             return nodeType;
         }
 
+        @Override
+        public List<GenNodeType> getNamedNodeTypes() {
+            return List.of(nodeType);
+        }
+
         @Override
         public List<TypeBuilderWithName> generateJavaTypes(CodeGenHelper codeGenHelper, String childGetterName) {
             // Refers to existing type, nothing to generate
@@ -235,12 +251,9 @@ public sealed interface GenChildType {
         }
 
         @Override
-        public void addConvertingCall(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String childrenVar, String resultVar) {
-            var nodeUtils = codeGenHelper.nodeUtilsConfig();
-
-            String mapperVar = "namedMapper";
-            GenChildType.addMapperVariable(builder, codeGenHelper, mapperVar, nodeType);
-            builder.addStatement("var $N = $T.$N($N, $N, null)", resultVar, nodeUtils.className(), nodeUtils.methodMapChildrenNamedNonNamed(), childrenVar, mapperVar);
+        public void addConvertingStatements(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String nodeVar, CodeBlock resultTarget) {
+            addUnexpectedNamedCheck(builder, codeGenHelper, nodeVar, false);
+            builder.addStatement("$L = $L", resultTarget, createNamedConvertingCode(codeGenHelper, nodeVar, nodeType));
         }
 
         @Override
@@ -299,6 +312,11 @@ public sealed interface GenChildType {
             return false;
         }
 
+        @Override
+        public List<GenNodeType> getNamedNodeTypes() {
+            return List.of();
+        }
+
         @Override
         public Supplier<ClassName> getJavaTypeNameSupplier() {
             return () -> javaTypeName;
@@ -370,24 +388,66 @@ public sealed interface GenChildType {
             }
             typeBuilder.addJavadoc("\n</ul>");
 
-            var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
+            var jtreesitter = codeGenHelper.jtreesitterConfig();
+            var jtreesitterNode = jtreesitter.node();
             String nodeParam = "node";
             String typeVar = "type";
             String tokenVar = "token";
             // package-private because this is an internal method
-            var fromNodeMethod = MethodSpec.methodBuilder(TOKEN_ENUM_FROM_NODE_METHOD_NAME)
+            var fromNodeMethodBuilder = MethodSpec.methodBuilder(TOKEN_ENUM_FROM_NODE_METHOD_NAME)
                 .addModifiers(Modifier.STATIC)
                 .addParameter(jtreesitterNode.className(), nodeParam)
-                .returns(className)
+                .returns(className);
+
+            var languageUtils = codeGenHelper.languageUtilsConfig();
+            if (languageUtils != null) {
+                // Lookup table indexed by numeric type ID, so that the lookup does not have to obtain and compare
+                // the type name string of the node
+                String tokensVar = "tokens";
+                String idVar = "id";
+                var createTokensByTypeIdMethod = MethodSpec.methodBuilder("createTokensByTypeId")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .returns(ArrayTypeName.of(className))
+                    .addStatement("var $N = new $T[$T.$N.$N()]", tokensVar, className, languageUtils.className(), languageUtils.fieldLanguage(), jtreesitter.language().methodGetSymbolCount())
+                    .beginControlFlow("for (var $N : values())", tokenVar)
+                    .addStatement("short $N = $T.$N.$N($N.$N, false)", idVar, languageUtils.className(), languageUtils.fieldLanguage(), jtreesitter.language().methodGetTypeId(), tokenVar, typeField)
+                    .beginControlFlow("if ($N != 0)", idVar)
+                    .addStatement("$N[$T.toUnsignedInt($N)] = $N", tokensVar, Short.class, idVar, tokenVar)
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addStatement("return $N", tokensVar)
+                    .build();
+                var tokensByTypeIdField = FieldSpec.builder(ArrayTypeName.of(className), "tokensByTypeId", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .addJavadoc("Indexed by the numeric type ID; {@code null} elements for other types")
+                    .initializer("$N()", createTokensByTypeIdMethod)
+                    .build();
+                typeBuilder.addField(tokensByTypeIdField);
+                typeBuilder.addMethod(createTokensByTypeIdMethod);
+
+                String typeIdVar = "typeId";
+                fromNodeMethodBuilder
+                    .addStatement("int $N = $T.toUnsignedInt($N.$N())", typeIdVar, Short.class, nodeParam, jtreesitterNode.methodGetTypeId())
+                    .beginControlFlow("if ($N < $N.length)", typeIdVar, tokensByTypeIdField)
+                    .addStatement("var $N = $N[$N]", tokenVar, tokensByTypeIdField, typeIdVar)
+                    .beginControlFlow("if ($N != null)", tokenVar)
+                    .addStatement("return $N", tokenVar)
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addComment("Fall back to comparing the type name");
+            }
+
+            // Use `switch` instead of iterating over `values()` to avoid creating a copy of the values array
+            fromNodeMethodBuilder
                 .addStatement("var $N = $N.$N()", typeVar, nodeParam, jtreesitterNode.methodGetType())
-                .beginControlFlow("for (var $N : values())", tokenVar)
-                .beginControlFlow("if ($N.$N.equals($N))", tokenVar, typeField, typeVar)
-                .addStatement("return $N", tokenVar)
-                .endControlFlow()
-                .endControlFlow()
+                .addCode("return switch ($N) {\n$>", typeVar);
+            for (var token : tokensToJavaConstants.entrySet()) {
+                fromNodeMethodBuilder.addStatement("case $S -> $N", token.getKey(), token.getValue().constantName());
+            }
+            fromNodeMethodBuilder
                 .addComment("Should not happen since all non-named child types are covered")
-                .addStatement("throw new $T(\"Unknown token type: \" + $N)", IllegalArgumentException.class, typeVar)
-                .build();
+                .addStatement("default -> throw new $T(\"Unknown token type: \" + $N)", IllegalArgumentException.class, typeVar)
+                .addCode("$<};\n");
+            var fromNodeMethod = fromNodeMethodBuilder.build();
             typeBuilder.addMethod(fromNodeMethod);
 
             return typeBuilder.build();
@@ -443,6 +503,7 @@ public sealed interface GenChildType {
             String nodeField = "node";
             String tokenField = "token";
             TypedNodeInterfaceGenerator.generateTypedNodeImplementation(typeBuilder, codeGenHelper, nodeField, new TypedNodeInterfaceGenerator.JavaFieldData(tokenClassName, tokenField));
+            TypedNodeInterfaceGenerator.generateKindImplementation(typeBuilder, codeGenHelper, codeGenHelper.typedNodeKindConfig().constantOther());
 
             var getTokenTypeMethod = MethodSpec.methodBuilder(tokenGetterName)
                 .addModifiers(Modifier.PUBLIC)
@@ -458,24 +519,16 @@ public sealed interface GenChildType {
         }
 
         /**
-         * Adds a mapper variable with the given {@code mapperVar} name, which is used by the {@link NodeUtilsGenerator}
-         * methods to convert from a jtreesitter Node to a TypedNode.
+         * Creates code which converts the non-named jtreesitter {@code Node} {@code nodeVar} to this type.
          */
-        void addMapperVariable(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String mapperVar) {
-            var nodeType = codeGenHelper.jtreesitterConfig().node().className();
-            var mapperType = ParameterizedTypeName.get(ClassName.get(Function.class), nodeType, javaTypeName);
-            builder.addStatement("$T $N = n -> new $T(n, $T.$N(n))", mapperType, mapperVar, javaTypeName, getTokenEnumClassName(codeGenHelper), TOKEN_ENUM_FROM_NODE_METHOD_NAME);
+        CodeBlock createConvertingCode(CodeGenHelper codeGenHelper, String nodeVar) {
+            return CodeBlock.of("new $T($N, $T.$N($N))", javaTypeName, nodeVar, getTokenEnumClassName(codeGenHelper), TOKEN_ENUM_FROM_NODE_METHOD_NAME, nodeVar);
         }
 
         @Override
-        public void addConvertingCall(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String childrenVar, String resultVar) {
-            var nodeUtils = codeGenHelper.nodeUtilsConfig();
-            String mapperVar = "mapper";
-            addMapperVariable(builder, codeGenHelper, mapperVar);
-
-            // Cast `null` to `Class<...>` to avoid overload ambiguity
-            var ownClassType = ParameterizedTypeName.get(ClassName.get(Class.class), javaTypeName);
-            builder.addStatement("var $N = $T.$N($N, ($T) null, $N)", resultVar, nodeUtils.className(), nodeUtils.methodMapChildrenNamedNonNamed(), childrenVar, ownClassType, mapperVar);
+        public void addConvertingStatements(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String nodeVar, CodeBlock resultTarget) {
+            addUnexpectedNamedCheck(builder, codeGenHelper, nodeVar, true);
+            builder.addStatement("$L = $L", resultTarget, createConvertingCode(codeGenHelper, nodeVar));
         }
     }
 
@@ -506,6 +559,11 @@ public sealed interface GenChildType {
             return types.stream().anyMatch(t -> t.refersToType(type, seenTypes));
         }
 
+        @Override
+        public List<GenNodeType> getNamedNodeTypes() {
+            return types;
+        }
+
         @Override
         public Supplier<ClassName> getJavaTypeNameSupplier() {
             return javaTypeNameSupplier;
@@ -586,21 +644,23 @@ public sealed interface GenChildType {
         }
 
         @Override
-        public void addConvertingCall(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String childrenVar, String resultVar) {
-            var nodeUtils = codeGenHelper.nodeUtilsConfig();
-
-            String namedMapperVar = "namedMapper";
+        public void addConvertingStatements(MethodSpec.Builder builder, CodeGenHelper codeGenHelper, String nodeVar, CodeBlock resultTarget) {
             // If refers only to 1 other named type, can generate more efficient code by using its `fromNode` method
             // instead of `TypedNode#fromNode`
             var javaType = types.size() == 1 ? types.getFirst() : this;
-            GenChildType.addMapperVariable(builder, codeGenHelper, namedMapperVar, javaType);
+            var namedConvertingCode = createNamedConvertingCode(codeGenHelper, nodeVar, javaType);
 
             if (tokensChildType == null) {
-                builder.addStatement("var $N = $T.$N($N, $N, null)", resultVar, nodeUtils.className(), nodeUtils.methodMapChildrenNamedNonNamed(), childrenVar, namedMapperVar);
+                addUnexpectedNamedCheck(builder, codeGenHelper, nodeVar, false);
+                builder.addStatement("$L = $L", resultTarget, namedConvertingCode);
             } else {
-                String tokenMapperVar = "tokenMapper";
-                tokensChildType.addMapperVariable(builder, codeGenHelper, tokenMapperVar);
-                builder.addStatement("var $N = $T.$N($N, $N, $N)", resultVar, nodeUtils.className(), nodeUtils.methodMapChildrenNamedNonNamed(), childrenVar, namedMapperVar, tokenMapperVar);
+                var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
+                builder
+                    .beginControlFlow("if ($N.$N())", nodeVar, jtreesitterNode.methodIsNamed())
+                    .addStatement("$L = $L", resultTarget, namedConvertingCode)
+                    .nextControlFlow("else")
+                    .addStatement("$L = $L", resultTarget, tokensChildType.createConvertingCode(codeGenHelper, nodeVar))
+                    .endControlFlow();
             }
         }
     }
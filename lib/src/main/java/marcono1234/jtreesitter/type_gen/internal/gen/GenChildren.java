@@ -6,6 +6,7 @@ import marcono1234.jtreesitter.type_gen.NameGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.*;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CustomJavadocProviderImpl.SpecificCustomJavadocProvider;
 import marcono1234.jtreesitter.type_gen.internal.node_types_json.ChildType;
+import org.jspecify.annotations.Nullable;
 
 import javax.lang.model.element.Modifier;
 import java.util.*;
@@ -72,6 +73,13 @@ public class GenChildren {
         return type;
     }
 
+    /**
+     * Gets the return type of the getter method.
+     */
+    public TypeName getGetterReturnType() {
+        return getter.returnType().get();
+    }
+
     /**
      * Whether the tree-sitter grammar permits multiple occurrences of this child.
      */
@@ -122,13 +130,56 @@ public class GenChildren {
      *
      * @param nodeJavaFieldName name of the Java field which stores the underlying jtreesitter Node
      * @param childrenVarName name of the local variable to generate, which should store the obtained children
+     * @param allocatorVarName name of the {@code SegmentAllocator} variable to use for the children, if any
      */
-    protected void addGetChildrenStatement(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName, String childrenVarName) {
+    protected void addGetChildrenStatement(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName, String childrenVarName, @Nullable String allocatorVarName) {
         var nodeUtils = codeGenHelper.nodeUtilsConfig();
 
         // For now only include named children because `node-types.json` does not include information about non-named
         // child types, see `!t.named` check and comment further below
-        methodBuilder.addStatement("var $N = $T.$N($N, true)", childrenVarName, nodeUtils.className(), nodeUtils.methodGetNonFieldChildren(), nodeJavaFieldName);
+        if (allocatorVarName == null) {
+            methodBuilder.addStatement("var $N = $T.$N($N, true)", childrenVarName, nodeUtils.className(), nodeUtils.methodGetNonFieldChildren(), nodeJavaFieldName);
+        } else {
+            methodBuilder.addStatement("var $N = $T.$N($N, true, $N)", childrenVarName, nodeUtils.className(), nodeUtils.methodGetNonFieldChildren(), nodeJavaFieldName, allocatorVarName);
+        }
+    }
+
+    /**
+     * Generates code which counts the children, without allocating jtreesitter Node objects for them. The result is
+     * the same as the size of the list obtained by {@link #addGetChildrenStatement}.
+     *
+     * @param nodeJavaFieldName name of the Java field which stores the underlying jtreesitter Node
+     * @return code for the {@code int} count
+     */
+    protected CodeBlock createCountChildrenCode(CodeGenHelper codeGenHelper, String nodeJavaFieldName) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        return CodeBlock.of("$T.$N($N, true)", nodeUtils.className(), nodeUtils.methodCountNonFieldChildren(), nodeJavaFieldName);
+    }
+
+    /**
+     * Generates code which checks whether there is at least one child, without allocating jtreesitter Node objects
+     * for the children. The result is the same as checking whether {@link #createCountChildrenCode} is {@code > 0}.
+     *
+     * @param nodeJavaFieldName name of the Java field which stores the underlying jtreesitter Node
+     * @return code for the {@code boolean} result
+     */
+    protected CodeBlock createHasChildrenCode(CodeGenHelper codeGenHelper, String nodeJavaFieldName) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        return CodeBlock.of("$T.$N($N, true)", nodeUtils.className(), nodeUtils.methodHasNonFieldChild(), nodeJavaFieldName);
+    }
+
+    /**
+     * Generates code which directly obtains the jtreesitter Node of the single child, without obtaining the list of
+     * all children first. Only called if this is not {@linkplain #isMultiple() multiple}. The generated local variable
+     * is {@code null} if the child is not present.
+     *
+     * @param nodeJavaFieldName name of the Java field which stores the underlying jtreesitter Node
+     * @param childVarName name of the local variable to generate, which should store the obtained child
+     * @param allocatorVarName name of the {@code SegmentAllocator} variable to use for the child, if any
+     * @return whether code was generated; if {@code false} {@link #addGetChildrenStatement} is used instead
+     */
+    protected boolean addGetSingleChildStatement(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName, String childVarName, @Nullable String allocatorVarName) {
+        return false;
     }
 
     /**
@@ -136,32 +187,138 @@ public class GenChildren {
      * them to {@code TypedNode} objects.
      *
      * @param nodeJavaFieldName name of the Java field which stores the underlying jtreesitter Node
+     * @param allocatorVarName name of the {@code SegmentAllocator} variable to use for the children, if any
      */
-    private void generateChildrenMethodBody(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName) {
+    private void generateChildrenMethodBody(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName, @Nullable String allocatorVarName) {
         methodBuilder.returns(getter.returnType().get());
 
         String childrenVar = "children";
-        addGetChildrenStatement(methodBuilder, codeGenHelper, nodeJavaFieldName, childrenVar);
-
-        String mappedChildrenVar = "childrenMapped";
-        type.addConvertingCall(methodBuilder, codeGenHelper, childrenVar, mappedChildrenVar);
-
+        // Convert the children with a loop specific to this getter (instead of a generic `NodeUtils` method taking
+        // mapper functions), to avoid megamorphic call sites
         var nodeUtils = codeGenHelper.nodeUtilsConfig();
-        String utilsMethodName = null;
+        var elementType = type.getJavaTypeNameSupplier().get();
+        String childVar = "child";
         if (multiple) {
-            if (required) {
-                utilsMethodName = nodeUtils.methodAtLeastOneChild();
+            addGetChildrenStatement(methodBuilder, codeGenHelper, nodeJavaFieldName, childrenVar, allocatorVarName);
+            var result = addConvertMultipleChildrenStatements(methodBuilder, codeGenHelper, childrenVar, "childrenMapped", childVar);
+            methodBuilder.addStatement("return $L", result);
+            return;
+        }
+
+        // Prefer directly obtaining the single child, if supported
+        boolean isDirectChild = addGetSingleChildStatement(methodBuilder, codeGenHelper, nodeJavaFieldName, childVar, allocatorVarName);
+        if (!isDirectChild) {
+            addGetChildrenStatement(methodBuilder, codeGenHelper, nodeJavaFieldName, childrenVar, allocatorVarName);
+        }
+
+        String resultVar = "result";
+        if (required) {
+            if (isDirectChild) {
+                methodBuilder.addStatement("if ($N == null) throw new $T(\"Required child is missing\")", childVar, IllegalArgumentException.class);
+            } else {
+                methodBuilder.addStatement("var $N = $T.$N($N)", childVar, nodeUtils.className(), nodeUtils.methodRequiredChild(), childrenVar);
             }
-        } else if (required) {
-            utilsMethodName = nodeUtils.methodRequiredChild();
+            methodBuilder.addStatement("$T $N", elementType, resultVar);
+            type.addConvertingStatements(methodBuilder, codeGenHelper, childVar, CodeBlock.of("$N", resultVar));
+            methodBuilder.addStatement("return $N", resultVar);
         } else {
-            utilsMethodName = nodeUtils.methodOptionalChild();
+            methodBuilder.addStatement("$T $N = null", codeGenHelper.getNullableType(elementType), resultVar);
+            if (isDirectChild) {
+                methodBuilder.beginControlFlow("if ($N != null)", childVar);
+            } else {
+                methodBuilder
+                    .beginControlFlow("if (!$N.isEmpty())", childrenVar)
+                    .addComment("Verifies that there is at most one child")
+                    .addStatement("var $N = $T.$N($N)", childVar, nodeUtils.className(), nodeUtils.methodRequiredChild(), childrenVar);
+            }
+            type.addConvertingStatements(methodBuilder, codeGenHelper, childVar, CodeBlock.of("$N", resultVar));
+            methodBuilder.endControlFlow();
+            codeGenHelper.addReturnOptionalStatement(methodBuilder, resultVar);
         }
+    }
 
-        if (utilsMethodName == null) {
-            methodBuilder.addStatement("return $N", mappedChildrenVar);
+    /**
+     * Generates code which converts a list of children jtreesitter Node objects to a list of typed nodes; only
+     * used if this is {@linkplain #isMultiple() multiple}. Depending on {@link CodeGenHelper#generatesLazyChildrenLists()}
+     * the children are either converted eagerly, or a lazy list view is created which converts them on access.
+     *
+     * @param childrenVarName name of the local variable storing the list of children jtreesitter Node objects
+     * @param mappedChildrenVarName name of the local variable to generate for the eagerly converted children
+     * @param childVarName name of the local variable or parameter to generate for a single child
+     * @return code for the converted list, whose type is the return type of the getter method
+     */
+    private CodeBlock addConvertMultipleChildrenStatements(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String childrenVarName, String mappedChildrenVarName, String childVarName) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var elementType = type.getJavaTypeNameSupplier().get();
+
+        CodeBlock listCode;
+        if (codeGenHelper.generatesLazyChildrenLists()) {
+            String resultVar = "result";
+            var convertMethodBuilder = MethodSpec.methodBuilder(nodeUtils.methodChildrenListViewConvert())
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(codeGenHelper.jtreesitterConfig().node().className(), childVarName)
+                .returns(elementType)
+                .addStatement("$T $N", elementType, resultVar);
+            type.addConvertingStatements(convertMethodBuilder, codeGenHelper, childVarName, CodeBlock.of("$N", resultVar));
+            convertMethodBuilder.addStatement("return $N", resultVar);
+
+            var listViewClass = TypeSpec.anonymousClassBuilder("$N", childrenVarName)
+                .superclass(ParameterizedTypeName.get(nodeUtils.classChildrenListView(), elementType))
+                .addMethod(convertMethodBuilder.build())
+                .build();
+            listCode = CodeBlock.of("$L", listViewClass);
+        } else {
+            String indexVar = "i";
+            methodBuilder
+                .addStatement("var $N = new $T[$N.size()]", mappedChildrenVarName, elementType, childrenVarName)
+                .beginControlFlow("for (int $N = 0; $N < $N.length; $N++)", indexVar, indexVar, mappedChildrenVarName, indexVar)
+                .addStatement("var $N = $N.get($N)", childVarName, childrenVarName, indexVar);
+            type.addConvertingStatements(methodBuilder, codeGenHelper, childVarName, CodeBlock.of("$N[$N]", mappedChildrenVarName, indexVar));
+            methodBuilder.endControlFlow();
+            listCode = CodeBlock.of("$T.of($N)", List.class, mappedChildrenVarName);
+        }
+
+        if (required) {
+            return CodeBlock.of("$T.$N($L)", nodeUtils.className(), nodeUtils.methodAtLeastOneChild(), listCode);
+        } else {
+            return listCode;
+        }
+    }
+
+    /**
+     * Generates code which converts a list of children jtreesitter Node objects, obtained by other means, to the
+     * return type of the getter method.
+     *
+     * @param childrenVarName name of the local variable storing the list of children jtreesitter Node objects
+     * @param varNamePrefix prefix for the names of the generated local variables, to avoid name clashes
+     * @return code for the converted value, whose type is the return type of the getter method
+     */
+    CodeBlock addConvertChildrenStatements(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String childrenVarName, String varNamePrefix) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var elementType = type.getJavaTypeNameSupplier().get();
+        String childVar = varNamePrefix + "Child";
+
+        if (multiple) {
+            return addConvertMultipleChildrenStatements(methodBuilder, codeGenHelper, childrenVarName, varNamePrefix + "Mapped", childVar);
+        }
+
+        String resultVar = varNamePrefix + "Result";
+        if (required) {
+            methodBuilder
+                .addStatement("var $N = $T.$N($N)", childVar, nodeUtils.className(), nodeUtils.methodRequiredChild(), childrenVarName)
+                .addStatement("$T $N", elementType, resultVar);
+            type.addConvertingStatements(methodBuilder, codeGenHelper, childVar, CodeBlock.of("$N", resultVar));
+            return CodeBlock.of("$N", resultVar);
         } else {
-            methodBuilder.addStatement("return $T.$N($N)", nodeUtils.className(), utilsMethodName, mappedChildrenVar);
+            methodBuilder
+                .addStatement("$T $N = null", codeGenHelper.getNullableType(elementType), resultVar)
+                .beginControlFlow("if (!$N.isEmpty())", childrenVarName)
+                .addComment("Verifies that there is at most one child")
+                .addStatement("var $N = $T.$N($N)", childVar, nodeUtils.className(), nodeUtils.methodRequiredChild(), childrenVarName);
+            type.addConvertingStatements(methodBuilder, codeGenHelper, childVar, CodeBlock.of("$N", resultVar));
+            methodBuilder.endControlFlow();
+            return codeGenHelper.createOptionalValueCode(resultVar);
         }
     }
 
@@ -176,6 +333,73 @@ public class GenChildren {
         customJavadoc.ifPresent(methodBuilder::addJavadoc);
     }
 
+    /**
+     * Generates an overload of the getter method which has a {@code SegmentAllocator} parameter for the
+     * jtreesitter nodes of the children.
+     */
+    private MethodSpec generateGetterWithAllocator(CodeGenHelper codeGenHelper, String nodeJavaFieldName) {
+        var allocatorParam = ParameterSpec.builder(codeGenHelper.ffmApiConfig().classSegmentAllocator(), "allocator")
+            .addJavadoc("allocator to use for the underlying jtreesitter nodes of the children")
+            .build();
+        var methodBuilder = MethodSpec.methodBuilder(getter.methodName())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(allocatorParam)
+            .addJavadoc("Same as {@link #$N()}, except that the underlying jtreesitter nodes are allocated with the given allocator.", getter.methodName())
+            .addJavadoc("\nFor example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,")
+            .addJavadoc("\ninstead of relying on the garbage collector.")
+            .addStatement(CodeGenHelper.createNonNullCheck(allocatorParam));
+        // The memory of the nodes is managed by the caller, so the typed nodes must not be cached
+        codeGenHelper.beginUncachedReturn(methodBuilder);
+        generateChildrenMethodBody(methodBuilder, codeGenHelper, nodeJavaFieldName, allocatorParam.name());
+        codeGenHelper.endUncachedReturn(methodBuilder);
+        return methodBuilder.build();
+    }
+
+    /**
+     * Derives the name of a method related to the getter by replacing its {@code get} prefix, for example
+     * {@code getFieldName} &rarr; {@code hasFieldName}.
+     */
+    private String deriveGetterRelatedName(String prefix) {
+        String getterName = getter.methodName();
+        if (getterName.length() > 3 && getterName.startsWith("get") && Character.isUpperCase(getterName.charAt(3))) {
+            return prefix + getterName.substring(3);
+        }
+        return prefix + Character.toUpperCase(getterName.charAt(0)) + getterName.substring(1);
+    }
+
+    /**
+     * Generates the {@code count...} method if this is {@linkplain #isMultiple() multiple}, and the {@code has...}
+     * method if this is not {@linkplain #isRequired() required}. These methods only inspect the children with a tree
+     * cursor, without creating typed nodes for them.
+     */
+    private void generateCountMethods(TypeSpec.Builder enclosingTypeBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName) {
+        // Don't generate methods which would clash with the `hasError` method of TypedNode
+        var reservedNames = Set.of(codeGenHelper.jtreesitterConfig().node().methodHasError());
+        String countMethodName = deriveGetterRelatedName("count");
+        if (multiple && !reservedNames.contains(countMethodName)) {
+            enclosingTypeBuilder.addMethod(MethodSpec.methodBuilder(countMethodName)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(int.class)
+                .addJavadoc("Counts the nodes returned by {@link #$N()}. This is more efficient than calling that method,", getter.methodName())
+                .addJavadoc("\nbecause no typed nodes are created.")
+                .addStatement("return $L", createCountChildrenCode(codeGenHelper, nodeJavaFieldName))
+                .build()
+            );
+        }
+
+        String hasMethodName = deriveGetterRelatedName("has");
+        if (!required && !reservedNames.contains(hasMethodName)) {
+            enclosingTypeBuilder.addMethod(MethodSpec.methodBuilder(hasMethodName)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addJavadoc("Returns whether {@link #$N()} has a result. This is more efficient than calling that method,", getter.methodName())
+                .addJavadoc("\nbecause no typed nodes are created.")
+                .addStatement("return $L", createHasChildrenCode(codeGenHelper, nodeJavaFieldName))
+                .build()
+            );
+        }
+    }
+
     /**
      * @param enclosingTypeBuilder
      *      builder of the enclosing type; the children getter method is added to this builder, and if the child
@@ -187,13 +411,15 @@ public class GenChildren {
         var getterMethodBuilder = MethodSpec.methodBuilder(getter.methodName())
             .addModifiers(Modifier.PUBLIC);
 
-        generateChildrenMethodBody(getterMethodBuilder, codeGenHelper, nodeJavaFieldName);
+        generateChildrenMethodBody(getterMethodBuilder, codeGenHelper, nodeJavaFieldName, null);
         var getterCustomJavadoc = getter.customJavadocProvider().getJavadoc(codeGenHelper.customJavadocProvider());
         generateChildrenMethodJavadoc(getterMethodBuilder, getterCustomJavadoc);
         var getterMethod = getterMethodBuilder.build();
         assert getGetterGeneratedMethod().matchesMethodSpec(getterMethod);
 
         enclosingTypeBuilder.addMethod(getterMethod);
+        enclosingTypeBuilder.addMethod(generateGetterWithAllocator(codeGenHelper, nodeJavaFieldName));
+        generateCountMethods(enclosingTypeBuilder, codeGenHelper, nodeJavaFieldName);
         var childJavaTypes = type.generateJavaTypes(codeGenHelper, getter.methodName());
         List<TypeBuilderWithName> topLevelTypes = new ArrayList<>();
         for (var childJavaType : childJavaTypes) {
@@ -8,11 +8,14 @@ import marcono1234.jtreesitter.type_gen.NameGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.*;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CustomJavadocProviderImpl.SpecificCustomJavadocProvider;
 import marcono1234.jtreesitter.type_gen.internal.node_types_json.ChildType;
+import org.jspecify.annotations.Nullable;
 
+import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Modifier;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Consumer;
 
 /**
@@ -21,6 +24,13 @@ import java.util.function.Consumer;
  * <p>Use {@link #create} to create instances.
  */
 public class GenField extends GenChildren {
+    /**
+     * Names which are not permitted for record components, because they clash with methods of {@link Object}.
+     */
+    private static final Set<String> FORBIDDEN_RECORD_COMPONENT_NAMES = Set.of(
+        "clone", "finalize", "getClass", "hashCode", "notify", "notifyAll", "toString", "wait"
+    );
+
     /**
      * Tree-sitter node field name.
      */
@@ -63,6 +73,21 @@ public class GenField extends GenChildren {
         return fieldNameConstant;
     }
 
+    /**
+     * Gets the name of the component for this field in the record returned by the generated {@code readFields}
+     * method. Derived from the getter name, for example {@code getName} &rarr; {@code name}.
+     */
+    public String getRecordComponentName() {
+        String getterName = getGetterName();
+        if (getterName.length() > 3 && getterName.startsWith("get") && Character.isUpperCase(getterName.charAt(3))) {
+            String name = Character.toLowerCase(getterName.charAt(3)) + getterName.substring(4);
+            if (SourceVersion.isName(name) && !FORBIDDEN_RECORD_COMPONENT_NAMES.contains(name)) {
+                return name;
+            }
+        }
+        return getterName;
+    }
+
     @Override
     GeneratedMethod.Kind getGetterKind() {
         return new GeneratedMethod.KindField(fieldName, multiple, required);
@@ -75,23 +100,74 @@ public class GenField extends GenChildren {
         methodBuilder.addJavadoc("\n<li>multiple: $L", multiple);
         methodBuilder.addJavadoc("\n<li>required: $L", required);
         methodBuilder.addJavadoc("\n</ul>");
+        if (!multiple) {
+            methodBuilder.addJavadoc("\n\n<p>The grammar allows at most one node for this field. If there are nonetheless multiple nodes,")
+                .addJavadoc("\nfor example due to a parse error, an {@link $T} is thrown, the same as by {@code readFields}.", IllegalArgumentException.class);
+        }
 
         customJavadoc.ifPresent(methodBuilder::addJavadoc);
     }
 
+    CodeBlock createFieldIdCode(CodeGenHelper codeGenHelper, String nodeJavaFieldName) {
+        if (codeGenHelper.generatesNumericIdConstants()) {
+            return CodeBlock.of("$N", fieldIdConstant);
+        } else {
+            // Use the field ID cached by NodeUtils, instead of having jtreesitter look up the field name every time;
+            // the cache is indexed by the field index assigned at generation time
+            var nodeUtils = codeGenHelper.nodeUtilsConfig();
+            int fieldIndex = codeGenHelper.nodeTypeReachability().getFieldIndex(fieldName);
+            return CodeBlock.of("$T.$N($N, $L)", nodeUtils.className(), nodeUtils.methodGetFieldId(), nodeJavaFieldName, fieldIndex);
+        }
+    }
+
     @Override
-    protected void addGetChildrenStatement(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName, String childrenVarName) {
-        var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
-        var codeBuilder = CodeBlock.builder()
-            .add("var $N = $N.", childrenVarName, nodeJavaFieldName);
+    protected boolean addGetSingleChildStatement(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName, String childVarName, @Nullable String allocatorVarName) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var ffmApi = codeGenHelper.ffmApiConfig();
+        var fieldIdCode = createFieldIdCode(codeGenHelper, nodeJavaFieldName);
 
-        if (codeGenHelper.generatesNumericIdConstants()) {
-            codeBuilder.add("$N($N)", jtreesitterNode.methodGetChildrenByFieldId(), fieldIdConstant);
+        // Use NodeUtils instead of jtreesitter's `getChildByFieldId`, because it verifies that there is at most one
+        // child, consistent with `readFields`
+        if (allocatorVarName != null) {
+            methodBuilder.addStatement("var $N = $T.$N($N, $L, $N)", childVarName, nodeUtils.className(), nodeUtils.methodGetFieldChild(), nodeJavaFieldName, fieldIdCode, allocatorVarName);
+        } else if (codeGenHelper.generatesAllocationSessions()) {
+            // Uses the allocator of the current session, if any
+            methodBuilder.addStatement("var $N = $T.$N($N, $L)", childVarName, nodeUtils.className(), nodeUtils.methodGetFieldChild(), nodeJavaFieldName, fieldIdCode);
         } else {
-            codeBuilder.add("$N($N)", jtreesitterNode.methodGetChildrenByFieldName(), fieldNameConstant);
+            methodBuilder.addStatement("var $N = $T.$N($N, $L, $T.$N())", childVarName, nodeUtils.className(), nodeUtils.methodGetFieldChild(), nodeJavaFieldName, fieldIdCode, ffmApi.classArena(), ffmApi.methodArenaOfAuto());
         }
+        return true;
+    }
+
+    @Override
+    protected CodeBlock createCountChildrenCode(CodeGenHelper codeGenHelper, String nodeJavaFieldName) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        return CodeBlock.of("$T.$N($N, $L)", nodeUtils.className(), nodeUtils.methodCountFieldChildren(), nodeJavaFieldName, createFieldIdCode(codeGenHelper, nodeJavaFieldName));
+    }
 
-        methodBuilder.addStatement(codeBuilder.build());
+    @Override
+    protected CodeBlock createHasChildrenCode(CodeGenHelper codeGenHelper, String nodeJavaFieldName) {
+        // Counting field children only inspects the field IDs and allocates no nodes, so no separate method is needed
+        return CodeBlock.of("$L > 0", createCountChildrenCode(codeGenHelper, nodeJavaFieldName));
+    }
+
+    @Override
+    protected void addGetChildrenStatement(MethodSpec.Builder methodBuilder, CodeGenHelper codeGenHelper, String nodeJavaFieldName, String childrenVarName, @Nullable String allocatorVarName) {
+        var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var fieldIdCode = createFieldIdCode(codeGenHelper, nodeJavaFieldName);
+
+        if (allocatorVarName == null) {
+            if (codeGenHelper.generatesAllocationSessions()) {
+                // Uses the allocator of the current session, if any
+                methodBuilder.addStatement("var $N = $T.$N($N, $L)", childrenVarName, nodeUtils.className(), nodeUtils.methodGetFieldChildren(), nodeJavaFieldName, fieldIdCode);
+            } else {
+                methodBuilder.addStatement("var $N = $N.$N($L)", childrenVarName, nodeJavaFieldName, jtreesitterNode.methodGetChildrenByFieldId(), fieldIdCode);
+            }
+        } else {
+            // jtreesitter has no `getChildrenByFieldId` overload with allocator, so use the one from NodeUtils
+            methodBuilder.addStatement("var $N = $T.$N($N, $L, $N)", childrenVarName, nodeUtils.className(), nodeUtils.methodGetFieldChildren(), nodeJavaFieldName, fieldIdCode, allocatorVarName);
+        }
     }
 
     @Override
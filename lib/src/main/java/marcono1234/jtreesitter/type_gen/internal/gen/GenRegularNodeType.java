@@ -4,7 +4,6 @@ import com.palantir.javapoet.*;
 import marcono1234.jtreesitter.type_gen.NameGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.TypedNodeInterfaceGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.*;
-import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper.TypedNodeConfig.JavaFieldRef;
 import marcono1234.jtreesitter.type_gen.internal.node_types_json.ChildType;
 import marcono1234.jtreesitter.type_gen.internal.node_types_json.NodeType;
 import org.jspecify.annotations.Nullable;
@@ -158,6 +157,15 @@ public final class GenRegularNodeType implements GenNodeType, GenJavaType {
         return javaClassMembers.typeNameConstant();
     }
 
+    /**
+     * Name of the Java constant field in the generated class storing the numeric node type ID.
+     *
+     * <p>Only generated if {@link CodeGenHelper#generatesNumericIdConstants()}.
+     */
+    public String getTypeIdConstant() {
+        return javaClassMembers.typeIdConstant();
+    }
+
     private void checkPopulatedChildren() {
         if (!populatedChildren) {
             throw new IllegalStateException("Children have not been populated yet");
@@ -238,7 +246,13 @@ public final class GenRegularNodeType implements GenNodeType, GenJavaType {
 
         var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
         var nodeUtils = codeGenHelper.nodeUtilsConfig();
-        methodBuilder.addStatement("return $T.$N($N, false).stream().map(n -> n.$N()).toList()", nodeUtils.className(), nodeUtils.methodGetNonFieldChildren(), nodeField, jtreesitterNode.methodGetType());
+        var ffmApi = codeGenHelper.ffmApiConfig();
+        String arenaVar = "arena";
+        // The nodes are not needed anymore after their type names have been obtained, so use a confined Arena to
+        // release them directly, instead of relying on the garbage collector
+        methodBuilder.beginControlFlow("try (var $N = $T.$N())", arenaVar, ffmApi.classArena(), ffmApi.methodArenaOfConfined());
+        methodBuilder.addStatement("return $T.$N($N, false, $N).stream().map(n -> n.$N()).toList()", nodeUtils.className(), nodeUtils.methodGetNonFieldChildren(), nodeField, arenaVar, jtreesitterNode.methodGetType());
+        methodBuilder.endControlFlow();
         return methodBuilder.build();
     }
 
@@ -257,12 +271,13 @@ public final class GenRegularNodeType implements GenNodeType, GenJavaType {
 
         String resultVar = "result";
         methodBuilder.addStatement("$T $N = null", javaTypeName, resultVar);
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
         CodeBlock nodeTypeCheck = codeGenHelper.generatesNumericIdConstants() ?
             CodeBlock.of("if ($N.$N() == $N)", nodeParam, jtreesitterNode.methodGetTypeId(), javaClassMembers.typeIdConstant())
-            : CodeBlock.of("if ($N.equals($N.$N()))", javaClassMembers.typeNameConstant(), nodeParam, jtreesitterNode.methodGetType());
+            : CodeBlock.of("if ($N.$N() == $T.$N($N, $L))", nodeParam, jtreesitterNode.methodGetTypeId(), nodeUtils.className(), nodeUtils.methodGetTypeId(), nodeParam, codeGenHelper.nodeTypeReachability().getIndex(this));
         methodBuilder
             .beginControlFlow(nodeTypeCheck)
-            .addStatement("$N = new $T($N)", resultVar, javaTypeName, nodeParam)
+            .addStatement("$N = $L", resultVar, codeGenHelper.createNewTypedNodeCode(javaTypeName, nodeParam))
             .endControlFlow();
 
         codeGenHelper.addReturnOptionalStatement(methodBuilder, resultVar);
@@ -300,6 +315,173 @@ public final class GenRegularNodeType implements GenNodeType, GenJavaType {
         codeGenHelper.customJavadocProvider().forNodeType(nodeType).ifPresent(typeBuilder::addJavadoc);
     }
 
+    /** Name of the nested record class holding the values of all fields */
+    private static final String FIELDS_RECORD_NAME = "Fields";
+    /** Name of the method for reading all fields at once */
+    private static final String READ_FIELDS_METHOD_NAME = "readFields";
+
+    private TypeSpec generateFieldsRecord() {
+        var recordConstructor = MethodSpec.constructorBuilder();
+        for (var field : fields) {
+            recordConstructor.addParameter(field.getGetterReturnType(), field.getRecordComponentName());
+        }
+
+        var recordBuilder = TypeSpec.recordBuilder(FIELDS_RECORD_NAME)
+            .addModifiers(Modifier.PUBLIC)
+            .recordConstructor(recordConstructor.build())
+            .addJavadoc("Values of all fields of the node, obtained by {@link $T#$N}.", javaTypeName, READ_FIELDS_METHOD_NAME)
+            .addJavadoc("\nEach component has the same value as the corresponding field getter method:")
+            .addJavadoc("\n<ul>");
+        for (var field : fields) {
+            recordBuilder.addJavadoc("\n<li>{@code $N}: {@link $T#$N()}", field.getRecordComponentName(), javaTypeName, field.getGetterName());
+        }
+        recordBuilder.addJavadoc("\n</ul>");
+        return recordBuilder.build();
+    }
+
+    /**
+     * Generates the {@code readFields} methods. If the {@code TypedTree} class is generated, the actual implementation
+     * is placed in a separate private method, so that only the public variant with custom allocator bypasses the
+     * node cache.
+     */
+    private List<MethodSpec> generateMethodsReadFields(CodeGenHelper codeGenHelper, TypeSpec fieldsRecord, String nodeField) {
+        if (!codeGenHelper.generatesTypedTree()) {
+            var readFieldsMethod = generateMethodReadFields(codeGenHelper, fieldsRecord, nodeField, false);
+            return List.of(readFieldsMethod, generateMethodReadFieldsDefaultAllocator(codeGenHelper, readFieldsMethod, readFieldsMethod));
+        }
+
+        var readFieldsImplMethod = generateMethodReadFields(codeGenHelper, fieldsRecord, nodeField, true);
+        var allocatorParam = createReadFieldsAllocatorParam(codeGenHelper);
+        var readFieldsMethod = MethodSpec.methodBuilder(READ_FIELDS_METHOD_NAME)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(allocatorParam)
+            .returns(readFieldsImplMethod.returnType())
+            .addJavadoc("Reads the values of all fields, visiting the children of the node only once.")
+            .addJavadoc("\nThis is more efficient than calling the individual field getter methods, when the values of multiple")
+            .addJavadoc("\nfields are needed.")
+            .addStatement(CodeGenHelper.createNonNullCheck(allocatorParam))
+            // The memory of the nodes is managed by the caller, so the typed nodes must not be cached
+            .addStatement("return $L", codeGenHelper.createUncachedCode(CodeBlock.of("$N($N)", readFieldsImplMethod, allocatorParam)))
+            .build();
+        return List.of(readFieldsImplMethod, readFieldsMethod, generateMethodReadFieldsDefaultAllocator(codeGenHelper, readFieldsMethod, readFieldsImplMethod));
+    }
+
+    private static ParameterSpec createReadFieldsAllocatorParam(CodeGenHelper codeGenHelper) {
+        return ParameterSpec.builder(codeGenHelper.ffmApiConfig().classSegmentAllocator(), "allocator")
+            .addJavadoc("allocator to use for the underlying jtreesitter nodes of the fields")
+            .build();
+    }
+
+    private MethodSpec generateMethodReadFields(CodeGenHelper codeGenHelper, TypeSpec fieldsRecord, String nodeField, boolean isImpl) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterCursor = jtreesitter.treeCursor();
+
+        var allocatorParam = createReadFieldsAllocatorParam(codeGenHelper);
+        MethodSpec.Builder methodBuilder;
+        if (isImpl) {
+            methodBuilder = MethodSpec.methodBuilder(READ_FIELDS_METHOD_NAME + "Impl")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(allocatorParam.type(), allocatorParam.name());
+        } else {
+            methodBuilder = MethodSpec.methodBuilder(READ_FIELDS_METHOD_NAME)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(allocatorParam)
+                .addJavadoc("Reads the values of all fields, visiting the children of the node only once.")
+                .addJavadoc("\nThis is more efficient than calling the individual field getter methods, when the values of multiple")
+                .addJavadoc("\nfields are needed.")
+                .addStatement(CodeGenHelper.createNonNullCheck(allocatorParam));
+        }
+        methodBuilder.returns(javaTypeName.nestedClass(fieldsRecord.name()));
+
+        // Field IDs to compare against; if no numeric constants are generated, look up the IDs only once
+        List<CodeBlock> fieldIdCodes = new ArrayList<>();
+        for (var field : fields) {
+            var fieldIdCode = field.createFieldIdCode(codeGenHelper, nodeField);
+            if (!codeGenHelper.generatesNumericIdConstants()) {
+                String fieldIdVar = field.getRecordComponentName() + "FieldId";
+                methodBuilder.addStatement("var $N = $L", fieldIdVar, fieldIdCode);
+                fieldIdCode = CodeBlock.of("$N", fieldIdVar);
+            }
+            fieldIdCodes.add(fieldIdCode);
+        }
+        for (var field : fields) {
+            methodBuilder.addStatement("var $N = new $T<$T>()", field.getRecordComponentName() + "Nodes", ArrayList.class, jtreesitterNode.className());
+        }
+
+        String cursorVar = "cursor";
+        String fieldIdVar = "currentFieldId";
+        methodBuilder
+            .addStatement(codeGenHelper.createAcquireCursorCode(cursorVar, nodeField))
+            .beginControlFlow("try")
+            .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoFirstChild())
+            .beginControlFlow("do")
+            .addStatement("var $N = $N.$N()", fieldIdVar, cursorVar, jtreesitterCursor.methodGetCurrentFieldId())
+            .beginControlFlow("if ($N == 0)", fieldIdVar)
+            .addComment("Not a field child")
+            .addStatement("continue")
+            .endControlFlow();
+        for (int i = 0; i < fields.size(); i++) {
+            var field = fields.get(i);
+            if (i == 0) {
+                methodBuilder.beginControlFlow("if ($N == $L)", fieldIdVar, fieldIdCodes.get(i));
+            } else {
+                methodBuilder.nextControlFlow("else if ($N == $L)", fieldIdVar, fieldIdCodes.get(i));
+            }
+            methodBuilder.addStatement("$N.add($N.$N($N))", field.getRecordComponentName() + "Nodes", cursorVar, jtreesitterCursor.methodGetCurrentNode(), allocatorParam);
+        }
+        methodBuilder
+            .endControlFlow()
+            .endControlFlow("while ($N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
+            .endControlFlow()
+            .nextControlFlow("finally")
+            .addStatement(codeGenHelper.createReleaseCursorCode(cursorVar))
+            .endControlFlow();
+
+        List<CodeBlock> fieldValues = new ArrayList<>();
+        for (var field : fields) {
+            String name = field.getRecordComponentName();
+            fieldValues.add(field.addConvertChildrenStatements(methodBuilder, codeGenHelper, name + "Nodes", name));
+        }
+        methodBuilder.addStatement("return new $N($L)", fieldsRecord, CodeBlock.join(fieldValues, ", "));
+        return methodBuilder.build();
+    }
+
+    /**
+     * @param readFieldsMethod
+     *      public {@code readFields} method with custom allocator, referenced by the Javadoc
+     * @param readFieldsDelegateMethod
+     *      method to which the generated method delegates
+     */
+    private MethodSpec generateMethodReadFieldsDefaultAllocator(CodeGenHelper codeGenHelper, MethodSpec readFieldsMethod, MethodSpec readFieldsDelegateMethod) {
+        var ffmApi = codeGenHelper.ffmApiConfig();
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+
+        var methodBuilder = MethodSpec.methodBuilder(readFieldsMethod.name())
+            .addModifiers(Modifier.PUBLIC)
+            .returns(readFieldsMethod.returnType())
+            .addJavadoc("Reads the values of all fields, visiting the children of the node only once.")
+            .addJavadoc("\nThis is more efficient than calling the individual field getter methods, when the values of multiple")
+            .addJavadoc("\nfields are needed.")
+            .addJavadoc("\n\n<p>The underlying jtreesitter nodes are allocated with an automatic {@code Arena}.");
+        codeGenHelper.addSessionAllocatorJavadoc(methodBuilder);
+        methodBuilder.addJavadoc("\n\n@see #$N($T)", readFieldsMethod.name(), ffmApi.classSegmentAllocator());
+
+        String allocatorVar = "allocator";
+        if (codeGenHelper.generatesAllocationSessions()) {
+            methodBuilder
+                .addStatement("var $N = $T.$N()", allocatorVar, nodeUtils.className(), nodeUtils.methodGetSessionAllocator())
+                .beginControlFlow("if ($N == null)", allocatorVar)
+                .addStatement("$N = $T.$N()", allocatorVar, ffmApi.classArena(), ffmApi.methodArenaOfAuto())
+                .endControlFlow();
+        } else {
+            methodBuilder.addStatement("var $N = $T.$N()", allocatorVar, ffmApi.classArena(), ffmApi.methodArenaOfAuto());
+        }
+        return methodBuilder
+            .addStatement("return $N($N)", readFieldsDelegateMethod, allocatorVar)
+            .build();
+    }
+
     @Override
     public List<JavaFile> generateJavaCode(CodeGenHelper codeGenHelper) {
         checkPopulatedChildren();
@@ -323,6 +505,7 @@ public final class GenRegularNodeType implements GenNodeType, GenJavaType {
 
         String nodeField = "node";
         TypedNodeInterfaceGenerator.generateTypedNodeImplementation(typeBuilder, codeGenHelper, nodeField);
+        TypedNodeInterfaceGenerator.generateKindImplementation(typeBuilder, codeGenHelper, codeGenHelper.typedNodeKindConfig().getConstantName(this));
         typeBuilder.addMethod(generateMethodFromNode(codeGenHelper));
         typeBuilder.addMethod(generateMethodFromNodeThrowing(codeGenHelper));
 
@@ -339,8 +522,13 @@ public final class GenRegularNodeType implements GenNodeType, GenJavaType {
         for (var field : fields) {
             javaTypes.addAll(field.generateJavaCode(typeBuilder, codeGenHelper, nodeField));
         }
+        if (!fields.isEmpty()) {
+            var fieldsRecord = generateFieldsRecord();
+            typeBuilder.addType(fieldsRecord);
+            typeBuilder.addMethods(generateMethodsReadFields(codeGenHelper, fieldsRecord, nodeField));
+        }
 
-        typeBuilder.addMethods(typedNode.generateMethodsFindNodes(javaTypeName, List.of(new JavaFieldRef(javaTypeName, javaClassMembers.typeNameConstant()))));
+        typeBuilder.addMethods(typedNode.generateMethodsFindNodes(javaTypeName, List.of(this)));
 
         generateOverriddenObjectMethods(typeBuilder, codeGenHelper, nodeField);
         javaClassMembers.customMethods().forEach(m -> typeBuilder.addMethod(m.generateMethod(false)));
@@ -7,7 +7,6 @@ import com.palantir.javapoet.TypeSpec;
 import marcono1234.jtreesitter.type_gen.CodeGenException;
 import marcono1234.jtreesitter.type_gen.NameGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.*;
-import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper.TypedNodeConfig.JavaFieldRef;
 import marcono1234.jtreesitter.type_gen.internal.node_types_json.NodeType;
 import org.jspecify.annotations.Nullable;
 
@@ -210,7 +209,10 @@ public final class GenSupertypeNodeType implements GenJavaInterface, GenNodeType
         }
     }
 
-    private SequencedSet<GenRegularNodeType> getAllSubtypeClasses() {
+    /**
+     * Gets all direct and transitive subtypes which are regular node types.
+     */
+    public SequencedSet<GenRegularNodeType> getAllSubtypeClasses() {
         // Uses Set for the case that same node type appears multiple times as (transitive) subtype
         SequencedSet<GenRegularNodeType> allSubtypes = new LinkedHashSet<>();
         getAllSubtypeClasses(allSubtypes::add);
@@ -231,17 +233,14 @@ public final class GenSupertypeNodeType implements GenJavaInterface, GenNodeType
             .addJavadoc("\n\n@see #$N", typedNode.methodFromNodeThrowing());
 
         String resultVar = "result";
-        methodBuilder.beginControlFlow("var $N = switch ($N.$N())", resultVar, nodeParam, jtreesitterNode.methodGetType());
-
-        // Consider all subtypes, including transitive ones
-        for (var subtype : getAllSubtypeClasses()) {
-            ClassName nodeClass = subtype.getJavaTypeName();
-            methodBuilder.addStatement("case $T.$N -> new $T($N)", nodeClass, subtype.getTypeNameConstant(), nodeClass, nodeParam);
-        }
-        methodBuilder.addStatement("default -> null");
-        methodBuilder.endControlFlow();
-        methodBuilder.addStatement(""); // add trailing semicolon for assignment statement
-
+        // Look up typed node factory by numeric type ID, instead of comparing type name strings, and then
+        // check if the typed node is a subtype
+        String typedNodeVar = "typedNode";
+        methodBuilder
+            .addStatement("$T $N = null", javaTypeName, resultVar)
+            .beginControlFlow("if ($L instanceof $T $N)", codeGenHelper.createTypedNodeCode(nodeParam), javaTypeName, typedNodeVar)
+            .addStatement("$N = $N", resultVar, typedNodeVar)
+            .endControlFlow();
         codeGenHelper.addReturnOptionalStatement(methodBuilder, resultVar);
         return methodBuilder.build();
     }
@@ -256,13 +255,10 @@ public final class GenSupertypeNodeType implements GenJavaInterface, GenNodeType
     }
 
     private List<MethodSpec> generateMethodsFindNodes(CodeGenHelper codeGenHelper) {
-        // Explicitly use the type names of all (transitive) subtypes, because even if tree-sitter query supported
-        // supertype type name, it might include unnamed nodes in case supertype has unnamed nodes as subtype;
-        // however for those no typed node class is generated, see related https://github.com/Marcono1234/jtreesitter-type-gen/issues/17
-        var allSubtypeFields = getAllSubtypeClasses().stream()
-            .map(c -> new JavaFieldRef(c.getJavaTypeName(), c.getTypeNameConstant()))
-            .toList();
-        return codeGenHelper.typedNodeConfig().generateMethodsFindNodes(javaTypeName, allSubtypeFields);
+        // Explicitly use all (transitive) subtypes, because even if tree-sitter query supported supertype type name,
+        // it might include unnamed nodes in case supertype has unnamed nodes as subtype; however for those no typed
+        // node class is generated, see related https://github.com/Marcono1234/jtreesitter-type-gen/issues/17
+        return codeGenHelper.typedNodeConfig().generateMethodsFindNodes(javaTypeName, List.copyOf(getAllSubtypeClasses()));
     }
 
     @Override
@@ -3,11 +3,19 @@ package marcono1234.jtreesitter.type_gen.internal.gen.common_classes;
 import com.palantir.javapoet.*;
 import marcono1234.jtreesitter.type_gen.LanguageConfig;
 import marcono1234.jtreesitter.type_gen.LanguageConfig.LanguageProviderConfig;
+import marcono1234.jtreesitter.type_gen.internal.gen.GenNodeType;
+import marcono1234.jtreesitter.type_gen.internal.gen.GenRegularNodeType;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper.LanguageUtilsConfig;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.MethodSplitter;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.NodeTypeReachability;
 
 import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 
 /**
  * Code generator for the internal {@code LanguageUtils} class, which provides convenience methods for working
@@ -46,6 +54,177 @@ public class LanguageUtilsGenerator {
             .build();
     }
 
+    /**
+     * Generates a lookup table which maps the numeric type ID ({@code Node#getSymbol()}) to a factory creating
+     * the corresponding typed node, and a method which uses this table to wrap a jtreesitter node. This avoids
+     * comparing the type name string of the node against all known type names.
+     */
+    private void generateTypedNodeFactories(TypeSpec.Builder typeBuilder, String languageField, List<GenNodeType> nodeTypes) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node().className();
+        var typedNode = codeGenHelper.typedNodeConfig().className();
+        var factoryType = ParameterizedTypeName.get(ClassName.get(Function.class), jtreesitterNode, typedNode);
+
+        String factoriesField = "factories";
+        String factoriesVar = "factories";
+        String createMethodName = "createFactories";
+        var createMethodBuilder = MethodSpec.methodBuilder(createMethodName)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(ArrayTypeName.of(factoryType))
+            .addStatement("$L var $N = ($T) new $T<?, ?>[$N.$N()]", CodeGenHelper.SUPPRESS_WARNINGS_UNCHECKED, factoriesVar, ArrayTypeName.of(factoryType), Function.class, languageField, jtreesitter.language().methodGetSymbolCount());
+        List<CodeBlock> addFactoriesCode = new ArrayList<>();
+        for (var nodeType : nodeTypes) {
+            // Only consider regular node types, because supertypes don't exist as nodes in the parsed tree
+            if (nodeType instanceof GenRegularNodeType regularNodeType) {
+                ClassName nodeClass = nodeType.getJavaTypeName();
+                addFactoriesCode.add(CodeBlock.builder().addStatement("$N[$T.toUnsignedInt($T.$N)] = $T::new", factoriesVar, Short.class, nodeClass, regularNodeType.getTypeIdConstant(), nodeClass).build());
+            }
+        }
+        var helperMethods = MethodSplitter.addChunkedCode(createMethodBuilder, "addFactories", true, addFactoriesCode, List.of(ParameterSpec.builder(ArrayTypeName.of(factoryType), factoriesVar).build()));
+        createMethodBuilder.addStatement("return $N", factoriesVar);
+
+        // Use a separate lazily initialized holder class, because the typed node classes themselves use this
+        // LanguageUtils class to initialize their type ID constants; initializing the factories eagerly as part
+        // of the LanguageUtils class initialization could therefore lead to class initialization deadlocks
+        var holderClassName = languageUtilsConfig.className().nestedClass("TypedNodeFactories");
+        typeBuilder.addType(TypeSpec.classBuilder(holderClassName)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Typed node factories, indexed by the numeric type ID of the node.")
+            .addJavadoc("\nElements are {@code null} for node types for which no typed node class exists.")
+            .addField(FieldSpec.builder(ArrayTypeName.of(factoryType), factoriesField, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$N()", createMethodName)
+                .build()
+            )
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addMethod(createMethodBuilder.build())
+            .addMethods(helperMethods)
+            .build()
+        );
+
+        String nodeParam = "node";
+        String typeIdVar = "typeId";
+        String factoryVar = "factory";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(languageUtilsConfig.methodCreateTypedNode())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNode, nodeParam)
+            .returns(codeGenHelper.getNullableType(typedNode))
+            .addJavadoc("Wraps a jtreesitter node as typed node, based on the numeric type ID of the node.")
+            .addJavadoc("\nReturns {@code null} if no corresponding typed node class exists.")
+            .addStatement("var $N = $T.$N", factoriesVar, holderClassName, factoriesField)
+            .addStatement("int $N = $T.toUnsignedInt($N.$N())", typeIdVar, Short.class, nodeParam, jtreesitter.node().methodGetTypeId())
+            .beginControlFlow("if ($N < $N.length)", typeIdVar, factoriesVar)
+            .addStatement("var $N = $N[$N]", factoryVar, factoriesVar, typeIdVar)
+            .beginControlFlow("if ($N != null)", factoryVar)
+            .addStatement("return $L", codeGenHelper.createTypedNodeFactoryCode(factoryVar, nodeParam))
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return null")
+            .build()
+        );
+    }
+
+    /**
+     * Generates a lookup table which maps the numeric type ID ({@code Node#getSymbol()}) to the corresponding
+     * {@code TypedNodeKind} constant, and a method which uses this table to determine the kind of a jtreesitter node.
+     */
+    private void generateNodeKinds(TypeSpec.Builder typeBuilder, String languageField) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var typedNodeKind = codeGenHelper.typedNodeKindConfig();
+        var kindClass = typedNodeKind.className();
+
+        String kindsField = "kinds";
+        String kindsVar = "kinds";
+        String createMethodName = "createKinds";
+        var createMethodBuilder = MethodSpec.methodBuilder(createMethodName)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(ArrayTypeName.of(kindClass))
+            .addStatement("var $N = new $T[$N.$N()]", kindsVar, kindClass, languageField, jtreesitter.language().methodGetSymbolCount())
+            .addStatement("$T.fill($N, $T.$N)", Arrays.class, kindsVar, kindClass, typedNodeKind.constantOther());
+        List<CodeBlock> addKindsCode = new ArrayList<>();
+        for (var entry : typedNodeKind.constantNames().entrySet()) {
+            var nodeType = entry.getKey();
+            addKindsCode.add(CodeBlock.builder().addStatement("$N[$T.toUnsignedInt($T.$N)] = $T.$N", kindsVar, Short.class, nodeType.getJavaTypeName(), nodeType.getTypeIdConstant(), kindClass, entry.getValue()).build());
+        }
+        var helperMethods = MethodSplitter.addChunkedCode(createMethodBuilder, "addKinds", true, addKindsCode, List.of(ParameterSpec.builder(ArrayTypeName.of(kindClass), kindsVar).build()));
+        createMethodBuilder.addStatement("return $N", kindsVar);
+
+        // Use a separate lazily initialized holder class, for the same reason as for the typed node factories
+        var holderClassName = languageUtilsConfig.className().nestedClass("NodeKinds");
+        typeBuilder.addType(TypeSpec.classBuilder(holderClassName)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Node kinds, indexed by the numeric type ID of the node.")
+            .addField(FieldSpec.builder(ArrayTypeName.of(kindClass), kindsField, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$N()", createMethodName)
+                .build()
+            )
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addMethod(createMethodBuilder.build())
+            .addMethods(helperMethods)
+            .build()
+        );
+
+        String nodeParam = "node";
+        String typeIdVar = "typeId";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(languageUtilsConfig.methodGetNodeKind())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitter.node().className(), nodeParam)
+            .returns(kindClass)
+            .addJavadoc("Gets the kind of the jtreesitter node, based on its numeric type ID.")
+            .addStatement("var $N = $T.$N", kindsVar, holderClassName, kindsField)
+            .addStatement("int $N = $T.toUnsignedInt($N.$N())", typeIdVar, Short.class, nodeParam, jtreesitter.node().methodGetTypeId())
+            .addStatement("return $N < $N.length ? $N[$N] : $T.$N", typeIdVar, kindsVar, kindsVar, typeIdVar, kindClass, typedNodeKind.constantOther())
+            .build()
+        );
+    }
+
+    /**
+     * Generates a lookup table which maps the numeric type ID to the index of the node type, as assigned by
+     * {@link NodeTypeReachability}. This is used by the cursor-based {@code findNodes} implementation.
+     */
+    private void generateTypeIndices(TypeSpec.Builder typeBuilder, String languageField) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+
+        String indicesField = "indices";
+        String indicesVar = "indices";
+        String createMethodName = "createIndices";
+        var createMethodBuilder = MethodSpec.methodBuilder(createMethodName)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(int[].class)
+            .addStatement("var $N = new int[$N.$N()]", indicesVar, languageField, jtreesitter.language().methodGetSymbolCount())
+            .addStatement("$T.fill($N, -1)", Arrays.class, indicesVar);
+        var nodeTypes = codeGenHelper.nodeTypeReachability().getNodeTypes();
+        List<CodeBlock> addIndicesCode = new ArrayList<>();
+        for (int i = 0; i < nodeTypes.size(); i++) {
+            var nodeType = nodeTypes.get(i);
+            addIndicesCode.add(CodeBlock.builder().addStatement("$N[$T.toUnsignedInt($T.$N)] = $L", indicesVar, Short.class, nodeType.getJavaTypeName(), nodeType.getTypeIdConstant(), i).build());
+        }
+        var helperMethods = MethodSplitter.addChunkedCode(createMethodBuilder, "addIndices", true, addIndicesCode, List.of(ParameterSpec.builder(int[].class, indicesVar).build()));
+        createMethodBuilder.addStatement("return $N", indicesVar);
+
+        // Use a separate lazily initialized holder class, for the same reason as for the typed node factories
+        var holderClassName = languageUtilsConfig.className().nestedClass("TypeIndices");
+        typeBuilder.addType(TypeSpec.classBuilder(holderClassName)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addField(FieldSpec.builder(int[].class, indicesField, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$N()", createMethodName)
+                .build()
+            )
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addMethod(createMethodBuilder.build())
+            .addMethods(helperMethods)
+            .build()
+        );
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(languageUtilsConfig.methodGetTypeIndices())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(int[].class)
+            .addJavadoc("Gets the indices of the node types known at code generation time, indexed by the numeric type ID.")
+            .addJavadoc("\nElements are {@code -1} for unknown node types. The returned array must not be modified.")
+            .addStatement("return $T.$N", holderClassName, indicesField)
+            .build()
+        );
+    }
+
     private void generateLanguageField(TypeSpec.Builder typeBuilder, String fieldName, LanguageProviderConfig languageProviderConfig) {
         var jtreesitter = codeGenHelper.jtreesitterConfig();
 
@@ -116,7 +295,11 @@ public class LanguageUtilsGenerator {
     }
 
 
-    public JavaFile generateCode() {
+    /**
+     * @param nodeTypes
+     *      all node types specified in {@code node-types.json} for which classes were generated
+     */
+    public JavaFile generateCode(List<GenNodeType> nodeTypes) {
         var javaTypeName = languageUtilsConfig.className();
         var typeBuilder = TypeSpec.classBuilder(javaTypeName)
             .addModifiers(Modifier.FINAL)
@@ -134,6 +317,11 @@ public class LanguageUtilsGenerator {
 
         typeBuilder.addMethod(generateGetTypeIdMethod(languageFieldName));
         typeBuilder.addMethod(generateGetFieldIdMethod(languageFieldName));
+        generateTypedNodeFactories(typeBuilder, languageFieldName, nodeTypes);
+        generateNodeKinds(typeBuilder, languageFieldName);
+        if (codeGenHelper.generatesCursorFindNodesMethods()) {
+            generateTypeIndices(typeBuilder, languageFieldName);
+        }
 
         return codeGenHelper.createJavaFile(typeBuilder, javaTypeName);
     }
@@ -2,17 +2,35 @@ package marcono1234.jtreesitter.type_gen.internal.gen.common_classes;
 
 import com.palantir.javapoet.*;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.MethodSplitter;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.NodeTypeReachability;
 
 import javax.lang.model.element.Modifier;
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Code generator for the internal {@code NodeUtils} class, which provides convenience methods for working
  * with {@code Node}.
  */
 public class NodeUtilsGenerator {
+    /** Name of the {@code LanguageIds} field storing the type indices; only generated for cursor-based {@code findNodes} */
+    private static final String LANGUAGE_IDS_FIELD_TYPE_INDICES = "typeIndices";
+    private static final String CURSOR_CACHE_METHOD_SCRATCH_ALLOCATOR = "scratchAllocator";
+    private static final String CURSOR_CACHE_METHOD_CREATE_SCRATCH_ALLOCATOR = "createScratchAllocator";
+
     private final CodeGenHelper codeGenHelper;
 
     public NodeUtilsGenerator(CodeGenHelper codeGenHelper) {
@@ -23,7 +41,164 @@ public class NodeUtilsGenerator {
         return ParameterizedTypeName.get(ClassName.get(List.class), argType);
     }
 
-    private MethodSpec generateGetNonFieldChildrenMethod() {
+    private ParameterSpec createChildrenAllocatorParam() {
+        return ParameterSpec.builder(codeGenHelper.ffmApiConfig().classSegmentAllocator(), "allocator")
+            .addJavadoc("allocator to use for the children node objects")
+            .build();
+    }
+
+    /**
+     * Generates the {@code CursorCache} class, which caches one jtreesitter {@code TreeCursor} per thread so that
+     * iterating over the children of a node does not have to allocate a new native cursor every time.
+     */
+    private void generateCursorCacheClass(TypeSpec.Builder typeBuilder) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterTreeClass = jtreesitter.tree().className();
+        var jtreesitterCursor = jtreesitter.treeCursor();
+        var jtreesitterCursorClass = jtreesitterCursor.className();
+        var cleanerClass = ClassName.get(Cleaner.class);
+        var cursorCacheClass = nodeUtils.classCursorCache();
+        var entryClass = cursorCacheClass.nestedClass("Entry");
+        var ffmApi = codeGenHelper.ffmApiConfig();
+
+        var cleanerField = FieldSpec.builder(cleanerClass, "CLEANER", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Closes cached cursors once they are not referenced anymore")
+            .initializer("$T.create()", cleanerClass)
+            .build();
+        var cachedField = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ThreadLocal.class), cursorCacheClass), "CACHED", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("$T.withInitial($T::new)", ThreadLocal.class, cursorCacheClass)
+            .build();
+        var scratchAllocatorField = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ThreadLocal.class), ffmApi.classSegmentAllocator()), "SCRATCH_ALLOCATOR", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Allocator for transient nodes, which always returns the same memory; the memory is freed once the thread has terminated")
+            .initializer("$T.withInitial($T::$N)", ThreadLocal.class, cursorCacheClass, CURSOR_CACHE_METHOD_CREATE_SCRATCH_ALLOCATOR)
+            .build();
+        var entryField = FieldSpec.builder(codeGenHelper.getNullableType(entryClass), "entry", Modifier.PRIVATE)
+            .addJavadoc("Cached cursor of this thread, if any")
+            .build();
+        var inUseField = FieldSpec.builder(boolean.class, "inUse", Modifier.PRIVATE)
+            .addJavadoc("Whether the cached cursor is currently used")
+            .build();
+
+        var entryTreeField = FieldSpec.builder(jtreesitterTreeClass, "tree", Modifier.PRIVATE, Modifier.FINAL).build();
+        var entryCursorField = FieldSpec.builder(jtreesitterCursorClass, "cursor", Modifier.PRIVATE, Modifier.FINAL).build();
+        var entryCleanableField = FieldSpec.builder(cleanerClass.nestedClass("Cleanable"), "cleanable", Modifier.PRIVATE, Modifier.FINAL).build();
+        String treeParam = "tree";
+        String cursorParam = "cursor";
+        var entryType = TypeSpec.classBuilder(entryClass)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Cached cursor, together with the tree it was created for")
+            .addField(entryTreeField)
+            .addField(entryCursorField)
+            .addField(entryCleanableField)
+            .addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(jtreesitterTreeClass, treeParam)
+                .addParameter(jtreesitterCursorClass, cursorParam)
+                .addStatement("this.$N = $N", entryTreeField, treeParam)
+                .addStatement("this.$N = $N", entryCursorField, cursorParam)
+                .addComment("Cleaning action must not refer to `this`, otherwise this object would never become unreachable")
+                .addStatement("this.$N = $N.register(this, $N::close)", entryCleanableField, cleanerField, cursorParam)
+                .build()
+            )
+            .build();
+
+        String nodeParam = "node";
+        String cacheVar = "cache";
+        String entryVar = "entry";
+        String treeVar = "tree";
+        var acquireMethod = MethodSpec.methodBuilder(nodeUtils.methodAcquireCursor())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(jtreesitterCursorClass)
+            .addJavadoc("Gets a cursor positioned at the given node. The cursor must be passed to {@link #$N} afterwards,", nodeUtils.methodReleaseCursor())
+            .addJavadoc("\nand must not be used anymore then.")
+            .addStatement("var $N = $N.get()", cacheVar, cachedField)
+            .beginControlFlow("if ($N.$N)", cacheVar, inUseField)
+            .addComment("Reentrant call, for example from a custom allocator; use a separate cursor")
+            .addStatement("return $N.$N()", nodeParam, jtreesitterNode.methodWalk())
+            .endControlFlow()
+            .addStatement("var $N = $N.$N()", treeVar, nodeParam, jtreesitterNode.methodGetTree())
+            .addStatement("var $N = $N.$N", entryVar, cacheVar, entryField)
+            .addComment("A cursor can only be reset to nodes of the tree it was created for")
+            .beginControlFlow("if ($N != null && $N.$N == $N)", entryVar, entryVar, entryTreeField, treeVar)
+            .addStatement("$N.$N.$N($N)", entryVar, entryCursorField, jtreesitterCursor.methodReset(), nodeParam)
+            .nextControlFlow("else")
+            .beginControlFlow("if ($N != null)", entryVar)
+            .addStatement("$N.$N.clean()", entryVar, entryCleanableField)
+            .endControlFlow()
+            .addStatement("$N = new $T($N, $N.$N())", entryVar, entryClass, treeVar, nodeParam, jtreesitterNode.methodWalk())
+            .addStatement("$N.$N = $N", cacheVar, entryField, entryVar)
+            .endControlFlow()
+            .addStatement("$N.$N = true", cacheVar, inUseField)
+            .addStatement("return $N.$N", entryVar, entryCursorField)
+            .build();
+
+        var releaseMethod = MethodSpec.methodBuilder(nodeUtils.methodReleaseCursor())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterCursorClass, cursorParam)
+            .addJavadoc("Releases a cursor obtained from {@link #$N}.", nodeUtils.methodAcquireCursor())
+            .addStatement("var $N = $N.get()", cacheVar, cachedField)
+            .addStatement("var $N = $N.$N", entryVar, cacheVar, entryField)
+            .beginControlFlow("if ($N.$N && $N != null && $N.$N == $N)", cacheVar, inUseField, entryVar, entryVar, entryCursorField, cursorParam)
+            .addComment("Keep the cursor open for reuse")
+            .addStatement("$N.$N = false", cacheVar, inUseField)
+            .addStatement("return")
+            .endControlFlow()
+            .addStatement("$N.close()", cursorParam)
+            .build();
+
+        var createScratchAllocatorMethod = MethodSpec.methodBuilder(CURSOR_CACHE_METHOD_CREATE_SCRATCH_ALLOCATOR)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(ffmApi.classSegmentAllocator())
+            .addStatement("return $T.prefixAllocator($T.$N().allocate($L, $L))", ffmApi.classSegmentAllocator(), ffmApi.classArena(), ffmApi.methodArenaOfAuto(), TypedTreeCursorGenerator.SCRATCH_NODE_SIZE, TypedTreeCursorGenerator.SCRATCH_NODE_ALIGNMENT)
+            .build();
+
+        var scratchAllocatorMethod = MethodSpec.methodBuilder(CURSOR_CACHE_METHOD_SCRATCH_ALLOCATOR)
+            .addModifiers(Modifier.STATIC)
+            .returns(ffmApi.classSegmentAllocator())
+            .addJavadoc("Gets an allocator for transient nodes of the current thread. Every allocation returns the same memory,")
+            .addJavadoc("\nso an allocated node is only valid until the next allocation, and it must not escape the calling method.")
+            .addJavadoc("\nThe allocator must not be used while calling code which might itself use it.")
+            .addStatement("return $N.get()", scratchAllocatorField)
+            .build();
+
+        typeBuilder.addType(TypeSpec.classBuilder(cursorCacheClass)
+            .addModifiers(Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Per-thread cache of a jtreesitter {@code TreeCursor}, which avoids allocating a new native cursor every time")
+            .addJavadoc("\nthe children of a node are iterated.")
+            .addJavadoc("\n\n<p>Rules for using the cache:")
+            .addJavadoc("\n<ul>")
+            .addJavadoc("\n<li>the cursor returned by {@link #$N} must always be passed to {@link #$N} in a {@code finally} block</li>", nodeUtils.methodAcquireCursor(), nodeUtils.methodReleaseCursor())
+            .addJavadoc("\n<li>the cursor must not escape the method which acquired it, and must only be used for iterating over")
+            .addJavadoc("\n  the direct children of the node</li>")
+            .addJavadoc("\n<li>reentrant calls on the same thread while the cached cursor is in use, for example by a custom")
+            .addJavadoc("\n  {@code SegmentAllocator}, get a separate cursor which is closed on release</li>")
+            .addJavadoc("\n<li>the cached cursor is only reused for nodes of the same {@code Tree} (compared by identity) because a")
+            .addJavadoc("\n  cursor is bound to its tree; for nodes of a different tree the cached cursor is closed and replaced</li>")
+            .addJavadoc("\n<li>the cached cursor and its tree are referenced strongly, so each thread keeps at most one tree reachable")
+            .addJavadoc("\n  until it uses nodes of a different tree; once the thread has terminated the cursor is closed by a {@code Cleaner}</li>")
+            .addJavadoc("\n</ul>")
+            .addField(cleanerField)
+            .addField(cachedField)
+            .addField(scratchAllocatorField)
+            .addField(entryField)
+            .addField(inUseField)
+            .addType(entryType)
+            .addMethod(acquireMethod)
+            .addMethod(releaseMethod)
+            .addMethod(createScratchAllocatorMethod)
+            .addMethod(scratchAllocatorMethod)
+            .build()
+        );
+    }
+
+    /**
+     * Generates the {@code getNonFieldChildren} methods; one overload which uses a custom allocator, and one
+     * which uses an automatic {@code Arena}.
+     */
+    private void generateGetNonFieldChildrenMethods(TypeSpec.Builder typeBuilder) {
         var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
         var jtreesitterNodeClass = jtreesitterNode.className();
         var jtreesitterCursor = codeGenHelper.jtreesitterConfig().treeCursor();
@@ -31,30 +206,31 @@ public class NodeUtilsGenerator {
         
         String nodeParam = "node";
         var namedParam = ParameterSpec.builder(boolean.class, "named")
-            .addJavadoc("whether to return named or non-named children")
+            .addJavadoc("whether to return named or non-named children\n")  // trailing '\n' due to https://github.com/palantir/javapoet/issues/128
             .build();
+        var allocatorParam = createChildrenAllocatorParam();
 
         var methodBuilder = MethodSpec.methodBuilder(codeGenHelper.nodeUtilsConfig().methodGetNonFieldChildren())
             .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
             .addParameter(jtreesitterNodeClass, nodeParam)
             .addParameter(namedParam)
+            .addParameter(allocatorParam)
             .returns(listType(jtreesitterNodeClass))
             .addJavadoc("Gets all non-field children of the node.");
 
         String childrenVar = "children";
-        String arenaVar = "arena";
         String cursorVar = "cursor";
         String currentNodeVar = "currentNode";
-        return methodBuilder
+        var method = methodBuilder
             .addStatement("var $N = new $T<$T>()", childrenVar, ArrayList.class, jtreesitterNodeClass)
-            .addComment("Use custom allocator to ensure that nodes are usable after cursor was closed")
-            .addStatement("var $N = $T.$N()", arenaVar, ffmApi.classArena(), ffmApi.methodArenaOfAuto())
-            .beginControlFlow("try (var $N = $N.$N())", cursorVar, nodeParam, jtreesitterNode.methodWalk())
+            .addStatement(codeGenHelper.createAcquireCursorCode(cursorVar, nodeParam))
+            .beginControlFlow("try")
             .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoFirstChild())
             .beginControlFlow("do")
             .addComment("Only consider non-field children")
             .beginControlFlow("if ($N.$N() == 0)", cursorVar, jtreesitterCursor.methodGetCurrentFieldId())
-            .addStatement("var $N = $N.$N($N)", currentNodeVar, cursorVar, jtreesitterCursor.methodGetCurrentNode(), arenaVar)
+            // Use custom allocator to ensure that nodes are usable after cursor was closed
+            .addStatement("var $N = $N.$N($N)", currentNodeVar, cursorVar, jtreesitterCursor.methodGetCurrentNode(), allocatorParam)
             // Cannot convert error node to typed node; for easier troubleshooting directly throw exception instead of silently discarding it
             .beginControlFlow("if ($N.$N() || $N.$N())", currentNodeVar, jtreesitterNode.methodIsError(), currentNodeVar, jtreesitterNode.methodIsMissing())
             .addStatement("throw new $T(\"Child is error or missing node: \" + $N)", IllegalStateException.class, currentNodeVar)
@@ -72,120 +248,370 @@ public class NodeUtilsGenerator {
             .endControlFlow()
             .endControlFlow("while ($N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
             .endControlFlow()
+            .nextControlFlow("finally")
+            .addStatement(codeGenHelper.createReleaseCursorCode(cursorVar))
             .endControlFlow()
             .addStatement("return $N", childrenVar)
             .build();
+        typeBuilder.addMethod(method);
+
+        var overloadBuilder = MethodSpec.methodBuilder(method.name())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNodeClass, nodeParam)
+            .addParameter(namedParam)
+            .returns(listType(jtreesitterNodeClass));
+        if (codeGenHelper.generatesAllocationSessions()) {
+            var nodeUtils = codeGenHelper.nodeUtilsConfig();
+            String allocatorVar = "allocator";
+            overloadBuilder
+                .addJavadoc("Gets all non-field children of the node, allocated with the allocator of the current session,")
+                .addJavadoc("\nor with an automatic {@code Arena} if no session is open.")
+                .addStatement("var $N = $N()", allocatorVar, nodeUtils.methodGetSessionAllocator())
+                .addStatement("return $N($N, $N, $N == null ? $T.$N() : $N)", method, nodeParam, namedParam, allocatorVar, ffmApi.classArena(), ffmApi.methodArenaOfAuto(), allocatorVar);
+        } else {
+            overloadBuilder
+                .addJavadoc("Gets all non-field children of the node, allocated with an automatic {@code Arena}.")
+                .addStatement("return $N($N, $N, $T.$N())", method, nodeParam, namedParam, ffmApi.classArena(), ffmApi.methodArenaOfAuto());
+        }
+        typeBuilder.addMethod(overloadBuilder.build());
     }
 
-    private MethodSpec generateFromNodeThrowingMethod() {
+    /**
+     * Generates the {@code countNonFieldChildren} method, which is the counterpart to the {@code getNonFieldChildren}
+     * methods, but which only counts the children instead of allocating nodes for them. If {@code shortCircuit}
+     * is {@code true} the {@code hasNonFieldChild} method is generated instead, which stops at the first matching child.
+     */
+    private MethodSpec generateCountNonFieldChildrenMethod(boolean shortCircuit) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
         var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
-        var typedNode = codeGenHelper.typedNodeConfig();
+        var jtreesitterCursor = codeGenHelper.jtreesitterConfig().treeCursor();
 
         String nodeParam = "node";
-        String expectedNodeClassParam = "nodeClass";
-        TypeVariableName resultTypeVar = TypeVariableName.get("T", typedNode.className());
-        Class<?> thrownExceptionType = typedNode.exceptionFromNodeThrowing();
+        var namedParam = ParameterSpec.builder(boolean.class, "named")
+            .addJavadoc(shortCircuit ? "whether to check for named or non-named children" : "whether to count named or non-named children")
+            .build();
 
-        String typedNodeVar = "typedNode";
-        return MethodSpec.methodBuilder(codeGenHelper.nodeUtilsConfig().methodFromNodeThrowing())
+        String countVar = "count";
+        String cursorVar = "cursor";
+        String scratchAllocatorVar = "scratchAllocator";
+        String currentNodeVar = "currentNode";
+        var methodBuilder = MethodSpec.methodBuilder(shortCircuit ? nodeUtils.methodHasNonFieldChild() : nodeUtils.methodCountNonFieldChildren())
             .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-            .addTypeVariable(resultTypeVar)
             .addParameter(jtreesitterNode.className(), nodeParam)
-            .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), resultTypeVar), expectedNodeClassParam)
-            .addJavadoc("Converts a jtreesitter node to a typed node, throwing an {@link $T} if the node type is unknown or unexpected.", thrownExceptionType)
-            .addJavadoc("\nThis method is intended for typed nodes which don't have a dedicated {@code $N} method.", codeGenHelper.typedNodeConfig().methodFromNodeThrowing())
-            .returns(resultTypeVar)
-            .addStatement("var $N = $T.$N($N)", typedNodeVar, typedNode.className(), typedNode.methodFromNodeThrowing(), nodeParam)
-            .beginControlFlow("if ($N.isInstance($N))", expectedNodeClassParam, typedNodeVar)
-            .addStatement("return $N.cast($N)", expectedNodeClassParam, typedNodeVar)
-            .nextControlFlow("else")
-            .addStatement("throw new $T(\"Unexpected node type, expected '\" + $N + \"' but got: \" + $N.getClass())", thrownExceptionType, expectedNodeClassParam, typedNodeVar)
+            .addParameter(namedParam);
+        if (shortCircuit) {
+            methodBuilder
+                .returns(boolean.class)
+                .addJavadoc("Returns whether the node has at least one non-field child; the result is the same as checking whether the")
+                .addJavadoc("\nlist returned by {@code $N} is non-empty, but no nodes are allocated for the children.", nodeUtils.methodGetNonFieldChildren());
+        } else {
+            methodBuilder
+                .returns(int.class)
+                .addJavadoc("Counts the non-field children of the node; the result is the same as the size of the list returned by")
+                .addJavadoc("\n{@code $N}, but no nodes are allocated for the children.", nodeUtils.methodGetNonFieldChildren())
+                .addStatement("int $N = 0", countVar);
+        }
+
+        methodBuilder
+            .addStatement(codeGenHelper.createAcquireCursorCode(cursorVar, nodeParam))
+            .beginControlFlow("try")
+            .addComment("jtreesitter provides no direct access to the properties of the current node, so use transient nodes")
+            .addComment("which all reuse the same memory")
+            .addStatement("var $N = $T.$N()", scratchAllocatorVar, codeGenHelper.nodeUtilsConfig().classCursorCache(), CURSOR_CACHE_METHOD_SCRATCH_ALLOCATOR)
+            .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoFirstChild())
+            .beginControlFlow("do")
+            .addComment("Only consider non-field children")
+            .beginControlFlow("if ($N.$N() == 0)", cursorVar, jtreesitterCursor.methodGetCurrentFieldId())
+            .addStatement("var $N = $N.$N($N)", currentNodeVar, cursorVar, jtreesitterCursor.methodGetCurrentNode(), scratchAllocatorVar)
+            // Behave consistently with `getNonFieldChildren`
+            .beginControlFlow("if ($N.$N() || $N.$N())", currentNodeVar, jtreesitterNode.methodIsError(), currentNodeVar, jtreesitterNode.methodIsMissing())
+            .addStatement("throw new $T(\"Child is error or missing node: \" + $N)", IllegalStateException.class, currentNodeVar)
             .endControlFlow()
+            .beginControlFlow("if ($N.$N() == $N && !$N.$N())", currentNodeVar, jtreesitterNode.methodIsNamed(), namedParam, currentNodeVar, jtreesitterNode.methodIsExtra());
+        if (shortCircuit) {
+            methodBuilder.addStatement("return true");
+        } else {
+            methodBuilder.addStatement("$N++", countVar);
+        }
+        return methodBuilder
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow("while ($N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
+            .endControlFlow()
+            .nextControlFlow("finally")
+            .addStatement(codeGenHelper.createReleaseCursorCode(cursorVar))
+            .endControlFlow()
+            .addStatement(shortCircuit ? CodeBlock.of("return false") : CodeBlock.of("return $N", countVar))
             .build();
     }
 
     /**
-     * Generates mapping methods for {@code List<Node> -> List<T extends TypedNode>} for children which
-     * can be named and non-named node types.
+     * Generates the methods for the allocation session of the current thread; the session itself is managed by
+     * {@code TypedTree}.
      */
-    private void generateMapChildrenNamedNonNamedMethods(TypeSpec.Builder typeBuilder) {
-        var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
+    private void generateSessionAllocatorMethods(TypeSpec.Builder typeBuilder) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var allocatorType = codeGenHelper.ffmApiConfig().classSegmentAllocator();
+        var nullableAllocatorType = codeGenHelper.getNullableType(allocatorType);
+
+        var sessionAllocatorField = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ThreadLocal.class), allocatorType), "sessionAllocator", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Allocator of the allocation session which is currently open on the thread, if any")
+            .initializer("new $T<>()", ThreadLocal.class)
+            .build();
+        typeBuilder.addField(sessionAllocatorField);
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(nodeUtils.methodGetSessionAllocator())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(nullableAllocatorType)
+            .addJavadoc("Gets the allocator of the allocation session which is currently open on this thread; {@code null} if there is none.")
+            .addStatement("return $N.get()", sessionAllocatorField)
+            .build()
+        );
+
+        String allocatorParam = "allocator";
+        String previousVar = "previous";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(nodeUtils.methodSetSessionAllocator())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(nullableAllocatorType, allocatorParam)
+            .returns(nullableAllocatorType)
+            .addJavadoc("Sets the allocator of the allocation session for this thread, and returns the previous allocator.")
+            .addStatement("var $N = $N.get()", previousVar, sessionAllocatorField)
+            .beginControlFlow("if ($N == null)", allocatorParam)
+            .addStatement("$N.remove()", sessionAllocatorField)
+            .nextControlFlow("else")
+            .addStatement("$N.set($N)", sessionAllocatorField, allocatorParam)
+            .endControlFlow()
+            .addStatement("return $N", previousVar)
+            .build()
+        );
+    }
+
+    /**
+     * Generates the {@code getFieldChild} method, which is the counterpart to jtreesitter's
+     * {@code Node#getChildByFieldId} with a custom allocator, but which verifies that there is at most one child
+     * for the field.
+     */
+    private MethodSpec generateGetFieldChildMethod() {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
         var jtreesitterNodeClass = jtreesitterNode.className();
+        var jtreesitterCursor = jtreesitter.treeCursor();
+
+        String nodeParam = "node";
+        var fieldIdParam = ParameterSpec.builder(jtreesitter.language().numericIdType(), "fieldId")
+            .addJavadoc("numeric ID of the field; {@code 0} if the field is unknown\n")  // trailing '\n' due to https://github.com/palantir/javapoet/issues/128
+            .build();
+        var allocatorParam = createChildrenAllocatorParam();
+
+        String childVar = "child";
+        String cursorVar = "cursor";
+        return MethodSpec.methodBuilder(codeGenHelper.nodeUtilsConfig().methodGetFieldChild())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNodeClass, nodeParam)
+            .addParameter(fieldIdParam)
+            .addParameter(allocatorParam)
+            .returns(codeGenHelper.getNullableType(jtreesitterNodeClass))
+            .addJavadoc("Gets the single child of the node for the field with the given ID; {@code null} if there is none.")
+            .addJavadoc("\nSimilar to {@link $T#$N}, except that the node is allocated with the given allocator, and that", jtreesitterNodeClass, jtreesitterNode.methodGetChildByFieldId())
+            .addJavadoc("\nthe remaining children are checked as well, without allocating nodes for them.")
+            .addJavadoc("\n\n@throws $T if the node has multiple children for the field", IllegalArgumentException.class)
+            .beginControlFlow("if ($N == 0)", fieldIdParam)
+            .addStatement("return null")
+            .endControlFlow()
+            .addStatement("$T $N = null", codeGenHelper.getNullableType(jtreesitterNodeClass), childVar)
+            .addStatement(codeGenHelper.createAcquireCursorCode(cursorVar, nodeParam))
+            .beginControlFlow("try")
+            .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoFirstChild())
+            .beginControlFlow("do")
+            .beginControlFlow("if ($N.$N() == $N)", cursorVar, jtreesitterCursor.methodGetCurrentFieldId(), fieldIdParam)
+            .beginControlFlow("if ($N != null)", childVar)
+            .addStatement("throw new $T(\"Unexpected multiple children for field ID \" + $N)", IllegalArgumentException.class, fieldIdParam)
+            .endControlFlow()
+            .addStatement("$N = $N.$N($N)", childVar, cursorVar, jtreesitterCursor.methodGetCurrentNode(), allocatorParam)
+            .endControlFlow()
+            .endControlFlow("while ($N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
+            .endControlFlow()
+            .nextControlFlow("finally")
+            .addStatement(codeGenHelper.createReleaseCursorCode(cursorVar))
+            .endControlFlow()
+            .addStatement("return $N", childVar)
+            .build();
+    }
+
+    /**
+     * Generates an overload of the {@code getFieldChild} method which uses the allocator of the current
+     * allocation session, if any.
+     */
+    private MethodSpec generateGetFieldChildSessionMethod(MethodSpec allocatorMethod) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNodeClass = jtreesitter.node().className();
         var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var ffmApi = codeGenHelper.ffmApiConfig();
 
-        var resultTypeVar = TypeVariableName.get("T", codeGenHelper.typedNodeConfig().className());
-        // Mappers don't return `T` but instead `? extends T`
-        var extendsResultTypeVar = WildcardTypeName.subtypeOf(resultTypeVar);
+        String nodeParam = "node";
+        String fieldIdParam = "fieldId";
+        String allocatorVar = "allocator";
+        return MethodSpec.methodBuilder(allocatorMethod.name())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNodeClass, nodeParam)
+            .addParameter(jtreesitter.language().numericIdType(), fieldIdParam)
+            .returns(codeGenHelper.getNullableType(jtreesitterNodeClass))
+            .addJavadoc("Gets the single child of the node for the field with the given ID, allocated with the allocator of the current session,")
+            .addJavadoc("\nor with an automatic {@code Arena} if no session is open; {@code null} if there is no such child.")
+            .addJavadoc("\n\n@throws $T if the node has multiple children for the field", IllegalArgumentException.class)
+            .addStatement("var $N = $N()", allocatorVar, nodeUtils.methodGetSessionAllocator())
+            .addStatement("return $N($N, $N, $N == null ? $T.$N() : $N)", allocatorMethod, nodeParam, fieldIdParam, allocatorVar, ffmApi.classArena(), ffmApi.methodArenaOfAuto(), allocatorVar)
+            .build();
+    }
 
-        var childrenParam = ParameterSpec.builder(listType(jtreesitterNodeClass), "children").build();
+    /**
+     * Generates the {@code countFieldChildren} method, which counts the children of a field without allocating
+     * any nodes.
+     */
+    private MethodSpec generateCountFieldChildrenMethod() {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterCursor = jtreesitter.treeCursor();
 
-        var mapperType = ParameterizedTypeName.get(ClassName.get(Function.class), jtreesitterNodeClass, extendsResultTypeVar);
-        var namedMapperParam = ParameterSpec.builder(mapperType, "namedMapper")
-            .addJavadoc("maps named children; {@code null} if only non-named children are expected\n")  // trailing '\n' due to https://github.com/palantir/javapoet/issues/128
+        String nodeParam = "node";
+        var fieldIdParam = ParameterSpec.builder(jtreesitter.language().numericIdType(), "fieldId")
+            .addJavadoc("numeric ID of the field; {@code 0} if the field is unknown")
             .build();
 
-        var nonNamedMapperParam = ParameterSpec.builder(mapperType, "nonNamedMapper")
-            .addJavadoc("maps non-named children; {@code null} if only named children are expected")
+        String countVar = "count";
+        String cursorVar = "cursor";
+        return MethodSpec.methodBuilder(codeGenHelper.nodeUtilsConfig().methodCountFieldChildren())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .addParameter(fieldIdParam)
+            .returns(int.class)
+            .addJavadoc("Counts the children of the node for the field with the given ID.")
+            .beginControlFlow("if ($N == 0)", fieldIdParam)
+            .addStatement("return 0")
+            .endControlFlow()
+            .addStatement("int $N = 0", countVar)
+            .addStatement(codeGenHelper.createAcquireCursorCode(cursorVar, nodeParam))
+            .beginControlFlow("try")
+            .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoFirstChild())
+            .beginControlFlow("do")
+            .beginControlFlow("if ($N.$N() == $N)", cursorVar, jtreesitterCursor.methodGetCurrentFieldId(), fieldIdParam)
+            .addStatement("$N++", countVar)
+            .endControlFlow()
+            .endControlFlow("while ($N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
+            .endControlFlow()
+            .nextControlFlow("finally")
+            .addStatement(codeGenHelper.createReleaseCursorCode(cursorVar))
+            .endControlFlow()
+            .addStatement("return $N", countVar)
             .build();
+    }
+
+    /**
+     * Generates an overload of the {@code getFieldChildren} method which uses the allocator of the current
+     * allocation session, if any.
+     */
+    private MethodSpec generateGetFieldChildrenSessionMethod(MethodSpec allocatorMethod) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNodeClass = jtreesitter.node().className();
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
 
-        var methodBuilder = MethodSpec.methodBuilder(nodeUtils.methodMapChildrenNamedNonNamed())
+        String nodeParam = "node";
+        String fieldIdParam = "fieldId";
+        String allocatorVar = "allocator";
+        return MethodSpec.methodBuilder(allocatorMethod.name())
             .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-            .addTypeVariable(resultTypeVar)
-            .addParameter(childrenParam)
-            // nullable
-            .addParameter(namedMapperParam)
-            // nullable
-            .addParameter(nonNamedMapperParam)
-            .returns(listType(resultTypeVar))
-            .addJavadoc("Maps the children of a node (in the form of jtreesitter nodes) to typed nodes.")
-            .addJavadoc("\nThis differentiates between named and non-named children, since separate typed node classes are used for them.");
+            .addParameter(jtreesitterNodeClass, nodeParam)
+            .addParameter(jtreesitter.language().numericIdType(), fieldIdParam)
+            .returns(listType(jtreesitterNodeClass))
+            .addJavadoc("Gets all children of the node for the field with the given ID, allocated with the allocator of the current session,")
+            .addJavadoc("\nor as determined by jtreesitter if no session is open.")
+            .addStatement("var $N = $N()", allocatorVar, nodeUtils.methodGetSessionAllocator())
+            .beginControlFlow("if ($N == null)", allocatorVar)
+            .addStatement("return $N.$N($N)", nodeParam, jtreesitter.node().methodGetChildrenByFieldId(), fieldIdParam)
+            .endControlFlow()
+            .addStatement("return $N($N, $N, $N)", allocatorMethod, nodeParam, fieldIdParam, allocatorVar)
+            .build();
+    }
 
-        String childVar = "child";
-        Class<?> thrownExceptionType = IllegalArgumentException.class;
-        // Note: Ideally would use `addStatement` here but that does not work due to https://github.com/square/javapoet/issues/711
-        methodBuilder.addCode(CodeBlock.builder()
-            .add("return $N.stream().map($N -> {\n", childrenParam, childVar)
-            .indent()
-            .beginControlFlow("if ($N.$N())", childVar, jtreesitterNode.methodIsNamed())
-            .addStatement("if ($N == null) throw new $T(\"Unexpected named child: \" + $N)", namedMapperParam, thrownExceptionType, childVar)
-            .addStatement("return $N.apply($N)", namedMapperParam, childVar)
-            .nextControlFlow("else")
-            .addStatement("if ($N == null) throw new $T(\"Unexpected non-named child: \" + $N)", nonNamedMapperParam, thrownExceptionType, childVar)
-            .addStatement("return $N.apply($N)", nonNamedMapperParam, childVar)
+    /**
+     * Generates the {@code getFieldChildren} method, which is the counterpart to jtreesitter's
+     * {@code Node#getChildrenByFieldId} with a custom allocator.
+     */
+    private MethodSpec generateGetFieldChildrenMethod() {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterNodeClass = jtreesitterNode.className();
+        var jtreesitterCursor = jtreesitter.treeCursor();
+
+        String nodeParam = "node";
+        var fieldIdParam = ParameterSpec.builder(jtreesitter.language().numericIdType(), "fieldId")
+            .addJavadoc("numeric ID of the field; {@code 0} if the field is unknown\n")  // trailing '\n' due to https://github.com/palantir/javapoet/issues/128
+            .build();
+        var allocatorParam = createChildrenAllocatorParam();
+
+        String childrenVar = "children";
+        String cursorVar = "cursor";
+        return MethodSpec.methodBuilder(codeGenHelper.nodeUtilsConfig().methodGetFieldChildren())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNodeClass, nodeParam)
+            .addParameter(fieldIdParam)
+            .addParameter(allocatorParam)
+            .returns(listType(jtreesitterNodeClass))
+            .addJavadoc("Gets all children of the node for the field with the given ID.")
+            .addJavadoc("\nSame as {@link $T#$N}, except that the nodes are allocated with the given allocator.", jtreesitterNodeClass, jtreesitterNode.methodGetChildrenByFieldId())
+            .beginControlFlow("if ($N == 0)", fieldIdParam)
+            .addStatement("return $T.of()", List.class)
             .endControlFlow()
-            .unindent()
-            .add("}).toList();") // trailing ';' due to being unable to use `addStatement` above
-            .build()
-        );
-        var method = methodBuilder.build();
-        typeBuilder.addMethod(method);
+            .addStatement("var $N = new $T<$T>()", childrenVar, ArrayList.class, jtreesitterNodeClass)
+            .addStatement(codeGenHelper.createAcquireCursorCode(cursorVar, nodeParam))
+            .beginControlFlow("try")
+            .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoFirstChild())
+            .beginControlFlow("do")
+            .beginControlFlow("if ($N.$N() == $N)", cursorVar, jtreesitterCursor.methodGetCurrentFieldId(), fieldIdParam)
+            .addStatement("$N.add($N.$N($N))", childrenVar, cursorVar, jtreesitterCursor.methodGetCurrentNode(), allocatorParam)
+            .endControlFlow()
+            .endControlFlow("while ($N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
+            .endControlFlow()
+            .nextControlFlow("finally")
+            .addStatement(codeGenHelper.createReleaseCursorCode(cursorVar))
+            .endControlFlow()
+            .addStatement("return $N", childrenVar)
+            .build();
+    }
+
+    private MethodSpec generateFromNodeThrowingMethod() {
+        var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
+        var typedNode = codeGenHelper.typedNodeConfig();
 
+        String nodeParam = "node";
+        String expectedNodeClassParam = "nodeClass";
+        TypeVariableName resultTypeVar = TypeVariableName.get("T", typedNode.className());
+        Class<?> thrownExceptionType = typedNode.exceptionFromNodeThrowing();
 
-        // Generate overload with `Class<T extends TypedNode>`, which performs `Node -> TypedNode` lookup and then verifies
-        // that typed node is instance of `T` using the given `Class` object
-        String namedClassParam = "namedNodeClass";
-        typeBuilder.addMethod(MethodSpec.methodBuilder(method.name())
+        String typedNodeVar = "typedNode";
+        return MethodSpec.methodBuilder(codeGenHelper.nodeUtilsConfig().methodFromNodeThrowing())
             .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
             .addTypeVariable(resultTypeVar)
-            .addParameter(childrenParam)
-            .addParameter(ParameterSpec.builder(ParameterizedTypeName.get(ClassName.get(Class.class), extendsResultTypeVar), namedClassParam)
-                .addJavadoc("class of the named children; {@code null} if only non-named children are expected\n")  // trailing '\n' due to https://github.com/palantir/javapoet/issues/128)
-                .build()
-            )
-            .addParameter(nonNamedMapperParam)
-            .returns(listType(resultTypeVar))
-            // Delegate to other overload
-            .addStatement("return $N($N, n -> $N(n, $N), $N)", method.name(), childrenParam, nodeUtils.methodFromNodeThrowing(), namedClassParam, nonNamedMapperParam)
-            .build()
-        );
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), resultTypeVar), expectedNodeClassParam)
+            .addJavadoc("Converts a jtreesitter node to a typed node, throwing an {@link $T} if the node type is unknown or unexpected.", thrownExceptionType)
+            .addJavadoc("\nThis method is intended for typed nodes which don't have a dedicated {@code $N} method.", codeGenHelper.typedNodeConfig().methodFromNodeThrowing())
+            .returns(resultTypeVar)
+            .addStatement("var $N = $T.$N($N)", typedNodeVar, typedNode.className(), typedNode.methodFromNodeThrowing(), nodeParam)
+            .beginControlFlow("if ($N.isInstance($N))", expectedNodeClassParam, typedNodeVar)
+            .addStatement("return $N.cast($N)", expectedNodeClassParam, typedNodeVar)
+            .nextControlFlow("else")
+            .addStatement("throw new $T(\"Unexpected node type, expected '\" + $N + \"' but got: \" + $N.getClass())", thrownExceptionType, expectedNodeClassParam, typedNodeVar)
+            .endControlFlow()
+            .build();
     }
 
     /**
-     * Generates methods which convert from a {@code List<T extends TypedNode>} to:
+     * Generates methods which convert from a {@code List<T>} to:
      * <ul>
-     *     <li>at most one: {@code Optional<T>} / {@code @Nullable T}<br>({@link CodeGenHelper.NodeUtilsConfig#methodOptionalChild()})
-     *     <li>exactly one: {@code T} (non-null)<br>({@link CodeGenHelper.NodeUtilsConfig#methodRequiredChild()})
-     *     <li>at least one: {@code @NonEmpty List<T>}<br>({@link CodeGenHelper.NodeUtilsConfig#methodAtLeastOneChild()})
+     *     <li>exactly one: {@code T} (non-null)<br>({@link CodeGenHelper.NodeUtilsConfig#methodRequiredChild()});
+     *         used with jtreesitter nodes, before they are converted to typed nodes
+     *     <li>at least one: {@code @NonEmpty List<T extends TypedNode>}<br>({@link CodeGenHelper.NodeUtilsConfig#methodAtLeastOneChild()})
      * </ul>
      */
     private void generateNodeListConverterMethods(TypeSpec.Builder typeBuilder) {
@@ -199,11 +625,12 @@ public class NodeUtilsGenerator {
             .build();
 
         Class<?> thrownExceptionType = IllegalArgumentException.class;
+        var anyTypeVar = TypeVariableName.get("T");
         var requiredChildMethod = MethodSpec.methodBuilder(nodeUtils.methodRequiredChild())
             .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-            .addTypeVariable(typedNodeTypeVar)
-            .addParameter(nodesParam)
-            .returns(typedNodeTypeVar)
+            .addTypeVariable(anyTypeVar)
+            .addParameter(listType(anyTypeVar), nodesParamName)
+            .returns(anyTypeVar)
             .beginControlFlow("if ($N.size() == 1)", nodesParamName)
             .addStatement("return $N.getFirst()", nodesParamName)
             .endControlFlow()
@@ -211,23 +638,6 @@ public class NodeUtilsGenerator {
             .build();
         typeBuilder.addMethod(requiredChildMethod);
 
-        String sizeVar = "size";
-        String resultVar = "result";
-        var optionalChildMethodBuilder = MethodSpec.methodBuilder(nodeUtils.methodOptionalChild())
-            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-            .addTypeVariable(typedNodeTypeVar)
-            .addParameter(nodesParam)
-            .returns(codeGenHelper.getReturnOptionalType(typedNodeTypeVar))
-            .addStatement("$T $N = null", typedNodeTypeVar, resultVar)
-            .addStatement("int $N = $N.size()", sizeVar, nodesParamName)
-            .beginControlFlow("if ($N == 1)", sizeVar)
-            .addStatement("$N = $N.getFirst()", resultVar, nodesParamName)
-            .nextControlFlow("else if ($N > 1)", sizeVar)
-            .addStatement("throw new $T(\"Unexpected nodes count: \" + $N)", thrownExceptionType, nodesParamName)
-            .endControlFlow();
-        codeGenHelper.addReturnOptionalStatement(optionalChildMethodBuilder, resultVar);
-        typeBuilder.addMethod(optionalChildMethodBuilder.build());
-
         var atLeastOneChildMethod = MethodSpec.methodBuilder(nodeUtils.methodAtLeastOneChild())
             .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
             .addTypeVariable(typedNodeTypeVar)
@@ -241,6 +651,1199 @@ public class NodeUtilsGenerator {
         typeBuilder.addMethod(atLeastOneChildMethod);
     }
 
+    /**
+     * Generates the {@code ChildrenListView} class, a lazy {@code List} view of the children of a node. The getters
+     * for multiple children create anonymous subclasses of it which implement the conversion of a child to a typed
+     * node. Only generated if {@link CodeGenHelper#generatesLazyChildrenLists()}.
+     */
+    private void generateChildrenListViewClass(TypeSpec.Builder typeBuilder) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var jtreesitterNodeClass = codeGenHelper.jtreesitterConfig().node().className();
+        var typeVarT = TypeVariableName.get("T");
+
+        var childrenField = FieldSpec.builder(listType(jtreesitterNodeClass), "children", Modifier.PRIVATE, Modifier.FINAL).build();
+        var convertedField = FieldSpec.builder(ArrayTypeName.of(codeGenHelper.getNullableType(ClassName.OBJECT)), "converted", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Children which have already been converted; {@code null} elements have not been converted yet.")
+            .build();
+
+        // If the list was created while the node cache is bypassed (for example for nodes allocated with a custom
+        // allocator), children converted later must not be cached either
+        boolean trackUncached = codeGenHelper.generatesTypedTree();
+        var uncachedField = FieldSpec.builder(boolean.class, "uncached", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Whether the node cache of {@code TypedTree} is bypassed when converting children.")
+            .build();
+
+        String childrenParam = "children";
+        var constructorBuilder = MethodSpec.constructorBuilder()
+            .addParameter(listType(jtreesitterNodeClass), childrenParam)
+            .addStatement("this.$N = $N", childrenField, childrenParam)
+            .addStatement("this.$N = new $T[$N.size()]", convertedField, Object.class, childrenParam);
+        if (trackUncached) {
+            constructorBuilder.addStatement("this.$N = $L", uncachedField, codeGenHelper.createIsUncachedCode());
+        }
+        var constructor = constructorBuilder.build();
+
+        String childParam = "child";
+        var convertMethod = MethodSpec.methodBuilder(nodeUtils.methodChildrenListViewConvert())
+            .addModifiers(Modifier.PROTECTED, Modifier.ABSTRACT)
+            .addParameter(jtreesitterNodeClass, childParam)
+            .returns(typeVarT)
+            .addJavadoc("Converts the jtreesitter child node to a typed node.")
+            .build();
+
+        String indexParam = "index";
+        String resultVar = "result";
+        String typedResultVar = "typedResult";
+        var convertCode = CodeBlock.of("$N($N.get($N))", convertMethod, childrenField, indexParam);
+        if (trackUncached) {
+            convertCode = CodeBlock.of("$N ? $L : $L", uncachedField, codeGenHelper.createUncachedCode(convertCode), convertCode);
+        }
+        var getMethod = MethodSpec.methodBuilder("get")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(int.class, indexParam)
+            .returns(typeVarT)
+            .addStatement("var $N = $N[$T.checkIndex($N, $N.length)]", resultVar, convertedField, Objects.class, indexParam, convertedField)
+            .beginControlFlow("if ($N == null)", resultVar)
+            .addStatement("$N = $L", resultVar, convertCode)
+            .addStatement("$N[$N] = $N", convertedField, indexParam, resultVar)
+            .endControlFlow()
+            .addStatement("$L var $N = ($T) $N", CodeGenHelper.SUPPRESS_WARNINGS_UNCHECKED, typedResultVar, typeVarT, resultVar)
+            .addStatement("return $N", typedResultVar)
+            .build();
+
+        var sizeMethod = MethodSpec.methodBuilder("size")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(int.class)
+            .addStatement("return $N.size()", childrenField)
+            .build();
+
+        typeBuilder.addType(TypeSpec.classBuilder(nodeUtils.classChildrenListView())
+            .addModifiers(Modifier.STATIC, Modifier.ABSTRACT)
+            .addTypeVariable(typeVarT)
+            .superclass(ParameterizedTypeName.get(ClassName.get(AbstractList.class), typeVarT))
+            .addSuperinterface(RandomAccess.class)
+            .addJavadoc("Unmodifiable lazy {@code List} view of children nodes, which converts a child to a typed node")
+            .addJavadoc("\nwhen it is accessed for the first time. Querying the size does not convert any children.")
+            .addField(childrenField)
+            .addField(convertedField)
+            .addFields(trackUncached ? List.of(uncachedField) : List.of())
+            .addMethod(constructor)
+            .addMethod(convertMethod)
+            .addMethod(getMethod)
+            .addMethod(sizeMethod)
+            .build()
+        );
+    }
+
+    /**
+     * Generates the {@code SourceText} class, which retains the encoded source code of a tree so that the text of
+     * nodes can be compared, hashed and viewed based on their byte offsets, without creating a {@code String}.
+     */
+    private void generateSourceTextClass(TypeSpec.Builder typeBuilder) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterTree = jtreesitter.tree();
+        var sourceTextClass = nodeUtils.classSourceText();
+        var asciiViewClass = sourceTextClass.nestedClass("AsciiView");
+
+        var treeKeyClass = sourceTextClass.nestedClass("TreeKey");
+        var treeReferenceQueueType = ParameterizedTypeName.get(ClassName.get(ReferenceQueue.class), jtreesitterTree.className());
+        var retainedField = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ConcurrentHashMap.class), treeKeyClass, sourceTextClass), "RETAINED", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Retained source code by tree; uses weak keys so that the source code can be garbage collected once the")
+            .addJavadoc("\ntree is not reachable anymore. A concurrent map is used because the text methods look up the source code")
+            .addJavadoc("\non every call, possibly from many threads, and must not contend on a lock.")
+            .initializer("new $T<>()", ConcurrentHashMap.class)
+            .build();
+        var clearedKeysField = FieldSpec.builder(treeReferenceQueueType, "CLEARED_KEYS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Keys of {@link #$N} whose tree has been garbage collected, and whose entries must be removed", retainedField)
+            .initializer("new $T<>()", ReferenceQueue.class)
+            .build();
+        // Encodings which are decoded incrementally; for all other charsets the text is decoded to a String
+        var encodingOtherField = FieldSpec.builder(int.class, "ENCODING_OTHER", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("0").build();
+        var encodingUtf8Field = FieldSpec.builder(int.class, "ENCODING_UTF_8", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("1").build();
+        var encodingUtf16LeField = FieldSpec.builder(int.class, "ENCODING_UTF_16LE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("2").build();
+        var encodingUtf16BeField = FieldSpec.builder(int.class, "ENCODING_UTF_16BE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("3").build();
+
+        var bytesField = FieldSpec.builder(byte[].class, "bytes", Modifier.PRIVATE, Modifier.FINAL).build();
+        var charsetField = FieldSpec.builder(Charset.class, "charset", Modifier.PRIVATE, Modifier.FINAL).build();
+        var encodingField = FieldSpec.builder(int.class, "encoding", Modifier.PRIVATE, Modifier.FINAL).build();
+        var isAsciiCompatibleField = FieldSpec.builder(boolean.class, "isAsciiCompatible", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Whether ASCII chars are encoded as single byte with the same value")
+            .build();
+
+        String bytesParam = "bytes";
+        String charsetParam = "charset";
+        var constructor = MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(byte[].class, bytesParam)
+            .addParameter(Charset.class, charsetParam)
+            .addStatement("this.$N = $N", bytesField, bytesParam)
+            .addStatement("this.$N = $N", charsetField, charsetParam)
+            .beginControlFlow("if ($N.equals($T.UTF_8))", charsetParam, StandardCharsets.class)
+            .addStatement("this.$N = $N", encodingField, encodingUtf8Field)
+            .nextControlFlow("else if ($N.equals($T.UTF_16LE))", charsetParam, StandardCharsets.class)
+            .addStatement("this.$N = $N", encodingField, encodingUtf16LeField)
+            .nextControlFlow("else if ($N.equals($T.UTF_16BE))", charsetParam, StandardCharsets.class)
+            .addStatement("this.$N = $N", encodingField, encodingUtf16BeField)
+            .nextControlFlow("else")
+            .addStatement("this.$N = $N", encodingField, encodingOtherField)
+            .endControlFlow()
+            .addStatement("this.$N = $N == $N || $N.equals($T.US_ASCII) || $N.equals($T.ISO_8859_1)", isAsciiCompatibleField, encodingField, encodingUtf8Field, charsetParam, StandardCharsets.class, charsetParam, StandardCharsets.class)
+            .build();
+
+        String keyVar = "key";
+        var expungeClearedKeysMethod = MethodSpec.methodBuilder("expungeClearedKeys")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addJavadoc("Removes the entries whose tree has been garbage collected. Cheap if there are none, because polling an")
+            .addJavadoc("\nempty {@code ReferenceQueue} does not acquire a lock.")
+            .addStatement("$T $N", ParameterizedTypeName.get(ClassName.get(Reference.class), WildcardTypeName.subtypeOf(jtreesitterTree.className())), keyVar)
+            .beginControlFlow("while (($N = $N.poll()) != null)", keyVar, clearedKeysField)
+            .addStatement("$N.remove($N)", retainedField, keyVar)
+            .endControlFlow()
+            .build();
+
+        String treeParam = "tree";
+        String textVar = "text";
+        var retainMethod = MethodSpec.methodBuilder(nodeUtils.methodRetainSource())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterTree.className(), treeParam)
+            .addParameter(Charset.class, charsetParam)
+            .addJavadoc("Retains the source code of the tree, encoded with the given charset.")
+            .addStatement("var $N = $N.$N()", textVar, treeParam, jtreesitterTree.methodGetText())
+            .beginControlFlow("if ($N == null)", textVar)
+            .addStatement("throw new $T($S)", IllegalStateException.class, "Source code of the tree is not available")
+            .endControlFlow()
+            .addStatement("$N()", expungeClearedKeysMethod)
+            .addStatement("$N.put(new $T($N, $N), new $T($N.getBytes($N), $N))", retainedField, treeKeyClass, treeParam, clearedKeysField, sourceTextClass, textVar, charsetParam, charsetParam)
+            .build();
+
+        var releaseMethod = MethodSpec.methodBuilder(nodeUtils.methodReleaseSource())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterTree.className(), treeParam)
+            .addJavadoc("Releases the retained source code of the tree, if any.")
+            .addStatement("$N()", expungeClearedKeysMethod)
+            .addStatement("$N.remove(new $T($N, null))", retainedField, treeKeyClass, treeParam)
+            .build();
+
+        String nodeParam = "node";
+        String sourceVar = "source";
+        var getMethod = MethodSpec.methodBuilder("get")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(codeGenHelper.getNullableType(sourceTextClass))
+            .addJavadoc("Gets the retained source code of the tree of the node; {@code null} if the source code is not retained,")
+            .addJavadoc("\nor if it does not cover the node.")
+            .addStatement("$N()", expungeClearedKeysMethod)
+            .beginControlFlow("if ($N.isEmpty())", retainedField)
+            .addStatement("return null")
+            .endControlFlow()
+            .addStatement("var $N = $N.get(new $T($N.$N(), null))", sourceVar, retainedField, treeKeyClass, nodeParam, jtreesitterNode.methodGetTree())
+            .beginControlFlow("if ($N == null || $N.$N() > $N.$N.length)", sourceVar, nodeParam, jtreesitterNode.methodGetEndByte(), sourceVar, bytesField)
+            .addStatement("return null")
+            .endControlFlow()
+            .addStatement("return $N", sourceVar)
+            .build();
+
+        String startParam = "start";
+        String endParam = "end";
+        var decodeMethod = MethodSpec.methodBuilder("decode")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, startParam)
+            .addParameter(int.class, endParam)
+            .returns(String.class)
+            .addStatement("return new $T($N, $N, $N - $N, $N)", String.class, bytesField, startParam, endParam, startParam, charsetField)
+            .build();
+
+        String codePointParam = "codePoint";
+        var byteLengthMethod = MethodSpec.methodBuilder("byteLength")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, codePointParam)
+            .returns(int.class)
+            .addJavadoc("Gets the number of bytes of the encoded code point.")
+            .beginControlFlow("if ($N != $N)", encodingField, encodingUtf8Field)
+            .addStatement("return $T.charCount($N) * 2", Character.class, codePointParam)
+            .endControlFlow()
+            .addStatement("return $N < 0x80 ? 1 : $N < 0x800 ? 2 : $N < 0x10000 ? 3 : 4", codePointParam, codePointParam, codePointParam)
+            .build();
+
+        String indexParam = "index";
+        var utf16CharAtMethod = MethodSpec.methodBuilder("utf16CharAt")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, indexParam)
+            .returns(char.class)
+            .addStatement("int b0 = $N[$N] & 0xFF", bytesField, indexParam)
+            .addStatement("int b1 = $N[$N + 1] & 0xFF", bytesField, indexParam)
+            .addStatement("return (char) ($N == $N ? (b1 << 8) | b0 : (b0 << 8) | b1)", encodingField, encodingUtf16LeField)
+            .build();
+
+        String lengthVar = "length";
+        var codePointAtMethod = MethodSpec.methodBuilder("codePointAt")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, indexParam)
+            .addParameter(int.class, endParam)
+            .returns(int.class)
+            .addJavadoc("Decodes the code point at the byte index; returns -1 if the bytes are malformed, in which case callers")
+            .addJavadoc("\nshould fall back to decoding the text to a {@code String}, to get the same result as {@code getText()}.")
+            .beginControlFlow("if ($N != $N)", encodingField, encodingUtf8Field)
+            .beginControlFlow("if ($N + 2 > $N)", indexParam, endParam)
+            .addStatement("return -1")
+            .endControlFlow()
+            .addStatement("char c = $N($N)", utf16CharAtMethod, indexParam)
+            .beginControlFlow("if (!$T.isSurrogate(c))", Character.class)
+            .addStatement("return c")
+            .endControlFlow()
+            .beginControlFlow("if ($T.isHighSurrogate(c) && $N + 4 <= $N)", Character.class, indexParam, endParam)
+            .addStatement("char low = $N($N + 2)", utf16CharAtMethod, indexParam)
+            .beginControlFlow("if ($T.isLowSurrogate(low))", Character.class)
+            .addStatement("return $T.toCodePoint(c, low)", Character.class)
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return -1")
+            .endControlFlow()
+            .addCode("\n")
+            .addStatement("int b0 = $N[$N] & 0xFF", bytesField, indexParam)
+            .beginControlFlow("if (b0 < 0x80)")
+            .addStatement("return b0")
+            .endControlFlow()
+            .addStatement("int $N", lengthVar)
+            .addStatement("int $N", codePointParam)
+            .beginControlFlow("if (b0 >= 0xC2 && b0 < 0xE0)")
+            .addStatement("$N = 2", lengthVar)
+            .addStatement("$N = b0 & 0x1F", codePointParam)
+            .nextControlFlow("else if (b0 >= 0xE0 && b0 < 0xF0)")
+            .addStatement("$N = 3", lengthVar)
+            .addStatement("$N = b0 & 0x0F", codePointParam)
+            .nextControlFlow("else if (b0 >= 0xF0 && b0 < 0xF5)")
+            .addStatement("$N = 4", lengthVar)
+            .addStatement("$N = b0 & 0x07", codePointParam)
+            .nextControlFlow("else")
+            .addStatement("return -1")
+            .endControlFlow()
+            .beginControlFlow("if ($N + $N > $N)", indexParam, lengthVar, endParam)
+            .addStatement("return -1")
+            .endControlFlow()
+            .beginControlFlow("for (int i = 1; i < $N; i++)", lengthVar)
+            .addStatement("int b = $N[$N + i] & 0xFF", bytesField, indexParam)
+            .beginControlFlow("if ((b & 0xC0) != 0x80)")
+            .addStatement("return -1")
+            .endControlFlow()
+            .addStatement("$N = ($N << 6) | (b & 0x3F)", codePointParam, codePointParam)
+            .endControlFlow()
+            .addComment("Reject overlong encodings, surrogates and values outside of the Unicode range")
+            .beginControlFlow("if ($N($N) != $N || ($N >= 0xD800 && $N <= 0xDFFF) || $N > $T.MAX_CODE_POINT)", byteLengthMethod, codePointParam, lengthVar, codePointParam, codePointParam, codePointParam, Character.class)
+            .addStatement("return -1")
+            .endControlFlow()
+            .addStatement("return $N", codePointParam)
+            .build();
+
+        String decodedParam = "decoded";
+        String textParam = "text";
+        String isPrefixParam = "isPrefix";
+        var stringEqualsMethod = MethodSpec.methodBuilder("stringEquals")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(String.class, decodedParam)
+            .addParameter(CharSequence.class, textParam)
+            .addParameter(boolean.class, isPrefixParam)
+            .returns(boolean.class)
+            .addStatement("return $N ? $N.startsWith($N.toString()) : $N.contentEquals($N)", isPrefixParam, decodedParam, textParam, decodedParam, textParam)
+            .build();
+
+        String textIndexVar = "textIndex";
+        String textLengthVar = "textLength";
+        var regionEqualsMethod = MethodSpec.methodBuilder("regionEquals")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, startParam)
+            .addParameter(int.class, endParam)
+            .addParameter(CharSequence.class, textParam)
+            .addParameter(boolean.class, isPrefixParam)
+            .returns(boolean.class)
+            .beginControlFlow("if ($N == $N)", encodingField, encodingOtherField)
+            .addStatement("return $N($N($N, $N), $N, $N)", stringEqualsMethod, decodeMethod, startParam, endParam, textParam, isPrefixParam)
+            .endControlFlow()
+            .addCode("\n")
+            .addStatement("int $N = $N", indexParam, startParam)
+            .addStatement("int $N = 0", textIndexVar)
+            .addStatement("int $N = $N.length()", textLengthVar, textParam)
+            .beginControlFlow("while ($N < $N && $N < $N)", indexParam, endParam, textIndexVar, textLengthVar)
+            .addStatement("int $N = $N($N, $N)", codePointParam, codePointAtMethod, indexParam, endParam)
+            .beginControlFlow("if ($N < 0)", codePointParam)
+            .addStatement("return $N($N($N, $N), $N, $N)", stringEqualsMethod, decodeMethod, startParam, endParam, textParam, isPrefixParam)
+            .endControlFlow()
+            // Compare chars instead of code points, because the text might end in the middle of a surrogate pair
+            .beginControlFlow("if ($T.isBmpCodePoint($N))", Character.class, codePointParam)
+            .beginControlFlow("if ($N.charAt($N) != $N)", textParam, textIndexVar, codePointParam)
+            .addStatement("return false")
+            .endControlFlow()
+            .addStatement("$N++", textIndexVar)
+            .nextControlFlow("else")
+            .beginControlFlow("if ($N.charAt($N) != $T.highSurrogate($N))", textParam, textIndexVar, Character.class, codePointParam)
+            .addStatement("return false")
+            .endControlFlow()
+            .beginControlFlow("if ($N + 1 == $N)", textIndexVar, textLengthVar)
+            .addStatement("return $N", isPrefixParam)
+            .endControlFlow()
+            .beginControlFlow("if ($N.charAt($N + 1) != $T.lowSurrogate($N))", textParam, textIndexVar, Character.class, codePointParam)
+            .addStatement("return false")
+            .endControlFlow()
+            .addStatement("$N += 2", textIndexVar)
+            .endControlFlow()
+            .addStatement("$N += $N($N)", indexParam, byteLengthMethod, codePointParam)
+            .endControlFlow()
+            .addStatement("return $N == $N && ($N || $N == $N)", textIndexVar, textLengthVar, isPrefixParam, indexParam, endParam)
+            .build();
+
+        String hashVar = "hash";
+        var regionHashCodeMethod = MethodSpec.methodBuilder("regionHashCode")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, startParam)
+            .addParameter(int.class, endParam)
+            .returns(int.class)
+            .addJavadoc("Computes the same hash code as {@link String#hashCode()} of the decoded text.")
+            .beginControlFlow("if ($N == $N)", encodingField, encodingOtherField)
+            .addStatement("return $N($N, $N).hashCode()", decodeMethod, startParam, endParam)
+            .endControlFlow()
+            .addCode("\n")
+            .addStatement("int $N = 0", hashVar)
+            .beginControlFlow("for (int $N = $N; $N < $N; )", indexParam, startParam, indexParam, endParam)
+            .addStatement("int $N = $N($N, $N)", codePointParam, codePointAtMethod, indexParam, endParam)
+            .beginControlFlow("if ($N < 0)", codePointParam)
+            .addStatement("return $N($N, $N).hashCode()", decodeMethod, startParam, endParam)
+            .endControlFlow()
+            .beginControlFlow("if ($T.isBmpCodePoint($N))", Character.class, codePointParam)
+            .addStatement("$N = 31 * $N + $N", hashVar, hashVar, codePointParam)
+            .nextControlFlow("else")
+            .addStatement("$N = 31 * $N + $T.highSurrogate($N)", hashVar, hashVar, Character.class, codePointParam)
+            .addStatement("$N = 31 * $N + $T.lowSurrogate($N)", hashVar, hashVar, Character.class, codePointParam)
+            .endControlFlow()
+            .addStatement("$N += $N($N)", indexParam, byteLengthMethod, codePointParam)
+            .endControlFlow()
+            .addStatement("return $N", hashVar)
+            .build();
+
+        var regionCharsMethod = MethodSpec.methodBuilder("regionChars")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(int.class, startParam)
+            .addParameter(int.class, endParam)
+            .returns(CharSequence.class)
+            .beginControlFlow("if ($N)", isAsciiCompatibleField)
+            .addStatement("boolean isAscii = true")
+            .beginControlFlow("for (int i = $N; i < $N; i++)", startParam, endParam)
+            .beginControlFlow("if ($N[i] < 0)", bytesField)
+            .addStatement("isAscii = false")
+            .addStatement("break")
+            .endControlFlow()
+            .endControlFlow()
+            .beginControlFlow("if (isAscii)")
+            .addStatement("return new $T($N, $N, $N)", asciiViewClass, bytesField, startParam, endParam)
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return $N($N, $N)", decodeMethod, startParam, endParam)
+            .build();
+
+        // Methods used by TypedNode, which fall back to `Node#getText()` if the source code is not retained
+        String nodeTextVar = "nodeText";
+        var textEqualsMethod = MethodSpec.methodBuilder(nodeUtils.methodTextEquals())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .addParameter(CharSequence.class, textParam)
+            .addParameter(boolean.class, isPrefixParam)
+            .returns(boolean.class)
+            .addJavadoc("Checks if the text of the node is equal to, respectively starts with, the given text.")
+            .addStatement("var $N = $N($N)", sourceVar, getMethod, nodeParam)
+            .beginControlFlow("if ($N != null)", sourceVar)
+            .addStatement("return $N.$N($N.$N(), $N.$N(), $N, $N)", sourceVar, regionEqualsMethod, nodeParam, jtreesitterNode.methodGetStartByte(), nodeParam, jtreesitterNode.methodGetEndByte(), textParam, isPrefixParam)
+            .endControlFlow()
+            .addStatement("var $N = $N.$N()", nodeTextVar, nodeParam, jtreesitterNode.methodGetText())
+            .addStatement("return $N != null && $N($N, $N, $N)", nodeTextVar, stringEqualsMethod, nodeTextVar, textParam, isPrefixParam)
+            .build();
+
+        var textHashCodeMethod = MethodSpec.methodBuilder(nodeUtils.methodTextHashCode())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(int.class)
+            .addStatement("var $N = $N($N)", sourceVar, getMethod, nodeParam)
+            .beginControlFlow("if ($N != null)", sourceVar)
+            .addStatement("return $N.$N($N.$N(), $N.$N())", sourceVar, regionHashCodeMethod, nodeParam, jtreesitterNode.methodGetStartByte(), nodeParam, jtreesitterNode.methodGetEndByte())
+            .endControlFlow()
+            .addStatement("return $T.hashCode($N.$N())", Objects.class, nodeParam, jtreesitterNode.methodGetText())
+            .build();
+
+        var getTextBytesMethod = MethodSpec.methodBuilder(nodeUtils.methodGetTextBytes())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(codeGenHelper.getNullableType(ClassName.get(ByteBuffer.class)))
+            .addStatement("var $N = $N($N)", sourceVar, getMethod, nodeParam)
+            .beginControlFlow("if ($N == null)", sourceVar)
+            .addStatement("return null")
+            .endControlFlow()
+            .addStatement("int $N = $N.$N()", startParam, nodeParam, jtreesitterNode.methodGetStartByte())
+            .addStatement("return $T.wrap($N.$N).slice($N, $N.$N() - $N).asReadOnlyBuffer()", ByteBuffer.class, sourceVar, bytesField, startParam, nodeParam, jtreesitterNode.methodGetEndByte(), startParam)
+            .build();
+
+        var getTextViewMethod = MethodSpec.methodBuilder(nodeUtils.methodGetTextView())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(codeGenHelper.getNullableType(ClassName.get(CharSequence.class)))
+            .addStatement("var $N = $N($N)", sourceVar, getMethod, nodeParam)
+            .beginControlFlow("if ($N != null)", sourceVar)
+            .addStatement("return $N.$N($N.$N(), $N.$N())", sourceVar, regionCharsMethod, nodeParam, jtreesitterNode.methodGetStartByte(), nodeParam, jtreesitterNode.methodGetEndByte())
+            .endControlFlow()
+            .addStatement("return $N.$N()", nodeParam, jtreesitterNode.methodGetText())
+            .build();
+
+        typeBuilder.addType(TypeSpec.classBuilder(sourceTextClass)
+            .addModifiers(Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Source code of a tree, retained so that the text of its nodes can be compared, hashed and viewed based")
+            .addJavadoc("\non the byte offsets of the nodes, without creating an intermediate {@code String}. UTF-8 and UTF-16 are")
+            .addJavadoc("\ndecoded incrementally; for other charsets, and for malformed source code, the text is decoded to a")
+            .addJavadoc("\n{@code String} to get the same result as {@code Node#getText()}.")
+            .addJavadoc("\n\n<p>If the source code of a tree is not retained, the methods fall back to {@code Node#getText()}.")
+            .addField(retainedField)
+            .addField(clearedKeysField)
+            .addField(encodingOtherField)
+            .addField(encodingUtf8Field)
+            .addField(encodingUtf16LeField)
+            .addField(encodingUtf16BeField)
+            .addField(bytesField)
+            .addField(charsetField)
+            .addField(encodingField)
+            .addField(isAsciiCompatibleField)
+            .addMethod(constructor)
+            .addMethod(expungeClearedKeysMethod)
+            .addMethod(retainMethod)
+            .addMethod(releaseMethod)
+            .addMethod(getMethod)
+            .addMethod(decodeMethod)
+            .addMethod(byteLengthMethod)
+            .addMethod(utf16CharAtMethod)
+            .addMethod(codePointAtMethod)
+            .addMethod(stringEqualsMethod)
+            .addMethod(regionEqualsMethod)
+            .addMethod(regionHashCodeMethod)
+            .addMethod(regionCharsMethod)
+            .addMethod(textEqualsMethod)
+            .addMethod(textHashCodeMethod)
+            .addMethod(getTextBytesMethod)
+            .addMethod(getTextViewMethod)
+            .addType(generateTreeKeyClass(treeKeyClass, jtreesitterTree.className(), treeReferenceQueueType))
+            .addType(generateAsciiViewClass(asciiViewClass))
+            .build()
+        );
+    }
+
+    /**
+     * Generates the weak key of the retained source code map, which compares trees by identity.
+     */
+    private TypeSpec generateTreeKeyClass(ClassName treeKeyClass, ClassName treeClass, TypeName treeReferenceQueueType) {
+        var hashCodeField = FieldSpec.builder(int.class, "hashCode", Modifier.PRIVATE, Modifier.FINAL).build();
+
+        String treeParam = "tree";
+        String queueParam = "queue";
+        var constructor = MethodSpec.constructorBuilder()
+            .addParameter(treeClass, treeParam)
+            .addParameter(codeGenHelper.getNullableType(treeReferenceQueueType), queueParam)
+            .addStatement("super($N, $N)", treeParam, queueParam)
+            .addStatement("this.$N = $T.identityHashCode($N)", hashCodeField, System.class, treeParam)
+            .build();
+
+        String otherParam = "obj";
+        String otherCastVar = "other";
+        String treeVar = "tree";
+        var equalsMethod = CodeGenHelper.createEqualsMethodSignature(otherParam)
+            .beginControlFlow("if (this == $N)", otherParam)
+            .addStatement("return true")
+            .endControlFlow()
+            // A cleared key is only equal to itself, which suffices for removing its entry
+            .beginControlFlow("if ($N instanceof $T $N)", otherParam, treeKeyClass, otherCastVar)
+            .addStatement("var $N = get()", treeVar)
+            .addStatement("return $N != null && $N == $N.get()", treeVar, treeVar, otherCastVar)
+            .endControlFlow()
+            .addStatement("return false")
+            .build();
+
+        var hashCodeMethod = MethodSpec.methodBuilder("hashCode")
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(Override.class)
+            .returns(int.class)
+            .addStatement("return $N", hashCodeField)
+            .build();
+
+        return TypeSpec.classBuilder(treeKeyClass)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .superclass(ParameterizedTypeName.get(ClassName.get(WeakReference.class), treeClass))
+            .addJavadoc("Weakly referenced tree, compared by identity. The hash code is computed eagerly so that it remains the same")
+            .addJavadoc("\nafter the tree has been garbage collected.")
+            .addField(hashCodeField)
+            .addMethod(constructor)
+            .addMethod(equalsMethod)
+            .addMethod(hashCodeMethod)
+            .build();
+    }
+
+    /**
+     * Generates a {@code CharSequence} view of ASCII bytes, which maps every byte to a char.
+     */
+    private static TypeSpec generateAsciiViewClass(ClassName asciiViewClass) {
+        var bytesField = FieldSpec.builder(byte[].class, "bytes", Modifier.PRIVATE, Modifier.FINAL).build();
+        var startField = FieldSpec.builder(int.class, "start", Modifier.PRIVATE, Modifier.FINAL).build();
+        var endField = FieldSpec.builder(int.class, "end", Modifier.PRIVATE, Modifier.FINAL).build();
+
+        String bytesParam = "bytes";
+        String startParam = "start";
+        String endParam = "end";
+        var constructor = MethodSpec.constructorBuilder()
+            .addParameter(byte[].class, bytesParam)
+            .addParameter(int.class, startParam)
+            .addParameter(int.class, endParam)
+            .addStatement("this.$N = $N", bytesField, bytesParam)
+            .addStatement("this.$N = $N", startField, startParam)
+            .addStatement("this.$N = $N", endField, endParam)
+            .build();
+
+        var lengthMethod = MethodSpec.methodBuilder("length")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(int.class)
+            .addStatement("return $N - $N", endField, startField)
+            .build();
+
+        String indexParam = "index";
+        var charAtMethod = MethodSpec.methodBuilder("charAt")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(int.class, indexParam)
+            .returns(char.class)
+            .addStatement("return (char) $N[$N + $T.checkIndex($N, $N())]", bytesField, startField, Objects.class, indexParam, lengthMethod)
+            .build();
+
+        var subSequenceMethod = MethodSpec.methodBuilder("subSequence")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(int.class, startParam)
+            .addParameter(int.class, endParam)
+            .returns(CharSequence.class)
+            .addStatement("$T.checkFromToIndex($N, $N, $N())", Objects.class, startParam, endParam, lengthMethod)
+            .addStatement("return new $T($N, this.$N + $N, this.$N + $N)", asciiViewClass, bytesField, startField, startParam, startField, endParam)
+            .build();
+
+        var toStringMethod = MethodSpec.methodBuilder("toString")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(String.class)
+            .addStatement("return new $T($N, $N, $N(), $T.ISO_8859_1)", String.class, bytesField, startField, lengthMethod, StandardCharsets.class)
+            .build();
+
+        return TypeSpec.classBuilder(asciiViewClass)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addSuperinterface(CharSequence.class)
+            .addJavadoc("{@code CharSequence} view of a range of ASCII bytes of the source code.")
+            .addField(bytesField)
+            .addField(startField)
+            .addField(endField)
+            .addMethod(constructor)
+            .addMethod(lengthMethod)
+            .addMethod(charAtMethod)
+            .addMethod(subSequenceMethod)
+            .addMethod(toStringMethod)
+            .build();
+    }
+
+    /**
+     * Generates a cache which lazily resolves the numeric type and field IDs for a {@code Language}, and the methods
+     * which use it. This is only needed if no {@code LanguageUtils} class is generated, in which case the generated
+     * code cannot have constants for the IDs.
+     */
+    private void generateLanguageIdsCache(TypeSpec.Builder typeBuilder) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterLanguage = jtreesitter.language();
+        var jtreesitterNode = jtreesitter.node();
+        var typedNode = codeGenHelper.typedNodeConfig().className();
+        var numericIdType = jtreesitterLanguage.numericIdType();
+        var factoryType = ParameterizedTypeName.get(ClassName.get(Function.class), jtreesitterNode.className(), typedNode);
+        var reachability = codeGenHelper.nodeTypeReachability();
+        var regularNodeTypes = reachability.getNodeTypes();
+        var fieldNames = reachability.getFieldNames();
+
+        var languageIdsClass = nodeUtils.className().nestedClass("LanguageIds");
+        var fieldLanguage = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(WeakReference.class), jtreesitterLanguage.className()), "language", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Weak reference, to not prevent the language from being garbage collected, see {@link #cache}")
+            .build();
+        var fieldTypeIds = FieldSpec.builder(short[].class, "typeIds", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Indexed by the type index assigned at code generation time")
+            .initializer("new short[$L]", regularNodeTypes.size())
+            .build();
+        var fieldFieldIds = FieldSpec.builder(short[].class, "fieldIds", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Indexed by the field index assigned at code generation time")
+            .initializer("new short[$L]", fieldNames.size())
+            .build();
+        var fieldFactories = FieldSpec.builder(ArrayTypeName.of(factoryType), "typedNodeFactories", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Indexed by the numeric type ID; {@code null} elements for types without typed node class")
+            .build();
+        var typedNodeKind = codeGenHelper.typedNodeKindConfig();
+        var kindClass = typedNodeKind.className();
+        var fieldKinds = FieldSpec.builder(ArrayTypeName.of(kindClass), "nodeKinds", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Indexed by the numeric type ID")
+            .build();
+        var fieldCache = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map.class), jtreesitterLanguage.className(), languageIdsClass), "cache", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            // Note: `Language#equals` is based on the native language object, so loading the same language multiple
+            // times reuses the entry; weak keys so that the cache does not keep languages reachable
+            .initializer("$T.synchronizedMap(new $T<>())", Collections.class, WeakHashMap.class)
+            .build();
+        var fieldLastUsed = FieldSpec.builder(codeGenHelper.getNullableType(languageIdsClass), "lastUsed", Modifier.PRIVATE, Modifier.STATIC)
+            .addJavadoc("Most recently used entry; avoids the map lookup in the common case that only a single language is used.")
+            .addJavadoc("\nNot {@code volatile} because all fields of {@code LanguageIds} are {@code final}, so other threads either")
+            .addJavadoc("\nsee a fully initialized entry, or a stale entry or {@code null} in which case they perform the map lookup.")
+            .build();
+        boolean generatesTypeIndices = codeGenHelper.generatesCursorFindNodesMethods();
+        var fieldTypeIndices = FieldSpec.builder(int[].class, LANGUAGE_IDS_FIELD_TYPE_INDICES, Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Indexed by the numeric type ID; index of the node type as known at code generation time, {@code -1} for unknown types")
+            .build();
+
+        String languageParam = "language";
+        String typeNameParam = "typeName";
+        String typeIndexParam = "typeIndex";
+        String factoryParam = "factory";
+        String kindParam = "kind";
+        String idVar = "id";
+        var methodAddTypedNodeBuilder = MethodSpec.methodBuilder("addTypedNode")
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(jtreesitterLanguage.className(), languageParam)
+            .addParameter(String.class, typeNameParam)
+            .addParameter(int.class, typeIndexParam)
+            .addParameter(factoryType, factoryParam)
+            .addParameter(kindClass, kindParam)
+            .addStatement("short $N = $N.$N($N, true)", idVar, languageParam, jtreesitterLanguage.methodGetTypeId(), typeNameParam)
+            .addStatement("$N[$N] = $N", fieldTypeIds, typeIndexParam, idVar)
+            .addComment("ID 0 means that the type name is unknown, for example because the language version differs")
+            .beginControlFlow("if ($N != 0)", idVar)
+            .addStatement("$N[$T.toUnsignedInt($N)] = $N", fieldFactories, Short.class, idVar, factoryParam)
+            .addStatement("$N[$T.toUnsignedInt($N)] = $N", fieldKinds, Short.class, idVar, kindParam);
+        if (generatesTypeIndices) {
+            methodAddTypedNodeBuilder.addStatement("$N[$T.toUnsignedInt($N)] = $N", fieldTypeIndices, Short.class, idVar, typeIndexParam);
+        }
+        var methodAddTypedNode = methodAddTypedNodeBuilder
+            .endControlFlow()
+            .build();
+
+        String factoriesVar = "factories";
+        var constructorBuilder = MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(jtreesitterLanguage.className(), languageParam)
+            .addStatement("this.$N = new $T<>($N)", fieldLanguage, WeakReference.class, languageParam)
+            .addStatement("$L var $N = ($T) new $T<?, ?>[$N.$N()]", CodeGenHelper.SUPPRESS_WARNINGS_UNCHECKED, factoriesVar, ArrayTypeName.of(factoryType), Function.class, languageParam, jtreesitterLanguage.methodGetSymbolCount())
+            .addStatement("this.$N = $N", fieldFactories, factoriesVar)
+            .addStatement("this.$N = new $T[$N.$N()]", fieldKinds, kindClass, languageParam, jtreesitterLanguage.methodGetSymbolCount())
+            .addStatement("$T.fill($N, $T.$N)", Arrays.class, fieldKinds, kindClass, typedNodeKind.constantOther());
+        if (generatesTypeIndices) {
+            constructorBuilder
+                .addStatement("this.$N = new int[$N.$N()]", fieldTypeIndices, languageParam, jtreesitterLanguage.methodGetSymbolCount())
+                .addStatement("$T.fill($N, -1)", Arrays.class, fieldTypeIndices);
+        }
+
+        var languageParamSpec = ParameterSpec.builder(jtreesitterLanguage.className(), languageParam).build();
+        List<CodeBlock> addTypedNodesCode = new ArrayList<>();
+        for (int i = 0; i < regularNodeTypes.size(); i++) {
+            var regularNodeType = regularNodeTypes.get(i);
+            ClassName nodeClass = regularNodeType.getJavaTypeName();
+            addTypedNodesCode.add(CodeBlock.builder().addStatement("$N($N, $T.$N, $L, $T::new, $T.$N)", methodAddTypedNode, languageParam, nodeClass, regularNodeType.getTypeNameConstant(), i, nodeClass, kindClass, typedNodeKind.getConstantName(regularNodeType)).build());
+        }
+        // Split the code which grows with the number of node types, to keep the constructor JIT-compilable
+        List<MethodSpec> helperMethods = new ArrayList<>(MethodSplitter.addChunkedCode(constructorBuilder, "addTypedNodes", false, addTypedNodesCode, List.of(languageParamSpec)));
+        List<CodeBlock> addFieldIdsCode = new ArrayList<>();
+        for (int i = 0; i < fieldNames.size(); i++) {
+            addFieldIdsCode.add(CodeBlock.builder().addStatement("$N[$L] = $N.$N($S)", fieldFieldIds, i, languageParam, jtreesitterLanguage.methodGetFieldId(), fieldNames.get(i)).build());
+        }
+        helperMethods.addAll(MethodSplitter.addChunkedCode(constructorBuilder, "addFieldIds", false, addFieldIdsCode, List.of(languageParamSpec)));
+
+        String nodeParam = "node";
+        String languageIdsVar = "languageIds";
+        var methodForNode = MethodSpec.methodBuilder("forNode")
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(languageIdsClass)
+            .addStatement("var $N = $N.$N().$N()", languageParam, nodeParam, jtreesitterNode.methodGetTree(), jtreesitter.tree().methodGetLanguage())
+            .addStatement("var $N = $N", languageIdsVar, fieldLastUsed)
+            .beginControlFlow("if ($N == null || $N.$N.get() != $N)", languageIdsVar, languageIdsVar, fieldLanguage, languageParam)
+            .addStatement("$N = $N.computeIfAbsent($N, $T::new)", languageIdsVar, fieldCache, languageParam, languageIdsClass)
+            .addStatement("$N = $N", fieldLastUsed, languageIdsVar)
+            .endControlFlow()
+            .addStatement("return $N", languageIdsVar)
+            .build();
+
+        var languageIdsBuilder = TypeSpec.classBuilder(languageIdsClass)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Numeric type and field IDs, resolved once for a specific {@code $T}.", jtreesitterLanguage.className())
+            .addJavadoc("\nThis avoids repeatedly looking up type and field names, and comparing type names.")
+            .addField(fieldCache)
+            .addField(fieldLastUsed)
+            .addField(fieldLanguage)
+            .addField(fieldTypeIds)
+            .addField(fieldFieldIds)
+            .addField(fieldFactories)
+            .addField(fieldKinds);
+        if (generatesTypeIndices) {
+            languageIdsBuilder.addField(fieldTypeIndices);
+        }
+        typeBuilder.addType(languageIdsBuilder
+            .addMethod(constructorBuilder.build())
+            .addMethods(helperMethods)
+            .addMethod(methodAddTypedNode)
+            .addMethod(methodForNode)
+            .build()
+        );
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(nodeUtils.methodGetTypeId())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .addParameter(int.class, typeIndexParam)
+            .returns(numericIdType)
+            .addJavadoc("Gets the numeric ID of the named node type with the given index assigned at code generation time,")
+            .addJavadoc("\nfor the language of the given node. Returns 0 if the language does not know the node type.")
+            .addStatement("return $T.$N($N).$N[$N]", languageIdsClass, methodForNode, nodeParam, fieldTypeIds, typeIndexParam)
+            .build()
+        );
+
+        String fieldIndexParam = "fieldIndex";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(nodeUtils.methodGetFieldId())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .addParameter(int.class, fieldIndexParam)
+            .returns(numericIdType)
+            .addJavadoc("Gets the numeric ID of the field with the given index assigned at code generation time,")
+            .addJavadoc("\nfor the language of the given node. Returns 0 if the language does not know the field.")
+            .addStatement("return $T.$N($N).$N[$N]", languageIdsClass, methodForNode, nodeParam, fieldFieldIds, fieldIndexParam)
+            .build()
+        );
+
+        String typeIdVar = "typeId";
+        String factoryVar = "factory";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(nodeUtils.methodCreateTypedNode())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(codeGenHelper.getNullableType(typedNode))
+            .addJavadoc("Wraps a jtreesitter node as typed node, based on the numeric type ID of the node.")
+            .addJavadoc("\nReturns {@code null} if no corresponding typed node class exists.")
+            .addStatement("var $N = $T.$N($N).$N", factoriesVar, languageIdsClass, methodForNode, nodeParam, fieldFactories)
+            .addStatement("int $N = $T.toUnsignedInt($N.$N())", typeIdVar, Short.class, nodeParam, jtreesitterNode.methodGetTypeId())
+            .beginControlFlow("if ($N < $N.length)", typeIdVar, factoriesVar)
+            .addStatement("var $N = $N[$N]", factoryVar, factoriesVar, typeIdVar)
+            .beginControlFlow("if ($N != null)", factoryVar)
+            .addStatement("return $L", codeGenHelper.createTypedNodeFactoryCode(factoryVar, nodeParam))
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return null")
+            .build()
+        );
+
+        String kindsVar = "kinds";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(nodeUtils.methodGetNodeKind())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(kindClass)
+            .addJavadoc("Gets the kind of the jtreesitter node, based on its numeric type ID.")
+            .addStatement("var $N = $T.$N($N).$N", kindsVar, languageIdsClass, methodForNode, nodeParam, fieldKinds)
+            .addStatement("int $N = $T.toUnsignedInt($N.$N())", typeIdVar, Short.class, nodeParam, jtreesitterNode.methodGetTypeId())
+            .addStatement("return $N < $N.length ? $N[$N] : $T.$N", typeIdVar, kindsVar, kindsVar, typeIdVar, kindClass, typedNodeKind.constantOther())
+            .build()
+        );
+    }
+
+    /**
+     * Generates the {@code QueryCache} class, which caches compiled queries with bounded size, and closes evicted
+     * queries once they are not used anymore.
+     */
+    private void generateQueryCacheClass(TypeSpec.Builder typeBuilder) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var classQueryCache = nodeUtils.classQueryCache();
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var classLanguage = jtreesitter.language().className();
+        var classQuery = jtreesitter.query().className();
+
+        String componentLanguage = "language";
+        String componentQueryString = "queryString";
+        var classKey = classQueryCache.nestedClass("Key");
+        var keyType = TypeSpec.recordBuilder(classKey)
+            .addModifiers(Modifier.PRIVATE)
+            .recordConstructor(MethodSpec.constructorBuilder()
+                .addParameter(classLanguage, componentLanguage)
+                .addParameter(String.class, componentQueryString)
+                .build()
+            )
+            .build();
+
+        var classEntry = classQueryCache.nestedClass("Entry");
+        var fieldEntryQuery = FieldSpec.builder(classQuery, "query", Modifier.FINAL).build();
+        var fieldEntryRefCount = FieldSpec.builder(int.class, "refCount", Modifier.PRIVATE)
+            .addJavadoc("Number of users of the query")
+            .initializer("0")
+            .build();
+        var fieldEntryIsEvicted = FieldSpec.builder(boolean.class, "isEvicted", Modifier.PRIVATE)
+            .addJavadoc("Whether the entry is not cached (anymore); the query is closed once it is not used anymore")
+            .initializer("false")
+            .build();
+        var entryType = TypeSpec.classBuilder(classEntry)
+            .addModifiers(Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Compiled query, together with its usage information; guarded by the lock of {@code $N}.", "entries")
+            .addField(fieldEntryQuery)
+            .addField(fieldEntryRefCount)
+            .addField(fieldEntryIsEvicted)
+            .addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(CodeGenHelper.paramFromField(fieldEntryQuery))
+                .addStatement("this.$1N = $1N", fieldEntryQuery)
+                .build()
+            )
+            .build();
+
+        int initialMaxSize = codeGenHelper.queryCacheMaxSize();
+        var fieldMaxSize = FieldSpec.builder(int.class, "maxSize", Modifier.PRIVATE, Modifier.STATIC)
+            .addJavadoc("Guarded by the lock of {@code $N}; only read and written while holding that lock", "entries")
+            .initializer("$L", initialMaxSize)
+            .build();
+        var fieldEntries = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(LinkedHashMap.class), classKey, classEntry), "entries", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Cached entries, in access order for LRU eviction")
+            .initializer("new $T<>(16, 0.75f, true)", LinkedHashMap.class)
+            .build();
+        var fieldHits = FieldSpec.builder(LongAdder.class, "hits", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("new $T()", LongAdder.class)
+            .build();
+        var fieldMisses = FieldSpec.builder(LongAdder.class, "misses", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("new $T()", LongAdder.class)
+            .build();
+        var fieldEvictions = FieldSpec.builder(LongAdder.class, "evictions", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer("new $T()", LongAdder.class)
+            .build();
+
+        var constructor = MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PRIVATE)
+            .build();
+
+        String paramLanguage = "language";
+        String paramQueryString = "queryString";
+        var methodCreateQuery = MethodSpec.methodBuilder("createQuery")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .returns(classQuery)
+            .addParameter(classLanguage, paramLanguage)
+            .addParameter(String.class, paramQueryString)
+            .beginControlFlow("try")
+            .addStatement("return new $T($N, $N)", classQuery, paramLanguage, paramQueryString)
+            .nextControlFlow("catch ($T e)", RuntimeException.class)
+            .addStatement("throw new $T(\"Failed creating query; verify that children and fields are specified in the right order; if you expect the query to be valid please report this to the jtreesitter-type-gen maintainers; query string:\\n\\t\" + $N, e)", RuntimeException.class, paramQueryString)
+            .endControlFlow()
+            .build();
+
+        String varIterator = "iterator";
+        String varEntry = "entry";
+        var methodEvictExcess = MethodSpec.methodBuilder("evictExcessEntries")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(int.class, "maxSize")
+            .addComment("Caller must hold lock of `$N`", fieldEntries)
+            .addStatement("var $N = $N.values().iterator()", varIterator, fieldEntries)
+            .beginControlFlow("while ($N.size() > maxSize && $N.hasNext())", fieldEntries, varIterator)
+            .addComment("Least recently used entries come first")
+            .addStatement("var $N = $N.next()", varEntry, varIterator)
+            .addStatement("$N.remove()", varIterator)
+            .addStatement("$N.increment()", fieldEvictions)
+            .addStatement("$N.$N = true", varEntry, fieldEntryIsEvicted)
+            .beginControlFlow("if ($N.$N == 0)", varEntry, fieldEntryRefCount)
+            .addStatement("$N.$N.close()", varEntry, fieldEntryQuery)
+            .endControlFlow()
+            .endControlFlow()
+            .build();
+
+        String varKey = "key";
+        String varQuery = "query";
+        var methodAcquire = MethodSpec.methodBuilder(nodeUtils.methodAcquireQuery())
+            .addModifiers(Modifier.STATIC)
+            .returns(classEntry)
+            .addParameter(classLanguage, paramLanguage)
+            .addParameter(String.class, paramQueryString)
+            .addJavadoc("Returns the cached query, or creates it. The returned entry must be {@linkplain #$N released} once it is not used anymore.", nodeUtils.methodReleaseQuery())
+            .addStatement("var $N = new $T($N, $N)", varKey, classKey, paramLanguage, paramQueryString)
+            .beginControlFlow("synchronized ($N)", fieldEntries)
+            .addStatement("var $N = $N.get($N)", varEntry, fieldEntries, varKey)
+            .beginControlFlow("if ($N != null)", varEntry)
+            .addStatement("$N.increment()", fieldHits)
+            .addStatement("$N.$N++", varEntry, fieldEntryRefCount)
+            .addStatement("return $N", varEntry)
+            .endControlFlow()
+            .endControlFlow()
+            .addCode("\n")
+            .addStatement("$N.increment()", fieldMisses)
+            .addComment("Create the query without holding the lock, because this can be expensive for large queries")
+            .addStatement("var $N = $N($N, $N)", varQuery, methodCreateQuery, paramLanguage, paramQueryString)
+            .beginControlFlow("synchronized ($N)", fieldEntries)
+            .addStatement("var $N = $N.get($N)", varEntry, fieldEntries, varKey)
+            .beginControlFlow("if ($N != null)", varEntry)
+            .addComment("Another thread has created the same query concurrently; prefer the cached one")
+            .addStatement("$N.close()", varQuery)
+            .nextControlFlow("else")
+            .addStatement("$N = new $T($N)", varEntry, classEntry, varQuery)
+            .beginControlFlow("if ($N > 0)", fieldMaxSize)
+            .addStatement("$N.put($N, $N)", fieldEntries, varKey, varEntry)
+            .addStatement("$N($N)", methodEvictExcess, fieldMaxSize)
+            .nextControlFlow("else")
+            .addComment("Caching is disabled")
+            .addStatement("$N.$N = true", varEntry, fieldEntryIsEvicted)
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("$N.$N++", varEntry, fieldEntryRefCount)
+            .addStatement("return $N", varEntry)
+            .endControlFlow()
+            .build();
+
+        String paramEntry = "entry";
+        var methodRelease = MethodSpec.methodBuilder(nodeUtils.methodReleaseQuery())
+            .addModifiers(Modifier.STATIC)
+            .addParameter(classEntry, paramEntry)
+            .addJavadoc("Releases an entry obtained from {@link #$N}, closing its query if it is not cached anymore and not used", methodAcquire)
+            .addJavadoc("\nby any other typed query.")
+            .beginControlFlow("synchronized ($N)", fieldEntries)
+            .addStatement("$N.$N--", paramEntry, fieldEntryRefCount)
+            .beginControlFlow("if ($N.$N == 0 && $N.$N)", paramEntry, fieldEntryRefCount, paramEntry, fieldEntryIsEvicted)
+            .addStatement("$N.$N.close()", paramEntry, fieldEntryQuery)
+            .endControlFlow()
+            .endControlFlow()
+            .build();
+
+        var queryCacheBuilder = TypeSpec.classBuilder(classQueryCache)
+            .addModifiers(Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Cache of compiled jtreesitter queries, keyed by the language and the query string. It is shared by all users of")
+            .addJavadoc("\nqueries in the generated code, for example the query-based {@code findNodes} methods and typed queries.")
+            .addJavadoc("\nThe least recently used queries are evicted once the cache exceeds its maximum size, which bounds the number of")
+            .addJavadoc("\nqueries and languages it keeps reachable.")
+            .addJavadoc("\n\n<p>Users of a query {@linkplain #$N acquire} it and {@linkplain #$N release} it once they don't use it anymore.", methodAcquire, methodRelease)
+            .addJavadoc("\nA compiled query is closed once it has been evicted and all users have released it.")
+            .addJavadoc("\nAll methods of this class are thread-safe.")
+            .addType(keyType)
+            .addType(entryType)
+            .addField(fieldMaxSize)
+            .addField(fieldEntries)
+            .addField(fieldHits)
+            .addField(fieldMisses)
+            .addField(fieldEvictions)
+            .addMethod(constructor)
+            .addMethod(methodCreateQuery)
+            .addMethod(methodEvictExcess)
+            .addMethod(methodAcquire)
+            .addMethod(methodRelease);
+
+        // The methods for managing the cache are only used by the public typed query API
+        if (codeGenHelper.generatesTypedQuery()) {
+            var methodGetMaxSize = MethodSpec.methodBuilder("getMaxSize")
+                .addModifiers(Modifier.STATIC)
+                .returns(int.class)
+                .beginControlFlow("synchronized ($N)", fieldEntries)
+                .addStatement("return $N", fieldMaxSize)
+                .endControlFlow()
+                .build();
+
+            String paramMaxSize = "maxSize";
+            var methodSetMaxSize = MethodSpec.methodBuilder("setMaxSize")
+                .addModifiers(Modifier.STATIC)
+                .addParameter(int.class, paramMaxSize)
+                .addStatement("if ($N < 0) throw new $T(\"Max size must not be negative: \" + $N)", paramMaxSize, IllegalArgumentException.class, paramMaxSize)
+                .beginControlFlow("synchronized ($N)", fieldEntries)
+                .addStatement("$T.$N = $N", classQueryCache, fieldMaxSize, paramMaxSize)
+                .addStatement("$N($N)", methodEvictExcess, paramMaxSize)
+                .endControlFlow()
+                .build();
+
+            var methodClear = MethodSpec.methodBuilder("clear")
+                .addModifiers(Modifier.STATIC)
+                .beginControlFlow("synchronized ($N)", fieldEntries)
+                .addStatement("$N(0)", methodEvictExcess)
+                .endControlFlow()
+                .build();
+
+            var methodSize = MethodSpec.methodBuilder("size")
+                .addModifiers(Modifier.STATIC)
+                .returns(int.class)
+                .beginControlFlow("synchronized ($N)", fieldEntries)
+                .addStatement("return $N.size()", fieldEntries)
+                .endControlFlow()
+                .build();
+
+            var methodGetHitCount = MethodSpec.methodBuilder("getHitCount")
+                .addModifiers(Modifier.STATIC)
+                .returns(long.class)
+                .addStatement("return $N.sum()", fieldHits)
+                .build();
+
+            var methodGetMissCount = MethodSpec.methodBuilder("getMissCount")
+                .addModifiers(Modifier.STATIC)
+                .returns(long.class)
+                .addStatement("return $N.sum()", fieldMisses)
+                .build();
+
+            var methodGetEvictionCount = MethodSpec.methodBuilder("getEvictionCount")
+                .addModifiers(Modifier.STATIC)
+                .returns(long.class)
+                .addStatement("return $N.sum()", fieldEvictions)
+                .build();
+
+            queryCacheBuilder
+                .addMethod(methodGetMaxSize)
+                .addMethod(methodSetMaxSize)
+                .addMethod(methodClear)
+                .addMethod(methodSize)
+                .addMethod(methodGetHitCount)
+                .addMethod(methodGetMissCount)
+                .addMethod(methodGetEvictionCount);
+        }
+        typeBuilder.addType(queryCacheBuilder.build());
+    }
+
+    /**
+     * Generates the cursor-based {@code findNodes} implementation, which is used by the {@code findNodes} methods
+     * of the typed node classes. Based on the bit sets computed by {@link NodeTypeReachability} it skips subtrees
+     * which cannot contain the searched nodes.
+     */
+    private void generateFindNodesMethod(TypeSpec.Builder typeBuilder) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterNodeClass = jtreesitterNode.className();
+        var jtreesitterCursor = jtreesitter.treeCursor();
+        var languageUtils = codeGenHelper.languageUtilsConfig();
+        var queryOptions = codeGenHelper.queryOptionsConfig();
+
+        String bitSetParam = "bitSet";
+        String typeIndexParam = "typeIndex";
+        var isTypeIndexSetMethod = MethodSpec.methodBuilder("isTypeIndexSet")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(long[].class, bitSetParam)
+            .addParameter(int.class, typeIndexParam)
+            .returns(boolean.class)
+            .addStatement("return ($N[$N >>> 6] & (1L << $N)) != 0", bitSetParam, typeIndexParam, typeIndexParam)
+            .build();
+        typeBuilder.addMethod(isTypeIndexSetMethod);
+
+        String startNodeParam = "startNode";
+        var allocatorParam = ParameterSpec.builder(codeGenHelper.getNullableType(codeGenHelper.ffmApiConfig().classSegmentAllocator()), "allocator")
+            .addJavadoc("allocator for the found nodes; if {@code null} the nodes can only be used until the stream is closed\n")  // trailing '\n' due to https://github.com/palantir/javapoet/issues/128
+            .build();
+        var optionsParam = ParameterSpec.builder(queryOptions.className(), "options")
+            .addJavadoc("options restricting which nodes are considered; the match limit has no effect here, but timeout and cancellation do\n")
+            .build();
+        var matchingTypesParam = ParameterSpec.builder(long[].class, "matchingTypes")
+            .addJavadoc("bit set of the type indices of the nodes to find\n")
+            .build();
+        var containingTypesParam = ParameterSpec.builder(long[].class, "containingTypes")
+            .addJavadoc("bit set of the type indices of the nodes which can contain the nodes to find")
+            .build();
+
+        String typeIndicesVar = "typeIndices";
+        CodeBlock typeIndicesCode;
+        if (languageUtils != null) {
+            typeIndicesCode = CodeBlock.of("$T.$N()", languageUtils.className(), languageUtils.methodGetTypeIndices());
+        } else {
+            typeIndicesCode = CodeBlock.of("$T.forNode($N).$N", codeGenHelper.nodeUtilsConfig().className().nestedClass("LanguageIds"), startNodeParam, LANGUAGE_IDS_FIELD_TYPE_INDICES);
+        }
+
+        String maxStartDepthVar = "maxStartDepth";
+        String executionMonitorVar = "executionMonitor";
+        String cursorVar = "cursor";
+        String scratchAllocatorVar = "scratchAllocator";
+        String spliteratorVar = "spliterator";
+        String visitedCurrentField = "visitedCurrent";
+        String doneField = "done";
+        String actionParam = "action";
+        String nodeVar = "node";
+        String typeIdVar = "typeId";
+        String typeIndexVar = "typeIndex";
+        String foundNodeVar = "foundNode";
+        String isMatchingVar = "isMatching";
+        String mightContainVar = "mightContainMatches";
+        var tryAdvanceMethod = MethodSpec.methodBuilder("tryAdvance")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Consumer.class), WildcardTypeName.supertypeOf(jtreesitterNodeClass)), actionParam)
+            .returns(boolean.class)
+            .beginControlFlow("while (!$N)", doneField)
+            .beginControlFlow("if ($N != null && $N.$N())", executionMonitorVar, executionMonitorVar, queryOptions.methodShouldStop())
+            .addStatement("$N = true", doneField)
+            .addStatement("$N.$N()", executionMonitorVar, queryOptions.methodThrowIfStopped())
+            .endControlFlow()
+            .beginControlFlow("if ($N)", visitedCurrentField)
+            .addComment("Current node and its subtree have been visited; continue with next sibling, or with parent")
+            .addComment("The cursor cannot move outside the subtree of the start node")
+            .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
+            .addStatement("$N = false", visitedCurrentField)
+            .nextControlFlow("else if (!$N.$N())", cursorVar, jtreesitterCursor.methodGotoParent())
+            .addStatement("$N = true", doneField)
+            .endControlFlow()
+            .addStatement("continue")
+            .endControlFlow()
+            .addCode("\n")
+            .addStatement("$N = true", visitedCurrentField)
+            .addComment("Only inspect the node with the scratch allocator; nodes are only created for found nodes")
+            .addStatement("var $N = $N.$N($N)", nodeVar, cursorVar, jtreesitterCursor.methodGetCurrentNode(), scratchAllocatorVar)
+            .beginControlFlow("if (!$N.$N($N))", optionsParam, queryOptions.methodIntersects(), nodeVar)
+            .addComment("Skip the node and its subtree, none of its descendants intersect the range either")
+            .addStatement("continue")
+            .endControlFlow()
+            .addStatement("int $N = $T.toUnsignedInt($N.$N())", typeIdVar, Short.class, nodeVar, jtreesitterNode.methodGetTypeId())
+            .addStatement("int $N = $N < $N.length ? $N[$N] : -1", typeIndexVar, typeIdVar, typeIndicesVar, typeIndicesVar, typeIdVar)
+            .addStatement("boolean $N = $N >= 0 && $N($N, $N)", isMatchingVar, typeIndexVar, isTypeIndexSetMethod, matchingTypesParam, typeIndexVar)
+            .addComment("Nodes of unknown type (e.g. error nodes) and nodes containing errors might contain any other nodes")
+            .addStatement("boolean $N = $N < 0 || $N($N, $N) || $N.$N()", mightContainVar, typeIndexVar, isTypeIndexSetMethod, containingTypesParam, typeIndexVar, nodeVar, jtreesitterNode.methodHasError())
+            .addComment("Create the found node before moving the cursor")
+            .addStatement("$T $N = null", codeGenHelper.getNullableType(jtreesitterNodeClass), foundNodeVar)
+            .beginControlFlow("if ($N)", isMatchingVar)
+            .addStatement("$N = $N == null ? $N.$N() : $N.$N($N)", foundNodeVar, allocatorParam, cursorVar, jtreesitterCursor.methodGetCurrentNode(), cursorVar, jtreesitterCursor.methodGetCurrentNode(), allocatorParam)
+            .endControlFlow()
+            .beginControlFlow("if ($N)", mightContainVar)
+            .addComment("Nodes below the max start depth (if any) are not considered")
+            .beginControlFlow("if (($N < 0 || $N.$N() < $N) && $N.$N())", maxStartDepthVar, cursorVar, jtreesitterCursor.methodGetCurrentDepth(), maxStartDepthVar, cursorVar, jtreesitterCursor.methodGotoFirstChild())
+            .addStatement("$N = false", visitedCurrentField)
+            .endControlFlow()
+            .endControlFlow()
+            .beginControlFlow("if ($N != null)", foundNodeVar)
+            .addStatement("$N.accept($N)", actionParam, foundNodeVar)
+            .addStatement("return true")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return false")
+            .build();
+
+        var spliteratorType = TypeSpec.anonymousClassBuilder("$T.MAX_VALUE, $T.ORDERED | $T.NONNULL", Long.class, Spliterator.class, Spliterator.class)
+            .superclass(ParameterizedTypeName.get(ClassName.get(Spliterators.AbstractSpliterator.class), jtreesitterNodeClass))
+            .addField(FieldSpec.builder(boolean.class, visitedCurrentField, Modifier.PRIVATE)
+                .addJavadoc("Whether the node the cursor currently points to has already been visited")
+                .initializer("false")
+                .build()
+            )
+            .addField(FieldSpec.builder(boolean.class, doneField, Modifier.PRIVATE).initializer("false").build())
+            .addMethod(tryAdvanceMethod)
+            .build();
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(codeGenHelper.nodeUtilsConfig().methodFindNodes())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNodeClass, startNodeParam)
+            .addParameter(allocatorParam)
+            .addParameter(optionsParam)
+            .addParameter(matchingTypesParam)
+            .addParameter(containingTypesParam)
+            .returns(ParameterizedTypeName.get(ClassName.get(Stream.class), jtreesitterNodeClass))
+            .addJavadoc("Finds all nodes of the given types, starting at the given node, by walking the tree with a tree cursor.")
+            .addJavadoc("\nSubtrees whose root node cannot contain the nodes to find, or which are outside the range of the options, are skipped.")
+            .addJavadoc("\nThe type indices are the ones known at code generation time.")
+            .addStatement("var $N = $L", typeIndicesVar, typeIndicesCode)
+            .addStatement("int $N = $N.$N()", maxStartDepthVar, optionsParam, queryOptions.methodGetMaxStartDepth())
+            .addStatement("var $N = $N.$N()", executionMonitorVar, optionsParam, queryOptions.methodStartExecution())
+            .addStatement("var $N = $N.$N()", cursorVar, startNodeParam, jtreesitterNode.methodWalk())
+            .addComment("Separate scratch allocator per stream, because the thread's one might be used while the stream is consumed")
+            .addStatement("var $N = $T.$N()", scratchAllocatorVar, codeGenHelper.nodeUtilsConfig().classCursorCache(), CURSOR_CACHE_METHOD_CREATE_SCRATCH_ALLOCATOR)
+            .addStatement("var $N = $L", spliteratorVar, spliteratorType)
+            .addStatement("return $T.stream($N, false).onClose($N::close)", StreamSupport.class, spliteratorVar, cursorVar)
+            .build()
+        );
+    }
+
     public JavaFile generateCode() {
         var javaTypeName = codeGenHelper.nodeUtilsConfig().className();
         var typeBuilder = TypeSpec.classBuilder(javaTypeName)
@@ -249,10 +1852,40 @@ public class NodeUtilsGenerator {
             .addJavadoc("Internal helper class.");
 
         typeBuilder.addMethod(generateFromNodeThrowingMethod());
-        typeBuilder.addMethod(generateGetNonFieldChildrenMethod());
-        generateMapChildrenNamedNonNamedMethods(typeBuilder);
+        if (codeGenHelper.generatesAllocationSessions()) {
+            generateSessionAllocatorMethods(typeBuilder);
+        }
+        generateGetNonFieldChildrenMethods(typeBuilder);
+        typeBuilder.addMethod(generateCountNonFieldChildrenMethod(false));
+        typeBuilder.addMethod(generateCountNonFieldChildrenMethod(true));
+        var getFieldChildrenMethod = generateGetFieldChildrenMethod();
+        typeBuilder.addMethod(getFieldChildrenMethod);
+        if (codeGenHelper.generatesAllocationSessions()) {
+            typeBuilder.addMethod(generateGetFieldChildrenSessionMethod(getFieldChildrenMethod));
+        }
+        var getFieldChildMethod = generateGetFieldChildMethod();
+        typeBuilder.addMethod(getFieldChildMethod);
+        if (codeGenHelper.generatesAllocationSessions()) {
+            typeBuilder.addMethod(generateGetFieldChildSessionMethod(getFieldChildMethod));
+        }
+        typeBuilder.addMethod(generateCountFieldChildrenMethod());
+        generateCursorCacheClass(typeBuilder);
+        generateSourceTextClass(typeBuilder);
 
         generateNodeListConverterMethods(typeBuilder);
+        if (codeGenHelper.generatesLazyChildrenLists()) {
+            generateChildrenListViewClass(typeBuilder);
+        }
+
+        if (codeGenHelper.languageUtilsConfig() == null) {
+            generateLanguageIdsCache(typeBuilder);
+        }
+        if (codeGenHelper.generatesCursorFindNodesMethods()) {
+            generateFindNodesMethod(typeBuilder);
+        }
+        if (codeGenHelper.generatesQueryCache()) {
+            generateQueryCacheClass(typeBuilder);
+        }
 
         return codeGenHelper.createJavaFile(typeBuilder, javaTypeName);
     }
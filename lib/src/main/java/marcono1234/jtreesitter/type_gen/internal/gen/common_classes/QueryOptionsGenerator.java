@@ -0,0 +1,489 @@
+package marcono1234.jtreesitter.type_gen.internal.gen.common_classes;
+
+import com.palantir.javapoet.*;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.TypeNameCreator;
+
+import javax.lang.model.element.Modifier;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper.createNonNullCheck;
+
+/**
+ * Code generator for the {@code QueryOptions} class, which restricts the nodes considered by the {@code findNodes}
+ * methods and by the typed query. Only generated if either of them is generated, see
+ * {@link CodeGenHelper#generatesQueryOptions()}.
+ */
+public class QueryOptionsGenerator {
+    public record Config(
+        ClassName className,
+        String fieldDefault,
+        String methodWithByteRange,
+        String methodWithPointRange,
+        String methodWithMaxStartDepth,
+        String methodWithMatchLimit,
+        String methodWithTimeout,
+        String methodWithCancellationToken,
+        // Token for cancelling an execution
+        ClassName classCancellationToken, String methodCancel, String methodIsCancelled,
+        // Internal methods and classes, used by the generated code
+        String methodApplyTo,
+        String methodResetOn,
+        String methodStartExecution,
+        ClassName classExecutionMonitor, String methodShouldStop, String methodThrowIfStopped, String methodWrapStream,
+        // Only generated for the cursor-based `findNodes` implementation
+        String methodIntersects,
+        String methodGetMaxStartDepth
+    ) {
+        public static Config createDefault(TypeNameCreator typeNameCreator) {
+            var className = typeNameCreator.createOwnClassName("QueryOptions");
+            return new Config(
+                className,
+                "DEFAULT",
+                "withByteRange",
+                "withPointRange",
+                "withMaxStartDepth",
+                "withMatchLimit",
+                "withTimeout",
+                "withCancellationToken",
+                className.nestedClass("CancellationToken"), "cancel", "isCancelled",
+                "applyTo",
+                "resetOn",
+                "startExecution",
+                className.nestedClass("ExecutionMonitor"), "shouldStop", "throwIfStopped", "wrapStream",
+                "intersects",
+                "getMaxStartDepth"
+            );
+        }
+    }
+
+    private final CodeGenHelper codeGenHelper;
+    private final Config config;
+
+    public QueryOptionsGenerator(CodeGenHelper codeGenHelper) {
+        this.codeGenHelper = codeGenHelper;
+        this.config = codeGenHelper.queryOptionsConfig();
+    }
+
+    private void generateJavadoc(TypeSpec.Builder typeBuilder) {
+        typeBuilder.addJavadoc("Options restricting which nodes are considered when searching nodes");
+        if (codeGenHelper.generatesFindNodesMethods()) {
+            typeBuilder.addJavadoc(" with the {@code $N} methods of the typed nodes", codeGenHelper.typedNodeConfig().methodFindNodes());
+            if (codeGenHelper.generatesTypedQuery()) {
+                typeBuilder.addJavadoc(",\nor");
+            }
+        }
+        if (codeGenHelper.generatesTypedQuery()) {
+            typeBuilder.addJavadoc(" when executing a typed query");
+        }
+        typeBuilder.addJavadoc(". Restricting the search to the relevant part of the tree avoids")
+            .addJavadoc("\nvisiting nodes which are not of interest, for example when only the visible part of a large file is needed.")
+            .addJavadoc("\nThe options can also limit the execution time, with a timeout or a cancellation token.")
+            .addJavadoc("\n\n<p>Instances are immutable; the {@code with...} methods return a new instance. Start with {@link #$N}.", config.fieldDefault())
+            .addJavadoc("\n\n<h2>Example</h2>")
+            .addJavadoc("\n{@snippet lang=java :")
+            .addJavadoc("\nvar options = $T.$N.$N(startByte, endByte).$N(2);", config.className(), config.fieldDefault(), config.methodWithByteRange(), config.methodWithMaxStartDepth())
+            .addJavadoc("\n}");
+    }
+
+    /**
+     * Creates a {@code return new QueryOptions(...)} statement which uses the values of the current fields, except for
+     * the fields in {@code replacements}, for which the value of the mapped variable is used instead.
+     */
+    private CodeBlock createNewInstanceCode(FieldSpec[] allFields, Map<FieldSpec, String> replacements) {
+        var args = Arrays.stream(allFields)
+            .map(f -> CodeBlock.of("$N", replacements.getOrDefault(f, f.name())))
+            .collect(CodeBlock.joining(", "));
+        return CodeBlock.of("return new $T($L)", config.className(), args);
+    }
+
+    private void generateBody(TypeSpec.Builder typeBuilder) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var queryCursor = jtreesitter.queryCursor();
+        var jtreesitterQueryCursor = queryCursor.className();
+        var pointClass = jtreesitter.classPoint();
+        var nullablePointType = codeGenHelper.getNullableType(pointClass);
+        var className = config.className();
+
+        var startByteField = FieldSpec.builder(int.class, "startByte", Modifier.PRIVATE, Modifier.FINAL).build();
+        var endByteField = FieldSpec.builder(int.class, "endByte", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("-1 if there is no byte range")
+            .build();
+        var startPointField = FieldSpec.builder(nullablePointType, "startPoint", Modifier.PRIVATE, Modifier.FINAL).build();
+        var endPointField = FieldSpec.builder(nullablePointType, "endPoint", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("{@code null} if there is no point range")
+            .build();
+        var maxStartDepthField = FieldSpec.builder(int.class, "maxStartDepth", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("-1 if unlimited")
+            .build();
+        var matchLimitField = FieldSpec.builder(int.class, "matchLimit", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("-1 if the tree-sitter default should be used")
+            .build();
+        var timeoutNanosField = FieldSpec.builder(long.class, "timeoutNanos", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("-1 if there is no timeout")
+            .build();
+        var cancellationTokenField = FieldSpec.builder(codeGenHelper.getNullableType(config.classCancellationToken()), "cancellationToken", Modifier.PRIVATE, Modifier.FINAL).build();
+        var allFields = new FieldSpec[] {startByteField, endByteField, startPointField, endPointField, maxStartDepthField, matchLimitField, timeoutNanosField, cancellationTokenField};
+
+        typeBuilder.addField(FieldSpec.builder(className, config.fieldDefault(), Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Default options, which do not restrict the search.")
+            .initializer("new $T(0, -1, null, null, -1, -1, -1, null)", className)
+            .build()
+        );
+        for (var field : allFields) {
+            typeBuilder.addField(field);
+        }
+        typeBuilder.addMethod(CodeGenHelper.createInitializingConstructorBuilder(allFields)
+            .addModifiers(Modifier.PRIVATE)
+            .build()
+        );
+
+        String startByteParam = "startByte";
+        String endByteParam = "endByte";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodWithByteRange())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(int.class, startByteParam)
+            .addParameter(int.class, endByteParam)
+            .returns(className)
+            .addJavadoc("Returns options which only consider nodes intersecting the given byte range.")
+            .addJavadoc("\n\n@param $N start byte, inclusive", startByteParam)
+            .addJavadoc("\n@param $N end byte, exclusive", endByteParam)
+            .addJavadoc("\n@throws $T if the range is invalid", IllegalArgumentException.class)
+            .beginControlFlow("if ($N < 0 || $N < $N)", startByteParam, endByteParam, startByteParam)
+            .addStatement("throw new $T(\"Invalid byte range: \" + $N + \", \" + $N)", IllegalArgumentException.class, startByteParam, endByteParam)
+            .endControlFlow()
+            .addStatement(createNewInstanceCode(allFields, Map.of(startByteField, startByteParam, endByteField, endByteParam)))
+            .build()
+        );
+
+        String startPointParam = "startPoint";
+        String endPointParam = "endPoint";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodWithPointRange())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(pointClass, startPointParam)
+            .addParameter(pointClass, endPointParam)
+            .returns(className)
+            .addJavadoc("Returns options which only consider nodes intersecting the given point (row and column) range.")
+            .addJavadoc("\n\n@param $N start point, inclusive", startPointParam)
+            .addJavadoc("\n@param $N end point, exclusive", endPointParam)
+            .addJavadoc("\n@throws $T if the range is invalid", IllegalArgumentException.class)
+            .addStatement(createNonNullCheck(startPointParam))
+            .addStatement(createNonNullCheck(endPointParam))
+            .beginControlFlow("if ($N.compareTo($N) > 0)", startPointParam, endPointParam)
+            .addStatement("throw new $T(\"Invalid point range: \" + $N + \", \" + $N)", IllegalArgumentException.class, startPointParam, endPointParam)
+            .endControlFlow()
+            .addStatement(createNewInstanceCode(allFields, Map.of(startPointField, startPointParam, endPointField, endPointParam)))
+            .build()
+        );
+
+        String maxStartDepthParam = "maxStartDepth";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodWithMaxStartDepth())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(int.class, maxStartDepthParam)
+            .returns(className)
+            .addJavadoc("Returns options which only consider nodes up to the given depth below the start node. The start node")
+            .addJavadoc("\nitself has depth 0, so a max start depth of 0 only considers the start node.")
+            .addJavadoc("\n\n@throws $T if the depth is negative", IllegalArgumentException.class)
+            .beginControlFlow("if ($N < 0)", maxStartDepthParam)
+            .addStatement("throw new $T(\"Invalid max start depth: \" + $N)", IllegalArgumentException.class, maxStartDepthParam)
+            .endControlFlow()
+            .addStatement(createNewInstanceCode(allFields, Map.of(maxStartDepthField, maxStartDepthParam)))
+            .build()
+        );
+
+        String matchLimitParam = "matchLimit";
+        var withMatchLimitMethod = MethodSpec.methodBuilder(config.methodWithMatchLimit())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(int.class, matchLimitParam)
+            .returns(className)
+            .addJavadoc("Returns options with the given maximum number of in-progress matches of the tree-sitter query.")
+            .addJavadoc("\nIf this limit is exceeded, tree-sitter drops the oldest in-progress matches, so some matches might be missing.")
+            .addJavadoc("\nA low limit reduces the memory usage and time spent on complex queries which have many in-progress matches.");
+        if (codeGenHelper.generatesCursorFindNodesMethods()) {
+            // The cursor-based `findNodes` implementation does not use a query, so there are no in-progress matches
+            withMatchLimitMethod.addJavadoc("\n\n<p>Has no effect on the {@code $N} methods of the typed nodes, since they don't use a query.", codeGenHelper.typedNodeConfig().methodFindNodes());
+        }
+        typeBuilder.addMethod(withMatchLimitMethod
+            .addJavadoc("\n\n@throws $T if the limit is not positive", IllegalArgumentException.class)
+            .beginControlFlow("if ($N <= 0)", matchLimitParam)
+            .addStatement("throw new $T(\"Invalid match limit: \" + $N)", IllegalArgumentException.class, matchLimitParam)
+            .endControlFlow()
+            .addStatement(createNewInstanceCode(allFields, Map.of(matchLimitField, matchLimitParam)))
+            .build()
+        );
+
+        String timeoutParam = "timeout";
+        String timeoutNanosVar = "timeoutNanos";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodWithTimeout())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(Duration.class, timeoutParam)
+            .returns(className)
+            .addJavadoc("Returns options which stop the execution once the given time has elapsed since it was started.")
+            .addJavadoc("\nThe nodes found until then are still provided, but afterwards the {@code Stream} throws a {@link $T}", CancellationException.class)
+            .addJavadoc("\ninstead of ending normally, so that an incomplete result can be distinguished from a complete one.")
+            .addJavadoc("\n\n@throws $T if the timeout is not positive", IllegalArgumentException.class)
+            .addStatement(createNonNullCheck(timeoutParam))
+            .beginControlFlow("if ($N.isNegative() || $N.isZero())", timeoutParam, timeoutParam)
+            .addStatement("throw new $T(\"Invalid timeout: \" + $N)", IllegalArgumentException.class, timeoutParam)
+            .endControlFlow()
+            .addStatement("long $N", timeoutNanosVar)
+            .beginControlFlow("try")
+            .addStatement("$N = $N.toNanos()", timeoutNanosVar, timeoutParam)
+            .nextControlFlow("catch ($T e)", ArithmeticException.class)
+            .addComment("Timeout is too large to be represented in nanoseconds, so effectively there is no timeout")
+            .addStatement("$N = $T.MAX_VALUE", timeoutNanosVar, Long.class)
+            .endControlFlow()
+            .addStatement(createNewInstanceCode(allFields, Map.of(timeoutNanosField, timeoutNanosVar)))
+            .build()
+        );
+
+        String cancellationTokenParam = "cancellationToken";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodWithCancellationToken())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(config.classCancellationToken(), cancellationTokenParam)
+            .returns(className)
+            .addJavadoc("Returns options which stop the execution once the given token has been cancelled, for example from")
+            .addJavadoc("\na different thread. The nodes found until then are still provided, but afterwards the {@code Stream} throws")
+            .addJavadoc("\na {@link $T} instead of ending normally.", CancellationException.class)
+            .addStatement(createNonNullCheck(cancellationTokenParam))
+            .addStatement(createNewInstanceCode(allFields, Map.of(cancellationTokenField, cancellationTokenParam)))
+            .build()
+        );
+
+        String queryCursorParam = "queryCursor";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodApplyTo())
+            .addParameter(jtreesitterQueryCursor, queryCursorParam)
+            .addJavadoc("Applies these options to the query cursor. Only sets the options which differ from the defaults, to")
+            .addJavadoc("\navoid native calls for the common case that no options are used.")
+            .beginControlFlow("if ($N != -1)", endByteField)
+            .addStatement("$N.$N($N, $N)", queryCursorParam, queryCursor.methodSetByteRange(), startByteField, endByteField)
+            .endControlFlow()
+            .beginControlFlow("if ($N != null)", endPointField)
+            .addStatement("$N.$N($N, $N)", queryCursorParam, queryCursor.methodSetPointRange(), startPointField, endPointField)
+            .endControlFlow()
+            .beginControlFlow("if ($N != -1)", maxStartDepthField)
+            .addStatement("$N.$N($N)", queryCursorParam, queryCursor.methodSetMaxStartDepth(), maxStartDepthField)
+            .endControlFlow()
+            .beginControlFlow("if ($N != -1)", matchLimitField)
+            .addStatement("$N.$N($N)", queryCursorParam, queryCursor.methodSetMatchLimit(), matchLimitField)
+            .endControlFlow()
+            .build()
+        );
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodResetOn())
+            .addParameter(jtreesitterQueryCursor, queryCursorParam)
+            .addJavadoc("Resets the options previously applied with {@link #$N} to the defaults, so that the query cursor", config.methodApplyTo())
+            .addJavadoc("\ncan be reused.")
+            .beginControlFlow("if ($N != -1)", endByteField)
+            .addComment("0 and -1 (as unsigned int) are the tree-sitter defaults")
+            .addStatement("$N.$N(0, -1)", queryCursorParam, queryCursor.methodSetByteRange())
+            .endControlFlow()
+            .beginControlFlow("if ($N != null)", endPointField)
+            .addStatement("$N.$N($T.MIN, $T.MAX)", queryCursorParam, queryCursor.methodSetPointRange(), pointClass, pointClass)
+            .endControlFlow()
+            .beginControlFlow("if ($N != -1)", maxStartDepthField)
+            .addStatement("$N.$N(-1)", queryCursorParam, queryCursor.methodSetMaxStartDepth())
+            .endControlFlow()
+            .beginControlFlow("if ($N != -1)", matchLimitField)
+            .addStatement("$N.$N(-1)", queryCursorParam, queryCursor.methodSetMatchLimit())
+            .endControlFlow()
+            .build()
+        );
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodStartExecution())
+            .returns(codeGenHelper.getNullableType(config.classExecutionMonitor()))
+            .addJavadoc("Starts an execution with these options, and returns the monitor which checks whether the execution")
+            .addJavadoc("\nshould stop; {@code null} if there is neither a timeout nor a cancellation token.")
+            .beginControlFlow("if ($N == -1 && $N == null)", timeoutNanosField, cancellationTokenField)
+            .addStatement("return null")
+            .endControlFlow()
+            .addStatement("return new $T($N, $N)", config.classExecutionMonitor(), timeoutNanosField, cancellationTokenField)
+            .build()
+        );
+
+        if (codeGenHelper.generatesCursorFindNodesMethods()) {
+            String nodeParam = "node";
+            typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodIntersects())
+                .addParameter(jtreesitterNode.className(), nodeParam)
+                .returns(boolean.class)
+                .addJavadoc("Checks whether the node intersects the byte and point range of these options, if any. If it")
+                .addJavadoc("\ndoes not, none of its descendant nodes intersect the range either.")
+                .beginControlFlow("if ($N != -1 && ($N.$N() <= $N || $N.$N() >= $N))", endByteField, nodeParam, jtreesitterNode.methodGetEndByte(), startByteField, nodeParam, jtreesitterNode.methodGetStartByte(), endByteField)
+                .addStatement("return false")
+                .endControlFlow()
+                .beginControlFlow("if ($N != null && ($N.$N().compareTo($N) <= 0 || $N.$N().compareTo($N) >= 0))", endPointField, nodeParam, jtreesitterNode.methodGetEndPoint(), startPointField, nodeParam, jtreesitterNode.methodGetStartPoint(), endPointField)
+                .addStatement("return false")
+                .endControlFlow()
+                .addStatement("return true")
+                .build()
+            );
+
+            typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodGetMaxStartDepth())
+                .returns(int.class)
+                .addJavadoc("{@return the max start depth; -1 if unlimited}")
+                .addStatement("return $N", maxStartDepthField)
+                .build()
+            );
+        }
+
+        typeBuilder.addMethod(CodeGenHelper.createToStringMethodSignature()
+            .addStatement(
+                "return $S + \"[byteRange=\" + $N + \"..\" + $N + \", pointRange=\" + $N + \"..\" + $N + \", maxStartDepth=\" + $N + \", matchLimit=\" + $N + \", timeoutNanos=\" + $N + \", cancellationToken=\" + $N + \"]\"",
+                className.simpleName(), startByteField, endByteField, startPointField, endPointField, maxStartDepthField, matchLimitField, timeoutNanosField, cancellationTokenField
+            )
+            .build()
+        );
+
+        typeBuilder.addType(generateCancellationTokenClass());
+        typeBuilder.addType(generateExecutionMonitorClass());
+    }
+
+    private TypeSpec generateCancellationTokenClass() {
+        var isCancelledField = FieldSpec.builder(boolean.class, "isCancelled", Modifier.PRIVATE, Modifier.VOLATILE).build();
+        return TypeSpec.classBuilder(config.classCancellationToken())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Token for cancelling executions which use it, see {@link $T#$N}.", config.className(), config.methodWithCancellationToken())
+            .addJavadoc("\nThe token can be shared by multiple executions. Once cancelled it remains cancelled; a new token has to be")
+            .addJavadoc("\ncreated for subsequent executions.")
+            .addJavadoc("\n\n<p>This class is thread-safe.")
+            .addField(isCancelledField)
+            .addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .build()
+            )
+            .addMethod(MethodSpec.methodBuilder(config.methodCancel())
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("Cancels all executions using this token. They stop as soon as possible, but might not stop immediately.")
+                .addStatement("$N = true", isCancelledField)
+                .build()
+            )
+            .addMethod(MethodSpec.methodBuilder(config.methodIsCancelled())
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addJavadoc("{@return whether {@link #$N} has been called}", config.methodCancel())
+                .addStatement("return $N", isCancelledField)
+                .build()
+            )
+            .build();
+    }
+
+    private TypeSpec generateExecutionMonitorClass() {
+        var queryCursorState = codeGenHelper.jtreesitterConfig().queryCursor().classNameState();
+        var cancellationTokenType = codeGenHelper.getNullableType(config.classCancellationToken());
+
+        var startNanosField = FieldSpec.builder(long.class, "startNanos", Modifier.PRIVATE, Modifier.FINAL).build();
+        var timeoutNanosField = FieldSpec.builder(long.class, "timeoutNanos", Modifier.PRIVATE, Modifier.FINAL).build();
+        var cancellationTokenField = FieldSpec.builder(cancellationTokenType, "cancellationToken", Modifier.PRIVATE, Modifier.FINAL).build();
+        var stopReasonField = FieldSpec.builder(codeGenHelper.getNullableType(ClassName.get(String.class)), "stopReason", Modifier.PRIVATE)
+            .addJavadoc("Reason why the execution was stopped; {@code null} if it has not been stopped")
+            .build();
+
+        var constructor = MethodSpec.constructorBuilder()
+            .addParameter(long.class, timeoutNanosField.name())
+            .addParameter(cancellationTokenType, cancellationTokenField.name())
+            .addStatement("this.$N = $T.nanoTime()", startNanosField, System.class)
+            .addStatement("this.$1N = $1N", timeoutNanosField)
+            .addStatement("this.$1N = $1N", cancellationTokenField)
+            .build();
+
+        var shouldStopMethod = MethodSpec.methodBuilder(config.methodShouldStop())
+            .returns(boolean.class)
+            .addJavadoc("Checks whether the execution should stop; if so the reason is recorded for {@link #$N}.", config.methodThrowIfStopped())
+            .beginControlFlow("if ($N != null && $N.$N())", cancellationTokenField, cancellationTokenField, config.methodIsCancelled())
+            .addStatement("$N = $S", stopReasonField, "Execution was cancelled")
+            .addStatement("return true")
+            .endControlFlow()
+            .addComment("Compare the elapsed time instead of computing a deadline, to be robust against `nanoTime()` overflow")
+            .beginControlFlow("if ($N != -1 && $T.nanoTime() - $N >= $N)", timeoutNanosField, System.class, startNanosField, timeoutNanosField)
+            .addStatement("$N = $S", stopReasonField, "Execution timed out")
+            .addStatement("return true")
+            .endControlFlow()
+            .addStatement("return false")
+            .build();
+
+        String stateParam = "state";
+        var testMethod = MethodSpec.methodBuilder("test")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(queryCursorState, stateParam)
+            .returns(boolean.class)
+            .addJavadoc("Progress callback of the query cursor; returning {@code true} stops the execution of the query.")
+            .addStatement("return $N()", shouldStopMethod)
+            .build();
+
+        var throwIfStoppedMethod = MethodSpec.methodBuilder(config.methodThrowIfStopped())
+            .addJavadoc("Throws a {@link $T} if the execution has been stopped.", CancellationException.class)
+            .beginControlFlow("if ($N != null)", stopReasonField)
+            .addStatement("throw new $T($N)", CancellationException.class, stopReasonField)
+            .endControlFlow()
+            .build();
+
+        var typeVar = TypeVariableName.get("T");
+        String streamParam = "stream";
+        String spliteratorVar = "spliterator";
+        String actionParam = "action";
+        var spliteratorType = TypeSpec.anonymousClassBuilder("$T.MAX_VALUE, $T.ORDERED | $T.NONNULL", Long.class, Spliterator.class, Spliterator.class)
+            .superclass(ParameterizedTypeName.get(ClassName.get(Spliterators.AbstractSpliterator.class), typeVar))
+            .addMethod(MethodSpec.methodBuilder("tryAdvance")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Consumer.class), WildcardTypeName.supertypeOf(typeVar)), actionParam)
+                .returns(boolean.class)
+                .beginControlFlow("if ($N.tryAdvance($N))", spliteratorVar, actionParam)
+                .addStatement("return true")
+                .endControlFlow()
+                .addComment("The underlying stream also ends when the execution was stopped; report that instead of")
+                .addComment("silently providing an incomplete result")
+                .addStatement("$N()", throwIfStoppedMethod)
+                .addStatement("return false")
+                .build()
+            )
+            .build();
+        var streamType = ParameterizedTypeName.get(ClassName.get(Stream.class), typeVar);
+        var wrapStreamMethod = MethodSpec.methodBuilder(config.methodWrapStream())
+            .addTypeVariable(typeVar)
+            .addParameter(streamType, streamParam)
+            .returns(streamType)
+            .addJavadoc("Wraps the stream of an execution monitored by this object, so that it throws a {@link $T} at", CancellationException.class)
+            .addJavadoc("\nthe end if the execution has been stopped. Closing the returned stream closes the given stream.")
+            .addStatement("var $N = $N.spliterator()", spliteratorVar, streamParam)
+            .addStatement("return $T.stream($L, false).onClose($N::close)", StreamSupport.class, spliteratorType, streamParam)
+            .build();
+
+        return TypeSpec.classBuilder(config.classExecutionMonitor())
+            .addModifiers(Modifier.STATIC, Modifier.FINAL)
+            .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Predicate.class), queryCursorState))
+            .addJavadoc("Monitors a single execution, and checks whether it should stop due to a timeout or cancellation.")
+            .addJavadoc("\nNot thread-safe; must only be used by the thread performing the execution.")
+            .addField(startNanosField)
+            .addField(timeoutNanosField)
+            .addField(cancellationTokenField)
+            .addField(stopReasonField)
+            .addMethod(constructor)
+            .addMethod(shouldStopMethod)
+            .addMethod(testMethod)
+            .addMethod(throwIfStoppedMethod)
+            .addMethod(wrapStreamMethod)
+            .build();
+    }
+
+    public JavaFile generateCode() {
+        var typeBuilder = TypeSpec.classBuilder(config.className())
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+
+        generateJavadoc(typeBuilder);
+        generateBody(typeBuilder);
+
+        return codeGenHelper.createJavaFile(typeBuilder, config.className());
+    }
+}
@@ -3,12 +3,12 @@ package marcono1234.jtreesitter.type_gen.internal.gen.common_classes;
 import com.palantir.javapoet.*;
 import marcono1234.jtreesitter.type_gen.internal.gen.GenJavaType;
 import marcono1234.jtreesitter.type_gen.internal.gen.GenNodeType;
-import marcono1234.jtreesitter.type_gen.internal.gen.GenRegularNodeType;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CustomMethodData;
 import org.jspecify.annotations.Nullable;
 
 import javax.lang.model.element.Modifier;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -45,7 +45,7 @@ public class TypedNodeInterfaceGenerator {
     }
 
     /** Generates the {@code fromNode} method, converting {@code Node -> TypedNode}. */
-    private MethodSpec generateMethodFromNode(List<GenNodeType> nodeTypes) {
+    private MethodSpec generateMethodFromNode() {
         var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
 
         String nodeParam = "node";
@@ -58,19 +58,8 @@ public class TypedNodeInterfaceGenerator {
             .addJavadoc("\n\n@see #$N", config.methodFromNodeThrowing());
 
         String resultVar = "result";
-        methodBuilder.beginControlFlow("var $N = switch ($N.$N())", resultVar, nodeParam, jtreesitterNode.methodGetType());
-        for (var nodeType : nodeTypes) {
-            // Only consider regular node types, because supertypes don't exist as nodes in the parsed tree
-            // TODO ^ is this correct?
-            if (nodeType instanceof GenRegularNodeType regularNodeType) {
-                ClassName nodeClass = nodeType.getJavaTypeName();
-                methodBuilder.addStatement("case $T.$N -> new $T($N)", nodeClass, regularNodeType.getTypeNameConstant(), nodeClass, nodeParam);
-            }
-        }
-        methodBuilder.addStatement("default -> null");
-        methodBuilder.endControlFlow();
-        methodBuilder.addStatement(""); // add trailing semicolon for assignment statement
-
+        // Look up typed node factory by numeric type ID, instead of comparing type name strings
+        methodBuilder.addStatement("var $N = $L", resultVar, codeGenHelper.createTypedNodeCode(nodeParam));
         codeGenHelper.addReturnOptionalStatement(methodBuilder, resultVar);
         return methodBuilder.build();
     }
@@ -111,7 +100,7 @@ public class TypedNodeInterfaceGenerator {
 
         generateInstanceMethods(typeBuilder, codeGenHelper);
 
-        typeBuilder.addMethod(generateMethodFromNode(nodeTypes));
+        typeBuilder.addMethod(generateMethodFromNode());
         typeBuilder.addMethod(generateMethodFromNodeThrowing());
 
         customMethods.forEach(m -> typeBuilder.addMethod(m.generateMethod(true)));
@@ -130,6 +119,14 @@ public class TypedNodeInterfaceGenerator {
             .build()
         );
 
+        var typedNodeKind = codeGenHelper.typedNodeKindConfig();
+        typeBuilder.addMethod(MethodSpec.methodBuilder(typedNodeKind.methodKind())
+            .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+            .returns(typedNodeKind.className())
+            .addJavadoc("Returns the kind of this node; {@link $T#$N} for typed nodes representing unnamed nodes.", typedNodeKind.className(), typedNodeKind.constantOther())
+            .build()
+        );
+
         // Generate methods which delegate to `getNode()`
         String getNodeMethodCall = config.methodGetNode() + "()";
         typeBuilder.addMethod(codeGenHelper.createNullableDelegatingGetter(jtreesitterNode.methodGetText(), ClassName.get(String.class), getNodeMethodCall)
@@ -137,6 +134,8 @@ public class TypedNodeInterfaceGenerator {
             .addJavadoc("Returns the source code of this node, if available.")
             .build());
 
+        generateTextAccessMethods(typeBuilder, codeGenHelper, getNodeMethodCall);
+
         typeBuilder.addMethod(CodeGenHelper.createDelegatingGetter(jtreesitterNode.methodGetRange(), jtreesitter.classRange(), getNodeMethodCall)
             .addModifiers(Modifier.DEFAULT)
             .addJavadoc("Returns the range of this node.")
@@ -160,8 +159,87 @@ public class TypedNodeInterfaceGenerator {
             .build());
     }
 
+    /**
+     * Generates the methods for comparing and viewing the text of the node without creating a {@code String}, based on
+     * the source code retained for the tree.
+     */
+    private void generateTextAccessMethods(TypeSpec.Builder typeBuilder, CodeGenHelper codeGenHelper, String getNodeMethodCall) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var sourceTextClass = nodeUtils.classSourceText();
+
+        String textParam = "text";
+        var textEqualsBuilder = MethodSpec.methodBuilder(config.methodTextEquals())
+            .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+            .addParameter(CharSequence.class, textParam)
+            .returns(boolean.class)
+            .addJavadoc("Returns whether the source code of this node is equal to the given text; {@code false} if the source")
+            .addJavadoc("\ncode is not available.")
+            .addStatement(CodeGenHelper.createNonNullCheck(textParam))
+            .addStatement("return $T.$N($L, $N, false)", sourceTextClass, nodeUtils.methodTextEquals(), getNodeMethodCall, textParam);
+        codeGenHelper.addRetainedSourceJavadoc(textEqualsBuilder);
+        typeBuilder.addMethod(textEqualsBuilder.build());
+
+        String prefixParam = "prefix";
+        var textStartsWithBuilder = MethodSpec.methodBuilder(config.methodTextStartsWith())
+            .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+            .addParameter(CharSequence.class, prefixParam)
+            .returns(boolean.class)
+            .addJavadoc("Returns whether the source code of this node starts with the given prefix; {@code false} if the source")
+            .addJavadoc("\ncode is not available.")
+            .addStatement(CodeGenHelper.createNonNullCheck(prefixParam))
+            .addStatement("return $T.$N($L, $N, true)", sourceTextClass, nodeUtils.methodTextEquals(), getNodeMethodCall, prefixParam);
+        codeGenHelper.addRetainedSourceJavadoc(textStartsWithBuilder);
+        typeBuilder.addMethod(textStartsWithBuilder.build());
+
+        var textHashCodeBuilder = MethodSpec.methodBuilder(config.methodTextHashCode())
+            .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+            .returns(int.class)
+            .addJavadoc("Returns the same hash code as {@link String#hashCode()} for the source code of this node; {@code 0} if the")
+            .addJavadoc("\nsource code is not available. Can for example be used together with {@link #$N} for looking up", config.methodTextEquals())
+            .addJavadoc("\nnames in a hash table.")
+            .addStatement("return $T.$N($L)", sourceTextClass, nodeUtils.methodTextHashCode(), getNodeMethodCall);
+        codeGenHelper.addRetainedSourceJavadoc(textHashCodeBuilder);
+        typeBuilder.addMethod(textHashCodeBuilder.build());
+
+        String resultVar = "result";
+        var getTextBytesBuilder = MethodSpec.methodBuilder(config.methodGetTextBytes())
+            .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+            .returns(codeGenHelper.getReturnOptionalType(ClassName.get(ByteBuffer.class)))
+            .addJavadoc("Returns a read-only view of the encoded source code of this node; $L if the source code of the tree", codeGenHelper.getEmptyOptionalJavadocText())
+            .addJavadoc("\nhas not been retained. The bytes are encoded with the charset which was specified when retaining the source code.")
+            .addStatement("var $N = $T.$N($L)", resultVar, sourceTextClass, nodeUtils.methodGetTextBytes(), getNodeMethodCall);
+        codeGenHelper.addReturnOptionalStatement(getTextBytesBuilder, resultVar);
+        typeBuilder.addMethod(getTextBytesBuilder.build());
+
+        var getTextViewBuilder = MethodSpec.methodBuilder(config.methodGetTextView())
+            .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+            .returns(codeGenHelper.getReturnOptionalType(ClassName.get(CharSequence.class)))
+            .addJavadoc("Returns the source code of this node as {@code CharSequence}, if available. For ASCII text this is a view")
+            .addJavadoc("\nof the retained source code, otherwise the text is decoded to a {@code String}.")
+            .addStatement("var $N = $T.$N($L)", resultVar, sourceTextClass, nodeUtils.methodGetTextView(), getNodeMethodCall);
+        codeGenHelper.addReturnOptionalStatement(getTextViewBuilder, resultVar);
+        codeGenHelper.addRetainedSourceJavadoc(getTextViewBuilder);
+        typeBuilder.addMethod(getTextViewBuilder.build());
+    }
+
     public record JavaFieldData(TypeName typeName, String name) {}
 
+    /**
+     * Generates the implementation of the {@code kind()} method, returning the given constant.
+     *
+     * @param kindConstant name of the {@code TypedNodeKind} constant to return
+     */
+    public static void generateKindImplementation(TypeSpec.Builder typeBuilder, CodeGenHelper codeGenHelper, String kindConstant) {
+        var typedNodeKind = codeGenHelper.typedNodeKindConfig();
+        typeBuilder.addMethod(MethodSpec.methodBuilder(typedNodeKind.methodKind())
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(Override.class)
+            .returns(typedNodeKind.className())
+            .addStatement("return $T.$N", typedNodeKind.className(), kindConstant)
+            .build()
+        );
+    }
+
     /**
      * Generates the constructor and the implementation for all abstract {@code TypedNode} methods.
      *
@@ -0,0 +1,69 @@
+package marcono1234.jtreesitter.type_gen.internal.gen.common_classes;
+
+import com.palantir.javapoet.JavaFile;
+import com.palantir.javapoet.MethodSpec;
+import com.palantir.javapoet.TypeSpec;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Code generator for the {@code TypedNodeKind} enum, which has one constant per regular node type. This allows
+ * efficiently switching over the type of a node, and representing sets of node types as {@code EnumSet}.
+ */
+public class TypedNodeKindGenerator {
+    private final CodeGenHelper codeGenHelper;
+    private final CodeGenHelper.TypedNodeKindConfig config;
+
+    public TypedNodeKindGenerator(CodeGenHelper codeGenHelper) {
+        this.codeGenHelper = codeGenHelper;
+        this.config = codeGenHelper.typedNodeKindConfig();
+    }
+
+    private void generateJavadoc(TypeSpec.Builder typeBuilder) {
+        var typedNode = codeGenHelper.typedNodeConfig();
+
+        typeBuilder.addJavadoc("Kind of a typed node, with one constant for each named node type.");
+        typeBuilder.addJavadoc("\nThe kind can be obtained with {@link $T#$N()}, or for a jtreesitter node with {@link #$N}.", typedNode.className(), config.methodKind(), config.methodOf());
+        typeBuilder.addJavadoc("\n\n<p>Switching over the kind is more efficient than pattern matching over the typed node classes,")
+            .addJavadoc("\nand sets of kinds can be represented efficiently as {@code EnumSet}.");
+    }
+
+    private MethodSpec generateMethodOf() {
+        var jtreesitterNode = codeGenHelper.jtreesitterConfig().node();
+
+        String nodeParam = "node";
+        return MethodSpec.methodBuilder(config.methodOf())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .returns(config.className())
+            .addJavadoc("Gets the kind of the jtreesitter node, based on its numeric type ID. Returns {@link #$N} if no", config.constantOther())
+            .addJavadoc("\ncorresponding typed node class exists, for example for unnamed nodes.")
+            .addStatement(CodeGenHelper.createNonNullCheck(nodeParam))
+            .addStatement("return $L", codeGenHelper.createNodeKindCode(nodeParam))
+            .build();
+    }
+
+    public JavaFile generateCode() {
+        var typeBuilder = TypeSpec.enumBuilder(config.className())
+            .addModifiers(Modifier.PUBLIC);
+
+        generateJavadoc(typeBuilder);
+
+        for (var entry : config.constantNames().entrySet()) {
+            var nodeType = entry.getKey();
+            typeBuilder.addEnumConstant(entry.getValue(), TypeSpec.anonymousClassBuilder("")
+                .addJavadoc("{@link $T $L}", nodeType.getJavaTypeName(), CodeGenHelper.escapeJavadocText(nodeType.getNodeType()))
+                .build()
+            );
+        }
+        typeBuilder.addEnumConstant(config.constantOther(), TypeSpec.anonymousClassBuilder("")
+            .addJavadoc("Node for which no dedicated typed node class exists, for example an unnamed node.")
+            .build()
+        );
+
+        typeBuilder.addMethod(generateMethodOf());
+
+        return codeGenHelper.createJavaFile(typeBuilder, config.className());
+    }
+}
@@ -1,16 +1,20 @@
 package marcono1234.jtreesitter.type_gen.internal.gen.common_classes;
 
-import com.palantir.javapoet.ClassName;
-import com.palantir.javapoet.JavaFile;
-import com.palantir.javapoet.MethodSpec;
-import com.palantir.javapoet.TypeSpec;
+import com.palantir.javapoet.*;
 import marcono1234.jtreesitter.type_gen.internal.gen.GenNodeType;
+import marcono1234.jtreesitter.type_gen.internal.gen.GenRegularNodeType;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.CustomMethodData;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.MethodSplitter;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.TypeNameCreator;
 
 import javax.lang.model.element.Modifier;
-import java.util.List;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Code generator for the {@code TypedTree} class, the 'typed' variant of the jtreesitter {@code Tree}.
@@ -21,34 +25,69 @@ public class TypedTreeClassGenerator {
         String methodFromTree,
         String methodGetTree,
         String methodGetRootNode,
-        String methodHasError
+        String methodHasError,
+        String methodRetainSource,
+        String methodReleaseSource,
+        String methodBuildIndex,
+        ClassName classNodeIndex,
+        String methodNodeIndexGetNodes,
+        String methodOpenSession,
+        ClassName classSession,
+        String methodOpenNodeCache,
+        ClassName classNodeCache,
+        // Internal methods used by the generated code for creating typed nodes
+        String methodNodeCacheWrap,
+        String methodNodeCacheRunUncached,
+        String methodNodeCacheIsUncached,
+        String methodWalk,
+        String methodAccept
     ) {
         public static Config createDefault(TypeNameCreator typeNameCreator, CodeGenHelper codeGenHelper) {
             var jtreesitter = codeGenHelper.jtreesitterConfig();
+            var className = typeNameCreator.createOwnClassName("TypedTree");
             return new Config(
-                typeNameCreator.createOwnClassName("TypedTree"),
+                className,
                 "fromTree",
                 "getTree",
                 // Uses same method name as jtreesitter
                 jtreesitter.tree().methodGetRootNode(),
                 // Uses same method name as jtreesitter
-                jtreesitter.node().methodHasError()
+                jtreesitter.node().methodHasError(),
+                "retainSource",
+                "releaseSource",
+                "buildIndex",
+                className.nestedClass("NodeIndex"),
+                "getNodes",
+                "openSession",
+                className.nestedClass("Session"),
+                "openNodeCache",
+                className.nestedClass("NodeCache"),
+                "wrap",
+                "runUncached",
+                "isUncached",
+                // Uses same method name as jtreesitter
+                jtreesitter.node().methodWalk(),
+                "accept"
             );
         }
     }
 
     private final CodeGenHelper codeGenHelper;
     private final Config config;
+    private final TypedTreeCursorGenerator.Config typedTreeCursorConfig;
+    private final TypedVisitorGenerator.Config typedVisitorConfig;
     private final List<CustomMethodData> customMethods;
 
-    public TypedTreeClassGenerator(CodeGenHelper codeGenHelper, Config config, List<CustomMethodData> customMethods) {
+    public TypedTreeClassGenerator(CodeGenHelper codeGenHelper, Config config, TypedTreeCursorGenerator.Config typedTreeCursorConfig, TypedVisitorGenerator.Config typedVisitorConfig, List<CustomMethodData> customMethods) {
         this.codeGenHelper = codeGenHelper;
         this.config = config;
+        this.typedTreeCursorConfig = typedTreeCursorConfig;
+        this.typedVisitorConfig = typedVisitorConfig;
         this.customMethods = customMethods;
     }
 
     public TypedTreeClassGenerator(TypeNameCreator typeNameCreator, CodeGenHelper codeGenHelper, List<CustomMethodData> customMethods) {
-        this(codeGenHelper, Config.createDefault(typeNameCreator, codeGenHelper), customMethods);
+        this(codeGenHelper, Config.createDefault(typeNameCreator, codeGenHelper), TypedTreeCursorGenerator.Config.createDefault(typeNameCreator), TypedVisitorGenerator.Config.createDefault(typeNameCreator), customMethods);
     }
 
     private void generateJavadoc(TypeSpec.Builder typeBuilder, GenNodeType rootNodeType) {
@@ -82,6 +121,757 @@ public class TypedTreeClassGenerator {
         typeBuilder.addMethod(toStringMethod);
     }
 
+    /**
+     * Generates the {@code buildIndex} method, which finds the nodes of multiple node classes in a single traversal,
+     * and the class representing its result.
+     */
+    private void generateBuildIndex(TypeSpec.Builder typeBuilder, String treeField) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterCursor = jtreesitter.treeCursor();
+        var ffmApi = codeGenHelper.ffmApiConfig();
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var typedNode = codeGenHelper.typedNodeConfig().className();
+        var typedNodeSubclass = WildcardTypeName.subtypeOf(typedNode);
+        var classType = ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class));
+        var nodesListType = ParameterizedTypeName.get(ClassName.get(List.class), typedNodeSubclass);
+        var nodesMapType = ParameterizedTypeName.get(ClassName.get(Map.class), classType, nodesListType);
+
+        var nodeIndexClass = config.classNodeIndex();
+        var nodesByClassField = FieldSpec.builder(nodesMapType, "nodesByClass", Modifier.PRIVATE, Modifier.FINAL).build();
+
+        var typeVarT = TypeVariableName.get("T", typedNode);
+        String nodeClassParam = "nodeClass";
+        String nodesVar = "nodes";
+        String resultVar = "result";
+        var getNodesMethod = MethodSpec.methodBuilder(config.methodNodeIndexGetNodes())
+            .addModifiers(Modifier.PUBLIC)
+            .addTypeVariable(typeVarT)
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), typeVarT), nodeClassParam)
+            .returns(ParameterizedTypeName.get(ClassName.get(List.class), typeVarT))
+            .addJavadoc("Gets all nodes of the given node class, in the order in which they appear in the tree.")
+            .addJavadoc("\n\n@throws $T if the node class was not specified when building the index", IllegalArgumentException.class)
+            .addStatement("var $N = $N.get($N)", nodesVar, nodesByClassField, nodeClassParam)
+            .beginControlFlow("if ($N == null)", nodesVar)
+            .addStatement("throw new $T(\"Node class was not indexed: \" + $N)", IllegalArgumentException.class, nodeClassParam)
+            .endControlFlow()
+            .addStatement("$L var $N = ($T) $N", CodeGenHelper.SUPPRESS_WARNINGS_UNCHECKED, resultVar, ParameterizedTypeName.get(ClassName.get(List.class), typeVarT), nodesVar)
+            .addStatement("return $N", resultVar)
+            .build();
+
+        typeBuilder.addType(TypeSpec.classBuilder(nodeIndexClass)
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Nodes of a tree, grouped by node class. Created by {@link $T#$N}.", config.className(), config.methodBuildIndex())
+            .addField(nodesByClassField)
+            .addMethod(CodeGenHelper.createInitializingConstructorBuilder(nodesByClassField).addModifiers(Modifier.PRIVATE).build())
+            .addMethod(getNodesMethod)
+            .build()
+        );
+
+        String nodeClassesParam = "nodeClasses";
+        String typedNodeParam = "typedNode";
+        String classIndicesVar = "classIndices";
+        String iVar = "i";
+        var getClassIndicesMethod = MethodSpec.methodBuilder("getClassIndices")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(ArrayTypeName.of(classType), nodeClassesParam)
+            .addParameter(codeGenHelper.getNullableType(typedNode), typedNodeParam)
+            .returns(int[].class)
+            .addJavadoc("Gets the indices of all classes in {@code nodeClasses} which the typed node is an instance of.")
+            .addStatement("var $N = new $T($N.length)", classIndicesVar, BitSet.class, nodeClassesParam)
+            .beginControlFlow("if ($N != null)", typedNodeParam)
+            .beginControlFlow("for (int $N = 0; $N < $N.length; $N++)", iVar, iVar, nodeClassesParam, iVar)
+            .beginControlFlow("if ($N[$N].isInstance($N))", nodeClassesParam, iVar, typedNodeParam)
+            .addStatement("$N.set($N)", classIndicesVar, iVar)
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return $N.stream().toArray()", classIndicesVar)
+            .build();
+        typeBuilder.addMethod(getClassIndicesMethod);
+
+        var nodeClassesParamSpec = ParameterSpec.builder(ParameterizedTypeName.get(ClassName.get(Set.class), ParameterizedTypeName.get(ClassName.get(Class.class), typedNodeSubclass)), nodeClassesParam)
+            .addJavadoc("node classes to index; can also be node supertype interfaces")
+            .build();
+        String nodeClassesArrayVar = "nodeClassesArray";
+        String bucketsVar = "buckets";
+        String classIndicesByTypeIdVar = "classIndicesByTypeId";
+        String allocatorVar = "allocator";
+        String scratchAllocatorVar = "scratchAllocator";
+        String cursorVar = "cursor";
+        String doneVar = "done";
+        String nodeVar = "node";
+        String typeIdVar = "typeId";
+        String typedNodeVar = "typedNode";
+        String classIndexVar = "classIndex";
+        String nodesByClassVar = "nodesByClass";
+        var bucketType = ParameterizedTypeName.get(ClassName.get(List.class), typedNode);
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodBuildIndex())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(nodeClassesParamSpec)
+            .returns(nodeIndexClass)
+            .addJavadoc("Finds all nodes of the given node classes in a single traversal of the tree, and groups them by node class.")
+            .addJavadoc("\nThis is more efficient than separately calling the {@code $N} methods of multiple node classes,", codeGenHelper.typedNodeConfig().methodFindNodes())
+            .addJavadoc("\nsince each of these calls traverses the tree. If a node is an instance of multiple of the given")
+            .addJavadoc("\nnode classes, it is included in the results for all of them.")
+            .addStatement("var $N = $N.toArray($T[]::new)", nodeClassesArrayVar, nodeClassesParam, classType)
+            .addStatement("var $N = new $T<$T>($N.length)", bucketsVar, ArrayList.class, bucketType, nodeClassesArrayVar)
+            .beginControlFlow("for (int $N = 0; $N < $N.length; $N++)", iVar, iVar, nodeClassesArrayVar, iVar)
+            .addStatement("$N.add(new $T<>())", bucketsVar, ArrayList.class)
+            .endControlFlow()
+            .addComment("Indexed by numeric type ID; lazily computed to only create typed nodes for matching nodes")
+            .addStatement("var $N = new int[$N.$N().$N()][]", classIndicesByTypeIdVar, treeField, jtreesitter.tree().methodGetLanguage(), jtreesitter.language().methodGetSymbolCount())
+            .addComment("Use allocator of current session, or otherwise custom allocator to ensure that nodes are usable after cursor was closed")
+            .addStatement("var $N = $T.$N()", allocatorVar, nodeUtils.className(), nodeUtils.methodGetSessionAllocator())
+            .beginControlFlow("if ($N == null)", allocatorVar)
+            .addStatement("$N = $T.$N()", allocatorVar, ffmApi.classArena(), ffmApi.methodArenaOfAuto())
+            .endControlFlow()
+            .addComment("Allocator for transient nodes which are only used to determine the type ID; reuses the same memory for every node")
+            .addStatement("var $N = $T.prefixAllocator($T.$N().allocate($L, $L))", scratchAllocatorVar, ffmApi.classSegmentAllocator(), ffmApi.classArena(), ffmApi.methodArenaOfAuto(), TypedTreeCursorGenerator.SCRATCH_NODE_SIZE, TypedTreeCursorGenerator.SCRATCH_NODE_ALIGNMENT)
+            .beginControlFlow("try (var $N = $N.$N().$N())", cursorVar, treeField, jtreesitter.tree().methodGetRootNode(), jtreesitterNode.methodWalk())
+            .addStatement("boolean $N = false", doneVar)
+            .beginControlFlow("while (!$N)", doneVar)
+            .addComment("Only the matching nodes are allocated with `$N`", allocatorVar)
+            .addStatement("var $N = $N.$N($N)", nodeVar, cursorVar, jtreesitterCursor.methodGetCurrentNode(), scratchAllocatorVar)
+            .addStatement("int $N = $T.toUnsignedInt($N.$N())", typeIdVar, Short.class, nodeVar, jtreesitterNode.methodGetTypeId())
+            // Type ID might be out of range, for example for error nodes
+            .beginControlFlow("if ($N < $N.length)", typeIdVar, classIndicesByTypeIdVar)
+            .addStatement("var $N = $N[$N]", classIndicesVar, classIndicesByTypeIdVar, typeIdVar)
+            .beginControlFlow("if ($N == null)", classIndicesVar)
+            .addComment("Determine the classes using the transient node; its typed node must not be cached because its memory is reused")
+            .addStatement("$N = $N($N, $L)", classIndicesVar, getClassIndicesMethod, nodeClassesArrayVar, codeGenHelper.createUncachedCode(codeGenHelper.createTypedNodeCode(nodeVar)))
+            .addStatement("$N[$N] = $N", classIndicesByTypeIdVar, typeIdVar, classIndicesVar)
+            .endControlFlow()
+            .beginControlFlow("if ($N.length > 0)", classIndicesVar)
+            .addStatement("var $N = $L", typedNodeVar, codeGenHelper.createTypedNodeCode(CodeBlock.of("$N.$N($N)", cursorVar, jtreesitterCursor.methodGetCurrentNode(), allocatorVar).toString()))
+            .beginControlFlow("for (int $N : $N)", classIndexVar, classIndicesVar)
+            .addStatement("$N.get($N).add($N)", bucketsVar, classIndexVar, typedNodeVar)
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow()
+            .addCode("\n")
+            .addComment("Visit nodes in pre-order: first child, otherwise next sibling of this node or of the closest ancestor")
+            .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoFirstChild())
+            .addStatement("continue")
+            .endControlFlow()
+            .beginControlFlow("while (!$N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
+            .beginControlFlow("if (!$N.$N())", cursorVar, jtreesitterCursor.methodGotoParent())
+            .addStatement("$N = true", doneVar)
+            .addStatement("break")
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow()
+            .addCode("\n")
+            .addStatement("var $N = new $T<$T, $T>()", nodesByClassVar, HashMap.class, classType, nodesListType)
+            .beginControlFlow("for (int $N = 0; $N < $N.length; $N++)", iVar, iVar, nodeClassesArrayVar, iVar)
+            .addStatement("$N.put($N[$N], $T.copyOf($N.get($N)))", nodesByClassVar, nodeClassesArrayVar, iVar, List.class, bucketsVar, iVar)
+            .endControlFlow()
+            .addStatement("return new $T($N)", nodeIndexClass, nodesByClassVar)
+            .build()
+        );
+    }
+
+    /**
+     * Generates the {@code accept} method, which traverses the tree with a {@code TypedVisitor}, and its helper methods.
+     * To avoid creating typed nodes for which the visitor has no overridden method, the overridden methods are
+     * determined once per visitor class using reflection.
+     */
+    private static CodeBlock createDispatchSwitch(String kindParam, List<Map.Entry<GenRegularNodeType, CodeBlock>> cases) {
+        var switchCode = CodeBlock.builder()
+            .add("return switch ($N) {\n", kindParam)
+            .indent();
+        cases.forEach(c -> switchCode.add(c.getValue()));
+        return switchCode.add("default -> throw new $T(\"Unexpected node kind: \" + $N);\n", AssertionError.class, kindParam)
+            .unindent()
+            .add("};\n")
+            .build();
+    }
+
+    private void generateAccept(TypeSpec.Builder typeBuilder, String treeField) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterCursor = jtreesitter.treeCursor();
+        var jtreesitterCursorClass = jtreesitterCursor.className();
+        var ffmApi = codeGenHelper.ffmApiConfig();
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var typedNode = codeGenHelper.typedNodeConfig().className();
+        var typedNodeKind = codeGenHelper.typedNodeKindConfig();
+        var visitorClass = typedVisitorConfig.className();
+        var actionClass = typedVisitorConfig.classAction();
+        var classType = ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class));
+
+        var visitorHooksClass = config.className().nestedClass("VisitorHooks");
+        String visitHooksComponent = "visit";
+        String leaveHooksComponent = "leave";
+        typeBuilder.addType(TypeSpec.recordBuilder(visitorHooksClass)
+            .addModifiers(Modifier.PRIVATE)
+            .addJavadoc("Whether a visitor class overrides the visit respectively leave method for a node kind; indexed by {@link $T#ordinal()}.", typedNodeKind.className())
+            .recordConstructor(MethodSpec.constructorBuilder()
+                .addParameter(boolean[].class, visitHooksComponent)
+                .addParameter(boolean[].class, leaveHooksComponent)
+                .build()
+            )
+            .build()
+        );
+
+        String visitorClassParam = "visitorClass";
+        String methodNameParam = "methodName";
+        String parameterTypeParam = "parameterType";
+        String exceptionVar = "e";
+        var isOverriddenMethod = MethodSpec.methodBuilder("isVisitorMethodOverridden")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(classType, visitorClassParam)
+            .addParameter(String.class, methodNameParam)
+            .addParameter(classType, parameterTypeParam)
+            .returns(boolean.class)
+            .beginControlFlow("try")
+            .addStatement("return $N.getMethod($N, $N).getDeclaringClass() != $T.class", visitorClassParam, methodNameParam, parameterTypeParam, visitorClass)
+            .nextControlFlow("catch ($T $N)", NoSuchMethodException.class, exceptionVar)
+            .addStatement("throw new $T($S, $N)", AssertionError.class, "Visitor method not found", exceptionVar)
+            .endControlFlow()
+            .build();
+        typeBuilder.addMethod(isOverriddenMethod);
+
+        String kindsCountVar = "kindsCount";
+        String visitVar = "visit";
+        String leaveVar = "leave";
+        String defaultVisitVar = "defaultVisit";
+        String defaultLeaveVar = "defaultLeave";
+        var getVisitorHooksBuilder = MethodSpec.methodBuilder("getVisitorHooks")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(classType, visitorClassParam)
+            .returns(visitorHooksClass)
+            .addStatement("int $N = $T.values().length", kindsCountVar, typedNodeKind.className())
+            .addStatement("var $N = new boolean[$N]", visitVar, kindsCountVar)
+            .addStatement("var $N = new boolean[$N]", leaveVar, kindsCountVar)
+            .addStatement("boolean $N = $N($N, $S, $T.class)", defaultVisitVar, isOverriddenMethod, visitorClassParam, typedVisitorConfig.methodDefaultVisit(), typedNode)
+            .addStatement("boolean $N = $N($N, $S, $T.class)", defaultLeaveVar, isOverriddenMethod, visitorClassParam, typedVisitorConfig.methodDefaultLeave(), typedNode);
+        List<CodeBlock> addVisitorHooksCode = new ArrayList<>();
+        for (var entry : typedNodeKind.constantNames().entrySet()) {
+            var nodeType = entry.getKey();
+            var kindConstant = entry.getValue();
+            addVisitorHooksCode.add(CodeBlock.builder()
+                .addStatement("$N[$T.$N.ordinal()] = $N || $N($N, $S, $T.class)", visitVar, typedNodeKind.className(), kindConstant, defaultVisitVar, isOverriddenMethod, visitorClassParam, typedVisitorConfig.getVisitMethodName(nodeType), nodeType.getJavaTypeName())
+                .addStatement("$N[$T.$N.ordinal()] = $N || $N($N, $S, $T.class)", leaveVar, typedNodeKind.className(), kindConstant, defaultLeaveVar, isOverriddenMethod, visitorClassParam, typedVisitorConfig.getLeaveMethodName(nodeType), nodeType.getJavaTypeName())
+                .build()
+            );
+        }
+        var addVisitorHooksMethods = MethodSplitter.addChunkedCode(getVisitorHooksBuilder, "addVisitorHooks", true, addVisitorHooksCode, List.of(
+            ParameterSpec.builder(classType, visitorClassParam).build(),
+            ParameterSpec.builder(boolean[].class, visitVar).build(),
+            ParameterSpec.builder(boolean[].class, leaveVar).build(),
+            ParameterSpec.builder(boolean.class, defaultVisitVar).build(),
+            ParameterSpec.builder(boolean.class, defaultLeaveVar).build()
+        ));
+        var getVisitorHooksMethod = getVisitorHooksBuilder
+            .addStatement("return new $T($N, $N)", visitorHooksClass, visitVar, leaveVar)
+            .build();
+        typeBuilder.addMethod(getVisitorHooksMethod);
+        typeBuilder.addMethods(addVisitorHooksMethods);
+
+        var visitorHooksFieldType = ParameterizedTypeName.get(ClassName.get(ClassValue.class), visitorHooksClass);
+        var visitorHooksField = FieldSpec.builder(visitorHooksFieldType, "VISITOR_HOOKS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Overridden visitor methods, computed once per visitor class.")
+            .initializer("$L", TypeSpec.anonymousClassBuilder("")
+                .superclass(visitorHooksFieldType)
+                .addMethod(MethodSpec.methodBuilder("computeValue")
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PROTECTED)
+                    .addParameter(classType, visitorClassParam)
+                    .returns(visitorHooksClass)
+                    .addStatement("return $N($N)", getVisitorHooksMethod, visitorClassParam)
+                    .build()
+                )
+                .build()
+            )
+            .build();
+        typeBuilder.addField(visitorHooksField);
+
+        String visitorParam = "visitor";
+        String kindParam = "kind";
+        String nodeParam = "node";
+        for (boolean isVisit : new boolean[] {true, false}) {
+            List<Map.Entry<GenRegularNodeType, CodeBlock>> cases = new ArrayList<>();
+            for (var entry : typedNodeKind.constantNames().entrySet()) {
+                var nodeType = entry.getKey();
+                String visitorMethod = isVisit ? typedVisitorConfig.getVisitMethodName(nodeType) : typedVisitorConfig.getLeaveMethodName(nodeType);
+                cases.add(Map.entry(nodeType, CodeBlock.of("case $N -> $N.$N(($T) $N);\n", entry.getValue(), visitorParam, visitorMethod, nodeType.getJavaTypeName(), nodeParam)));
+            }
+
+            String methodName = isVisit ? "dispatchVisit" : "dispatchLeave";
+            var parameters = List.of(
+                ParameterSpec.builder(visitorClass, visitorParam).build(),
+                ParameterSpec.builder(typedNodeKind.className(), kindParam).build(),
+                ParameterSpec.builder(typedNode, nodeParam).build()
+            );
+            var methodBuilder = MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameters(parameters)
+                .returns(actionClass);
+
+            // For large grammars split the switch into multiple methods covering consecutive kinds, to keep this
+            // frequently called method JIT-compilable
+            var chunks = MethodSplitter.chunk(cases, c -> MethodSplitter.estimateBytecodeSize(c.getValue()));
+            if (chunks.size() == 1) {
+                typeBuilder.addMethod(methodBuilder.addCode(createDispatchSwitch(kindParam, chunks.getFirst())).build());
+            } else {
+                for (int i = 0; i < chunks.size(); i++) {
+                    var chunk = chunks.get(i);
+                    var chunkMethod = MethodSpec.methodBuilder(methodName + i)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .addParameters(parameters)
+                        .returns(actionClass)
+                        .addCode(createDispatchSwitch(kindParam, chunk))
+                        .build();
+                    typeBuilder.addMethod(chunkMethod);
+
+                    if (i < chunks.size() - 1) {
+                        var firstOfNextChunk = chunks.get(i + 1).getFirst().getKey();
+                        methodBuilder.beginControlFlow("if ($N.ordinal() < $T.$N.ordinal())", kindParam, typedNodeKind.className(), typedNodeKind.getConstantName(firstOfNextChunk))
+                            .addStatement("return $N($N, $N, $N)", chunkMethod, visitorParam, kindParam, nodeParam)
+                            .endControlFlow();
+                    } else {
+                        methodBuilder.addStatement("return $N($N, $N, $N)", chunkMethod, visitorParam, kindParam, nodeParam);
+                    }
+                }
+                typeBuilder.addMethod(methodBuilder.build());
+            }
+        }
+
+        String hooksParam = "hooks";
+        String cursorParam = "cursor";
+        String scratchAllocatorParam = "scratchAllocator";
+        String allocatorParam = "allocator";
+        String kindVar = "kind";
+        String typedNodeVar = "typedNode";
+        var leaveCurrentMethod = MethodSpec.methodBuilder("leaveCurrent")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(visitorClass, visitorParam)
+            .addParameter(visitorHooksClass, hooksParam)
+            .addParameter(jtreesitterCursorClass, cursorParam)
+            .addParameter(ffmApi.classSegmentAllocator(), scratchAllocatorParam)
+            .addParameter(ffmApi.classSegmentAllocator(), allocatorParam)
+            .returns(boolean.class)
+            .addJavadoc("Calls the leave method for the current node of the cursor, if overridden. Returns {@code false} if the traversal")
+            .addJavadoc("\nshould stop.")
+            .addStatement("var $N = $L", kindVar, codeGenHelper.createNodeKindCode(CodeBlock.of("$N.$N($N)", cursorParam, jtreesitterCursor.methodGetCurrentNode(), scratchAllocatorParam).toString()))
+            .beginControlFlow("if (!$N.$N()[$N.ordinal()])", hooksParam, leaveHooksComponent, kindVar)
+            .addStatement("return true")
+            .endControlFlow()
+            .addStatement("var $N = $L", typedNodeVar, codeGenHelper.createTypedNodeCode(CodeBlock.of("$N.$N($N)", cursorParam, jtreesitterCursor.methodGetCurrentNode(), allocatorParam).toString()))
+            .addStatement("return dispatchLeave($N, $N, $N) != $T.$N", visitorParam, kindVar, typedNodeVar, actionClass, typedVisitorConfig.constantStop())
+            .build();
+        typeBuilder.addMethod(leaveCurrentMethod);
+
+        var visitorParamSpec = ParameterSpec.builder(visitorClass, visitorParam).build();
+        String actionVar = "action";
+        String allocatorVar = "allocator";
+        String scratchAllocatorVar = "scratchAllocator";
+        String cursorVar = "cursor";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodAccept())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(visitorParamSpec)
+            .returns(boolean.class)
+            .addJavadoc("Traverses the tree in pre-order with the given visitor, starting at the root node. Returns {@code false} if the")
+            .addJavadoc("\ntraversal was stopped by the visitor, {@code true} otherwise.")
+            .addJavadoc("\n\n<p>The tree is traversed with a single jtreesitter {@link $T}. Typed nodes are only created for nodes", jtreesitterCursorClass)
+            .addJavadoc("\nfor which the visitor overrides the corresponding visit or leave method.")
+            .addJavadoc("\n\n@see $T", visitorClass)
+            .addStatement(CodeGenHelper.createNonNullCheck(visitorParam))
+            .addStatement("var $N = $N.get($N.getClass())", hooksParam, visitorHooksField, visitorParam)
+            .addComment("Use allocator of current session, or otherwise custom allocator to ensure that nodes are usable after cursor was closed")
+            .addStatement("var $N = $T.$N()", allocatorVar, nodeUtils.className(), nodeUtils.methodGetSessionAllocator())
+            .beginControlFlow("if ($N == null)", allocatorVar)
+            .addStatement("$N = $T.$N()", allocatorVar, ffmApi.classArena(), ffmApi.methodArenaOfAuto())
+            .endControlFlow()
+            .addComment("Allocator for transient nodes which are only used to determine the node kind; reuses the same memory for every node")
+            .addStatement("var $N = $T.prefixAllocator($T.$N().allocate($L, $L))", scratchAllocatorVar, ffmApi.classSegmentAllocator(), ffmApi.classArena(), ffmApi.methodArenaOfAuto(), TypedTreeCursorGenerator.SCRATCH_NODE_SIZE, TypedTreeCursorGenerator.SCRATCH_NODE_ALIGNMENT)
+            .beginControlFlow("try (var $N = $N.$N().$N())", cursorVar, treeField, jtreesitter.tree().methodGetRootNode(), jtreesitterNode.methodWalk())
+            .beginControlFlow("while (true)")
+            .addStatement("var $N = $L", kindVar, codeGenHelper.createNodeKindCode(CodeBlock.of("$N.$N($N)", cursorVar, jtreesitterCursor.methodGetCurrentNode(), scratchAllocatorVar).toString()))
+            .addStatement("var $N = $T.$N", actionVar, actionClass, typedVisitorConfig.constantContinue())
+            .beginControlFlow("if ($N.$N()[$N.ordinal()])", hooksParam, visitHooksComponent, kindVar)
+            .addStatement("var $N = $L", typedNodeVar, codeGenHelper.createTypedNodeCode(CodeBlock.of("$N.$N($N)", cursorVar, jtreesitterCursor.methodGetCurrentNode(), allocatorVar).toString()))
+            .addStatement("$N = dispatchVisit($N, $N, $N)", actionVar, visitorParam, kindVar, typedNodeVar)
+            .beginControlFlow("if ($N == $T.$N)", actionVar, actionClass, typedVisitorConfig.constantStop())
+            .addStatement("return false")
+            .endControlFlow()
+            .endControlFlow()
+            .beginControlFlow("if ($N != $T.$N && $N.$N())", actionVar, actionClass, typedVisitorConfig.constantSkipSubtree(), cursorVar, jtreesitterCursor.methodGotoFirstChild())
+            .addStatement("continue")
+            .endControlFlow()
+            .addCode("\n")
+            .addComment("Leave this node, and all ancestors for which this was the last child, then move to the next sibling")
+            .beginControlFlow("while (true)")
+            .beginControlFlow("if (!$N($N, $N, $N, $N, $N))", leaveCurrentMethod, visitorParam, hooksParam, cursorVar, scratchAllocatorVar, allocatorVar)
+            .addStatement("return false")
+            .endControlFlow()
+            .beginControlFlow("if ($N.$N())", cursorVar, jtreesitterCursor.methodGotoNextSibling())
+            .addStatement("break")
+            .endControlFlow()
+            .beginControlFlow("if (!$N.$N())", cursorVar, jtreesitterCursor.methodGotoParent())
+            .addStatement("return true")
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow()
+            .endControlFlow()
+            .build()
+        );
+    }
+
+    /**
+     * Generates the {@code openSession} method and the class representing the session. While a session is open,
+     * all jtreesitter nodes obtained by the generated code on the current thread are allocated with the arena of
+     * the session, see {@link CodeGenHelper#generatesAllocationSessions()}.
+     */
+    private void generateOpenSession(TypeSpec.Builder typeBuilder) {
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var ffmApi = codeGenHelper.ffmApiConfig();
+        var sessionClass = config.classSession();
+
+        var arenaField = FieldSpec.builder(ffmApi.classArena(), "arena", Modifier.PRIVATE, Modifier.FINAL).build();
+        var threadField = FieldSpec.builder(Thread.class, "thread", Modifier.PRIVATE, Modifier.FINAL).build();
+        var previousAllocatorField = FieldSpec.builder(codeGenHelper.getNullableType(ffmApi.classSegmentAllocator()), "previousAllocator", Modifier.PRIVATE, Modifier.FINAL).build();
+        var closedField = FieldSpec.builder(boolean.class, "closed", Modifier.PRIVATE).build();
+
+        String arenaParam = "arena";
+        var constructor = MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(ffmApi.classArena(), arenaParam)
+            .addStatement("this.$N = $N", arenaField, arenaParam)
+            .addStatement("this.$N = $T.currentThread()", threadField, Thread.class)
+            .addStatement("this.$N = $T.$N($N)", previousAllocatorField, nodeUtils.className(), nodeUtils.methodSetSessionAllocator(), arenaParam)
+            .build();
+
+        var getArenaMethod = MethodSpec.methodBuilder("getArena")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(ffmApi.classArena())
+            .addJavadoc("Gets the arena which is used for allocating the nodes.")
+            .addStatement("return $N", arenaField)
+            .build();
+
+        var closeMethod = MethodSpec.methodBuilder("close")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Ends the session and closes its arena. Afterwards all nodes which were obtained during the session must not be used anymore.")
+            .addJavadoc("\n\n@throws $T if this method is not called by the thread which opened the session,", IllegalStateException.class)
+            .addJavadoc("\n    or if sessions are not closed in the reverse order in which they were opened")
+            .beginControlFlow("if ($N)", closedField)
+            .addStatement("return")
+            .endControlFlow()
+            .beginControlFlow("if ($T.currentThread() != $N)", Thread.class, threadField)
+            .addStatement("throw new $T(\"Session must be closed by the thread which opened it\")", IllegalStateException.class)
+            .endControlFlow()
+            .beginControlFlow("if ($T.$N() != $N)", nodeUtils.className(), nodeUtils.methodGetSessionAllocator(), arenaField)
+            .addStatement("throw new $T(\"Nested session has not been closed yet\")", IllegalStateException.class)
+            .endControlFlow()
+            .addStatement("$N = true", closedField)
+            .addStatement("$T.$N($N)", nodeUtils.className(), nodeUtils.methodSetSessionAllocator(), previousAllocatorField)
+            .addStatement("$N.close()", arenaField)
+            .build();
+
+        typeBuilder.addType(TypeSpec.classBuilder(sessionClass)
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .addSuperinterface(AutoCloseable.class)
+            .addJavadoc("Allocation session, created by {@link $T#$N}. Must be closed by the thread which opened it.", config.className(), config.methodOpenSession())
+            .addField(arenaField)
+            .addField(threadField)
+            .addField(previousAllocatorField)
+            .addField(closedField)
+            .addMethod(constructor)
+            .addMethod(getArenaMethod)
+            .addMethod(closeMethod)
+            .build()
+        );
+
+        var arenaParamSpec = ParameterSpec.builder(ffmApi.classArena(), arenaParam)
+            .addJavadoc("arena to allocate the nodes with; it is closed when the session is closed")
+            .build();
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodOpenSession())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(arenaParamSpec)
+            .returns(sessionClass)
+            .addJavadoc("Opens an allocation session for the current thread. Until the session is closed, the jtreesitter nodes")
+            .addJavadoc("\nobtained on the current thread by the methods of typed nodes, such as the children and field getters and the")
+            .addJavadoc("\n{@code $N} methods, are allocated with the given arena, unless a method has an explicit allocator parameter.", codeGenHelper.typedNodeConfig().methodFindNodes())
+            .addJavadoc("\nClosing the session closes the arena, releasing the memory of all these nodes at once.")
+            .addJavadoc("\n\n<p>Sessions can be nested, but must be closed in the reverse order in which they were opened.")
+            .addJavadoc("\nThe session applies to all nodes obtained on the current thread, not only to the nodes of this tree.")
+            .addJavadoc("\n\n<h4>Example</h4>")
+            .addJavadoc("\n{@snippet lang=java :")
+            .addJavadoc("\ntry (var session = typedTree.$N($T.$N())) {", config.methodOpenSession(), ffmApi.classArena(), ffmApi.methodArenaOfConfined())
+            .addJavadoc("\n  var rootNode = typedTree.$N();", config.methodGetRootNode())
+            .addJavadoc("\n  ...")
+            .addJavadoc("\n}")
+            .addJavadoc("\n}")
+            .addStatement(CodeGenHelper.createNonNullCheck(arenaParam))
+            .addStatement("return new $T($N)", sessionClass, arenaParam)
+            .build()
+        );
+    }
+
+    /**
+     * Generates the {@code openNodeCache} method and the {@code NodeCache} class, which allows reusing the typed node
+     * objects for the nodes of a tree. The generated code creates typed nodes through {@link Config#methodNodeCacheWrap()},
+     * see {@link CodeGenHelper#createNewTypedNodeCode}.
+     */
+    private void generateOpenNodeCache(TypeSpec.Builder typeBuilder, String treeField) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterTreeClass = jtreesitter.tree().className();
+        var typedNode = codeGenHelper.typedNodeConfig();
+        var nodeCacheClass = config.classNodeCache();
+
+        var openCachesField = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map.class), jtreesitterTreeClass, nodeCacheClass), "openCaches", Modifier.PRIVATE, Modifier.STATIC, Modifier.VOLATILE)
+            .addJavadoc("Open caches by tree; copied on write so that creating typed nodes does not require synchronization")
+            .initializer("$T.of()", Map.class)
+            .build();
+        var treeFieldSpec = FieldSpec.builder(jtreesitterTreeClass, "tree", Modifier.PRIVATE, Modifier.FINAL).build();
+        var nodesField = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ConcurrentHashMap.class), ClassName.get(Long.class), typedNode.className()), "nodes", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Typed nodes by the ID of their jtreesitter node")
+            .initializer("new $T<>()", ConcurrentHashMap.class)
+            .build();
+        var uncachedField = FieldSpec.builder(ParameterizedTypeName.get(ThreadLocal.class, Boolean.class), "uncached", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Whether the current thread is within {@link #$N}", config.methodNodeCacheRunUncached())
+            .initializer("$T.withInitial(() -> false)", ThreadLocal.class)
+            .build();
+        var hitsField = FieldSpec.builder(LongAdder.class, "hits", Modifier.PRIVATE, Modifier.FINAL)
+            .initializer("new $T()", LongAdder.class)
+            .build();
+        var missesField = FieldSpec.builder(LongAdder.class, "misses", Modifier.PRIVATE, Modifier.FINAL)
+            .initializer("new $T()", LongAdder.class)
+            .build();
+
+        String treeParam = "tree";
+        var constructor = MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PRIVATE)
+            .addParameter(jtreesitterTreeClass, treeParam)
+            .addStatement("this.$N = $N", treeFieldSpec, treeParam)
+            .build();
+
+        String cacheVar = "cache";
+        String cachesVar = "caches";
+        var openMethod = MethodSpec.methodBuilder("open")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.SYNCHRONIZED)
+            .addParameter(jtreesitterTreeClass, treeParam)
+            .returns(nodeCacheClass)
+            .beginControlFlow("if ($N.containsKey($N))", openCachesField, treeParam)
+            .addStatement("throw new $T($S)", IllegalStateException.class, "Node cache is already open for the tree")
+            .endControlFlow()
+            .addStatement("var $N = new $T($N)", cacheVar, nodeCacheClass, treeParam)
+            .addStatement("var $N = new $T<>($N)", cachesVar, HashMap.class, openCachesField)
+            .addStatement("$N.put($N, $N)", cachesVar, treeParam, cacheVar)
+            .addStatement("$N = $T.copyOf($N)", openCachesField, Map.class, cachesVar)
+            .addStatement("return $N", cacheVar)
+            .build();
+
+        var removeMethod = MethodSpec.methodBuilder("remove")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.SYNCHRONIZED)
+            .addParameter(nodeCacheClass, cacheVar)
+            .beginControlFlow("if ($N.get($N.$N) == $N)", openCachesField, cacheVar, treeFieldSpec, cacheVar)
+            .addStatement("var $N = new $T<>($N)", cachesVar, HashMap.class, openCachesField)
+            .addStatement("$N.remove($N.$N)", cachesVar, cacheVar, treeFieldSpec)
+            .addStatement("$N = $T.copyOf($N)", openCachesField, Map.class, cachesVar)
+            .endControlFlow()
+            .build();
+
+        var closeForTreeMethod = MethodSpec.methodBuilder("closeForTree")
+            .addModifiers(Modifier.STATIC)
+            .addParameter(jtreesitterTreeClass, treeParam)
+            .addJavadoc("Closes the cache which is open for the tree, if any.")
+            .addStatement("var $N = $N.get($N)", cacheVar, openCachesField, treeParam)
+            .beginControlFlow("if ($N != null)", cacheVar)
+            .addStatement("$N.close()", cacheVar)
+            .endControlFlow()
+            .build();
+
+        String uncachedMethodName = config.methodNodeCacheRunUncached();
+        var bypassCondition = CodeBlock.of("$N.get()", uncachedField);
+        if (codeGenHelper.generatesAllocationSessions()) {
+            var nodeUtils = codeGenHelper.nodeUtilsConfig();
+            bypassCondition = CodeBlock.of("$L || $T.$N() != null", bypassCondition, nodeUtils.className(), nodeUtils.methodGetSessionAllocator());
+        }
+
+        var typeVarT = TypeVariableName.get("T", typedNode.className());
+        String nodeParam = "node";
+        String nodeClassParam = "nodeClass";
+        String factoryParam = "factory";
+        String idVar = "id";
+        String resultVar = "result";
+        String createdVar = "created";
+        var wrapMethod = MethodSpec.methodBuilder(config.methodNodeCacheWrap())
+            .addModifiers(Modifier.STATIC)
+            .addTypeVariable(typeVarT)
+            .addParameter(jtreesitterNode.className(), nodeParam)
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), typeVarT), nodeClassParam)
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Function.class), jtreesitterNode.className(), WildcardTypeName.subtypeOf(typeVarT)), factoryParam)
+            .returns(typeVarT)
+            .addJavadoc("Wraps the jtreesitter node as typed node using the factory, or returns the cached typed node if a cache is")
+            .addJavadoc("\nopen for the tree of the node. If the cached typed node is not an instance of {@code $N}, for example because", nodeClassParam)
+            .addJavadoc("\nthe node was previously wrapped as a different typed node class, a new typed node is created with the factory")
+            .addJavadoc("\nwithout replacing the cached one.")
+            .addJavadoc("\n\n<p>Typed nodes are only cached if the memory of their jtreesitter node is managed by the garbage collector;")
+            .addJavadoc("\notherwise a cached typed node could outlive the memory of its jtreesitter node. Therefore the cache is")
+            .addJavadoc("\nbypassed within {@link #$N}, which the generated code uses for nodes allocated with a custom allocator", uncachedMethodName)
+            .addJavadoc("\nor by a stream, and while an allocation session is open.")
+            .addStatement("var $N = $N", cachesVar, openCachesField)
+            .beginControlFlow("if ($N.isEmpty())", cachesVar)
+            .addStatement("return $N.apply($N)", factoryParam, nodeParam)
+            .endControlFlow()
+            .addStatement("var $N = $N.get($N.$N())", cacheVar, cachesVar, nodeParam, jtreesitterNode.methodGetTree())
+            .beginControlFlow("if ($N == null || $L)", cacheVar, bypassCondition)
+            .addStatement("return $N.apply($N)", factoryParam, nodeParam)
+            .endControlFlow()
+            .addCode("\n")
+            .addStatement("long $N = $N.$N()", idVar, nodeParam, jtreesitterNode.methodGetId())
+            .addStatement("$T $N = $N.$N.get($N)", typedNode.className(), resultVar, cacheVar, nodesField, idVar)
+            .beginControlFlow("if ($N != null)", resultVar)
+            .addStatement("$N.$N.increment()", cacheVar, hitsField)
+            .nextControlFlow("else")
+            .addStatement("$N.$N.increment()", cacheVar, missesField)
+            .addStatement("$T $N = $N.apply($N)", typeVarT, createdVar, factoryParam, nodeParam)
+            .addComment("Another thread might have created the typed node concurrently; prefer the one which was cached first")
+            .addStatement("$N = $N.$N.putIfAbsent($N, $N)", resultVar, cacheVar, nodesField, idVar, createdVar)
+            .beginControlFlow("if ($N == null)", resultVar)
+            .addStatement("return $N", createdVar)
+            .endControlFlow()
+            .endControlFlow()
+            .addCode("\n")
+            .beginControlFlow("if ($N.isInstance($N))", nodeClassParam, resultVar)
+            .addStatement("return $N.cast($N)", nodeClassParam, resultVar)
+            .endControlFlow()
+            .addComment("Cached typed node has a different class; don't fail with a ClassCastException but create a new typed node")
+            .addStatement("return $N.apply($N)", factoryParam, nodeParam)
+            .build();
+
+        var typeVarR = TypeVariableName.get("R");
+        String actionParam = "action";
+        var runUncachedMethod = MethodSpec.methodBuilder(uncachedMethodName)
+            .addModifiers(Modifier.STATIC)
+            .addTypeVariable(typeVarR)
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Supplier.class), typeVarR), actionParam)
+            .returns(typeVarR)
+            .addJavadoc("Runs the action without using any cache; typed nodes created by the action are neither looked up in nor added")
+            .addJavadoc("\nto the caches. Must be used when creating typed nodes whose jtreesitter node might be freed before the cache")
+            .addJavadoc("\nis closed, for example nodes allocated with a custom allocator, or nodes which are only valid until a stream")
+            .addJavadoc("\nis closed.")
+            .beginControlFlow("if ($N.get())", uncachedField)
+            .addStatement("return $N.get()", actionParam)
+            .endControlFlow()
+            .addStatement("$N.set(true)", uncachedField)
+            .beginControlFlow("try")
+            .addStatement("return $N.get()", actionParam)
+            .nextControlFlow("finally")
+            .addStatement("$N.set(false)", uncachedField)
+            .endControlFlow()
+            .build();
+
+        var isUncachedMethod = MethodSpec.methodBuilder(config.methodNodeCacheIsUncached())
+            .addModifiers(Modifier.STATIC)
+            .returns(boolean.class)
+            .addJavadoc("Returns whether the current thread is within {@link #$N}.", uncachedMethodName)
+            .addStatement("return $N.get()", uncachedField)
+            .build();
+
+        var getHitCountMethod = MethodSpec.methodBuilder("getHitCount")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(long.class)
+            .addJavadoc("Returns the number of times a cached typed node was reused.")
+            .addStatement("return $N.sum()", hitsField)
+            .build();
+
+        var getMissCountMethod = MethodSpec.methodBuilder("getMissCount")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(long.class)
+            .addJavadoc("Returns the number of times a typed node was created because it was not cached yet.")
+            .addStatement("return $N.sum()", missesField)
+            .build();
+
+        String hitCountVar = "hitCount";
+        String totalCountVar = "totalCount";
+        var getHitRateMethod = MethodSpec.methodBuilder("getHitRate")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(double.class)
+            .addJavadoc("Returns the ratio of cache hits to all requests for typed nodes, between 0.0 and 1.0; 0.0 if there were no")
+            .addJavadoc("\nrequests yet.")
+            .addStatement("long $N = $N()", hitCountVar, getHitCountMethod)
+            .addStatement("long $N = $N + $N()", totalCountVar, hitCountVar, getMissCountMethod)
+            .addStatement("return $N == 0 ? 0.0 : (double) $N / $N", totalCountVar, hitCountVar, totalCountVar)
+            .build();
+
+        var sizeMethod = MethodSpec.methodBuilder("size")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(int.class)
+            .addJavadoc("Returns the number of cached typed nodes.")
+            .addStatement("return $N.size()", nodesField)
+            .build();
+
+        var closeMethod = MethodSpec.methodBuilder("close")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Closes this cache and discards the cached typed nodes. Afterwards typed nodes are created again for every")
+            .addJavadoc("\nrequest. The statistics remain available. Does nothing if the cache is already closed.")
+            .addStatement("$N(this)", removeMethod)
+            .addStatement("$N.clear()", nodesField)
+            .build();
+
+        var toStringMethod = CodeGenHelper.createToStringMethodSignature()
+            .addStatement("return $S + $N() + $S + $N() + $S + $N() + $S", nodeCacheClass.simpleName() + "[size=", sizeMethod, ", hits=", getHitCountMethod, ", misses=", getMissCountMethod, "]")
+            .build();
+
+        typeBuilder.addType(TypeSpec.classBuilder(nodeCacheClass)
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .addSuperinterface(AutoCloseable.class)
+            .addJavadoc("Cache of typed nodes for the nodes of a tree, created by {@link $T#$N}. Must be closed once it is not needed anymore.", config.className(), config.methodOpenNodeCache())
+            .addJavadoc("\nCan be used concurrently by multiple threads.")
+            .addJavadoc("\n\n<p>Open caches are registered globally. A cache which is never closed, and whose tree is never closed either,")
+            .addJavadoc("\ntherefore keeps the tree and all typed nodes it has cached reachable forever, even once the tree is not used anymore.")
+            .addField(openCachesField)
+            .addField(uncachedField)
+            .addField(treeFieldSpec)
+            .addField(nodesField)
+            .addField(hitsField)
+            .addField(missesField)
+            .addMethod(constructor)
+            .addMethod(openMethod)
+            .addMethod(removeMethod)
+            .addMethod(closeForTreeMethod)
+            .addMethod(wrapMethod)
+            .addMethod(runUncachedMethod)
+            .addMethod(isUncachedMethod)
+            .addMethod(getHitCountMethod)
+            .addMethod(getMissCountMethod)
+            .addMethod(getHitRateMethod)
+            .addMethod(sizeMethod)
+            .addMethod(closeMethod)
+            .addMethod(toStringMethod)
+            .build()
+        );
+
+        var openNodeCacheMethodBuilder = MethodSpec.methodBuilder(config.methodOpenNodeCache())
+            .addModifiers(Modifier.PUBLIC)
+            .returns(nodeCacheClass)
+            .addJavadoc("Opens a cache of typed nodes for the nodes of this tree. While the cache is open, wrapping the same jtreesitter")
+            .addJavadoc("\nnode of this tree as typed node returns the same typed node object, for example when the typed node is obtained")
+            .addJavadoc("\nfrom a children or field getter, or through {@code $N}. Nodes are identified by {@link $T#$N}.", typedNode.methodFromNode(), jtreesitterNode.className(), jtreesitterNode.methodGetId())
+            .addJavadoc("\nThe cache applies to all threads.")
+            .addJavadoc("\n\n<p>Only typed nodes whose jtreesitter node is managed by the garbage collector are cached, because a cached typed")
+            .addJavadoc("\nnode must not outlive the memory of its jtreesitter node. Therefore typed nodes are created without the cache if")
+            .addJavadoc("\ntheir jtreesitter nodes are allocated with a custom {@code SegmentAllocator}, or if they are obtained from a")
+            .addJavadoc("\n{@code $N} method or a query, whose nodes might only be valid until the stream is closed.", typedNode.methodFindNodes());
+        if (codeGenHelper.generatesAllocationSessions()) {
+            openNodeCacheMethodBuilder.addJavadoc("\nThe same applies while an allocation session is open on the current thread, see {@link #$N}.", config.methodOpenSession());
+        }
+        openNodeCacheMethodBuilder
+            .addJavadoc("\nWhen passing a jtreesitter node to {@code $N}, it must remain valid while the cache is open.", typedNode.methodFromNode())
+            .addJavadoc("\n\n<p>The cache keeps the typed nodes, and their jtreesitter nodes, reachable until it is closed; closing this tree")
+            .addJavadoc("\ncloses the cache as well. At most one cache can be open for a tree at a time.")
+            .addJavadoc("\n\n@throws $T if a cache is already open for this tree", IllegalStateException.class)
+            .addStatement("return $T.$N($N)", nodeCacheClass, openMethod, treeField);
+        typeBuilder.addMethod(openNodeCacheMethodBuilder.build());
+    }
+
     private void generateBody(TypeSpec.Builder typeBuilder, CodeGenHelper codeGenHelper, GenNodeType rootNodeType) {
         String treeField = "tree";
         var jtreesitter = codeGenHelper.jtreesitterConfig();
@@ -140,6 +930,31 @@ public class TypedTreeClassGenerator {
             .build();
         typeBuilder.addMethod(getTextMethod);
 
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        String charsetParam = "charset";
+        var retainSourceMethod = MethodSpec.methodBuilder(config.methodRetainSource())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(Charset.class, charsetParam)
+            .addJavadoc("Retains the source code of this tree, so that the text of its typed nodes can be compared and viewed")
+            .addJavadoc("\nwithout creating an intermediate {@code String}, for example with {@link $T#$N}.", typedNode.className(), typedNode.methodTextEquals())
+            .addJavadoc("\nThe source code is encoded once with the given charset, and is kept until {@link #$N} or {@link #close}", config.methodReleaseSource())
+            .addJavadoc("\nis called, or until this tree is garbage collected.")
+            .addJavadoc("\n\n<p>The charset must be the one which was used for parsing the source code, otherwise the byte offsets of")
+            .addJavadoc("\nthe nodes do not match; by default jtreesitter parses source code as {@code UTF-8}. If the underlying jtreesitter")
+            .addJavadoc("\ntree is edited, the source code has to be released, and can only be retained again for the new tree.")
+            .addJavadoc("\n\n@throws $T if the source code of the tree is not available", IllegalStateException.class)
+            .addStatement(CodeGenHelper.createNonNullCheck(charsetParam))
+            .addStatement("$T.$N($N, $N)", nodeUtils.classSourceText(), nodeUtils.methodRetainSource(), treeField, charsetParam)
+            .build();
+        typeBuilder.addMethod(retainSourceMethod);
+
+        var releaseSourceMethod = MethodSpec.methodBuilder(config.methodReleaseSource())
+            .addModifiers(Modifier.PUBLIC)
+            .addJavadoc("Releases the source code retained by {@link #$N}, if any.", config.methodRetainSource())
+            .addStatement("$T.$N($N)", nodeUtils.classSourceText(), nodeUtils.methodReleaseSource(), treeField)
+            .build();
+        typeBuilder.addMethod(releaseSourceMethod);
+
         var hasErrorMethod = MethodSpec.methodBuilder(config.methodHasError())
             .addModifiers(Modifier.PUBLIC)
             .returns(boolean.class)
@@ -148,11 +963,27 @@ public class TypedTreeClassGenerator {
             .build();
         typeBuilder.addMethod(hasErrorMethod);
 
+        var walkMethod = MethodSpec.methodBuilder(config.methodWalk())
+            .addModifiers(Modifier.PUBLIC)
+            .returns(typedTreeCursorConfig.className())
+            .addJavadoc("Creates a typed tree cursor starting at the root node.")
+            .addStatement("return new $T($N.$N().$N())", typedTreeCursorConfig.className(), treeField, jtreesitterTree.methodGetRootNode(), jtreesitterNode.methodWalk())
+            .build();
+        typeBuilder.addMethod(walkMethod);
+
+        generateBuildIndex(typeBuilder, treeField);
+        generateAccept(typeBuilder, treeField);
+        generateOpenSession(typeBuilder);
+        generateOpenNodeCache(typeBuilder, treeField);
+
         typeBuilder.addSuperinterface(AutoCloseable.class);
         var closeMethod = MethodSpec.methodBuilder("close")
             .addModifiers(Modifier.PUBLIC)
             .addAnnotation(Override.class)
-            .addJavadoc("Closes the underlying jtreesitter tree, releasing the resources it holds.")
+            .addJavadoc("Closes the underlying jtreesitter tree, releasing the resources it holds, and releases the retained source code.")
+            .addJavadoc("\nAlso closes the node cache of this tree, if any.")
+            .addStatement("$N()", releaseSourceMethod)
+            .addStatement("$T.closeForTree($N)", config.classNodeCache(), treeField)
             .addStatement("$N.close()", treeField)
             .build();
         typeBuilder.addMethod(closeMethod);
@@ -0,0 +1,225 @@
+package marcono1234.jtreesitter.type_gen.internal.gen.common_classes;
+
+import com.palantir.javapoet.*;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.TypeNameCreator;
+
+import javax.lang.model.element.Modifier;
+
+import static marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper.createNonNullCheck;
+
+/**
+ * Code generator for the {@code TypedTreeCursor} class, the 'typed' variant of the jtreesitter {@code TreeCursor}.
+ * Only generated if the {@code TypedTree} class is generated.
+ */
+public class TypedTreeCursorGenerator {
+    public record Config(
+        ClassName className,
+        String methodCreate,
+        String methodGetTreeCursor,
+        String methodCurrentKind,
+        String methodCurrentTypeId,
+        String methodCurrentFieldId,
+        String methodCurrent
+    ) {
+        public static Config createDefault(TypeNameCreator typeNameCreator) {
+            return new Config(
+                typeNameCreator.createOwnClassName("TypedTreeCursor"),
+                "create",
+                "getTreeCursor",
+                "currentKind",
+                "currentTypeId",
+                "currentFieldId",
+                "current"
+            );
+        }
+    }
+
+    /**
+     * Size and alignment of the scratch memory for transient jtreesitter nodes; sufficient for the native
+     * {@code TSNode} struct (32 bytes on 64-bit platforms).
+     */
+    static final int SCRATCH_NODE_SIZE = 64;
+    static final int SCRATCH_NODE_ALIGNMENT = 8;
+
+    private final CodeGenHelper codeGenHelper;
+    private final Config config;
+    private final TypedTreeClassGenerator.Config typedTreeConfig;
+
+    public TypedTreeCursorGenerator(CodeGenHelper codeGenHelper, Config config, TypedTreeClassGenerator.Config typedTreeConfig) {
+        this.codeGenHelper = codeGenHelper;
+        this.config = config;
+        this.typedTreeConfig = typedTreeConfig;
+    }
+
+    public TypedTreeCursorGenerator(TypeNameCreator typeNameCreator, CodeGenHelper codeGenHelper) {
+        this(codeGenHelper, Config.createDefault(typeNameCreator), TypedTreeClassGenerator.Config.createDefault(typeNameCreator, codeGenHelper));
+    }
+
+    private void generateJavadoc(TypeSpec.Builder typeBuilder) {
+        var jtreesitterCursor = codeGenHelper.jtreesitterConfig().treeCursor();
+        typeBuilder.addJavadoc("A 'typed' tree cursor, wrapping a jtreesitter {@link $T}. Can be created with {@link $T#$N} or {@link #$N}.", jtreesitterCursor.className(), typedTreeConfig.className(), typedTreeConfig.methodWalk(), config.methodCreate());
+        typeBuilder.addJavadoc("\n\n<p>In contrast to navigating with the methods of the typed nodes, this cursor allows checking the type")
+            .addJavadoc("\n(see {@link #$N}) and field (see {@link #$N}) of the current node without creating a typed node object.", config.methodCurrentKind(), config.methodCurrentFieldId())
+            .addJavadoc("\nThe typed node is only created when {@link #$N} is called.", config.methodCurrent());
+        typeBuilder.addJavadoc("\n\n<p>Like the jtreesitter {@code TreeCursor}, instances of this class are not thread-safe and have to be closed")
+            .addJavadoc("\nonce they are not needed anymore.");
+    }
+
+    private void generateBody(TypeSpec.Builder typeBuilder) {
+        var jtreesitter = codeGenHelper.jtreesitterConfig();
+        var jtreesitterNode = jtreesitter.node();
+        var jtreesitterCursor = jtreesitter.treeCursor();
+        var jtreesitterCursorClass = jtreesitterCursor.className();
+        var ffmApi = codeGenHelper.ffmApiConfig();
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var typedNode = codeGenHelper.typedNodeConfig();
+        var className = config.className();
+
+        var cursorField = FieldSpec.builder(jtreesitterCursorClass, "cursor", Modifier.PRIVATE, Modifier.FINAL).build();
+        var scratchAllocatorField = FieldSpec.builder(ffmApi.classSegmentAllocator(), "scratchAllocator", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Allocator for transient jtreesitter nodes which do not escape this class; reuses the same memory for every node.")
+            .build();
+        typeBuilder.addField(cursorField);
+        typeBuilder.addField(scratchAllocatorField);
+
+        String cursorParam = "cursor";
+        // Package-private constructor; users should call the static factory method instead
+        typeBuilder.addMethod(MethodSpec.constructorBuilder()
+            .addParameter(jtreesitterCursorClass, cursorParam)
+            .addStatement("this.$N = $N", cursorField, cursorParam)
+            .addStatement("this.$N = $T.prefixAllocator($T.$N().allocate($L, $L))", scratchAllocatorField, ffmApi.classSegmentAllocator(), ffmApi.classArena(), ffmApi.methodArenaOfAuto(), SCRATCH_NODE_SIZE, SCRATCH_NODE_ALIGNMENT)
+            .build()
+        );
+
+        String startNodeParam = "startNode";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodCreate())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(typedNode.className(), startNodeParam)
+            .returns(className)
+            .addJavadoc("Creates a cursor starting at the given node.")
+            .addStatement(createNonNullCheck(startNodeParam))
+            .addStatement("return new $T($N.$N().$N())", className, startNodeParam, typedNode.methodGetNode(), jtreesitterNode.methodWalk())
+            .build()
+        );
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodGetTreeCursor())
+            .addModifiers(Modifier.PUBLIC)
+            .returns(jtreesitterCursorClass)
+            .addJavadoc("Returns the underlying jtreesitter tree cursor.")
+            .addStatement("return $N", cursorField)
+            .build()
+        );
+
+        for (var gotoMethod : new String[] {jtreesitterCursor.methodGotoFirstChild(), jtreesitterCursor.methodGotoNextSibling(), jtreesitterCursor.methodGotoParent()}) {
+            typeBuilder.addMethod(MethodSpec.methodBuilder(gotoMethod)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addJavadoc("@see $T#$N", jtreesitterCursorClass, gotoMethod)
+                .addStatement("return $N.$N()", cursorField, gotoMethod)
+                .build()
+            );
+        }
+
+        var typedNodeKind = codeGenHelper.typedNodeKindConfig();
+        String transientNodeVar = "transientNode";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodCurrentKind())
+            .addModifiers(Modifier.PUBLIC)
+            .returns(typedNodeKind.className())
+            .addJavadoc("Gets the kind of the current node, without creating a typed node.")
+            .addJavadoc("\n\n<p>Each call creates a transient jtreesitter {@code Node} object; its native memory is provided by")
+            .addJavadoc("\na scratch allocator of this cursor, which reuses the same memory for every call.")
+            .addJavadoc("\n\n@see $T#$N", typedNodeKind.className(), typedNodeKind.methodOf())
+            .addComment("jtreesitter provides no direct access to the type of the current node, so create a transient node")
+            .addStatement("var $N = $N.$N($N)", transientNodeVar, cursorField, jtreesitterCursor.methodGetCurrentNode(), scratchAllocatorField)
+            .addStatement("return $L", codeGenHelper.createNodeKindCode(transientNodeVar))
+            .build()
+        );
+
+        var numericIdType = jtreesitter.language().numericIdType();
+        var currentTypeIdBuilder = MethodSpec.methodBuilder(config.methodCurrentTypeId())
+            .addModifiers(Modifier.PUBLIC)
+            .returns(numericIdType)
+            .addJavadoc("Gets the numeric type ID of the current node, without creating a typed node. The result can be compared");
+        if (codeGenHelper.generatesNumericIdConstants()) {
+            currentTypeIdBuilder.addJavadoc("\nwith the type ID constants of the typed node classes.");
+        } else {
+            currentTypeIdBuilder.addJavadoc("\nwith the grammar symbol ID of other nodes, as returned by {@link $T#$N()}.", jtreesitterNode.className(), jtreesitterNode.methodGetTypeId());
+        }
+        typeBuilder.addMethod(currentTypeIdBuilder
+            .addJavadoc("\n\n<p>Each call creates a transient jtreesitter {@code Node} object; its native memory is provided by")
+            .addJavadoc("\na scratch allocator of this cursor, which reuses the same memory for every call.")
+            .addComment("jtreesitter provides no direct access to the type of the current node, so create a transient node")
+            .addStatement("return $N.$N($N).$N()", cursorField, jtreesitterCursor.methodGetCurrentNode(), scratchAllocatorField, jtreesitterNode.methodGetTypeId())
+            .build()
+        );
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodCurrentFieldId())
+            .addModifiers(Modifier.PUBLIC)
+            .returns(numericIdType)
+            .addJavadoc("Gets the numeric field ID of the current node; {@code 0} if the node is not the child of a field.")
+            .addJavadoc("\n\n@see $T#$N", jtreesitterCursorClass, jtreesitterCursor.methodGetCurrentFieldId())
+            .addStatement("return $N.$N()", cursorField, jtreesitterCursor.methodGetCurrentFieldId())
+            .build()
+        );
+
+        var allocatorParam = ParameterSpec.builder(ffmApi.classSegmentAllocator(), "allocator")
+            .addJavadoc("allocator to use for the underlying jtreesitter node")
+            .build();
+        var returnType = codeGenHelper.getReturnOptionalType(typedNode.className());
+        String resultVar = "result";
+        var currentWithAllocator = MethodSpec.methodBuilder(config.methodCurrent())
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(allocatorParam)
+            .returns(returnType)
+            .addJavadoc("Gets the current node as typed node; $L if there is no typed node class for it, for example for", codeGenHelper.getEmptyOptionalJavadocText())
+            .addJavadoc("\nunnamed nodes. The underlying jtreesitter node is allocated with the given allocator.")
+            .addStatement(createNonNullCheck(allocatorParam))
+            // The memory of the node is managed by the caller, so the typed node must not be cached
+            .addStatement("var $N = $L", resultVar, codeGenHelper.createUncachedCode(createTypedCurrentNodeCode(cursorField, allocatorParam.name())));
+        codeGenHelper.addReturnOptionalStatement(currentWithAllocator, resultVar);
+        typeBuilder.addMethod(currentWithAllocator.build());
+
+        String allocatorVar = "allocator";
+        var currentMethod = MethodSpec.methodBuilder(config.methodCurrent())
+            .addModifiers(Modifier.PUBLIC)
+            .returns(returnType)
+            .addJavadoc("Gets the current node as typed node; $L if there is no typed node class for it, for example for", codeGenHelper.getEmptyOptionalJavadocText())
+            .addJavadoc("\nunnamed nodes. The underlying jtreesitter node is allocated with an automatic {@code Arena}, so the typed node")
+            .addJavadoc("\nremains usable after this cursor was closed.");
+        codeGenHelper.addSessionAllocatorJavadoc(currentMethod);
+        currentMethod
+            .addStatement("var $N = $T.$N()", allocatorVar, nodeUtils.className(), nodeUtils.methodGetSessionAllocator())
+            .beginControlFlow("if ($N == null)", allocatorVar)
+            .addStatement("$N = $T.$N()", allocatorVar, ffmApi.classArena(), ffmApi.methodArenaOfAuto())
+            .endControlFlow()
+            // Don't delegate to the method with allocator parameter, to allow caching typed nodes for an automatic Arena
+            .addStatement("var $N = $L", resultVar, createTypedCurrentNodeCode(cursorField, allocatorVar));
+        codeGenHelper.addReturnOptionalStatement(currentMethod, resultVar);
+        typeBuilder.addMethod(currentMethod.build());
+
+        typeBuilder.addSuperinterface(AutoCloseable.class);
+        typeBuilder.addMethod(MethodSpec.methodBuilder("close")
+            .addModifiers(Modifier.PUBLIC)
+            .addAnnotation(Override.class)
+            .addJavadoc("Closes the underlying jtreesitter tree cursor.")
+            .addStatement("$N.close()", cursorField)
+            .build()
+        );
+    }
+
+    private CodeBlock createTypedCurrentNodeCode(FieldSpec cursorField, String allocatorVar) {
+        var jtreesitterCursor = codeGenHelper.jtreesitterConfig().treeCursor();
+        return codeGenHelper.createTypedNodeCode(CodeBlock.of("$N.$N($N)", cursorField, jtreesitterCursor.methodGetCurrentNode(), allocatorVar).toString());
+    }
+
+    public JavaFile generateCode() {
+        var typeBuilder = TypeSpec.classBuilder(config.className())
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+
+        generateJavadoc(typeBuilder);
+        generateBody(typeBuilder);
+
+        return codeGenHelper.createJavaFile(typeBuilder, config.className());
+    }
+}
@@ -0,0 +1,155 @@
+package marcono1234.jtreesitter.type_gen.internal.gen.common_classes;
+
+import com.palantir.javapoet.*;
+import marcono1234.jtreesitter.type_gen.internal.gen.GenRegularNodeType;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.TypeNameCreator;
+
+import javax.lang.model.element.Modifier;
+
+/**
+ * Code generator for the {@code TypedVisitor} interface, which has a pair of visit and leave methods for each
+ * regular node type. The traversal itself is implemented by {@code TypedTree#accept}, see {@link TypedTreeClassGenerator}.
+ * Only generated if the {@code TypedTree} class is generated.
+ */
+public class TypedVisitorGenerator {
+    public record Config(
+        ClassName className,
+        ClassName classAction,
+        String constantContinue,
+        String constantSkipSubtree,
+        String constantStop,
+        String methodDefaultVisit,
+        String methodDefaultLeave,
+        String methodPrefixVisit,
+        String methodPrefixLeave
+    ) {
+        public String getVisitMethodName(GenRegularNodeType nodeType) {
+            return methodPrefixVisit + nodeType.getJavaTypeName().simpleName();
+        }
+
+        public String getLeaveMethodName(GenRegularNodeType nodeType) {
+            return methodPrefixLeave + nodeType.getJavaTypeName().simpleName();
+        }
+
+        public static Config createDefault(TypeNameCreator typeNameCreator) {
+            var className = typeNameCreator.createOwnClassName("TypedVisitor");
+            return new Config(
+                className,
+                className.nestedClass("Action"),
+                "CONTINUE",
+                "SKIP_SUBTREE",
+                "STOP",
+                // Don't use the 'visit' and 'leave' prefixes, to avoid clashes with the node type specific methods
+                "defaultVisit",
+                "defaultLeave",
+                "visit",
+                "leave"
+            );
+        }
+    }
+
+    private final CodeGenHelper codeGenHelper;
+    private final Config config;
+    private final TypedTreeClassGenerator.Config typedTreeConfig;
+
+    public TypedVisitorGenerator(CodeGenHelper codeGenHelper, Config config, TypedTreeClassGenerator.Config typedTreeConfig) {
+        this.codeGenHelper = codeGenHelper;
+        this.config = config;
+        this.typedTreeConfig = typedTreeConfig;
+    }
+
+    public TypedVisitorGenerator(TypeNameCreator typeNameCreator, CodeGenHelper codeGenHelper) {
+        this(codeGenHelper, Config.createDefault(typeNameCreator), TypedTreeClassGenerator.Config.createDefault(typeNameCreator, codeGenHelper));
+    }
+
+    private void generateJavadoc(TypeSpec.Builder typeBuilder) {
+        typeBuilder.addJavadoc("Visitor for the nodes of a typed tree, see {@link $T#$N}.", typedTreeConfig.className(), typedTreeConfig.methodAccept());
+        typeBuilder.addJavadoc("\nThe visitor has a {@code visit...} and a {@code leave...} method for each typed node class, which are called")
+            .addJavadoc("\nbefore respectively after the children of a node are visited. By default these methods delegate to the")
+            .addJavadoc("\ngeneric {@link #$N} and {@link #$N} methods.", config.methodDefaultVisit(), config.methodDefaultLeave());
+        typeBuilder.addJavadoc("\n\n<p>Typed nodes are only created for nodes whose visit or leave method (or the corresponding generic method)")
+            .addJavadoc("\nis overridden, so visitors which are only interested in a few node types traverse the tree efficiently.")
+            .addJavadoc("\nNodes for which no typed node class exists, for example unnamed nodes, are traversed but not passed to the visitor.");
+    }
+
+    private TypeSpec generateActionEnum() {
+        return TypeSpec.enumBuilder(config.classAction())
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addJavadoc("Determines how the traversal continues after a visitor method was called.")
+            .addEnumConstant(config.constantContinue(), TypeSpec.anonymousClassBuilder("")
+                .addJavadoc("Continue the traversal normally.")
+                .build()
+            )
+            .addEnumConstant(config.constantSkipSubtree(), TypeSpec.anonymousClassBuilder("")
+                .addJavadoc("Skip the children of the node; the leave method of the node is still called.")
+                .addJavadoc("\nWhen returned by a leave method, this has the same effect as {@link #$N}.", config.constantContinue())
+                .build()
+            )
+            .addEnumConstant(config.constantStop(), TypeSpec.anonymousClassBuilder("")
+                .addJavadoc("Stop the traversal; no further visitor methods are called.")
+                .build()
+            )
+            .build();
+    }
+
+    private void generateMethods(TypeSpec.Builder typeBuilder) {
+        var typedNode = codeGenHelper.typedNodeConfig().className();
+        var actionClass = config.classAction();
+        String nodeParam = "node";
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodDefaultVisit())
+            .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+            .addParameter(typedNode, nodeParam)
+            .returns(actionClass)
+            .addJavadoc("Called before the children of a node are visited, unless the node type specific visit method is overridden.")
+            .addJavadoc("\nReturns {@link $T#$N} by default.", actionClass, config.constantContinue())
+            .addStatement("return $T.$N", actionClass, config.constantContinue())
+            .build()
+        );
+        typeBuilder.addMethod(MethodSpec.methodBuilder(config.methodDefaultLeave())
+            .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+            .addParameter(typedNode, nodeParam)
+            .returns(actionClass)
+            .addJavadoc("Called after the children of a node were visited, unless the node type specific leave method is overridden.")
+            .addJavadoc("\nReturns {@link $T#$N} by default.", actionClass, config.constantContinue())
+            .addStatement("return $T.$N", actionClass, config.constantContinue())
+            .build()
+        );
+
+        for (var nodeType : codeGenHelper.typedNodeKindConfig().constantNames().keySet()) {
+            var nodeClass = nodeType.getJavaTypeName();
+            String nodeTypeJavadoc = CodeGenHelper.escapeJavadocText(nodeType.getNodeType());
+
+            typeBuilder.addMethod(MethodSpec.methodBuilder(config.getVisitMethodName(nodeType))
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addParameter(nodeClass, nodeParam)
+                .returns(actionClass)
+                .addJavadoc("Called before the children of a {@link $T $L} node are visited.", nodeClass, nodeTypeJavadoc)
+                .addJavadoc("\nDelegates to {@link #$N} by default.", config.methodDefaultVisit())
+                .addStatement("return $N($N)", config.methodDefaultVisit(), nodeParam)
+                .build()
+            );
+            typeBuilder.addMethod(MethodSpec.methodBuilder(config.getLeaveMethodName(nodeType))
+                .addModifiers(Modifier.PUBLIC, Modifier.DEFAULT)
+                .addParameter(nodeClass, nodeParam)
+                .returns(actionClass)
+                .addJavadoc("Called after the children of a {@link $T $L} node were visited.", nodeClass, nodeTypeJavadoc)
+                .addJavadoc("\nDelegates to {@link #$N} by default.", config.methodDefaultLeave())
+                .addStatement("return $N($N)", config.methodDefaultLeave(), nodeParam)
+                .build()
+            );
+        }
+    }
+
+    public JavaFile generateCode() {
+        var typeBuilder = TypeSpec.interfaceBuilder(config.className())
+            .addModifiers(Modifier.PUBLIC);
+
+        generateJavadoc(typeBuilder);
+        typeBuilder.addType(generateActionEnum());
+        generateMethods(typeBuilder);
+
+        return codeGenHelper.createJavaFile(typeBuilder, config.className());
+    }
+}
@@ -154,6 +154,23 @@ class TypedQueryConfig {
         }
     }
 
+    public QueryCacheConfig queryCacheConfig() {
+        return new QueryCacheConfig();
+    }
+
+    /**
+     * Config for the public class {@code QueryCache}, which allows managing the cache of compiled jtreesitter queries;
+     * building structurally identical typed queries reuses the same underlying query.
+     */
+    public class QueryCacheConfig {
+        private QueryCacheConfig() {
+        }
+
+        public ClassName name() {
+            return TypedQueryConfig.this.name().nestedClass("QueryCache");
+        }
+    }
+
     public QNodeConfig qNodeConfig() {
         return new QNodeConfig();
     }
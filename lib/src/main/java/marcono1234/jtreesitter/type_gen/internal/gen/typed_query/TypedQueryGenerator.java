@@ -8,9 +8,12 @@ import marcono1234.jtreesitter.type_gen.internal.gen.utils.CodeGenHelper;
 import marcono1234.jtreesitter.type_gen.internal.gen.utils.TypeNameCreator;
 
 import javax.lang.model.element.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.function.BiPredicate;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -103,7 +106,7 @@ public class TypedQueryGenerator {
     }
 
     /** Used by the internal {@code CaptureRegistry} as prefix for capture names */
-    private static final FieldSpec FIELD_CAPTURE_PREFIX = FieldSpec.builder(String.class, "CAPTURE_PREFIX", Modifier.STATIC, Modifier.FINAL)
+    private static final FieldSpec FIELD_CAPTURE_PREFIX = FieldSpec.builder(String.class, "CAPTURE_PREFIX", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
         .initializer("$S", "c")
         .build();
 
@@ -122,12 +125,15 @@ public class TypedQueryGenerator {
 
         var typeCaptureHandlerWildcard = ParameterizedTypeName.get(typedQueryConfig.captureHandlerConfig().name(), typeVarCollector, unboundedWildcard());
 
+        // Handlers are looked up by capture name instead of by capture index because jtreesitter does not expose the
+        // index of a capture; the capture names of a match are the String instances of the query, so the lookup only
+        // uses their cached hash code and an identity check, and requires no parsing
         var fieldHandlers = FieldSpec.builder(
-                ParameterizedTypeName.get(ClassName.get(List.class), typeCaptureHandlerWildcard),
-                "handlers",
+                ParameterizedTypeName.get(ClassName.get(Map.class), ClassName.get(String.class), typeCaptureHandlerWildcard),
+                "handlersByCaptureName",
                 Modifier.PRIVATE, Modifier.FINAL
             )
-            .initializer("new $T<>()", ArrayList.class)
+            .initializer("new $T<>()", HashMap.class)
             .build();
 
         String paramCaptureHandler = "captureHandler";
@@ -138,7 +144,7 @@ public class TypedQueryGenerator {
             .addParameter(typeCaptureHandlerWildcard, paramCaptureHandler)
             .addStatement(createNonNullCheck(paramCaptureHandler))
             .addStatement("var $N = $N + $N.size()", varCaptureName, FIELD_CAPTURE_PREFIX, fieldHandlers)
-            .addStatement("$N.add($N)", fieldHandlers, paramCaptureHandler)
+            .addStatement("$N.put($N, $N)", fieldHandlers, varCaptureName, paramCaptureHandler)
             .addStatement("return $N", varCaptureName)
             .build();
 
@@ -149,20 +155,22 @@ public class TypedQueryGenerator {
             .build();
 
         String paramCollector = "collector";
-        String paramCaptureName = "captureName";
-        String paramNode = "node";
-        String varHandlerIndex = "handlerIndex";
+        String paramCapture = "capture";
         String varHandler = "handler";
+        String varTypedNode = "typedNode";
         var typeCaptureHandler = ParameterizedTypeName.get(typedQueryConfig.captureHandlerConfig().name(), typeVarCollector, typedNodeName);
+        var queryCapture = codeGenHelper.jtreesitterConfig().queryCapture();
         var methodInvoke = MethodSpec.methodBuilder(captureRegistryConfig.methodInvokeHandler())
             .addModifiers(Modifier.PUBLIC)
             .addParameter(typeVarCollector, paramCollector)
-            .addParameter(String.class, paramCaptureName)
-            .addParameter(typedNodeName, paramNode)
-            .addStatement("if (!$N.startsWith($N)) throw new $T(\"Unexpected capture name: \" + $N)", paramCaptureName, FIELD_CAPTURE_PREFIX, IllegalArgumentException.class, paramCaptureName)
-            .addStatement("int $N = $T.parseInt($N.substring($N.length()))", varHandlerIndex, Integer.class, paramCaptureName, FIELD_CAPTURE_PREFIX)
-            .addStatement("$L var $N = ($T) $N.get($N)", SUPPRESS_WARNINGS_UNCHECKED, varHandler, typeCaptureHandler, fieldHandlers, varHandlerIndex)
-            .addStatement("$N.$N($N, $N)", varHandler, typedQueryConfig.captureHandlerConfig().methodHandleCapture(), paramCollector, paramNode)
+            .addParameter(queryCapture.className(), paramCapture)
+            .addStatement("$L var $N = ($T) $N.get($N.$N())", SUPPRESS_WARNINGS_UNCHECKED, varHandler, typeCaptureHandler, fieldHandlers, paramCapture, queryCapture.methodName())
+            .addComment("Ignore predicate captures")
+            .beginControlFlow("if ($N != null)", varHandler)
+            // The captured node is only valid during query execution, so the typed node must not be cached
+            .addStatement("var $N = $L", varTypedNode, codeGenHelper.createUncachedCode(CodeBlock.of("$T.$N($N.$N())", typedNodeName, codeGenHelper.typedNodeConfig().methodFromNodeThrowing(), paramCapture, queryCapture.methodNode())))
+            .addStatement("$N.$N($N, $N)", varHandler, typedQueryConfig.captureHandlerConfig().methodHandleCapture(), paramCollector, varTypedNode)
+            .endControlFlow()
             .build();
 
         return TypeSpec.classBuilder(captureRegistryConfig.name())
@@ -176,6 +184,18 @@ public class TypedQueryGenerator {
             .build();
     }
 
+    /**
+     * Creates the function which converts the captured jtreesitter nodes to typed nodes. The captured nodes are only
+     * valid during query execution, so the typed nodes must not be cached.
+     */
+    private CodeBlock createCapturedNodeConvertingCode(TypeName typedNodeName) {
+        if (codeGenHelper.generatesTypedTree()) {
+            String nodeVar = "n";
+            return CodeBlock.of("$N -> $L", nodeVar, codeGenHelper.createUncachedCode(CodeBlock.of("$T.$N($N)", typedNodeName, codeGenHelper.typedNodeConfig().methodFromNodeThrowing(), nodeVar)));
+        }
+        return CodeBlock.of("$T::$N", typedNodeName, codeGenHelper.typedNodeConfig().methodFromNodeThrowing());
+    }
+
     private TypeSpec generateClassPredicateRegistry() {
         var predicateRegistryConfig = typedQueryConfig.predicateRegistryConfig();
 
@@ -184,12 +204,27 @@ public class TypedQueryGenerator {
             ParameterizedTypeName.get(ClassName.get(Stream.class), typedNodeName)
         );
 
+        String componentPredicate = "predicate";
+        String componentCaptureName = "captureName";
+        var customPredicateClass = predicateRegistryConfig.name().nestedClass("CustomPredicate");
+        var customPredicateType = TypeSpec.recordBuilder(customPredicateClass)
+            .addModifiers(Modifier.PRIVATE)
+            .addJavadoc("Custom predicate and the name of the capture whose nodes it tests.")
+            .recordConstructor(MethodSpec.constructorBuilder()
+                .addParameter(typePredicate, componentPredicate)
+                .addParameter(String.class, componentCaptureName)
+                .build()
+            )
+            .build();
+
+        // Predicates are looked up by the complete predicate name, including the trailing '?', so that evaluating
+        // a predicate does not have to parse the name; see also comment in CaptureRegistry
         var fieldPredicates = FieldSpec.builder(
-                ParameterizedTypeName.get(ClassName.get(List.class), typePredicate),
-                "customPredicates",
+                ParameterizedTypeName.get(ClassName.get(Map.class), ClassName.get(String.class), customPredicateClass),
+                "customPredicatesByName",
                 Modifier.PRIVATE, Modifier.FINAL
             )
-            .initializer("new $T<>()", ArrayList.class)
+            .initializer("new $T<>()", HashMap.class)
             .build();
 
         var fieldBuiltInQueryCaptureIndex = FieldSpec.builder(int.class, "builtInQueryCaptureIndex", Modifier.PRIVATE).initializer("0").build();
@@ -198,13 +233,17 @@ public class TypedQueryGenerator {
         MethodSpec methodRegister;
         {
             String paramPredicate = "predicate";
+            String varCaptureName = "captureName";
             methodRegister = MethodSpec.methodBuilder(predicateRegistryConfig.methodRegisterCustomPredicate())
                 .addModifiers(Modifier.PUBLIC)
                 .returns(String.class)
                 .addParameter(typePredicate, paramPredicate)
                 .addStatement(createNonNullCheck(paramPredicate))
                 .addStatement("var $N = $N + $N.size()", varPredicateName, FIELD_CUSTOM_PREDICATE_PREFIX, fieldPredicates)
-                .addStatement("$N.add($N)", fieldPredicates, paramPredicate)
+                .addComment("Predicate name is also used as capture name")
+                .addStatement("var $N = $N", varCaptureName, varPredicateName)
+                .addComment("Query string uses the name with trailing '?'")
+                .addStatement("$N.put($N + '?', new $T($N, $N))", fieldPredicates, varPredicateName, customPredicateClass, paramPredicate, varCaptureName)
                 .addStatement("return $N", varPredicateName)
                 .build();
         }
@@ -219,9 +258,7 @@ public class TypedQueryGenerator {
         {
             String paramQueryPredicate = "queryPredicate";
             String paramQueryMatch = "queryMatch";
-            String varPredicateIndex = "predicateIndex";
             String varPredicate = "predicate";
-            String varCaptureName = "captureName";
             String varCaptures = "captures";
             var queryPredicate = codeGenHelper.jtreesitterConfig().queryPredicate();
             var queryMatch = codeGenHelper.jtreesitterConfig().queryMatch();
@@ -232,20 +269,16 @@ public class TypedQueryGenerator {
                 .addParameter(queryMatch.className(), paramQueryMatch)
                 .addStatement("if (!$N.$N().isEmpty()) throw new $T(\"Unexpected predicate args: \" + $N)", paramQueryPredicate, queryPredicate.methodGetArgs(), IllegalArgumentException.class, paramQueryPredicate)
                 .addStatement("var $N = $N.$N()", varPredicateName, paramQueryPredicate, queryPredicate.methodGetName())
-                .addStatement("if (!$N.startsWith($N) || !$N.endsWith(\"?\")) throw new $T(\"Unexpected predicate name: \" + $N)", varPredicateName, FIELD_CUSTOM_PREDICATE_PREFIX, varPredicateName, IllegalArgumentException.class, varPredicateName)
-                .addComment("Remove trailing '?'")
-                .addStatement("$1N = $1N.substring(0, $1N.length() - 1)", varPredicateName)
-                .addStatement("int $N = $T.parseInt($N.substring($N.length()))", varPredicateIndex, Integer.class, varPredicateName, FIELD_CUSTOM_PREDICATE_PREFIX)
-                .addStatement("var $N = $N.get($N)", varPredicate, fieldPredicates, varPredicateIndex)
-                .addComment("Predicate name is also used as capture name")
-                .addStatement("var $N = $N", varCaptureName, varPredicateName)
-                .addStatement("var $N = $N.$N($N).stream().map($T::$N)", varCaptures, paramQueryMatch, queryMatch.methodFindNodes(), varCaptureName, typedNodeName, codeGenHelper.typedNodeConfig().methodFromNodeThrowing())
-                .addStatement("return $N.test($N)", varPredicate, varCaptures)
+                .addStatement("var $N = $N.get($N)", varPredicate, fieldPredicates, varPredicateName)
+                .addStatement("if ($N == null) throw new $T(\"Unexpected predicate name: \" + $N)", varPredicate, IllegalArgumentException.class, varPredicateName)
+                .addStatement("var $N = $N.$N($N.$N()).stream().map($L)", varCaptures, paramQueryMatch, queryMatch.methodFindNodes(), varPredicate, componentCaptureName, createCapturedNodeConvertingCode(typedNodeName))
+                .addStatement("return $N.$N().test($N)", varPredicate, componentPredicate, varCaptures)
                 .build();
         }
 
         return TypeSpec.classBuilder(predicateRegistryConfig.name())
             .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addType(customPredicateType)
             .addField(FIELD_CUSTOM_PREDICATE_PREFIX)
             .addField(fieldPredicates)
             .addField(FIELD_BUILTIN_PREDICATE_CAPTURE_PREFIX)
@@ -256,6 +289,94 @@ public class TypedQueryGenerator {
             .build();
     }
 
+    /**
+     * Generates the public {@code QueryCache} API, which delegates to the cache in {@code NodeUtils} that is shared
+     * with other query users in the generated code.
+     */
+    private TypeSpec generateClassQueryCache() {
+        var classQueryCache = typedQueryConfig.queryCacheConfig().name();
+        var nodeUtilsQueryCache = codeGenHelper.nodeUtilsConfig().classQueryCache();
+        int initialMaxSize = codeGenHelper.queryCacheMaxSize();
+
+        var constructor = MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PRIVATE)
+            .build();
+
+        var methodGetMaxSize = MethodSpec.methodBuilder("getMaxSize")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(int.class)
+            .addJavadoc("Returns the maximum number of cached queries.")
+            .addStatement("return $T.$N()", nodeUtilsQueryCache, "getMaxSize")
+            .build();
+
+        String paramMaxSize = "maxSize";
+        var methodSetMaxSize = MethodSpec.methodBuilder("setMaxSize")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(int.class, paramMaxSize)
+            .addJavadoc("Sets the maximum number of cached queries, evicting the least recently used queries if there are more.")
+            .addJavadoc("\nA maximum size of 0 disables caching. The initial maximum size is $L, as configured during code generation.", initialMaxSize)
+            .addJavadoc("\n\n@throws IllegalArgumentException if the maximum size is negative")
+            .addStatement("$T.$N($N)", nodeUtilsQueryCache, "setMaxSize", paramMaxSize)
+            .build();
+
+        var methodClear = MethodSpec.methodBuilder("clear")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addJavadoc("Evicts all cached queries. Queries which are not used anymore are closed immediately, the other ones")
+            .addJavadoc("\nonce the last typed query or stream using them is closed.")
+            .addStatement("$T.$N()", nodeUtilsQueryCache, "clear")
+            .build();
+
+        var methodSize = MethodSpec.methodBuilder("size")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(int.class)
+            .addJavadoc("Returns the number of cached queries.")
+            .addStatement("return $T.$N()", nodeUtilsQueryCache, "size")
+            .build();
+
+        var methodGetHitCount = MethodSpec.methodBuilder("getHitCount")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(long.class)
+            .addJavadoc("Returns the number of times a cached query was reused.")
+            .addStatement("return $T.$N()", nodeUtilsQueryCache, "getHitCount")
+            .build();
+
+        var methodGetMissCount = MethodSpec.methodBuilder("getMissCount")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(long.class)
+            .addJavadoc("Returns the number of times a query was created because it was not cached.")
+            .addStatement("return $T.$N()", nodeUtilsQueryCache, "getMissCount")
+            .build();
+
+        var methodGetEvictionCount = MethodSpec.methodBuilder("getEvictionCount")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(long.class)
+            .addJavadoc("Returns the number of queries which have been evicted from the cache.")
+            .addStatement("return $T.$N()", nodeUtilsQueryCache, "getEvictionCount")
+            .build();
+
+        var typeBuilder = TypeSpec.classBuilder(classQueryCache)
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Cache of the compiled jtreesitter queries of typed queries, keyed by the language and the query string.")
+            .addJavadoc("\nBuilding structurally identical typed queries therefore reuses the same compiled query, even if they use")
+            .addJavadoc("\ndifferent capture handlers or predicates. The least recently used queries are evicted once the cache exceeds")
+            .addJavadoc("\nits {@linkplain #$N maximum size}.", methodSetMaxSize);
+        if (codeGenHelper.generatesFindNodesMethods() && !codeGenHelper.generatesCursorFindNodesMethods()) {
+            typeBuilder.addJavadoc("\nThe cache is shared with the {@code findNodes} methods of the typed nodes.");
+        }
+        return typeBuilder
+            .addJavadoc("\n\n<p>A compiled query is closed once it has been evicted and all typed queries using it have been closed.")
+            .addJavadoc("\nAll methods of this class are thread-safe.")
+            .addMethod(constructor)
+            .addMethod(methodGetMaxSize)
+            .addMethod(methodSetMaxSize)
+            .addMethod(methodClear)
+            .addMethod(methodSize)
+            .addMethod(methodGetHitCount)
+            .addMethod(methodGetMissCount)
+            .addMethod(methodGetEvictionCount)
+            .build();
+    }
+
     private CodeBlock createNoCaptureHandlersCheck() {
         var qCapturableConfig = typedQueryConfig.qCapturableConfig();
         return CodeBlock.of("if ($N.$N()) throw new $T(\"No capture handlers have been registered using `$N#$N`\")", fieldCaptureRegistry, typedQueryConfig.captureRegistryConfig().methodHasNoHandlers(), IllegalStateException.class, qCapturableConfig.name().simpleName(), qCapturableConfig.methodCaptured());
@@ -274,12 +395,8 @@ public class TypedQueryGenerator {
 
         String paramCollector = "collector";
         String varCapture = "capture";
-        String varCaptureName = "captureName";
-        String varTypedNode = "typedNode";
-        var typedNode = codeGenHelper.typedNodeConfig();
         var captureRegistry = typedQueryConfig.captureRegistryConfig();
         var queryMatch = codeGenHelper.jtreesitterConfig().queryMatch();
-        var queryCapture = codeGenHelper.jtreesitterConfig().queryCapture();
         var methodCollect = MethodSpec.methodBuilder(typedQueryMatchConfig.methodCollectCaptures())
             .addModifiers(Modifier.PUBLIC)
             .addParameter(typeVarCollector, paramCollector)
@@ -291,12 +408,7 @@ public class TypedQueryGenerator {
             // just want to check if input matches a certain pattern (defined by the query)
             .addStatement(createNoCaptureHandlersCheck())
             .beginControlFlow("for (var $N : $N.$N())", varCapture, fieldQueryMatch, queryMatch.methodCaptures())
-            .addStatement("var $N = $N.$N()", varCaptureName, varCapture, queryCapture.methodName())
-            .addComment("Ignore predicate captures")
-            .beginControlFlow("if ($N.startsWith($T.$N))", varCaptureName, captureRegistry.name(), FIELD_CAPTURE_PREFIX)
-            .addStatement("var $N = $T.$N($N.$N())", varTypedNode, typedNode.className(), typedNode.methodFromNodeThrowing(), varCapture, queryCapture.methodNode())
-            .addStatement("$N.$N($N, $N, $N)", fieldCaptureRegistry, captureRegistry.methodInvokeHandler(), paramCollector, varCaptureName, varTypedNode)
-            .endControlFlow()
+            .addStatement("$N.$N($N, $N)", fieldCaptureRegistry, captureRegistry.methodInvokeHandler(), paramCollector, varCapture)
             .endControlFlow()
             .build();
 
@@ -322,109 +434,173 @@ public class TypedQueryGenerator {
     }
 
 
-    private MethodSpec generateMethodFindMatches(FieldSpec fieldLanguage, FieldSpec fieldQuery, MethodSpec methodCreatePredicateCallback, boolean hasAllocatorParam) {
+    private MethodSpec generateMethodFindMatches(FieldSpec fieldLanguage, FieldSpec fieldIsClosed, MethodSpec methodExecuteQuery, boolean hasAllocatorParam, boolean hasOptionsParam) {
         // TODO: Should use `TypedNode` as start node? Probably not, but maybe have convenience overloads taking TypedNode, which just call `TypedNode#getNode`
         // TODO: Should verify that `node.getTree().getLanguage()` matches query language?
 
         var jtreesitter = codeGenHelper.jtreesitterConfig();
-        var queryCursor = jtreesitter.queryCursor();
+        var ffmApiConfig = codeGenHelper.ffmApiConfig();
+        var queryOptions = codeGenHelper.queryOptionsConfig();
 
         String methodName = typedQueryConfig.methodFindMatches();
         var paramStartNode = ParameterSpec.builder(jtreesitter.node().className(), "startNode").build();
-        var paramAllocator = ParameterSpec.builder(codeGenHelper.ffmApiConfig().classSegmentAllocator(), "allocator")
-            .addJavadoc("allocator to use for the captured node objects; allows interacting with the nodes after the stream has been closed")
+        var paramAllocator = ParameterSpec.builder(ffmApiConfig.classSegmentAllocator(), "allocator")
+            .addJavadoc("allocator to use for the captured node objects; allows interacting with the nodes after the stream has been closed" + (hasOptionsParam ? "\n" : ""))  // trailing '\n' if 'options' param follows, due to https://github.com/palantir/javapoet/issues/128
+            .build();
+        var paramOptions = ParameterSpec.builder(queryOptions.className(), "options")
+            .addJavadoc("options restricting which nodes are considered by the query, for example to a byte range, or limiting the execution time")
             .build();
 
-        String varQueryCursor = "queryCursor";
-        String varOptions = "options";
         var builder = MethodSpec.methodBuilder(methodName)
             .addModifiers(Modifier.PUBLIC)
-            .returns(ParameterizedTypeName.get(ClassName.get(Stream.class), typedQueryConfig.typedQueryMatchConfig().name()))
-            .addParameter(paramStartNode)
-            .addStatement(createNonNullCheck(paramStartNode));
+            .returns(methodExecuteQuery.returnType())
+            .addParameter(paramStartNode);
+        if (hasAllocatorParam) {
+            builder.addParameter(paramAllocator);
+        }
+        if (hasOptionsParam) {
+            builder.addParameter(paramOptions);
+        }
 
+        builder.addJavadoc("Executes the query and returns a stream of matches, starting at the given node.");
+        if (hasOptionsParam) {
+            builder.addJavadoc("\nOnly nodes matching the given options are considered.");
+        }
         builder
-            .addJavadoc("Executes the query and returns a stream of matches, starting at the given node.")
             .addJavadoc("\n\n<p><b>Important:</b> The {@code Stream} must be closed to release resources.")
             .addJavadoc("\nIt is recommended to use a try-with-resources statement.");
 
-        if (hasAllocatorParam) {
-            builder.addParameter(paramAllocator)
-                .addStatement(createNonNullCheck(paramAllocator));
-        } else {
-            // The nodes are allocated with the Arena of the QueryCursor, so they cannot / should not be used anymore after the QueryCursor was closed
+        if (!hasAllocatorParam) {
+            // The nodes might be allocated with memory which is released when the stream is closed, so they should not be used anymore afterwards
             builder
                 .addJavadoc("\nAfter the stream was closed captured nodes should not be used anymore, otherwise the behavior is undefined,")
-                .addJavadoc("\nincluding exceptions being thrown or possibly even a JVM crash.")
-                // Add link to overload with custom 'allocator' parameter
-                .addJavadoc("\nUse {@link #$N($T, $T)} to be able to access the nodes after the stream was closed.", methodName, paramStartNode.type(), paramAllocator.type());
+                .addJavadoc("\nincluding exceptions being thrown or possibly even a JVM crash.");
+            // Add link to overload with custom 'allocator' parameter
+            if (hasOptionsParam) {
+                builder.addJavadoc("\nUse {@link #$N($T, $T, $T)} to be able to access the nodes after the stream was closed.", methodName, paramStartNode.type(), paramAllocator.type(), paramOptions.type());
+            } else {
+                builder.addJavadoc("\nUse {@link #$N($T, $T)} to be able to access the nodes after the stream was closed.", methodName, paramStartNode.type(), paramAllocator.type());
+            }
+            codeGenHelper.addSessionAllocatorJavadoc(builder);
         }
 
         builder
             .addJavadoc("\n\n<h4>Example</h4>")
             .addJavadoc("\n{@snippet lang=java :")
-            .addJavadoc("\ntry (var matches = typedQuery.$N(start" + (hasAllocatorParam ? ", allocator" : "") + ")) {", methodName)
+            .addJavadoc("\ntry (var matches = typedQuery.$N(start" + (hasAllocatorParam ? ", allocator" : "") + (hasOptionsParam ? ", options" : "") + ")) {", methodName)
             .addJavadoc("\n  MyCollector collector = ...;")
             .addJavadoc("\n  matches.forEach(match -> match.$N(collector));", typedQueryConfig.typedQueryMatchConfig().methodCollectCaptures())
             .addJavadoc("\n  ...")
             .addJavadoc("\n}")
             .addJavadoc("\n}");
 
+        if (!hasOptionsParam) {
+            // Params are checked by delegating call
+            if (hasAllocatorParam) {
+                builder.addStatement("return $N($N, $N, $T.$N)", methodName, paramStartNode, paramAllocator, queryOptions.className(), queryOptions.fieldDefault());
+            } else {
+                builder.addStatement("return $N($N, $T.$N)", methodName, paramStartNode, queryOptions.className(), queryOptions.fieldDefault());
+            }
+            return builder.build();
+        }
+
+        builder.addStatement(createNonNullCheck(paramStartNode));
+        if (hasAllocatorParam) {
+            builder.addStatement(createNonNullCheck(paramAllocator));
+        }
+        builder.addStatement(createNonNullCheck(paramOptions));
+
         String varNodeLanguage = "nodeLanguage";
         builder
+            // The underlying query might still be open if it is cached, so explicitly check this
+            .addStatement("if ($N.get()) throw new $T(\"Query has been closed\")", fieldIsClosed, IllegalStateException.class)
             // Verify that given Node belongs to same Language object as query, because jtreesitter itself does not seem to verify this
             .addStatement("var $N = $N.$N().$N()", varNodeLanguage, paramStartNode, jtreesitter.node().methodGetTree(), jtreesitter.tree().methodGetLanguage())
-            .addStatement("if (!$N.equals($N)) throw new $T(\"Node belongs to unexpected language; expected: \" + $N + \", actual: \" + $N)", varNodeLanguage, fieldLanguage, IllegalArgumentException.class, fieldLanguage, varNodeLanguage)
-            .addStatement("var $N = new $T($N)", varQueryCursor, queryCursor.className(), fieldQuery)
-            .addStatement("var $N = new $T($N())", varOptions, queryCursor.classNameOptions(), methodCreatePredicateCallback);
+            .addStatement("if (!$N.equals($N)) throw new $T(\"Node belongs to unexpected language; expected: \" + $N + \", actual: \" + $N)", varNodeLanguage, fieldLanguage, IllegalArgumentException.class, fieldLanguage, varNodeLanguage);
 
-        var findMatchesCode = CodeBlock.builder().add("return $N.$N($N, ", varQueryCursor, queryCursor.methodFindMatches(), paramStartNode);
         if (hasAllocatorParam) {
-            findMatchesCode.add("$N, ", paramAllocator);
+            builder.addStatement("return $N($N, $N, $N)", methodExecuteQuery, paramStartNode, paramAllocator, paramOptions);
+        } else {
+            if (codeGenHelper.generatesAllocationSessions()) {
+                var nodeUtils = codeGenHelper.nodeUtilsConfig();
+                String varSessionAllocator = "sessionAllocator";
+                // Use the allocator of the current session, if any
+                builder
+                    .addStatement("var $N = $T.$N()", varSessionAllocator, nodeUtils.className(), nodeUtils.methodGetSessionAllocator())
+                    .beginControlFlow("if ($N != null)", varSessionAllocator)
+                    .addStatement("return $N($N, $N, $N)", methodExecuteQuery, paramStartNode, varSessionAllocator, paramOptions)
+                    .endControlFlow();
+            }
+
+            // Don't use the Arena of the QueryCursor, since QueryCursor objects are reused. And don't create a shared
+            // Arena per execution, because closing it is expensive; a confined Arena cannot be used either, because the
+            // stream might be consumed and closed by a different thread. The documented contract still forbids using
+            // the nodes after the stream was closed.
+            builder.addStatement("return $N($N, $T.$N(), $N)", methodExecuteQuery, paramStartNode, ffmApiConfig.classArena(), ffmApiConfig.methodArenaOfAuto(), paramOptions);
         }
-        findMatchesCode.add("$N)\n", varOptions)
-            .add(".map($T::new)\n", typedQueryConfig.typedQueryMatchConfig().name())
-            .add(".onClose($N::close)", varQueryCursor);
 
-        return builder.addStatement(findMatchesCode.build()).build();
+        return builder.build();
     }
 
-    private MethodSpec generateMethodFindMatchesAndCollect() {
+    private MethodSpec generateMethodFindMatchesAndCollect(boolean hasOptionsParam) {
         var ffmApiConfig = codeGenHelper.ffmApiConfig();
         var jtreesitterNode = codeGenHelper.jtreesitterConfig().node().className();
         var typedQueryMatchConfig = typedQueryConfig.typedQueryMatchConfig();
+        var queryOptions = codeGenHelper.queryOptionsConfig();
 
         String methodName = typedQueryConfig.methodFindMatchesAndCollect();
 
         var paramStartNode = ParameterSpec.builder(jtreesitterNode, "startNode").build();
         var paramAllocator = ParameterSpec.builder(ffmApiConfig.classSegmentAllocator(), "allocator")
-            .addJavadoc("allocator to use for the captured node objects")
+            .addJavadoc("allocator to use for the captured node objects" + (hasOptionsParam ? "\n" : ""))  // trailing '\n' if 'options' param follows, due to https://github.com/palantir/javapoet/issues/128
+            .build();
+        var paramOptions = ParameterSpec.builder(queryOptions.className(), "options")
+            .addJavadoc("options restricting which nodes are considered by the query")
             .build();
         var paramCollector = ParameterSpec.builder(typeVarCollector, "collector").build();
         String varMatches = "matches";
-        return MethodSpec.methodBuilder(methodName)
+        var builder = MethodSpec.methodBuilder(methodName)
             .addModifiers(Modifier.PUBLIC)
             .addParameter(paramStartNode)
-            .addParameter(paramAllocator)
-            .addParameter(paramCollector)
-            .addJavadoc("Executes the query and for each match collects the captured nodes.")
-            .addJavadoc("\n\n<p>This is a convenience method which first executes {@link #$N($T, $T)} and then for each match", typedQueryConfig.methodFindMatches(), jtreesitterNode, ffmApiConfig.classSegmentAllocator())
+            .addParameter(paramAllocator);
+        if (hasOptionsParam) {
+            builder.addParameter(paramOptions);
+        }
+        builder.addParameter(paramCollector)
+            .addJavadoc("Executes the query and for each match collects the captured nodes.");
+        if (hasOptionsParam) {
+            builder
+                .addJavadoc("\nOnly nodes matching the given options are considered.")
+                .addJavadoc("\n\n<p>This is a convenience method which first executes {@link #$N($T, $T, $T)} and then for each match", typedQueryConfig.methodFindMatches(), jtreesitterNode, ffmApiConfig.classSegmentAllocator(), queryOptions.className());
+        } else {
+            builder.addJavadoc("\n\n<p>This is a convenience method which first executes {@link #$N($T, $T)} and then for each match", typedQueryConfig.methodFindMatches(), jtreesitterNode, ffmApiConfig.classSegmentAllocator());
+        }
+        builder
             .addJavadoc("\ncalls {@link $T#$N}.", typedQueryMatchConfig.name(), typedQueryMatchConfig.methodCollectCaptures())
             .addJavadoc("\n")
             .addJavadoc("\n<h4>Example</h4>")
             .addJavadoc("\n{@snippet lang=java :")
             .addJavadoc("\ntry (var arena = $N.$N()) {", ffmApiConfig.classArena().simpleName(), ffmApiConfig.methodArenaOfConfined())
             .addJavadoc("\n  MyCollector collector = ...;")
-            .addJavadoc("\n  typedQuery.$N(startNode, arena, collector);", methodName)
+            .addJavadoc("\n  typedQuery.$N(startNode, arena" + (hasOptionsParam ? ", options" : "") + ", collector);", methodName)
             .addJavadoc("\n  ...")
             .addJavadoc("\n}")
-            .addJavadoc("\n}")
+            .addJavadoc("\n}");
+
+        if (!hasOptionsParam) {
+            // Params are checked by delegating call
+            return builder
+                .addStatement("$N($N, $N, $T.$N, $N)", methodName, paramStartNode, paramAllocator, queryOptions.className(), queryOptions.fieldDefault(), paramCollector)
+                .build();
+        }
+
+        return builder
             // Other params are checked by delegating call
             .addStatement(createNonNullCheck(paramCollector))
             // This is also checked by `TypedQueryMatch#collectCaptures`, but would not be called if there are no matches
             // Therefore check this here as well, to always fail if there are no capture handlers registered
             .addStatement(createNoCaptureHandlersCheck())
-            .beginControlFlow("try (var $N = $N($N, $N))", varMatches, typedQueryConfig.methodFindMatches(), paramStartNode, paramAllocator)
+            .beginControlFlow("try (var $N = $N($N, $N, $N))", varMatches, typedQueryConfig.methodFindMatches(), paramStartNode, paramAllocator, paramOptions)
             .addStatement("$N.forEach(match -> match.$N($N))", varMatches, typedQueryMatchConfig.methodCollectCaptures(), paramCollector)
             .endControlFlow()
             .build();
@@ -448,6 +624,16 @@ public class TypedQueryGenerator {
         var fieldQuery = FieldSpec.builder(jtreesitter.query().className(), "query", Modifier.PRIVATE, Modifier.FINAL).build();
         builder.addField(fieldQuery);
 
+        var queryCache = typedQueryConfig.queryCacheConfig();
+        var nodeUtils = codeGenHelper.nodeUtilsConfig();
+        var fieldQueryCacheEntry = FieldSpec.builder(nodeUtils.classQueryCache().nestedClass("Entry"), "queryCacheEntry", Modifier.PRIVATE, Modifier.FINAL).build();
+        builder.addField(fieldQueryCacheEntry);
+
+        var fieldIsClosed = FieldSpec.builder(AtomicBoolean.class, "isClosed", Modifier.PRIVATE, Modifier.FINAL)
+            .initializer("new $T()", AtomicBoolean.class)
+            .build();
+        builder.addField(fieldIsClosed);
+
         var fieldCaptureRegistry = FieldSpec.builder(
             ParameterizedTypeName.get(typedQueryConfig.captureRegistryConfig().name(), typeVarCollector),
             "captureRegistry",
@@ -458,6 +644,25 @@ public class TypedQueryGenerator {
         var fieldPredicateRegistry = FieldSpec.builder(predicateRegistry.name(), "predicateRegistry", Modifier.PRIVATE, Modifier.FINAL).build();
         builder.addField(fieldPredicateRegistry);
 
+        var queryCursor = jtreesitter.queryCursor();
+        // The options only consist of the predicate callback, so they can be reused for all executions
+        var fieldQueryCursorOptions = FieldSpec.builder(queryCursor.classNameOptions(), "queryCursorOptions", Modifier.PRIVATE, Modifier.FINAL).build();
+        builder.addField(fieldQueryCursorOptions);
+
+        var fieldMaxIdleQueryCursors = FieldSpec.builder(int.class, "MAX_IDLE_QUERY_CURSORS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addJavadoc("Maximum number of query cursors which are kept for reuse")
+            .initializer("8")
+            .build();
+        builder.addField(fieldMaxIdleQueryCursors);
+
+        var fieldIdleQueryCursors = FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ArrayDeque.class), queryCursor.className()), "idleQueryCursors", Modifier.PRIVATE, Modifier.FINAL)
+            .addJavadoc("Query cursors which are currently not used and can be reused; guarded by the lock of this deque.")
+            .addJavadoc("\nCreating a new query cursor for every execution can be more expensive than the execution itself for small")
+            .addJavadoc("\nstart nodes.")
+            .initializer("new $T<>()", ArrayDeque.class)
+            .build();
+        builder.addField(fieldIdleQueryCursors);
+
         var constructor = MethodSpec.constructorBuilder()
             .addModifiers(Modifier.PRIVATE)
             .addParameter(paramFromField(fieldLanguage))
@@ -466,13 +671,11 @@ public class TypedQueryGenerator {
             .addParameter(paramFromField(fieldPredicateRegistry))
             .addStatement("this.$N = $N", fieldLanguage, fieldLanguage)
             .addStatement("this.$N = $N", fieldQueryString, fieldQueryString)
-            .beginControlFlow("try")
-            .addStatement("this.$N = new $T($N, $N)", fieldQuery, jtreesitter.query().className(), fieldLanguage, fieldQueryString)
-            .nextControlFlow("catch ($T e)", RuntimeException.class)
-            .addStatement("throw new $T(\"Failed creating query; verify that children and fields are specified in the right order; if you expect the query to be valid please report this to the jtreesitter-type-gen maintainers; query string:\\n\\t\" + $N, e)", RuntimeException.class, fieldQueryString)
-            .endControlFlow()
+            .addStatement("this.$N = $T.$N($N, $N)", fieldQueryCacheEntry, nodeUtils.classQueryCache(), nodeUtils.methodAcquireQuery(), fieldLanguage, fieldQueryString)
+            .addStatement("this.$N = $N.query", fieldQuery, fieldQueryCacheEntry)
             .addStatement("this.$1N = $1N", fieldCaptureRegistry)
             .addStatement("this.$1N = $1N", fieldPredicateRegistry)
+            .addStatement("this.$N = new $T($N::$N)", fieldQueryCursorOptions, queryCursor.classNameOptions(), fieldPredicateRegistry, predicateRegistry.methodTest())
             .build();
         builder.addMethod(constructor);
 
@@ -481,7 +684,15 @@ public class TypedQueryGenerator {
             .addAnnotation(Override.class)
             .addJavadoc("Releases the resources of the underlying jtreesitter query.")
             .addJavadoc("\nThis query object should not be used anymore after this method has been called.")
-            .addStatement("$N.close()", fieldQuery)
+            .addJavadoc("\n\n<p>The underlying query might be shared with other typed queries, see {@link $T}; in that case it is", queryCache.name())
+            .addJavadoc("\nonly closed once it is not used anymore. Calling this method multiple times has no effect.")
+            .beginControlFlow("if ($N.compareAndSet(false, true))", fieldIsClosed)
+            .beginControlFlow("synchronized ($N)", fieldIdleQueryCursors)
+            .addStatement("$N.forEach($T::close)", fieldIdleQueryCursors, queryCursor.className())
+            .addStatement("$N.clear()", fieldIdleQueryCursors)
+            .endControlFlow()
+            .addStatement("$T.$N($N)", nodeUtils.classQueryCache(), nodeUtils.methodReleaseQuery(), fieldQueryCacheEntry)
+            .endControlFlow()
             .build();
         builder.addMethod(methodClose);
 
@@ -490,23 +701,84 @@ public class TypedQueryGenerator {
             .build();
         builder.addMethod(methodToString);
 
-        var methodCreatePredicateCallback = MethodSpec.methodBuilder("createPredicateCallback")
+        String varQueryCursor = "queryCursor";
+        var methodAcquireQueryCursor = MethodSpec.methodBuilder("acquireQueryCursor")
+            .addModifiers(Modifier.PRIVATE)
+            .returns(queryCursor.className())
+            .beginControlFlow("synchronized ($N)", fieldIdleQueryCursors)
+            .addStatement("var $N = $N.pollLast()", varQueryCursor, fieldIdleQueryCursors)
+            .beginControlFlow("if ($N != null)", varQueryCursor)
+            .addStatement("return $N", varQueryCursor)
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("return new $T($N)", queryCursor.className(), fieldQuery)
+            .build();
+        builder.addMethod(methodAcquireQueryCursor);
+
+        var methodReleaseQueryCursor = MethodSpec.methodBuilder("releaseQueryCursor")
             .addModifiers(Modifier.PRIVATE)
-            .returns(ParameterizedTypeName.get(
-                ClassName.get(BiPredicate.class),
-                jtreesitter.queryPredicate().className(),
-                jtreesitter.queryMatch().className()
-            ))
-            .addStatement("return $N::$N", fieldPredicateRegistry, predicateRegistry.methodTest())
+            .addParameter(queryCursor.className(), varQueryCursor)
+            .beginControlFlow("synchronized ($N)", fieldIdleQueryCursors)
+            .addComment("Don't keep the cursor if this query has been closed in the meantime; `close()` has already closed the idle cursors")
+            .beginControlFlow("if (!$N.get() && $N.size() < $N)", fieldIsClosed, fieldIdleQueryCursors, fieldMaxIdleQueryCursors)
+            .addStatement("$N.addLast($N)", fieldIdleQueryCursors, varQueryCursor)
+            .addStatement("return")
+            .endControlFlow()
+            .endControlFlow()
+            .addStatement("$N.close()", varQueryCursor)
+            .build();
+        builder.addMethod(methodReleaseQueryCursor);
+
+        var ffmApiConfig = codeGenHelper.ffmApiConfig();
+        var paramStartNode = ParameterSpec.builder(jtreesitter.node().className(), "startNode").build();
+        var paramAllocator = ParameterSpec.builder(ffmApiConfig.classSegmentAllocator(), "allocator").build();
+        var queryOptions = codeGenHelper.queryOptionsConfig();
+        var paramOptions = ParameterSpec.builder(queryOptions.className(), "options").build();
+        String varCloseAction = "closeAction";
+        String varException = "e";
+        String varExecutionMonitor = "executionMonitor";
+        String varCursorOptions = "cursorOptions";
+        String varStream = "stream";
+        var methodExecuteQuery = MethodSpec.methodBuilder("executeQuery")
+            .addModifiers(Modifier.PRIVATE)
+            .returns(ParameterizedTypeName.get(ClassName.get(Stream.class), typedQueryConfig.typedQueryMatchConfig().name()))
+            .addParameter(paramStartNode)
+            .addParameter(paramAllocator)
+            .addParameter(paramOptions)
+            .addJavadoc("Executes the query with a pooled query cursor, which is returned to the pool when the stream is closed.")
+            .addStatement("var $N = $N.$N()", varExecutionMonitor, paramOptions, queryOptions.methodStartExecution())
+            .addComment("The shared cursor options cannot be used when the execution is monitored, since the monitor is specific to it")
+            .addStatement(
+                "var $N = $N == null ? $N : new $T($N, $N::$N)",
+                varCursorOptions, varExecutionMonitor, fieldQueryCursorOptions, queryCursor.classNameOptions(), varExecutionMonitor, fieldPredicateRegistry, predicateRegistry.methodTest()
+            )
+            .addStatement("var $N = $N()", varQueryCursor, methodAcquireQueryCursor)
+            .addCode("$T $N = () -> {\n$>", Runnable.class, varCloseAction)
+            .addComment("Pooled cursors must not retain the options of a previous execution")
+            .addStatement("$N.$N($N)", paramOptions, queryOptions.methodResetOn(), varQueryCursor)
+            .addStatement("$N($N)", methodReleaseQueryCursor, varQueryCursor)
+            .addCode("$<};\n")
+            .beginControlFlow("try")
+            .addStatement("$N.$N($N)", paramOptions, queryOptions.methodApplyTo(), varQueryCursor)
+            .addStatement("var $N = $N.$N($N, $N, $N).map($T::new)", varStream, varQueryCursor, queryCursor.methodFindMatches(), paramStartNode, paramAllocator, varCursorOptions, typedQueryConfig.typedQueryMatchConfig().name())
+            .beginControlFlow("if ($N != null)", varExecutionMonitor)
+            .addStatement("$N = $N.$N($N)", varStream, varExecutionMonitor, queryOptions.methodWrapStream(), varStream)
+            .endControlFlow()
+            .addStatement("return $N.onClose($N)", varStream, varCloseAction)
+            .nextControlFlow("catch ($T $N)", Throwable.class, varException)
+            .addStatement("$N.run()", varCloseAction)
+            .addStatement("throw $N", varException)
+            .endControlFlow()
             .build();
-        builder.addMethod(methodCreatePredicateCallback);
+        builder.addMethod(methodExecuteQuery);
 
-        var methodFindMatches = generateMethodFindMatches(fieldLanguage, fieldQuery, methodCreatePredicateCallback, false);
-        builder.addMethod(methodFindMatches);
-        var methodFindMatchesAllocator = generateMethodFindMatches(fieldLanguage, fieldQuery, methodCreatePredicateCallback, true);
-        builder.addMethod(methodFindMatchesAllocator);
+        builder.addMethod(generateMethodFindMatches(fieldLanguage, fieldIsClosed, methodExecuteQuery, false, false));
+        builder.addMethod(generateMethodFindMatches(fieldLanguage, fieldIsClosed, methodExecuteQuery, true, false));
+        builder.addMethod(generateMethodFindMatches(fieldLanguage, fieldIsClosed, methodExecuteQuery, false, true));
+        builder.addMethod(generateMethodFindMatches(fieldLanguage, fieldIsClosed, methodExecuteQuery, true, true));
 
-        builder.addMethod(generateMethodFindMatchesAndCollect());
+        builder.addMethod(generateMethodFindMatchesAndCollect(false));
+        builder.addMethod(generateMethodFindMatchesAndCollect(true));
     }
 
     private CodeBlock createTypedQueryJavadoc() {
@@ -628,6 +900,7 @@ public class TypedQueryGenerator {
             .addType(generateInterfaceCaptureHandler())
             .addType(generateClassCaptureRegistry())
             .addType(generateClassPredicateRegistry())
+            .addType(generateClassQueryCache())
             .addType(generateClassTypedQueryMatch())
             .addTypes(qNodeCommonGenerator.generateTypes())
             .addType(qTypedNodeGenerator.generateClass())
@@ -5,18 +5,24 @@ import marcono1234.jtreesitter.type_gen.CodeGenConfig;
 import marcono1234.jtreesitter.type_gen.CodeGenerator;
 import marcono1234.jtreesitter.type_gen.LanguageConfig.LanguageProviderConfig;
 import marcono1234.jtreesitter.type_gen.LanguageConfig.LanguageVersion;
+import marcono1234.jtreesitter.type_gen.internal.JavaNameGeneratorHelper;
 import marcono1234.jtreesitter.type_gen.internal.gen.GenJavaType;
 import marcono1234.jtreesitter.type_gen.internal.gen.GenNodeType;
+import marcono1234.jtreesitter.type_gen.internal.gen.GenRegularNodeType;
 import marcono1234.jtreesitter.type_gen.internal.gen.TypeBuilderWithName;
 import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.LanguageUtilsGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.NodeUtilsGenerator;
+import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.QueryOptionsGenerator;
 import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.TypedNodeInterfaceGenerator;
+import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.TypedNodeKindGenerator;
+import marcono1234.jtreesitter.type_gen.internal.gen.common_classes.TypedTreeClassGenerator;
 import org.jspecify.annotations.Nullable;
 
 import javax.annotation.processing.Generated;
 import javax.lang.model.element.Modifier;
 import java.time.Instant;
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @SuppressWarnings({"CodeBlock2Expr", "Convert2MethodRef"}) // Suppress IntelliJ warnings for rewriting lambda expressions
@@ -40,18 +46,26 @@ public class CodeGenHelper {
     @Nullable // null when no access to the Language object is possible
     private final LanguageUtilsConfigData languageUtilsConfigData;
     private final TypeNameCreator typeNameCreator;
+    private final boolean generatesTypedTree;
+    private final NodeTypeReachability nodeTypeReachability;
 
     private final CustomJavadocProviderImpl customJavadocProvider;
 
+    /** Lazily created, see {@link #typedNodeKindConfig()} */
+    @Nullable
+    private TypedNodeKindConfig typedNodeKindConfig;
+
     @Nullable
     private final AnnotationSpec nullableAnnotation;
     private final Instant generationTime;
 
-    public CodeGenHelper(CodeGenConfig config, CodeGenerator.Version versionInfo, @Nullable LanguageUtilsConfigData languageUtilsConfigData, TypeNameCreator typeNameCreator, NodeTypeLookup nodeTypeLookup) {
+    public CodeGenHelper(CodeGenConfig config, CodeGenerator.Version versionInfo, @Nullable LanguageUtilsConfigData languageUtilsConfigData, TypeNameCreator typeNameCreator, NodeTypeLookup nodeTypeLookup, NodeTypeReachability nodeTypeReachability, boolean generatesTypedTree) {
         this.config = config;
+        this.generatesTypedTree = generatesTypedTree;
         this.versionInfo = versionInfo;
         this.languageUtilsConfigData = languageUtilsConfigData;
         this.typeNameCreator = typeNameCreator;
+        this.nodeTypeReachability = nodeTypeReachability;
 
         this.customJavadocProvider = new CustomJavadocProviderImpl(config.customJavadocProvider().orElse(null), nodeTypeLookup);
 
@@ -207,6 +221,15 @@ public class CodeGenHelper {
         return typeNameCreator.getReturnOptionalType(type);
     }
 
+    /**
+     * Creates a type name which is annotated with {@code @Nullable}, if configured. Otherwise returns the type as is.
+     * Only intended for internal code, where {@link #getReturnOptionalType(TypeName)} would unnecessarily wrap
+     * values in an {@link Optional}.
+     */
+    public TypeName getNullableType(TypeName type) {
+        return nullableAnnotation != null ? type.annotated(nullableAnnotation) : type;
+    }
+
     /**
      * Adds a {@code return} statement which returns the nullable {@code resultVarName} as optional value.
      * Depending on the config either as is (if {@code @Nullable} is used) or wrapped inside {@link Optional}.
@@ -214,11 +237,21 @@ public class CodeGenHelper {
      * @see #getReturnOptionalType(TypeName)
      */
     public void addReturnOptionalStatement(MethodSpec.Builder builder, String resultVarName) {
+        builder.addStatement("return $L", createOptionalValueCode(resultVarName));
+    }
+
+    /**
+     * Creates code which converts the nullable {@code varName} to an optional value.
+     * Depending on the config either as is (if {@code @Nullable} is used) or wrapped inside {@link Optional}.
+     *
+     * @see #getReturnOptionalType(TypeName)
+     */
+    public CodeBlock createOptionalValueCode(String varName) {
         if (nullableAnnotation != null) {
-            // Directly return nullable value
-            builder.addStatement("return $N", resultVarName);
+            // Directly use nullable value
+            return CodeBlock.of("$N", varName);
         } else {
-            builder.addStatement("return $T.ofNullable($N)", Optional.class, resultVarName);
+            return CodeBlock.of("$T.ofNullable($N)", Optional.class, varName);
         }
     }
 
@@ -278,7 +311,10 @@ public class CodeGenHelper {
         // These method names are also used for the static methods in the TypedNode subtypes
         String methodFromNode,
         String methodFromNodeThrowing, Class<? extends Exception> exceptionFromNodeThrowing,
-        String methodFindNodes
+        String methodFindNodes,
+        // Text access backed by the retained source of the tree
+        String methodTextEquals, String methodTextStartsWith, String methodTextHashCode,
+        String methodGetTextBytes, String methodGetTextView
     ) {
         /**
          * Generates a {@link #methodFromNodeThrowing()} implementation which delegates to {@link #methodFromNode()}
@@ -324,10 +360,12 @@ public class CodeGenHelper {
         }
 
         /**
-         * Generates the actual implementation of {@link #generateMethodFindNodes}.
+         * Generates the actual implementation of {@link #generateMethodFindNodes}, using a tree-sitter query.
          */
-        private MethodSpec generateMethodFindNodesImpl(String implMethodName, ClassName nodeClass, List<JavaFieldRef> nodeTypeConstants) {
+        private MethodSpec generateMethodFindNodesQueryImpl(String implMethodName, ClassName nodeClass, List<JavaFieldRef> nodeTypeConstants) {
             var jtreesitter = codeGenHelper.jtreesitterConfig();
+            var nodeUtils = codeGenHelper.nodeUtilsConfig();
+            var queryOptions = codeGenHelper.queryOptionsConfig();
 
             String captureNameVar = "captureName";
             String queryStringVar = "queryString";
@@ -354,17 +392,23 @@ public class CodeGenHelper {
 
             String startNodeParam = "startNode";
             String allocatorParam = "allocator";
+            String optionsParam = "options";
             String startNodeUnwrappedVar = "startNodeUnwrapped";
             String languageVar = "language";
-            String queryVar = "query";
+            String queryCacheEntryVar = "queryCacheEntry";
             String queryCursorVar = "queryCursor";
             String resultStreamVar = "stream";
+            String executionMonitorVar = "executionMonitor";
+            String cursorOptionsVar = "cursorOptions";
+            String nodesStreamVar = "nodes";
+            String exceptionVar = "e";
             return MethodSpec.methodBuilder(implMethodName)
                 .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
                 // Use TypedNode instead of jtreesitter Node as parameter to make sure node (and its language)
                 // actually belongs to generated code
                 .addParameter(className(), startNodeParam)
-                .addParameter(codeGenHelper.ffmApiConfig().classSegmentAllocator(), allocatorParam)
+                .addParameter(codeGenHelper.getNullableType(codeGenHelper.ffmApiConfig().classSegmentAllocator()), allocatorParam)
+                .addParameter(queryOptions.className(), optionsParam)
                 .returns(ParameterizedTypeName.get(ClassName.get(Stream.class), nodeClass))
                 // First create the Query
                 .addStatement("var $N = $N.$N()", startNodeUnwrappedVar, startNodeParam, methodGetNode())
@@ -372,27 +416,99 @@ public class CodeGenHelper {
                 .addComment("tree-sitter query which matches the nodes of this type, and captures them")
                 .addStatement("var $N = $S", captureNameVar, "node")
                 .addStatement(queryStringCode.build())
-                .addStatement("var $N = new $T($N, $N)", queryVar, jtreesitter.query().className(), languageVar, queryStringVar)
-                .addStatement("var $N = new $T($N)", queryCursorVar, jtreesitter.queryCursor().className(), queryVar)
+                // The compiled query is cached and shared, only the cursor is specific to this call
+                .addStatement("var $N = $T.$N($N, $N)", queryCacheEntryVar, nodeUtils.classQueryCache(), nodeUtils.methodAcquireQuery(), languageVar, queryStringVar)
+                .addStatement("$T $N", jtreesitter.queryCursor().className(), queryCursorVar)
+                .beginControlFlow("try")
+                .addStatement("$N = new $T($N.query)", queryCursorVar, jtreesitter.queryCursor().className(), queryCacheEntryVar)
+                .nextControlFlow("catch ($T $N)", Throwable.class, exceptionVar)
+                .addStatement(createReleaseQueryCode(queryCacheEntryVar))
+                .addStatement("throw $N", exceptionVar)
+                .endControlFlow()
+                .addCode("\n")
+                .beginControlFlow("try")
+                .addStatement("$N.$N($N)", optionsParam, queryOptions.methodApplyTo(), queryCursorVar)
+                // Monitor the execution with the progress callback, if there is a timeout or cancellation token
+                .addStatement("var $N = $N.$N()", executionMonitorVar, optionsParam, queryOptions.methodStartExecution())
+                .addStatement("var $N = $N == null ? null : new $T($N)", cursorOptionsVar, executionMonitorVar, jtreesitter.queryCursor().classNameOptions(), executionMonitorVar)
                 // Run the query
                 .addStatement(CodeBlock.builder()
                     .add("var $N = $N == null ?$W", resultStreamVar, allocatorParam)
                     // Variant without allocator
-                    .add("$N.$N($N)$W", queryCursorVar, jtreesitter.queryCursor().methodFindMatches(), startNodeUnwrappedVar)
-                    // Variant with allocator (and null `Options`)
-                    .add(": $N.$N($N, $N, null)", queryCursorVar, jtreesitter.queryCursor().methodFindMatches(), startNodeUnwrappedVar, allocatorParam)
+                    .add("$N.$N($N, $N)$W", queryCursorVar, jtreesitter.queryCursor().methodFindMatches(), startNodeUnwrappedVar, cursorOptionsVar)
+                    // Variant with allocator
+                    .add(": $N.$N($N, $N, $N)", queryCursorVar, jtreesitter.queryCursor().methodFindMatches(), startNodeUnwrappedVar, allocatorParam, cursorOptionsVar)
                     .build()
                 )
                 // Convert the captured nodes
                 .addStatement(CodeBlock.builder()
-                    .add("return $N.flatMap(m -> m.$N($N).stream())", resultStreamVar, jtreesitter.queryMatch().methodFindNodes(), captureNameVar)
-                    .add(".map($T::$N)", nodeClass, methodFromNodeThrowing())
-                    .add(".onClose(() -> {\n")
-                    .indent()
-                    .add("$N.close();\n", queryCursorVar)
-                    .add("$N.close();\n", queryVar)
-                    .unindent()
-                    .add("})")
+                    .add("var $N = $N.flatMap(m -> m.$N($N).stream())", nodesStreamVar, resultStreamVar, jtreesitter.queryMatch().methodFindNodes(), captureNameVar)
+                    .add(createFoundNodesConvertingCode(nodeClass))
+                    .build()
+                )
+                .beginControlFlow("if ($N != null)", executionMonitorVar)
+                .addStatement("$N = $N.$N($N)", nodesStreamVar, executionMonitorVar, queryOptions.methodWrapStream(), nodesStreamVar)
+                .endControlFlow()
+                // Close the cursor and release the query; the query is owned by the cache
+                .addStatement("return $N.onClose($N::close).onClose(() -> $L)", nodesStreamVar, queryCursorVar, createReleaseQueryCode(queryCacheEntryVar))
+                .nextControlFlow("catch ($T $N)", Throwable.class, exceptionVar)
+                // The stream was not returned, so the caller cannot close the cursor and release the query
+                .addStatement("$N.close()", queryCursorVar)
+                .addStatement(createReleaseQueryCode(queryCacheEntryVar))
+                .addStatement("throw $N", exceptionVar)
+                .endControlFlow()
+                .build();
+        }
+
+        private CodeBlock createReleaseQueryCode(String queryCacheEntryVar) {
+            var nodeUtils = codeGenHelper.nodeUtilsConfig();
+            return CodeBlock.of("$T.$N($N)", nodeUtils.classQueryCache(), nodeUtils.methodReleaseQuery(), queryCacheEntryVar);
+        }
+
+        /**
+         * Creates the {@code Stream#map} call which converts the found jtreesitter nodes to typed nodes. The node cache
+         * is not used because the found nodes are either allocated with a custom allocator, or are only valid until
+         * the stream is closed.
+         */
+        private CodeBlock createFoundNodesConvertingCode(ClassName nodeClass) {
+            if (codeGenHelper.generatesTypedTree()) {
+                String nodeVar = "n";
+                return CodeBlock.of(".map($N -> $L)", nodeVar, codeGenHelper.createUncachedCode(CodeBlock.of("$T.$N($N)", nodeClass, methodFromNodeThrowing(), nodeVar)));
+            }
+            return CodeBlock.of(".map($T::$N)", nodeClass, methodFromNodeThrowing());
+        }
+
+        private static CodeBlock createLongArrayInitializer(long[] values) {
+            return CodeBlock.of("{$L}", Arrays.stream(values).mapToObj(v -> "0x" + Long.toHexString(v) + "L").collect(Collectors.joining(", ")));
+        }
+
+        /**
+         * Generates the actual implementation of {@link #generateMethodFindNodes}, using a tree cursor. Subtrees which
+         * cannot contain nodes of the given types are skipped, based on the information from {@link NodeTypeReachability}.
+         */
+        private MethodSpec generateMethodFindNodesCursorImpl(String implMethodName, ClassName nodeClass, List<GenRegularNodeType> nodeTypes) {
+            var nodeUtils = codeGenHelper.nodeUtilsConfig();
+            var reachability = codeGenHelper.nodeTypeReachability();
+
+            String startNodeParam = "startNode";
+            String allocatorParam = "allocator";
+            String optionsParam = "options";
+            String matchingTypesVar = "matchingTypes";
+            String containingTypesVar = "containingTypes";
+            return MethodSpec.methodBuilder(implMethodName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                // Use TypedNode instead of jtreesitter Node as parameter to make sure node (and its language)
+                // actually belongs to generated code
+                .addParameter(className(), startNodeParam)
+                .addParameter(codeGenHelper.getNullableType(codeGenHelper.ffmApiConfig().classSegmentAllocator()), allocatorParam)
+                .addParameter(codeGenHelper.queryOptionsConfig().className(), optionsParam)
+                .returns(ParameterizedTypeName.get(ClassName.get(Stream.class), nodeClass))
+                .addComment("Bit sets of the type indices (see $T) of the nodes to find, and of the nodes which can contain them", nodeUtils.className())
+                .addStatement("long[] $N = $L", matchingTypesVar, createLongArrayInitializer(reachability.getTypesBitSet(nodeTypes)))
+                .addStatement("long[] $N = $L", containingTypesVar, createLongArrayInitializer(reachability.getContainingTypesBitSet(nodeTypes)))
+                .addStatement(CodeBlock.builder()
+                    .add("return $T.$N($N.$N(), $N, $N, $N, $N)", nodeUtils.className(), nodeUtils.methodFindNodes(), startNodeParam, methodGetNode(), allocatorParam, optionsParam, matchingTypesVar, containingTypesVar)
+                    .add(createFoundNodesConvertingCode(nodeClass))
                     .build()
                 )
                 .build();
@@ -405,11 +521,16 @@ public class CodeGenHelper {
          * @param implMethodName name of the implementation method to which the method should delegate
          * @param nodeClass type of the method result nodes
          * @param hasAllocatorParam whether the method should have an 'allocator' parameter
+         * @param hasOptionsParam whether the method should have an 'options' parameter
          */
-        private MethodSpec generateMethodFindNodes(String methodName, String implMethodName, ClassName nodeClass, boolean hasAllocatorParam) {
+        private MethodSpec generateMethodFindNodes(String methodName, String implMethodName, ClassName nodeClass, boolean hasAllocatorParam, boolean hasOptionsParam) {
+            var queryOptions = codeGenHelper.queryOptionsConfig();
             var startNodeParam = ParameterSpec.builder(className(), "startNode").build();
             var allocatorParam = ParameterSpec.builder(codeGenHelper.ffmApiConfig().classSegmentAllocator(), "allocator")
-                .addJavadoc("allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed")
+                .addJavadoc("allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed" + (hasOptionsParam ? "\n" : ""))  // trailing '\n' if 'options' param follows, due to https://github.com/palantir/javapoet/issues/128
+                .build();
+            var optionsParam = ParameterSpec.builder(queryOptions.className(), "options")
+                .addJavadoc("options restricting which nodes are considered, for example to a byte range, or limiting the execution time")
                 .build();
 
             var methodBuilder = MethodSpec.methodBuilder(methodName)
@@ -419,10 +540,17 @@ public class CodeGenHelper {
             if (hasAllocatorParam) {
                 methodBuilder.addParameter(allocatorParam);
             }
+            if (hasOptionsParam) {
+                methodBuilder.addParameter(optionsParam);
+            }
 
             methodBuilder
                 .returns(ParameterizedTypeName.get(ClassName.get(Stream.class), nodeClass))
-                .addJavadoc("Gets all nodes of this type, starting at the given node.")
+                .addJavadoc("Gets all nodes of this type, starting at the given node.");
+            if (hasOptionsParam) {
+                methodBuilder.addJavadoc("\nOnly nodes matching the given options are considered.");
+            }
+            methodBuilder
                 .addJavadoc("\n\n<p><b>Important:</b> The {@code Stream} must be closed to release resources.")
                 .addJavadoc("\nIt is recommended to use a try-with-resources statement.");
 
@@ -430,26 +558,45 @@ public class CodeGenHelper {
                 methodBuilder
                     // The nodes are allocated with the Arena of the QueryCursor, so they cannot / should not be used anymore after the QueryCursor was closed
                     .addJavadoc("\nAfter the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,")
-                    .addJavadoc("\nincluding exceptions being thrown or possibly even a JVM crash.")
-                    // Add link to overload with custom 'allocator' parameter
-                    .addJavadoc("\nUse {@link #$N($T, $T)} to be able to access the nodes after the stream was closed.", methodName, startNodeParam.type(), allocatorParam.type());
+                    .addJavadoc("\nincluding exceptions being thrown or possibly even a JVM crash.");
+                // Add link to overload with custom 'allocator' parameter
+                if (hasOptionsParam) {
+                    methodBuilder.addJavadoc("\nUse {@link #$N($T, $T, $T)} to be able to access the nodes after the stream was closed.", methodName, startNodeParam.type(), allocatorParam.type(), optionsParam.type());
+                } else {
+                    methodBuilder.addJavadoc("\nUse {@link #$N($T, $T)} to be able to access the nodes after the stream was closed.", methodName, startNodeParam.type(), allocatorParam.type());
+                }
+                codeGenHelper.addSessionAllocatorJavadoc(methodBuilder);
             }
 
             methodBuilder
                 .addJavadoc("\n\n<h4>Example</h4>")
                 .addJavadoc("\n{@snippet lang=java :")
-                .addJavadoc("\ntry (var nodes = $N.$N(start" + (hasAllocatorParam ? ", allocator" : "") + ")) {", nodeClass.simpleName(), methodName)
+                .addJavadoc("\ntry (var nodes = $N.$N(start" + (hasAllocatorParam ? ", allocator" : "") + (hasOptionsParam ? ", options" : "") + ")) {", nodeClass.simpleName(), methodName)
                 .addJavadoc("\n  List<String> texts = nodes.map(n -> n.$N()).toList();", codeGenHelper.jtreesitterConfig().node().methodGetText())
                 .addJavadoc("\n  ...")
                 .addJavadoc("\n}")
                 .addJavadoc("\n}");
 
             methodBuilder.addStatement(createNonNullCheck(startNodeParam));
+            CodeBlock optionsArg;
+            if (hasOptionsParam) {
+                methodBuilder.addStatement(createNonNullCheck(optionsParam));
+                optionsArg = CodeBlock.of("$N", optionsParam);
+            } else {
+                optionsArg = CodeBlock.of("$T.$N", queryOptions.className(), queryOptions.fieldDefault());
+            }
+
             if (hasAllocatorParam) {
                 methodBuilder.addStatement(createNonNullCheck(allocatorParam));
-                methodBuilder.addStatement("return $N($N, $N)", implMethodName, startNodeParam, allocatorParam);
+                methodBuilder.addStatement("return $N($N, $N, $L)", implMethodName, startNodeParam, allocatorParam, optionsArg);
             } else {
-                methodBuilder.addStatement("return $N($N, null)", implMethodName, startNodeParam);
+                if (codeGenHelper.generatesAllocationSessions()) {
+                    var nodeUtils = codeGenHelper.nodeUtilsConfig();
+                    // Use the allocator of the current session, if any
+                    methodBuilder.addStatement("return $N($N, $T.$N(), $L)", implMethodName, startNodeParam, nodeUtils.className(), nodeUtils.methodGetSessionAllocator(), optionsArg);
+                } else {
+                    methodBuilder.addStatement("return $N($N, null, $L)", implMethodName, startNodeParam, optionsArg);
+                }
             }
 
             return methodBuilder.build();
@@ -464,20 +611,31 @@ public class CodeGenHelper {
          *
          * @param nodeClass
          *      whose node instances should be returned
-         * @param nodeTypeConstants
-         *      the Java fields storing the node type names for all implementations of {@code nodeClass}
+         * @param nodeTypes
+         *      all regular node types implementing {@code nodeClass}
          */
-        public List<MethodSpec> generateMethodsFindNodes(ClassName nodeClass, List<JavaFieldRef> nodeTypeConstants) {
-            if (!codeGenHelper.config.generateFindNodesMethods()) {
+        public List<MethodSpec> generateMethodsFindNodes(ClassName nodeClass, List<GenRegularNodeType> nodeTypes) {
+            if (!codeGenHelper.generatesFindNodesMethods()) {
                 return List.of();
             }
 
             String methodName = methodFindNodes();
             String implMethodName = methodName + "Impl";
+            MethodSpec implMethod;
+            if (codeGenHelper.generatesCursorFindNodesMethods()) {
+                implMethod = generateMethodFindNodesCursorImpl(implMethodName, nodeClass, nodeTypes);
+            } else {
+                var nodeTypeConstants = nodeTypes.stream()
+                    .map(t -> new JavaFieldRef(t.getJavaTypeName(), t.getTypeNameConstant()))
+                    .toList();
+                implMethod = generateMethodFindNodesQueryImpl(implMethodName, nodeClass, nodeTypeConstants);
+            }
             return List.of(
-                generateMethodFindNodesImpl(implMethodName, nodeClass, nodeTypeConstants),
-                generateMethodFindNodes(methodName, implMethodName, nodeClass, true),
-                generateMethodFindNodes(methodName, implMethodName, nodeClass, false)
+                implMethod,
+                generateMethodFindNodes(methodName, implMethodName, nodeClass, true, false),
+                generateMethodFindNodes(methodName, implMethodName, nodeClass, false, false),
+                generateMethodFindNodes(methodName, implMethodName, nodeClass, true, true),
+                generateMethodFindNodes(methodName, implMethodName, nodeClass, false, true)
             );
         }
 
@@ -488,7 +646,9 @@ public class CodeGenHelper {
                 "getNode",
                 "fromNode",
                 "fromNodeThrowing", IllegalArgumentException.class,
-                "findNodes"
+                "findNodes",
+                "textEquals", "textStartsWith", "textHashCode",
+                "getTextBytes", "getTextView"
             );
         }
     }
@@ -497,6 +657,60 @@ public class CodeGenHelper {
         return TypedNodeConfig.createDefault(this);
     }
 
+    /**
+     * Config for the generated {@code TypedNodeKind} enum.
+     *
+     * @param constantNames
+     *      names of the enum constants for the regular node types, in the order in which they are declared
+     * @see TypedNodeKindGenerator
+     */
+    public record TypedNodeKindConfig(
+        ClassName className,
+        String methodOf,
+        // Method in the TypedNode interface and its subtypes
+        String methodKind,
+        // Constant for nodes without dedicated typed node class
+        String constantOther,
+        SequencedMap<GenRegularNodeType, String> constantNames
+    ) {
+        public String getConstantName(GenRegularNodeType nodeType) {
+            return Objects.requireNonNull(constantNames.get(nodeType));
+        }
+
+        public static TypedNodeKindConfig createDefault(CodeGenHelper codeGenHelper) {
+            String constantOther = "OTHER";
+            Set<String> usedNames = new HashSet<>();
+            usedNames.add(constantOther);
+
+            SequencedMap<GenRegularNodeType, String> constantNames = new LinkedHashMap<>();
+            for (var nodeType : codeGenHelper.nodeTypeReachability().getNodeTypes()) {
+                String javaName = nodeType.getJavaTypeName().simpleName();
+                String name = JavaNameGeneratorHelper.convertToConstantName(javaName);
+                // Fall back to the Java class name (which is unique) in case the conversion caused a name clash
+                if (!usedNames.add(name)) {
+                    name = javaName;
+                    usedNames.add(name);
+                }
+                constantNames.put(nodeType, name);
+            }
+
+            return new TypedNodeKindConfig(
+                codeGenHelper.typeNameCreator.createOwnClassName("TypedNodeKind"),
+                "of",
+                "kind",
+                constantOther,
+                Collections.unmodifiableSequencedMap(constantNames)
+            );
+        }
+    }
+
+    public TypedNodeKindConfig typedNodeKindConfig() {
+        if (typedNodeKindConfig == null) {
+            typedNodeKindConfig = TypedNodeKindConfig.createDefault(this);
+        }
+        return typedNodeKindConfig;
+    }
+
     /**
      * Config for Java enums generated for non-named ('token') node children.
      */
@@ -523,18 +737,44 @@ public class CodeGenHelper {
     public record NodeUtilsConfig(
         ClassName className,
         String methodFromNodeThrowing,
-        String methodGetNonFieldChildren,
-        String methodMapChildrenNamedNonNamed,
-        // Methods for converting List<TypedNode> to TypedNode / Optional<TypedNode> or @NonEmpty List<TypedNode>
-        String methodOptionalChild, String methodRequiredChild, String methodAtLeastOneChild
+        String methodGetNonFieldChildren, String methodCountNonFieldChildren, String methodHasNonFieldChild,
+        String methodGetFieldChildren,
+        String methodGetFieldChild, String methodCountFieldChildren,
+        // Methods for converting List<Node> to Node, and List<TypedNode> to @NonEmpty List<TypedNode>
+        String methodRequiredChild, String methodAtLeastOneChild,
+        // Lazy List view of children, and its abstract method converting a child; only generated if lazy children lists are used
+        ClassName classChildrenListView, String methodChildrenListViewConvert,
+        // Methods for the per-Language ID cache; only generated if `LanguageUtils` is not generated
+        String methodGetTypeId, String methodGetFieldId, String methodCreateTypedNode, String methodGetNodeKind,
+        // Cache of compiled queries; only generated if queries are used, see `generatesQueryCache()`
+        ClassName classQueryCache, String methodAcquireQuery, String methodReleaseQuery,
+        // Per-thread cache of a tree cursor for iterating over the children of a node
+        ClassName classCursorCache, String methodAcquireCursor, String methodReleaseCursor,
+        // Retained source of trees, and text access based on it
+        ClassName classSourceText, String methodRetainSource, String methodReleaseSource,
+        String methodTextEquals, String methodTextHashCode, String methodGetTextBytes, String methodGetTextView,
+        // Only generated for the cursor-based `findNodes` implementation
+        String methodFindNodes,
+        // Only generated if allocation sessions are supported
+        String methodGetSessionAllocator, String methodSetSessionAllocator
     ) {
         public static NodeUtilsConfig createDefault(TypeNameCreator typeNameCreator) {
+            var className = typeNameCreator.createOwnClassName("NodeUtils");
             return new NodeUtilsConfig(
-                typeNameCreator.createOwnClassName("NodeUtils"),
+                className,
                 "fromNodeThrowing",
-                "getNonFieldChildren",
-                "mapChildren",
-                "optionalSingleChild", "requiredSingleChild", "atLeastOneChild"
+                "getNonFieldChildren", "countNonFieldChildren", "hasNonFieldChild",
+                "getFieldChildren",
+                "getFieldChild", "countFieldChildren",
+                "requiredSingleChild", "atLeastOneChild",
+                className.nestedClass("ChildrenListView"), "convert",
+                "getTypeId", "getFieldId", "createTypedNode", "getNodeKind",
+                className.nestedClass("QueryCache"), "acquire", "release",
+                className.nestedClass("CursorCache"), "acquire", "release",
+                className.nestedClass("SourceText"), "retain", "release",
+                "textEquals", "textHashCode", "getTextBytes", "getTextView",
+                "findNodes",
+                "getSessionAllocator", "setSessionAllocator"
             );
         }
     }
@@ -553,7 +793,10 @@ public class CodeGenHelper {
         @Nullable LanguageVersion expectedLanguageVersion,
         ClassName className,
         String fieldLanguage,
-        String methodGetTypeId, String methodGetFieldId
+        String methodGetTypeId, String methodGetFieldId,
+        String methodCreateTypedNode,
+        String methodGetNodeKind,
+        String methodGetTypeIndices
     ) {
         public static @Nullable LanguageUtilsConfig createDefault(CodeGenHelper codeGenHelper) {
             var languageConfig = codeGenHelper.languageUtilsConfigData;
@@ -566,7 +809,10 @@ public class CodeGenHelper {
                 languageConfig.expectedLanguageVersion(),
                 codeGenHelper.typeNameCreator.createOwnClassName("LanguageUtils"),
                 "language",
-                "getTypeId", "getFieldId"
+                "getTypeId", "getFieldId",
+                "createTypedNode",
+                "getNodeKind",
+                "getTypeIndices"
             );
         }
     }
@@ -585,6 +831,228 @@ public class CodeGenHelper {
         return languageUtilsConfig() != null;
     }
 
+    /**
+     * {@return whether the {@code findNodes} methods are being generated}
+     */
+    public boolean generatesFindNodesMethods() {
+        return config.generateFindNodesMethods();
+    }
+
+    /**
+     * {@return whether the typed query classes are being generated}
+     */
+    public boolean generatesTypedQuery() {
+        return config.typedQueryNameGenerator().isPresent();
+    }
+
+    /**
+     * {@return whether the {@code QueryCache} class of {@code NodeUtils} is being generated, which caches the compiled
+     * queries of the query-based {@code findNodes} methods and of the typed query}
+     */
+    public boolean generatesQueryCache() {
+        return (generatesFindNodesMethods() && !generatesCursorFindNodesMethods()) || generatesTypedQuery();
+    }
+
+    /**
+     * {@return whether the {@code QueryOptions} class is being generated, which is used by the {@code findNodes}
+     * methods and by the typed query}
+     */
+    public boolean generatesQueryOptions() {
+        return generatesFindNodesMethods() || generatesTypedQuery();
+    }
+
+    public QueryOptionsGenerator.Config queryOptionsConfig() {
+        return QueryOptionsGenerator.Config.createDefault(typeNameCreator);
+    }
+
+    /**
+     * {@return whether getters for multiple children return a lazy {@code List} view, which converts the children
+     * to typed nodes on access}
+     */
+    public boolean generatesLazyChildrenLists() {
+        return config.lazyChildrenLists();
+    }
+
+    /**
+     * {@return initial maximum number of compiled queries cached by the generated code}
+     */
+    public int queryCacheMaxSize() {
+        return config.queryCacheMaxSize();
+    }
+
+    /**
+     * {@return whether the {@code findNodes} methods are being generated, and use a tree cursor instead of a query}
+     */
+    public boolean generatesCursorFindNodesMethods() {
+        return generatesFindNodesMethods() && config.findNodesEngine() == CodeGenConfig.FindNodesEngine.CURSOR;
+    }
+
+    /**
+     * {@return whether the {@code TypedTree} class is being generated}
+     */
+    public boolean generatesTypedTree() {
+        return generatesTypedTree;
+    }
+
+    /**
+     * {@return whether allocation sessions are supported, see {@code TypedTree#openSession}}
+     *
+     * <p>If this is the case, methods without explicit allocator parameter use the allocator of the current
+     * session (if any), obtained through {@link NodeUtilsConfig#methodGetSessionAllocator()}.
+     */
+    public boolean generatesAllocationSessions() {
+        return generatesTypedTree;
+    }
+
+    /**
+     * Adds Javadoc to a method without allocator parameter, describing that the allocator of the current allocation
+     * session is used for the nodes. Does nothing if allocation sessions are not generated.
+     */
+    public void addSessionAllocatorJavadoc(MethodSpec.Builder methodBuilder) {
+        if (generatesAllocationSessions()) {
+            var typedTree = TypedTreeClassGenerator.Config.createDefault(typeNameCreator, this);
+            methodBuilder.addJavadoc("\nIf an allocation session is open on the current thread (see {@link $T#$N}), the nodes are allocated with its arena instead.", typedTree.className(), typedTree.methodOpenSession());
+        }
+    }
+
+    /**
+     * Adds Javadoc to a {@code TypedNode} text access method, describing that the method is backed by the retained
+     * source code of the tree, if any, and otherwise falls back to {@code Node#getText()}.
+     */
+    public void addRetainedSourceJavadoc(MethodSpec.Builder methodBuilder) {
+        String getTextMethod = jtreesitterConfig().node().methodGetText();
+        if (generatesTypedTree) {
+            var typedTree = TypedTreeClassGenerator.Config.createDefault(typeNameCreator, this);
+            methodBuilder.addJavadoc("\n\n<p>If the source code of the tree has been retained with {@link $T#$N}, no intermediate {@code String}", typedTree.className(), typedTree.methodRetainSource());
+            methodBuilder.addJavadoc("\nis created; otherwise this falls back to {@link #$N}.", getTextMethod);
+        } else {
+            methodBuilder.addJavadoc("\n\n<p>This falls back to {@link #$N}, which creates an intermediate {@code String}.", getTextMethod);
+        }
+    }
+
+    public NodeTypeReachability nodeTypeReachability() {
+        return nodeTypeReachability;
+    }
+
+    /**
+     * Creates code which creates a typed node of class {@code typedNodeClass} for the jtreesitter node {@code nodeVar}.
+     * If a {@code TypedTree} is generated, the typed node is obtained through its node cache, which returns the
+     * existing typed node if a cache is open for the tree.
+     */
+    public CodeBlock createNewTypedNodeCode(ClassName typedNodeClass, String nodeVar) {
+        if (generatesTypedTree) {
+            var typedTree = TypedTreeClassGenerator.Config.createDefault(typeNameCreator, this);
+            return CodeBlock.of("$T.$N($N, $T.class, $T::new)", typedTree.classNodeCache(), typedTree.methodNodeCacheWrap(), nodeVar, typedNodeClass, typedNodeClass);
+        }
+        return CodeBlock.of("new $T($N)", typedNodeClass, nodeVar);
+    }
+
+    /**
+     * Creates code which creates a typed node for the jtreesitter node {@code nodeVar} using the {@code Function}
+     * {@code factoryVar}, considering the node cache, see {@link #createNewTypedNodeCode(ClassName, String)}.
+     */
+    public CodeBlock createTypedNodeFactoryCode(String factoryVar, String nodeVar) {
+        if (generatesTypedTree) {
+            var typedTree = TypedTreeClassGenerator.Config.createDefault(typeNameCreator, this);
+            return CodeBlock.of("$T.$N($N, $T.class, $N)", typedTree.classNodeCache(), typedTree.methodNodeCacheWrap(), nodeVar, typedNodeConfig().className(), factoryVar);
+        }
+        return CodeBlock.of("$N.apply($N)", factoryVar, nodeVar);
+    }
+
+    /**
+     * Creates code which evaluates {@code code} without using the node cache of {@code TypedTree}. Must be used for
+     * code which creates typed nodes for jtreesitter nodes whose memory might be released while the cache is still
+     * open, for example nodes allocated with a custom allocator, or nodes which are only valid until a stream is closed.
+     */
+    public CodeBlock createUncachedCode(CodeBlock code) {
+        if (generatesTypedTree) {
+            var typedTree = TypedTreeClassGenerator.Config.createDefault(typeNameCreator, this);
+            return CodeBlock.of("$T.$N(() -> $L)", typedTree.classNodeCache(), typedTree.methodNodeCacheRunUncached(), code);
+        }
+        return code;
+    }
+
+    /**
+     * Begins a {@code return} statement whose value is computed by the subsequently added statements, without using
+     * the node cache of {@code TypedTree}, see {@link #createUncachedCode(CodeBlock)}. The subsequent statements
+     * must end with a {@code return} statement, and must be followed by {@link #endUncachedReturn(MethodSpec.Builder)}.
+     */
+    public void beginUncachedReturn(MethodSpec.Builder methodBuilder) {
+        if (generatesTypedTree) {
+            var typedTree = TypedTreeClassGenerator.Config.createDefault(typeNameCreator, this);
+            methodBuilder.addCode("return $T.$N(() -> {\n$>", typedTree.classNodeCache(), typedTree.methodNodeCacheRunUncached());
+        }
+    }
+
+    /**
+     * Ends the {@code return} statement started by {@link #beginUncachedReturn(MethodSpec.Builder)}.
+     */
+    public void endUncachedReturn(MethodSpec.Builder methodBuilder) {
+        if (generatesTypedTree) {
+            methodBuilder.addCode("$<});\n");
+        }
+    }
+
+    /**
+     * Creates code which checks whether the current thread is evaluating code created by {@link #createUncachedCode(CodeBlock)}.
+     * Must only be used if {@link #generatesTypedTree()}.
+     */
+    public CodeBlock createIsUncachedCode() {
+        if (!generatesTypedTree) {
+            throw new IllegalStateException("TypedTree is not generated");
+        }
+        var typedTree = TypedTreeClassGenerator.Config.createDefault(typeNameCreator, this);
+        return CodeBlock.of("$T.$N()", typedTree.classNodeCache(), typedTree.methodNodeCacheIsUncached());
+    }
+
+    /**
+     * Creates code which wraps the jtreesitter node {@code nodeVar} as typed node, based on the numeric type ID
+     * of the node. The result of the code is {@code null} if no corresponding typed node class exists.
+     *
+     * <p>Uses {@code LanguageUtils} if it is generated, otherwise the per-Language ID cache of {@code NodeUtils}.
+     */
+    public CodeBlock createTypedNodeCode(String nodeVar) {
+        var languageUtils = languageUtilsConfig();
+        if (languageUtils != null) {
+            return CodeBlock.of("$T.$N($N)", languageUtils.className(), languageUtils.methodCreateTypedNode(), nodeVar);
+        }
+        var nodeUtils = nodeUtilsConfig();
+        return CodeBlock.of("$T.$N($N)", nodeUtils.className(), nodeUtils.methodCreateTypedNode(), nodeVar);
+    }
+
+    /**
+     * Creates code which determines the {@code TypedNodeKind} of the jtreesitter node {@code nodeVar}, based on the
+     * numeric type ID of the node.
+     *
+     * <p>Uses {@code LanguageUtils} if it is generated, otherwise the per-Language ID cache of {@code NodeUtils}.
+     */
+    public CodeBlock createNodeKindCode(String nodeVar) {
+        var languageUtils = languageUtilsConfig();
+        if (languageUtils != null) {
+            return CodeBlock.of("$T.$N($N)", languageUtils.className(), languageUtils.methodGetNodeKind(), nodeVar);
+        }
+        var nodeUtils = nodeUtilsConfig();
+        return CodeBlock.of("$T.$N($N)", nodeUtils.className(), nodeUtils.methodGetNodeKind(), nodeVar);
+    }
+
+    /**
+     * Creates code which obtains a cursor for iterating over the children of the jtreesitter node {@code nodeVar}
+     * from the {@code CursorCache} of {@code NodeUtils}. The cursor must be released afterwards in a {@code finally}
+     * block, see {@link #createReleaseCursorCode(String)}.
+     */
+    public CodeBlock createAcquireCursorCode(String cursorVar, String nodeVar) {
+        var nodeUtils = nodeUtilsConfig();
+        return CodeBlock.of("var $N = $T.$N($N)", cursorVar, nodeUtils.classCursorCache(), nodeUtils.methodAcquireCursor(), nodeVar);
+    }
+
+    /**
+     * Creates code which releases a cursor obtained by {@link #createAcquireCursorCode(String, String)}.
+     */
+    public CodeBlock createReleaseCursorCode(String cursorVar) {
+        var nodeUtils = nodeUtilsConfig();
+        return CodeBlock.of("$T.$N($N)", nodeUtils.classCursorCache(), nodeUtils.methodReleaseCursor(), cursorVar);
+    }
+
     /**
      * Config for the jtreesitter library, providing class and method names.
      */
@@ -609,7 +1077,8 @@ public class CodeGenHelper {
             String methodGetTypeId,
             String methodGetSubtypes,
             String methodGetFieldId,
-            String methodGetMetadata
+            String methodGetMetadata,
+            String methodGetSymbolCount
         ) {
             public static final Language DEFAULT = new Language(
                 ClassName.get("io.github.treesitter.jtreesitter", "Language"),
@@ -620,7 +1089,8 @@ public class CodeGenHelper {
                 "getSymbolForName",
                 "getSubtypes",
                 "getFieldIdForName",
-                "getMetadata"
+                "getMetadata",
+                "getSymbolCount"
             );
 
             /**
@@ -702,18 +1172,23 @@ public class CodeGenHelper {
          * jtreesitter {@code QueryCursor}
          *
          * @param classNameOptions nested class {@code Options}
+         * @param classNameState nested class {@code State}, passed to the progress callback of {@code Options}
          */
         public record QueryCursor(
             ClassName className,
             String methodFindMatches,
-            ClassName classNameOptions
+            String methodSetByteRange, String methodSetPointRange, String methodSetMaxStartDepth, String methodSetMatchLimit,
+            ClassName classNameOptions,
+            ClassName classNameState
         ) {
             private static final ClassName className_ = ClassName.get("io.github.treesitter.jtreesitter", "QueryCursor");
 
             public static final QueryCursor DEFAULT = new QueryCursor(
                 className_,
                 "findMatches",
-                className_.nestedClass("Options")
+                "setByteRange", "setPointRange", "setMaxStartDepth", "setMatchLimit",
+                className_.nestedClass("Options"),
+                className_.nestedClass("State")
             );
         }
 
@@ -732,10 +1207,12 @@ public class CodeGenHelper {
 
         /** jtreesitter {@code QueryCapture} */
         public record QueryCapture(
+            ClassName className,
             String methodNode,
             String methodName
         ) {
             public static final QueryCapture DEFAULT = new QueryCapture(
+                ClassName.get("io.github.treesitter.jtreesitter", "QueryCapture"),
                 "node",
                 "name"
             );
@@ -757,15 +1234,21 @@ public class CodeGenHelper {
             ClassName className,
             String methodGotoFirstChild,
             String methodGotoNextSibling,
+            String methodGotoParent,
             String methodGetCurrentNode,
-            String methodGetCurrentFieldId
+            String methodGetCurrentFieldId,
+            String methodGetCurrentDepth,
+            String methodReset
         ) {
             public static final TreeCursor DEFAULT = new TreeCursor(
                 ClassName.get("io.github.treesitter.jtreesitter", "TreeCursor"),
                 "gotoFirstChild",
                 "gotoNextSibling",
+                "gotoParent",
                 "getCurrentNode",
-                "getCurrentFieldId"
+                "getCurrentFieldId",
+                "getCurrentDepth",
+                "reset"
             );
         }
 
@@ -778,7 +1261,9 @@ public class CodeGenHelper {
             String methodGetTypeId,
             String methodGetId,
             String methodGetChildrenByFieldName, String methodGetChildrenByFieldId,
+            String methodGetChildByFieldId,
             String methodGetText,
+            String methodGetStartByte, String methodGetEndByte,
             String methodGetTree,
             String methodGetRange, String methodGetStartPoint, String methodGetEndPoint,
             String methodHasError, String methodIsNamed, String methodIsError, String methodIsMissing, String methodIsExtra,
@@ -790,7 +1275,9 @@ public class CodeGenHelper {
                 "getSymbol",
                 "getId",
                 "getChildrenByFieldName", "getChildrenByFieldId",
+                "getChildByFieldId",
                 "getText",
+                "getStartByte", "getEndByte",
                 "getTree",
                 "getRange", "getStartPoint", "getEndPoint",
                 "hasError", "isNamed", "isError", "isMissing", "isExtra",
@@ -827,13 +1314,15 @@ public class CodeGenHelper {
         ClassName classSegmentAllocator,
         ClassName classArena,
         String methodArenaOfAuto,
-        String methodArenaOfConfined
+        String methodArenaOfConfined,
+        String methodArenaOfShared
     ) {
         public static final FFMApiConfig DEFAULT = new FFMApiConfig(
             ClassName.get("java.lang.foreign", "SegmentAllocator"),
             ClassName.get("java.lang.foreign", "Arena"),
             "ofAuto",
-            "ofConfined"
+            "ofConfined",
+            "ofShared"
         );
     }
 
@@ -0,0 +1,153 @@
+package marcono1234.jtreesitter.type_gen.internal.gen.utils;
+
+import com.palantir.javapoet.CodeBlock;
+import com.palantir.javapoet.MethodSpec;
+import com.palantir.javapoet.ParameterSpec;
+import marcono1234.jtreesitter.type_gen.CodeGenReport;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps generated methods small enough to be JIT-compiled. By default HotSpot does not compile methods whose bytecode
+ * is larger than 8000 bytes ({@code -XX:HugeMethodLimit}), so code which grows with the number of node types is split
+ * into multiple helper methods if necessary.
+ *
+ * <p>The bytecode size is only estimated based on the generated source code, because the code is not compiled during
+ * code generation. The estimate is intentionally rather too high than too low.
+ */
+public class MethodSplitter {
+    private MethodSplitter() {
+    }
+
+    /**
+     * Maximum estimated size of a single chunk when splitting code. Considerably smaller than {@link CodeGenReport#HUGE_METHOD_LIMIT}
+     * to account for inaccuracies of the estimate, and for the remaining code of the method.
+     */
+    // Visible for testing
+    static final int CHUNK_SIZE_LIMIT = 2000;
+
+    /**
+     * Estimated number of bytecode bytes per identifier or literal in the source code; most of them correspond to
+     * one instruction (load, invoke, ...) which together with its operands has a size of 1 - 5 bytes, plus implicit
+     * instructions such as casts for generic types and (un)boxing.
+     */
+    private static final int BYTES_PER_TOKEN = 4;
+    /**
+     * Estimated number of bytecode bytes for a {@code case} label; a {@code switch} on a {@code String} is compiled
+     * to a lookup of the hash code, an {@code equals} check and then a second {@code switch} for every case.
+     */
+    private static final int BYTES_PER_CASE = 40;
+    /**
+     * Estimated number of bytecode bytes for a {@code try} statement; try-with-resources is compiled to {@code close()}
+     * calls for every exit path and to exception handlers which add suppressed exceptions.
+     */
+    private static final int BYTES_PER_TRY = 40;
+    /** Estimated number of bytecode bytes which every method has, for example the implicit {@code return} */
+    private static final int BYTES_PER_METHOD = 4;
+
+    /** Package name of a qualified class name; JavaPoet uses qualified names for {@code $T} in {@code toString()} */
+    private static final Pattern PACKAGE_QUALIFIER_PATTERN = Pattern.compile("\\b(?:[a-z][\\w$]*\\.)+(?=[A-Z])");
+    /** Comments, string and char literals, and identifiers, keywords and number literals */
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("//[^\\n]*|/\\*.*?\\*/|\"(?:[^\"\\\\]|\\\\.)*\"|'(?:[^'\\\\]|\\\\.)*'|[\\w$]+", Pattern.DOTALL);
+
+    /**
+     * Estimates the size in bytes of the bytecode for the code.
+     */
+    public static int estimateBytecodeSize(CodeBlock code) {
+        String source = PACKAGE_QUALIFIER_PATTERN.matcher(code.toString()).replaceAll("");
+
+        int size = 0;
+        var matcher = TOKEN_PATTERN.matcher(source);
+        while (matcher.find()) {
+            String token = matcher.group();
+            // Ignore comments
+            if (!token.startsWith("/")) {
+                size += switch (token) {
+                    case "case" -> BYTES_PER_CASE;
+                    case "try" -> BYTES_PER_TRY;
+                    default -> BYTES_PER_TOKEN;
+                };
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the size in bytes of the bytecode for the method body.
+     */
+    public static int estimateBytecodeSize(MethodSpec method) {
+        int size = estimateBytecodeSize(method.code());
+        // Treat methods without code, such as abstract methods, as having no bytecode
+        return size == 0 ? 0 : size + BYTES_PER_METHOD;
+    }
+
+    /**
+     * Splits the entries into consecutive chunks whose estimated size does not exceed {@link #CHUNK_SIZE_LIMIT},
+     * unless a single entry already exceeds it. Returns a single chunk if all entries fit into it.
+     */
+    public static <T> List<List<T>> chunk(List<T> entries, ToIntFunction<? super T> sizeEstimator) {
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> currentChunk = new ArrayList<>();
+        int currentChunkSize = 0;
+
+        for (T entry : entries) {
+            int size = sizeEstimator.applyAsInt(entry);
+            if (!currentChunk.isEmpty() && currentChunkSize + size > CHUNK_SIZE_LIMIT) {
+                chunks.add(currentChunk);
+                currentChunk = new ArrayList<>();
+                currentChunkSize = 0;
+            }
+            currentChunk.add(entry);
+            currentChunkSize += size;
+        }
+
+        if (!currentChunk.isEmpty() || chunks.isEmpty()) {
+            chunks.add(currentChunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Adds the code to the method. If the estimated size of the code is too large, it is instead split into chunks
+     * which are moved to separate private helper methods, and the method calls these helper methods. The helper
+     * methods are named {@code helperMethodName} followed by the index of the chunk.
+     *
+     * @param code
+     *      the code to add, for example one or multiple statements per node type; each element is kept as a
+     *      whole in the same chunk
+     * @param parameters
+     *      local variables and parameters of the method which are used by the code; they are passed as
+     *      arguments to the helper methods and must therefore not be reassigned by the code
+     * @return
+     *      the helper methods, which have to be added to the enclosing type; empty if the code was added
+     *      directly to the method
+     */
+    public static List<MethodSpec> addChunkedCode(MethodSpec.Builder methodBuilder, String helperMethodName, boolean isStatic, List<CodeBlock> code, List<ParameterSpec> parameters) {
+        var chunks = chunk(code, MethodSplitter::estimateBytecodeSize);
+        if (chunks.size() == 1) {
+            chunks.getFirst().forEach(methodBuilder::addCode);
+            return List.of();
+        }
+
+        var arguments = parameters.stream().map(p -> CodeBlock.of("$N", p)).collect(CodeBlock.joining(", "));
+        List<MethodSpec> helperMethods = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            var helperBuilder = MethodSpec.methodBuilder(helperMethodName + i)
+                .addModifiers(Modifier.PRIVATE)
+                .addParameters(parameters);
+            if (isStatic) {
+                helperBuilder.addModifiers(Modifier.STATIC);
+            }
+            chunks.get(i).forEach(helperBuilder::addCode);
+
+            var helperMethod = helperBuilder.build();
+            helperMethods.add(helperMethod);
+            methodBuilder.addStatement("$N($L)", helperMethod, arguments);
+        }
+        return helperMethods;
+    }
+}
@@ -0,0 +1,179 @@
+package marcono1234.jtreesitter.type_gen.internal.gen.utils;
+
+import marcono1234.jtreesitter.type_gen.internal.gen.GenNodeType;
+import marcono1234.jtreesitter.type_gen.internal.gen.GenRegularNodeType;
+import marcono1234.jtreesitter.type_gen.internal.gen.GenSupertypeNodeType;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Determines which node types can contain which other node types as direct or indirect children, based on the
+ * children and fields of the node types. Each regular node type is assigned an index, so that a set of node types
+ * can be represented as bit set in the generated code.
+ *
+ * <p>This is used by the cursor-based {@code findNodes} implementation to skip subtrees which cannot contain the
+ * searched nodes. Additionally the indices of the node types and of the field names are used by the generated
+ * {@code NodeUtils} class to look up numeric IDs in arrays instead of by name.
+ */
+public class NodeTypeReachability {
+    /** Regular node types; the position in the list is the index of the node type */
+    private final List<GenRegularNodeType> nodeTypes;
+    private final Map<GenRegularNodeType, Integer> indices;
+    /** Field names of all regular node types; the position in the list is the index of the field name */
+    private final List<String> fieldNames;
+    private final Map<String, Integer> fieldIndices;
+    /** For each node type, the node types which can have it as direct child */
+    private final Map<GenRegularNodeType, Set<GenRegularNodeType>> parentTypes;
+    /** Node types which can appear anywhere in the tree */
+    private final Set<GenRegularNodeType> extraTypes;
+
+    /**
+     * @param nodeTypes
+     *      all node types for which code is generated; the order of the regular node types determines their index
+     * @param rootNode
+     *      root node type, if known
+     */
+    public NodeTypeReachability(List<GenNodeType> nodeTypes, @Nullable GenNodeType rootNode) {
+        this.nodeTypes = new ArrayList<>();
+        indices = new HashMap<>();
+        for (var nodeType : nodeTypes) {
+            // Only consider regular node types, because supertypes don't exist as nodes in the parsed tree
+            if (nodeType instanceof GenRegularNodeType regularNodeType) {
+                indices.put(regularNodeType, this.nodeTypes.size());
+                this.nodeTypes.add(regularNodeType);
+            }
+        }
+
+        var sortedFieldNames = new TreeSet<String>();
+        this.nodeTypes.forEach(t -> t.getGenFields().forEach(f -> sortedFieldNames.add(f.getFieldName())));
+        fieldNames = new ArrayList<>(sortedFieldNames);
+        fieldIndices = new HashMap<>();
+        for (var fieldName : fieldNames) {
+            fieldIndices.put(fieldName, fieldIndices.size());
+        }
+
+        parentTypes = new HashMap<>();
+        for (var nodeType : this.nodeTypes) {
+            List<GenNodeType> childTypes = new ArrayList<>();
+            var children = nodeType.getGenChildren();
+            if (children != null) {
+                childTypes.addAll(children.getGenChildType().getNamedNodeTypes());
+            }
+            for (var field : nodeType.getGenFields()) {
+                childTypes.addAll(field.getGenChildType().getNamedNodeTypes());
+            }
+
+            for (var childType : childTypes) {
+                for (var regularChildType : resolveRegularTypes(childType)) {
+                    parentTypes.computeIfAbsent(regularChildType, k -> new HashSet<>()).add(nodeType);
+                }
+            }
+        }
+
+        extraTypes = new HashSet<>();
+        for (var nodeType : nodeTypes) {
+            if (nodeType.isNodeExtra()) {
+                extraTypes.addAll(resolveRegularTypes(nodeType));
+            }
+        }
+        // The 'extra' information is only available in newer `node-types.json` files; if no extra node types are
+        // known, assume that all node types which are not a child of any other node type might be extra nodes
+        if (extraTypes.isEmpty()) {
+            var rootTypes = rootNode == null ? Set.<GenRegularNodeType>of() : resolveRegularTypes(rootNode);
+            for (var nodeType : this.nodeTypes) {
+                if (!parentTypes.containsKey(nodeType) && !rootTypes.contains(nodeType)) {
+                    extraTypes.add(nodeType);
+                }
+            }
+        }
+    }
+
+    private static Set<GenRegularNodeType> resolveRegularTypes(GenNodeType nodeType) {
+        return switch (nodeType) {
+            case GenRegularNodeType regularNodeType -> Set.of(regularNodeType);
+            case GenSupertypeNodeType supertypeNodeType -> supertypeNodeType.getAllSubtypeClasses();
+        };
+    }
+
+    /**
+     * Gets all regular node types; the position in the list is the index of the node type.
+     */
+    public List<GenRegularNodeType> getNodeTypes() {
+        return Collections.unmodifiableList(nodeTypes);
+    }
+
+    /**
+     * Gets the number of {@code long} elements needed to represent a bit set of node type indices.
+     */
+    public int getBitSetLength() {
+        return (nodeTypes.size() + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private long[] toLongArray(BitSet bitSet) {
+        // `BitSet#toLongArray` omits trailing 0 elements, but generated code expects fixed length
+        return Arrays.copyOf(bitSet.toLongArray(), getBitSetLength());
+    }
+
+    /**
+     * Gets the names of all fields of all regular node types; the position in the list is the index of the field name.
+     */
+    public List<String> getFieldNames() {
+        return Collections.unmodifiableList(fieldNames);
+    }
+
+    public int getIndex(GenRegularNodeType nodeType) {
+        var index = indices.get(nodeType);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown node type: " + nodeType);
+        }
+        return index;
+    }
+
+    public int getFieldIndex(String fieldName) {
+        var index = fieldIndices.get(fieldName);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown field name: " + fieldName);
+        }
+        return index;
+    }
+
+    /**
+     * Gets the bit set of the indices of the given node types.
+     */
+    public long[] getTypesBitSet(Collection<GenRegularNodeType> types) {
+        BitSet bitSet = new BitSet(nodeTypes.size());
+        for (var type : types) {
+            bitSet.set(getIndex(type));
+        }
+        return toLongArray(bitSet);
+    }
+
+    /**
+     * Gets the bit set of the indices of all node types which can have any of the given node types as direct
+     * or indirect child.
+     */
+    public long[] getContainingTypesBitSet(Collection<GenRegularNodeType> types) {
+        Set<GenRegularNodeType> containingTypes = new HashSet<>();
+        Deque<GenRegularNodeType> pending = new ArrayDeque<>(types);
+        while (!pending.isEmpty()) {
+            var type = pending.removeFirst();
+            for (var parentType : parentTypes.getOrDefault(type, Set.of())) {
+                if (containingTypes.add(parentType)) {
+                    pending.addLast(parentType);
+                }
+            }
+        }
+
+        BitSet bitSet = new BitSet(nodeTypes.size());
+        // Extra nodes can appear as child of any node, so if they can contain the types (or are one of the types),
+        // then every node type can contain the types
+        boolean containedByExtra = extraTypes.stream().anyMatch(t -> types.contains(t) || containingTypes.contains(t));
+        if (containedByExtra) {
+            bitSet.set(0, nodeTypes.size());
+        } else {
+            containingTypes.forEach(t -> bitSet.set(getIndex(t)));
+        }
+        return toLongArray(bitSet);
+    }
+}
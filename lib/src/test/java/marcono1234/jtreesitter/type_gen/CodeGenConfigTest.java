@@ -16,6 +16,9 @@ class CodeGenConfigTest {
     private static final CodeGenConfig.ChildTypeAsTopLevel DEFAULT_CHILD_AS_TOP_LEVEL = CodeGenConfig.ChildTypeAsTopLevel.AS_NEEDED;
     private static final NameGenerator DEFAULT_NAME_GENERATOR = new NameGenerator.DefaultNameGenerator(TokenNameGenerator.AUTOMATIC);
     private static final boolean DEFAULT_GENERATE_FIND_NODES_METHODS = true;
+    private static final CodeGenConfig.FindNodesEngine DEFAULT_FIND_NODES_ENGINE = CodeGenConfig.FindNodesEngine.QUERY;
+    private static final boolean DEFAULT_LAZY_CHILDREN_LISTS = false;
+    private static final int DEFAULT_QUERY_CACHE_MAX_SIZE = 32;
 
     @Test
     void packageName() {
@@ -28,7 +31,10 @@ class CodeGenConfigTest {
             Optional.empty(),
             DEFAULT_NAME_GENERATOR,
             DEFAULT_GENERATE_FIND_NODES_METHODS,
+            DEFAULT_FIND_NODES_ENGINE,
+            DEFAULT_LAZY_CHILDREN_LISTS,
             Optional.empty(),
+            DEFAULT_QUERY_CACHE_MAX_SIZE,
             Optional.empty(),
             Optional.empty(),
             Optional.empty()
@@ -47,7 +53,10 @@ class CodeGenConfigTest {
             Optional.empty(),
             DEFAULT_NAME_GENERATOR,
             DEFAULT_GENERATE_FIND_NODES_METHODS,
+            DEFAULT_FIND_NODES_ENGINE,
+            DEFAULT_LAZY_CHILDREN_LISTS,
             Optional.empty(),
+            DEFAULT_QUERY_CACHE_MAX_SIZE,
             Optional.empty(),
             Optional.empty(),
             Optional.empty()
@@ -66,7 +75,10 @@ class CodeGenConfigTest {
             Optional.empty(),
             DEFAULT_NAME_GENERATOR,
             DEFAULT_GENERATE_FIND_NODES_METHODS,
+            DEFAULT_FIND_NODES_ENGINE,
+            DEFAULT_LAZY_CHILDREN_LISTS,
             Optional.empty(),
+            DEFAULT_QUERY_CACHE_MAX_SIZE,
             Optional.empty(),
             Optional.empty(),
             Optional.empty()
@@ -83,7 +95,10 @@ class CodeGenConfigTest {
             Optional.empty(),
             DEFAULT_NAME_GENERATOR,
             DEFAULT_GENERATE_FIND_NODES_METHODS,
+            DEFAULT_FIND_NODES_ENGINE,
+            DEFAULT_LAZY_CHILDREN_LISTS,
             Optional.empty(),
+            DEFAULT_QUERY_CACHE_MAX_SIZE,
             Optional.empty(),
             Optional.empty(),
             Optional.empty()
@@ -91,6 +106,28 @@ class CodeGenConfigTest {
         assertEquals("Non-qualified type name must not contain '.': qualified.Name", e.getMessage());
     }
 
+    @Test
+    void queryCacheMaxSize() {
+        var e = assertThrows(IllegalArgumentException.class, () -> new CodeGenConfig(
+            DEFAULT_PACKAGE_NAME,
+            Optional.empty(),
+            Optional.empty(),
+            DEFAULT_NON_EMPTY_NAME,
+            DEFAULT_CHILD_AS_TOP_LEVEL,
+            Optional.empty(),
+            DEFAULT_NAME_GENERATOR,
+            DEFAULT_GENERATE_FIND_NODES_METHODS,
+            DEFAULT_FIND_NODES_ENGINE,
+            DEFAULT_LAZY_CHILDREN_LISTS,
+            Optional.empty(),
+            -1,
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty()
+        ));
+        assertEquals("Query cache max size must not be negative: -1", e.getMessage());
+    }
+
     @Nested
     class GeneratedAnnotationConfigTest {
         @Test
@@ -180,6 +217,7 @@ class CodeGenConfigTest {
             assertEquals(CodeGenConfig.validatingNameGenerator(CodeGenConfig.Builder.DEFAULT_NAME_GENERATOR), config.nameGenerator());
             assertTrue(config.generateFindNodesMethods());
             assertEquals(Optional.empty(), config.typedQueryNameGenerator());
+            assertEquals(32, config.queryCacheMaxSize());
             assertEquals(Optional.empty(), config.customJavadocProvider());
             assertEquals(Optional.empty(), config.customMethodsProvider());
 
@@ -202,6 +240,7 @@ class CodeGenConfigTest {
             };
             var generateFindNodesMethods = false;
             var typedQueryNameGenerator = TypedQueryNameGenerator.createDefault(nameGenerator);
+            var queryCacheMaxSize = 5;
             var customJavadocProvider = new CustomJavadocProvider() { };
             var customMethodsProvider = new CustomMethodsProvider() { };
             var generatedAnnotationConfig = new GeneratedAnnotationConfig(GeneratedAnnotationConfig.GeneratedAnnotationType.JAVAX_GENERATED, Optional.of(Instant.EPOCH), Optional.of("some text"));
@@ -214,6 +253,7 @@ class CodeGenConfigTest {
                 .nameGenerator(nameGenerator)
                 .generateFindNodesMethods(generateFindNodesMethods)
                 .typedQueryNameGenerator(typedQueryNameGenerator)
+                .queryCacheMaxSize(queryCacheMaxSize)
                 .customJavadocProvider(customJavadocProvider)
                 .customMethodsProvider(customMethodsProvider)
                 .generatedAnnotationConfig(generatedAnnotationConfig)
@@ -228,6 +268,7 @@ class CodeGenConfigTest {
             assertEquals(CodeGenConfig.validatingNameGenerator(nameGenerator), config.nameGenerator());
             assertEquals(generateFindNodesMethods, config.generateFindNodesMethods());
             assertEquals(CodeGenConfig.validatingTypedQueryNameGenerator(typedQueryNameGenerator), config.typedQueryNameGenerator().orElseThrow());
+            assertEquals(queryCacheMaxSize, config.queryCacheMaxSize());
             assertSame(customJavadocProvider, config.customJavadocProvider().orElseThrow());
             assertSame(customMethodsProvider, config.customMethodsProvider().orElseThrow());
             assertEquals(Optional.of(generatedAnnotationConfig), config.generatedAnnotationConfig());
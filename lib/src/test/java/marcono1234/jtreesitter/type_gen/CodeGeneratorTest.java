@@ -1,6 +1,8 @@
 package marcono1234.jtreesitter.type_gen;
 
 import com.palantir.javapoet.JavaFile;
+import com.palantir.javapoet.MethodSpec;
+import com.palantir.javapoet.TypeSpec;
 import io.github.ascopes.jct.compilers.JctCompilers;
 import io.github.ascopes.jct.workspaces.PathStrategy;
 import io.github.ascopes.jct.workspaces.Workspaces;
@@ -8,14 +10,21 @@ import marcono1234.jtreesitter.type_gen.CodeGenConfig.GeneratedAnnotationConfig.
 import marcono1234.jtreesitter.type_gen.LanguageConfig.LanguageProviderConfig;
 import marcono1234.jtreesitter.type_gen.LanguageConfig.LanguageVersion;
 import marcono1234.jtreesitter.type_gen.NameGenerator.TokenNameGenerator;
+import marcono1234.jtreesitter.type_gen.internal.gen.utils.MethodSplitter;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.opentest4j.TestAbortedException;
 
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.file.Files;
@@ -118,6 +127,10 @@ class CodeGeneratorTest {
         var nameGenerator = new NameGenerator.DefaultNameGenerator(tokenNameGenerator);
 
         boolean findNodesMethods = !baseFileName.contains("(no-findNodes)");
+        var findNodesEngine = baseFileName.contains("(findNodes=cursor)") ? CodeGenConfig.FindNodesEngine.CURSOR
+            : CodeGenConfig.FindNodesEngine.QUERY;
+
+        boolean lazyChildrenLists = baseFileName.contains("(lazy-children-lists)");
 
         var typedQueryNameGenerator = baseFileName.contains("(typed-query)") ? TypedQueryNameGenerator.createDefault(nameGenerator)
             : null;
@@ -135,7 +148,10 @@ class CodeGeneratorTest {
             Optional.ofNullable(typedNodeSuperinterface),
             nameGenerator,
             findNodesMethods,
+            findNodesEngine,
+            lazyChildrenLists,
             Optional.ofNullable(typedQueryNameGenerator),
+            32,
             Optional.ofNullable(customJavadocProvider),
             Optional.ofNullable(customMethodsProvider),
             Optional.of(GENERATED_ANNOTATION_CONFIG)
@@ -564,6 +580,239 @@ class CodeGeneratorTest {
         }
     }
 
+    /**
+     * Tests that for a large number of node types the methods whose size depends on the number of node types are split,
+     * so that they can be JIT-compiled.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testLargeGrammar_SplitMethods(boolean usesLanguageProvider) throws Exception {
+        int nodeTypesCount = 600;
+        var nodeTypesJson = new StringBuilder("[\n");
+        for (int i = 0; i < nodeTypesCount; i++) {
+            nodeTypesJson.append("""
+                {"type": "node_%d", "named": true%s},
+                """.formatted(i, i % 4 == 0 ? ", \"fields\": {\"field_%d\": {\"multiple\": false, \"required\": true, \"types\": [{\"type\": \"document\", \"named\": true}]}}".formatted(i) : ""));
+        }
+        nodeTypesJson.append("""
+            {"type": "document", "named": true, "root": true}
+            ]""");
+
+        var config = CodeGenConfig.builder(DEFAULT_PACKAGE_NAME)
+            .findNodesEngine(CodeGenConfig.FindNodesEngine.CURSOR)
+            .build();
+        var languageConfigBuilder = LanguageConfig.builder();
+        if (usesLanguageProvider) {
+            languageConfigBuilder.languageProviderConfig(LanguageProviderConfig.fromString(DUMMY_LANGUAGE_PROVIDER_NAME + "#method()"));
+        }
+        var languageConfig = languageConfigBuilder.build();
+
+        List<JavaFileSource> generatedFiles = new ArrayList<>();
+        var codeWriter = new CodeGenerator.JavaCodeWriter() {
+            @Override
+            public void write(JavaFile javaCode) {
+                generatedFiles.add(new JavaFileSource(javaCode));
+            }
+
+            @Override
+            public void writePackageInfo(String packageName, String content) {
+                generatedFiles.add(new JavaFileSource(packageName, "package-info.java", content));
+            }
+        };
+        var report = new CodeGenerator(config).generate(new StringReader(nodeTypesJson.toString()), languageConfig, codeWriter, VERSION_INFO);
+
+        assertThat(report.largestMethods()).hasSize(10);
+        assertThat(report.largestMethods()).isSortedAccordingTo(Comparator.comparingInt(CodeGenReport.MethodSize::estimatedBytecodeSize).reversed());
+        assertThat(report.largestMethods()).noneMatch(CodeGenReport.MethodSize::exceedsHugeMethodLimit);
+
+        var allSources = generatedFiles.stream().map(JavaFileSource::source).toList();
+        assertThat(allSources).anyMatch(source -> source.contains("dispatchVisit1("));
+        assertThat(allSources).anyMatch(source -> source.contains("addVisitorHooks1("));
+        if (usesLanguageProvider) {
+            assertThat(allSources).anyMatch(source -> source.contains("addFactories1("));
+            assertThat(allSources).anyMatch(source -> source.contains("addKinds1("));
+            assertThat(allSources).anyMatch(source -> source.contains("addIndices1("));
+        } else {
+            assertThat(allSources).anyMatch(source -> source.contains("addTypedNodes1("));
+            assertThat(allSources).anyMatch(source -> source.contains("addFieldIds1("));
+        }
+
+        compileCode(generatedFiles, config, true, usesLanguageProvider);
+    }
+
+    /**
+     * Verifies that {@link MethodSplitter#estimateBytecodeSize(MethodSpec)} does not underestimate the bytecode size
+     * of the generated methods, otherwise the method splitting and the {@link CodeGenReport} are unreliable.
+     */
+    @Test
+    void testLargeGrammar_EstimatedBytecodeSize(@TempDir Path tempDir) throws Exception {
+        int nodeTypesCount = 300;
+        int tokensCount = 100;
+        var nodeTypesJson = new StringBuilder("[\n");
+        for (int i = 0; i < nodeTypesCount; i++) {
+            nodeTypesJson.append("""
+                {"type": "node_%d", "named": true%s},
+                """.formatted(i, i % 4 == 0 ? ", \"fields\": {\"field_%d\": {\"multiple\": false, \"required\": true, \"types\": [{\"type\": \"document\", \"named\": true}]}}".formatted(i) : ""));
+        }
+        // Tokens are converted using a `switch` on the type name
+        var tokensJson = new StringJoiner(", ");
+        for (int i = 0; i < tokensCount; i++) {
+            tokensJson.add("{\"type\": \"token_%d\", \"named\": false}".formatted(i));
+            nodeTypesJson.append("""
+                {"type": "token_%d", "named": false},
+                """.formatted(i));
+        }
+        nodeTypesJson.append("""
+            {"type": "document", "named": true, "root": true, "fields": {"token": {"multiple": true, "required": false, "types": [%s]}}}
+            ]""".formatted(tokensJson));
+
+        var config = CodeGenConfig.builder(DEFAULT_PACKAGE_NAME).build();
+        Map<String, Map<String, Integer>> estimatedSizes = new LinkedHashMap<>();
+        Path sourceDir = tempDir.resolve("src");
+        var codeWriter = new CodeGenerator.JavaCodeWriter() {
+            private void collectEstimatedSizes(TypeSpec typeSpec, String binaryName) {
+                Map<String, Integer> methodSizes = new HashMap<>();
+                Set<String> overloadedMethods = new HashSet<>();
+                for (var method : typeSpec.methodSpecs()) {
+                    // Ignore constructors, their bytecode additionally contains the field initializers
+                    if (method.isConstructor()) {
+                        continue;
+                    }
+                    if (methodSizes.put(method.name(), MethodSplitter.estimateBytecodeSize(method)) != null) {
+                        overloadedMethods.add(method.name());
+                    }
+                }
+                // Cannot easily determine which overload a compiled method belongs to, so ignore overloaded methods
+                methodSizes.keySet().removeAll(overloadedMethods);
+                // Ignore methods without body
+                methodSizes.values().removeIf(size -> size == 0);
+                estimatedSizes.put(binaryName, methodSizes);
+
+                for (var nestedType : typeSpec.typeSpecs()) {
+                    collectEstimatedSizes(nestedType, binaryName + "$" + nestedType.name());
+                }
+            }
+
+            @Override
+            public void write(JavaFile javaCode) throws CodeGenException {
+                collectEstimatedSizes(javaCode.typeSpec(), javaCode.packageName() + "." + javaCode.typeSpec().name());
+                try {
+                    javaCode.writeTo(sourceDir);
+                } catch (IOException e) {
+                    throw new CodeGenException("Failed writing code", e);
+                }
+            }
+
+            @Override
+            public void writePackageInfo(String packageName, String content) {
+                // Not relevant for this test
+            }
+        };
+        new CodeGenerator(config).generate(new StringReader(nodeTypesJson.toString()), LanguageConfig.builder().build(), codeWriter, VERSION_INFO);
+
+        Path classesDir = tempDir.resolve("classes");
+        compileToDirectory(sourceDir, classesDir);
+
+        int checkedMethodsCount = 0;
+        for (var classEntry : estimatedSizes.entrySet()) {
+            Path classFile = classesDir.resolve(classEntry.getKey().replace('.', '/') + ".class");
+            Map<String, Integer> actualSizes = readCodeSizes(Files.readAllBytes(classFile));
+
+            for (var methodEntry : classEntry.getValue().entrySet()) {
+                String methodName = methodEntry.getKey();
+                Integer actualSize = actualSizes.get(methodName);
+                assertNotNull(actualSize, "Missing method " + methodName);
+                assertThat(methodEntry.getValue())
+                    .as("estimated size of " + classEntry.getKey() + "#" + methodName)
+                    .isGreaterThanOrEqualTo(actualSize);
+                checkedMethodsCount++;
+            }
+        }
+        // Sanity check that the sizes of a considerable amount of methods has been compared
+        assertThat(checkedMethodsCount).isGreaterThan(1000);
+    }
+
+    /**
+     * Compiles the source files using the {@linkplain ToolProvider#getSystemJavaCompiler() system Java compiler},
+     * using the classpath of the current JVM.
+     */
+    private static void compileToDirectory(Path sourceDir, Path classesDir) throws IOException {
+        List<String> sourceFiles;
+        try (var files = Files.walk(sourceDir)) {
+            sourceFiles = files.filter(f -> f.toString().endsWith(".java")).map(Path::toString).toList();
+        }
+
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        try (var fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            var options = List.of("-classpath", System.getProperty("java.class.path"), "-d", classesDir.toString());
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjectsFromStrings(sourceFiles)).call();
+            assertTrue(success, () -> "Compilation failed: " + diagnostics.getDiagnostics());
+        }
+    }
+
+    /**
+     * Reads the {@code code_length} of the {@code Code} attribute of all methods of the class file. For overloaded
+     * methods only the size of the largest overload is returned.
+     */
+    private static Map<String, Integer> readCodeSizes(byte[] classFileBytes) throws IOException {
+        var input = new DataInputStream(new ByteArrayInputStream(classFileBytes));
+        assertEquals(0xCAFEBABE, input.readInt());
+        input.skipBytes(4); // minor_version, major_version
+
+        int constantPoolCount = input.readUnsignedShort();
+        String[] utf8Constants = new String[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8Constants[i] = input.readUTF(); // Utf8
+                case 7, 8, 16, 19, 20 -> input.skipBytes(2); // Class, String, MethodType, Module, Package
+                case 15 -> input.skipBytes(3); // MethodHandle
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> input.skipBytes(4);
+                case 5, 6 -> { // Long, Double; take up two entries
+                    input.skipBytes(8);
+                    i++;
+                }
+                default -> throw new AssertionError("Unexpected constant pool tag: " + tag);
+            }
+        }
+
+        input.skipBytes(6); // access_flags, this_class, super_class
+        input.skipBytes(2 * input.readUnsignedShort()); // interfaces
+
+        int fieldsCount = input.readUnsignedShort();
+        for (int i = 0; i < fieldsCount; i++) {
+            input.skipBytes(6); // access_flags, name_index, descriptor_index
+            int attributesCount = input.readUnsignedShort();
+            for (int a = 0; a < attributesCount; a++) {
+                input.skipBytes(2);
+                input.skipBytes(input.readInt());
+            }
+        }
+
+        Map<String, Integer> codeSizes = new HashMap<>();
+        int methodsCount = input.readUnsignedShort();
+        for (int i = 0; i < methodsCount; i++) {
+            input.skipBytes(2); // access_flags
+            String name = utf8Constants[input.readUnsignedShort()];
+            input.skipBytes(2); // descriptor_index
+            int attributesCount = input.readUnsignedShort();
+            for (int a = 0; a < attributesCount; a++) {
+                String attributeName = utf8Constants[input.readUnsignedShort()];
+                int attributeLength = input.readInt();
+                if (attributeName.equals("Code")) {
+                    input.skipBytes(4); // max_stack, max_locals
+                    int codeLength = input.readInt();
+                    codeSizes.merge(name, codeLength, Math::max);
+                    input.skipBytes(attributeLength - 8);
+                } else {
+                    input.skipBytes(attributeLength);
+                }
+            }
+        }
+        return codeSizes;
+    }
+
     /** Code writer which throws assertion errors when any of its methods are called. */
     private static class ThrowingCodeWriter implements CodeGenerator.JavaCodeWriter {
         private final AtomicBoolean wasCalled = new AtomicBoolean(false);
@@ -0,0 +1,86 @@
+package marcono1234.jtreesitter.type_gen.internal.gen.utils;
+
+import com.palantir.javapoet.ClassName;
+import com.palantir.javapoet.CodeBlock;
+import com.palantir.javapoet.MethodSpec;
+import com.palantir.javapoet.ParameterSpec;
+import org.junit.jupiter.api.Test;
+
+import javax.lang.model.element.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MethodSplitterTest {
+    @Test
+    void estimateBytecodeSize() {
+        assertEquals(0, MethodSplitter.estimateBytecodeSize(CodeBlock.of("")));
+        assertEquals(0, MethodSplitter.estimateBytecodeSize(CodeBlock.of("// comment with words\n/* other comment */")));
+        // `return`, `a`, `b`
+        assertEquals(12, MethodSplitter.estimateBytecodeSize(CodeBlock.of("return a + b;\n")));
+        // String literal is a single token; `throw`, literal
+        assertEquals(8, MethodSplitter.estimateBytecodeSize(CodeBlock.of("throw $S;\n", "some // text")));
+        // `case` and `try` are considerably larger than other tokens
+        assertEquals(40 + 4 + 4, MethodSplitter.estimateBytecodeSize(CodeBlock.of("case $S -> A;\n", "a")));
+        assertEquals(40 + 4 + 4 + 4, MethodSplitter.estimateBytecodeSize(CodeBlock.of("try (var a = b()) {\n}\n")));
+        // Package name of qualified class names is ignored
+        assertEquals(
+            MethodSplitter.estimateBytecodeSize(CodeBlock.of("new Node();\n")),
+            MethodSplitter.estimateBytecodeSize(CodeBlock.of("new $T();\n", ClassName.get("io.github.treesitter.jtreesitter", "Node")))
+        );
+
+        // Method has additional size for implicit `return`
+        assertEquals(12 + 4, MethodSplitter.estimateBytecodeSize(MethodSpec.methodBuilder("m").addStatement("return a + b").build()));
+        // Method without code
+        assertEquals(0, MethodSplitter.estimateBytecodeSize(MethodSpec.methodBuilder("m").addModifiers(Modifier.ABSTRACT).build()));
+    }
+
+    @Test
+    void chunk() {
+        assertEquals(List.of(List.of()), MethodSplitter.chunk(List.of(), e -> 1));
+        assertEquals(List.of(List.of(1, 2, 3)), MethodSplitter.chunk(List.of(1, 2, 3), e -> 1));
+
+        int limit = MethodSplitter.CHUNK_SIZE_LIMIT;
+        assertEquals(
+            List.of(List.of(1, 2), List.of(3, 4), List.of(5)),
+            MethodSplitter.chunk(List.of(1, 2, 3, 4, 5), e -> limit / 2)
+        );
+        // Entry which exceeds the limit on its own
+        assertEquals(
+            List.of(List.of(1), List.of(2), List.of(3)),
+            MethodSplitter.chunk(List.of(1, 2, 3), e -> e == 2 ? limit * 2 : limit / 2 + 1)
+        );
+    }
+
+    @Test
+    void addChunkedCode_Small() {
+        var methodBuilder = MethodSpec.methodBuilder("test");
+        var code = List.of(CodeBlock.builder().addStatement("a[0] = 1").build());
+        var helperMethods = MethodSplitter.addChunkedCode(methodBuilder, "helper", true, code, List.of(ParameterSpec.builder(int[].class, "a").build()));
+
+        assertEquals(List.of(), helperMethods);
+        assertEquals("a[0] = 1;\n", methodBuilder.build().code().toString());
+    }
+
+    @Test
+    void addChunkedCode_Large() {
+        var methodBuilder = MethodSpec.methodBuilder("test");
+        var statement = CodeBlock.builder().addStatement("a[0] = 1").build();
+        int statementsCount = MethodSplitter.CHUNK_SIZE_LIMIT / MethodSplitter.estimateBytecodeSize(statement) * 2 + 1;
+        List<CodeBlock> code = new ArrayList<>(Collections.nCopies(statementsCount, statement));
+        var helperMethods = MethodSplitter.addChunkedCode(methodBuilder, "helper", true, code, List.of(ParameterSpec.builder(int[].class, "a").build()));
+
+        assertEquals(3, helperMethods.size());
+        assertEquals("helper0(a);\nhelper1(a);\nhelper2(a);\n", methodBuilder.build().code().toString());
+
+        int totalStatements = 0;
+        for (var helperMethod : helperMethods) {
+            assertTrue(MethodSplitter.estimateBytecodeSize(helperMethod) <= MethodSplitter.CHUNK_SIZE_LIMIT);
+            assertEquals("private static void helper%d(int[] a)".formatted(helperMethods.indexOf(helperMethod)), helperMethod.toString().lines().findFirst().orElseThrow().replace(" {", ""));
+            totalStatements += (int) helperMethod.code().toString().lines().count();
+        }
+        assertEquals(statementsCount, totalStatements);
+    }
+}
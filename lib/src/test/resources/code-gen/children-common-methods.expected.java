@@ -1,12 +1,43 @@
 package org.example;
 
+import io.github.treesitter.jtreesitter.Language;
 import io.github.treesitter.jtreesitter.Node;
+import io.github.treesitter.jtreesitter.Query;
+import io.github.treesitter.jtreesitter.Tree;
+import io.github.treesitter.jtreesitter.TreeCursor;
+import io.github.treesitter.jtreesitter.Unsigned;
+import java.lang.CharSequence;
+import java.lang.Character;
 import java.lang.Class;
 import java.lang.IllegalArgumentException;
 import java.lang.IllegalStateException;
+import java.lang.Object;
+import java.lang.Override;
+import java.lang.RuntimeException;
+import java.lang.Short;
+import java.lang.String;
+import java.lang.SuppressWarnings;
+import java.lang.System;
+import java.lang.ThreadLocal;
 import java.lang.foreign.Arena;
+import java.lang.foreign.SegmentAllocator;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import javax.annotation.processing.Generated;
 import org.jspecify.annotations.Nullable;
@@ -39,17 +70,18 @@ final class NodeUtils {
   /**
    * Gets all non-field children of the node.
    * @param named whether to return named or non-named children
+   * @param allocator allocator to use for the children node objects
    */
-  public static List<Node> getNonFieldChildren(Node node, boolean named) {
+  public static List<Node> getNonFieldChildren(Node node, boolean named,
+      SegmentAllocator allocator) {
     var children = new ArrayList<Node>();
-    // Use custom allocator to ensure that nodes are usable after cursor was closed
-    var arena = Arena.ofAuto();
-    try (var cursor = node.walk()) {
+    var cursor = CursorCache.acquire(node);
+    try {
       if (cursor.gotoFirstChild()) {
         do {
           // Only consider non-field children
           if (cursor.getCurrentFieldId() == 0) {
-            var currentNode = cursor.getCurrentNode(arena);
+            var currentNode = cursor.getCurrentNode(allocator);
             if (currentNode.isError() || currentNode.isMissing()) {
               throw new IllegalStateException("Child is error or missing node: " + currentNode);
             }
@@ -59,61 +91,902 @@ final class NodeUtils {
           }
         } while (cursor.gotoNextSibling());
       }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return children;
+  }
+
+  /**
+   * Gets all non-field children of the node, allocated with an automatic {@code Arena}.
+   * @param named whether to return named or non-named children
+   */
+  public static List<Node> getNonFieldChildren(Node node, boolean named) {
+    return getNonFieldChildren(node, named, Arena.ofAuto());
+  }
+
+  /**
+   * Counts the non-field children of the node; the result is the same as the size of the list returned by
+   * {@code getNonFieldChildren}, but no nodes are allocated for the children.
+   * @param named whether to count named or non-named children
+   */
+  public static int countNonFieldChildren(Node node, boolean named) {
+    int count = 0;
+    var cursor = CursorCache.acquire(node);
+    try {
+      // jtreesitter provides no direct access to the properties of the current node, so use transient nodes
+      // which all reuse the same memory
+      var scratchAllocator = CursorCache.scratchAllocator();
+      if (cursor.gotoFirstChild()) {
+        do {
+          // Only consider non-field children
+          if (cursor.getCurrentFieldId() == 0) {
+            var currentNode = cursor.getCurrentNode(scratchAllocator);
+            if (currentNode.isError() || currentNode.isMissing()) {
+              throw new IllegalStateException("Child is error or missing node: " + currentNode);
+            }
+            if (currentNode.isNamed() == named && !currentNode.isExtra()) {
+              count++;
+            }
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return count;
+  }
+
+  /**
+   * Returns whether the node has at least one non-field child; the result is the same as checking whether the
+   * list returned by {@code getNonFieldChildren} is non-empty, but no nodes are allocated for the children.
+   * @param named whether to check for named or non-named children
+   */
+  public static boolean hasNonFieldChild(Node node, boolean named) {
+    var cursor = CursorCache.acquire(node);
+    try {
+      // jtreesitter provides no direct access to the properties of the current node, so use transient nodes
+      // which all reuse the same memory
+      var scratchAllocator = CursorCache.scratchAllocator();
+      if (cursor.gotoFirstChild()) {
+        do {
+          // Only consider non-field children
+          if (cursor.getCurrentFieldId() == 0) {
+            var currentNode = cursor.getCurrentNode(scratchAllocator);
+            if (currentNode.isError() || currentNode.isMissing()) {
+              throw new IllegalStateException("Child is error or missing node: " + currentNode);
+            }
+            if (currentNode.isNamed() == named && !currentNode.isExtra()) {
+              return true;
+            }
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return false;
+  }
+
+  /**
+   * Gets all children of the node for the field with the given ID.
+   * Same as {@link Node#getChildrenByFieldId}, except that the nodes are allocated with the given allocator.
+   * @param fieldId numeric ID of the field; {@code 0} if the field is unknown
+   * @param allocator allocator to use for the children node objects
+   */
+  public static List<Node> getFieldChildren(Node node, @Unsigned short fieldId,
+      SegmentAllocator allocator) {
+    if (fieldId == 0) {
+      return List.of();
+    }
+    var children = new ArrayList<Node>();
+    var cursor = CursorCache.acquire(node);
+    try {
+      if (cursor.gotoFirstChild()) {
+        do {
+          if (cursor.getCurrentFieldId() == fieldId) {
+            children.add(cursor.getCurrentNode(allocator));
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
     }
     return children;
   }
 
   /**
-   * Maps the children of a node (in the form of jtreesitter nodes) to typed nodes.
-   * This differentiates between named and non-named children, since separate typed node classes are used for them.
-   * @param namedMapper maps named children; {@code null} if only non-named children are expected
-   * @param nonNamedMapper maps non-named children; {@code null} if only named children are expected
+   * Gets the single child of the node for the field with the given ID; {@code null} if there is none.
+   * Similar to {@link Node#getChildByFieldId}, except that the node is allocated with the given allocator, and that
+   * the remaining children are checked as well, without allocating nodes for them.
+   *
+   * @throws IllegalArgumentException if the node has multiple children for the field
+   * @param fieldId numeric ID of the field; {@code 0} if the field is unknown
+   * @param allocator allocator to use for the children node objects
    */
-  public static <T extends TypedNode> List<T> mapChildren(List<Node> children,
-      Function<Node, ? extends T> namedMapper, Function<Node, ? extends T> nonNamedMapper) {
-    return children.stream().map(child -> {
-      if (child.isNamed()) {
-        if (namedMapper == null) throw new IllegalArgumentException("Unexpected named child: " + child);
-        return namedMapper.apply(child);
+  public static @Nullable Node getFieldChild(Node node, @Unsigned short fieldId,
+      SegmentAllocator allocator) {
+    if (fieldId == 0) {
+      return null;
+    }
+    @Nullable Node child = null;
+    var cursor = CursorCache.acquire(node);
+    try {
+      if (cursor.gotoFirstChild()) {
+        do {
+          if (cursor.getCurrentFieldId() == fieldId) {
+            if (child != null) {
+              throw new IllegalArgumentException("Unexpected multiple children for field ID " + fieldId);
+            }
+            child = cursor.getCurrentNode(allocator);
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return child;
+  }
+
+  /**
+   * Counts the children of the node for the field with the given ID.
+   * @param fieldId numeric ID of the field; {@code 0} if the field is unknown
+   */
+  public static int countFieldChildren(Node node, @Unsigned short fieldId) {
+    if (fieldId == 0) {
+      return 0;
+    }
+    int count = 0;
+    var cursor = CursorCache.acquire(node);
+    try {
+      if (cursor.gotoFirstChild()) {
+        do {
+          if (cursor.getCurrentFieldId() == fieldId) {
+            count++;
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return count;
+  }
+
+  public static <T> T requiredSingleChild(List<T> nodes) {
+    if (nodes.size() == 1) {
+      return nodes.getFirst();
+    }
+    throw new IllegalArgumentException("Unexpected nodes count: " + nodes);
+  }
+
+  public static <T extends TypedNode> List<T> atLeastOneChild(List<T> nodes) {
+    if (nodes.isEmpty()) {
+      throw new IllegalArgumentException("Expected at least one node");
+    }
+    return nodes;
+  }
+
+  /**
+   * Gets the numeric ID of the named node type with the given index assigned at code generation time,
+   * for the language of the given node. Returns 0 if the language does not know the node type.
+   */
+  public static @Unsigned short getTypeId(Node node, int typeIndex) {
+    return LanguageIds.forNode(node).typeIds[typeIndex];
+  }
+
+  /**
+   * Gets the numeric ID of the field with the given index assigned at code generation time,
+   * for the language of the given node. Returns 0 if the language does not know the field.
+   */
+  public static @Unsigned short getFieldId(Node node, int fieldIndex) {
+    return LanguageIds.forNode(node).fieldIds[fieldIndex];
+  }
+
+  /**
+   * Wraps a jtreesitter node as typed node, based on the numeric type ID of the node.
+   * Returns {@code null} if no corresponding typed node class exists.
+   */
+  public static @Nullable TypedNode createTypedNode(Node node) {
+    var factories = LanguageIds.forNode(node).typedNodeFactories;
+    int typeId = Short.toUnsignedInt(node.getSymbol());
+    if (typeId < factories.length) {
+      var factory = factories[typeId];
+      if (factory != null) {
+        return factory.apply(node);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets the kind of the jtreesitter node, based on its numeric type ID.
+   */
+  public static TypedNodeKind getNodeKind(Node node) {
+    var kinds = LanguageIds.forNode(node).nodeKinds;
+    int typeId = Short.toUnsignedInt(node.getSymbol());
+    return typeId < kinds.length ? kinds[typeId] : TypedNodeKind.OTHER;
+  }
+
+  /**
+   * Per-thread cache of a jtreesitter {@code TreeCursor}, which avoids allocating a new native cursor every time
+   * the children of a node are iterated.
+   *
+   * <p>Rules for using the cache:
+   * <ul>
+   * <li>the cursor returned by {@link #acquire} must always be passed to {@link #release} in a {@code finally} block</li>
+   * <li>the cursor must not escape the method which acquired it, and must only be used for iterating over
+   *   the direct children of the node</li>
+   * <li>reentrant calls on the same thread while the cached cursor is in use, for example by a custom
+   *   {@code SegmentAllocator}, get a separate cursor which is closed on release</li>
+   * <li>the cached cursor is only reused for nodes of the same {@code Tree} (compared by identity) because a
+   *   cursor is bound to its tree; for nodes of a different tree the cached cursor is closed and replaced</li>
+   * <li>the cached cursor and its tree are referenced strongly, so each thread keeps at most one tree reachable
+   *   until it uses nodes of a different tree; once the thread has terminated the cursor is closed by a {@code Cleaner}</li>
+   * </ul>
+   */
+  static final class CursorCache {
+    /**
+     * Closes cached cursors once they are not referenced anymore
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final ThreadLocal<CursorCache> CACHED = ThreadLocal.withInitial(CursorCache::new);
+
+    /**
+     * Allocator for transient nodes, which always returns the same memory; the memory is freed once the thread has terminated
+     */
+    private static final ThreadLocal<SegmentAllocator> SCRATCH_ALLOCATOR = ThreadLocal.withInitial(CursorCache::createScratchAllocator);
+
+    /**
+     * Cached cursor of this thread, if any
+     */
+    private @Nullable Entry entry;
+
+    /**
+     * Whether the cached cursor is currently used
+     */
+    private boolean inUse;
+
+    /**
+     * Gets a cursor positioned at the given node. The cursor must be passed to {@link #release} afterwards,
+     * and must not be used anymore then.
+     */
+    static TreeCursor acquire(Node node) {
+      var cache = CACHED.get();
+      if (cache.inUse) {
+        // Reentrant call, for example from a custom allocator; use a separate cursor
+        return node.walk();
+      }
+      var tree = node.getTree();
+      var entry = cache.entry;
+      // A cursor can only be reset to nodes of the tree it was created for
+      if (entry != null && entry.tree == tree) {
+        entry.cursor.reset(node);
+      } else {
+        if (entry != null) {
+          entry.cleanable.clean();
+        }
+        entry = new Entry(tree, node.walk());
+        cache.entry = entry;
+      }
+      cache.inUse = true;
+      return entry.cursor;
+    }
+
+    /**
+     * Releases a cursor obtained from {@link #acquire}.
+     */
+    static void release(TreeCursor cursor) {
+      var cache = CACHED.get();
+      var entry = cache.entry;
+      if (cache.inUse && entry != null && entry.cursor == cursor) {
+        // Keep the cursor open for reuse
+        cache.inUse = false;
+        return;
+      }
+      cursor.close();
+    }
+
+    private static SegmentAllocator createScratchAllocator() {
+      return SegmentAllocator.prefixAllocator(Arena.ofAuto().allocate(64, 8));
+    }
+
+    /**
+     * Gets an allocator for transient nodes of the current thread. Every allocation returns the same memory,
+     * so an allocated node is only valid until the next allocation, and it must not escape the calling method.
+     * The allocator must not be used while calling code which might itself use it.
+     */
+    static SegmentAllocator scratchAllocator() {
+      return SCRATCH_ALLOCATOR.get();
+    }
+
+    /**
+     * Cached cursor, together with the tree it was created for
+     */
+    private static final class Entry {
+      private final Tree tree;
+
+      private final TreeCursor cursor;
+
+      private final Cleaner.Cleanable cleanable;
+
+      private Entry(Tree tree, TreeCursor cursor) {
+        this.tree = tree;
+        this.cursor = cursor;
+        // Cleaning action must not refer to `this`, otherwise this object would never become unreachable
+        this.cleanable = CLEANER.register(this, cursor::close);
+      }
+    }
+  }
+
+  /**
+   * Source code of a tree, retained so that the text of its nodes can be compared, hashed and viewed based
+   * on the byte offsets of the nodes, without creating an intermediate {@code String}. UTF-8 and UTF-16 are
+   * decoded incrementally; for other charsets, and for malformed source code, the text is decoded to a
+   * {@code String} to get the same result as {@code Node#getText()}.
+   *
+   * <p>If the source code of a tree is not retained, the methods fall back to {@code Node#getText()}.
+   */
+  static final class SourceText {
+    /**
+     * Retained source code by tree; uses weak keys so that the source code can be garbage collected once the
+     * tree is not reachable anymore. A concurrent map is used because the text methods look up the source code
+     * on every call, possibly from many threads, and must not contend on a lock.
+     */
+    private static final ConcurrentHashMap<TreeKey, SourceText> RETAINED = new ConcurrentHashMap<>();
+
+    /**
+     * Keys of {@link #RETAINED} whose tree has been garbage collected, and whose entries must be removed
+     */
+    private static final ReferenceQueue<Tree> CLEARED_KEYS = new ReferenceQueue<>();
+
+    private static final int ENCODING_OTHER = 0;
+
+    private static final int ENCODING_UTF_8 = 1;
+
+    private static final int ENCODING_UTF_16LE = 2;
+
+    private static final int ENCODING_UTF_16BE = 3;
+
+    private final byte[] bytes;
+
+    private final Charset charset;
+
+    private final int encoding;
+
+    /**
+     * Whether ASCII chars are encoded as single byte with the same value
+     */
+    private final boolean isAsciiCompatible;
+
+    private SourceText(byte[] bytes, Charset charset) {
+      this.bytes = bytes;
+      this.charset = charset;
+      if (charset.equals(StandardCharsets.UTF_8)) {
+        this.encoding = ENCODING_UTF_8;
+      } else if (charset.equals(StandardCharsets.UTF_16LE)) {
+        this.encoding = ENCODING_UTF_16LE;
+      } else if (charset.equals(StandardCharsets.UTF_16BE)) {
+        this.encoding = ENCODING_UTF_16BE;
+      } else {
+        this.encoding = ENCODING_OTHER;
+      }
+      this.isAsciiCompatible = encoding == ENCODING_UTF_8 || charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Removes the entries whose tree has been garbage collected. Cheap if there are none, because polling an
+     * empty {@code ReferenceQueue} does not acquire a lock.
+     */
+    private static void expungeClearedKeys() {
+      Reference<? extends Tree> key;
+      while ((key = CLEARED_KEYS.poll()) != null) {
+        RETAINED.remove(key);
+      }
+    }
+
+    /**
+     * Retains the source code of the tree, encoded with the given charset.
+     */
+    static void retain(Tree tree, Charset charset) {
+      var text = tree.getText();
+      if (text == null) {
+        throw new IllegalStateException("Source code of the tree is not available");
+      }
+      expungeClearedKeys();
+      RETAINED.put(new TreeKey(tree, CLEARED_KEYS), new SourceText(text.getBytes(charset), charset));
+    }
+
+    /**
+     * Releases the retained source code of the tree, if any.
+     */
+    static void release(Tree tree) {
+      expungeClearedKeys();
+      RETAINED.remove(new TreeKey(tree, null));
+    }
+
+    /**
+     * Gets the retained source code of the tree of the node; {@code null} if the source code is not retained,
+     * or if it does not cover the node.
+     */
+    private static @Nullable SourceText get(Node node) {
+      expungeClearedKeys();
+      if (RETAINED.isEmpty()) {
+        return null;
+      }
+      var source = RETAINED.get(new TreeKey(node.getTree(), null));
+      if (source == null || node.getEndByte() > source.bytes.length) {
+        return null;
+      }
+      return source;
+    }
+
+    private String decode(int start, int end) {
+      return new String(bytes, start, end - start, charset);
+    }
+
+    /**
+     * Gets the number of bytes of the encoded code point.
+     */
+    private int byteLength(int codePoint) {
+      if (encoding != ENCODING_UTF_8) {
+        return Character.charCount(codePoint) * 2;
+      }
+      return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private char utf16CharAt(int index) {
+      int b0 = bytes[index] & 0xFF;
+      int b1 = bytes[index + 1] & 0xFF;
+      return (char) (encoding == ENCODING_UTF_16LE ? (b1 << 8) | b0 : (b0 << 8) | b1);
+    }
+
+    /**
+     * Decodes the code point at the byte index; returns -1 if the bytes are malformed, in which case callers
+     * should fall back to decoding the text to a {@code String}, to get the same result as {@code getText()}.
+     */
+    private int codePointAt(int index, int end) {
+      if (encoding != ENCODING_UTF_8) {
+        if (index + 2 > end) {
+          return -1;
+        }
+        char c = utf16CharAt(index);
+        if (!Character.isSurrogate(c)) {
+          return c;
+        }
+        if (Character.isHighSurrogate(c) && index + 4 <= end) {
+          char low = utf16CharAt(index + 2);
+          if (Character.isLowSurrogate(low)) {
+            return Character.toCodePoint(c, low);
+          }
+        }
+        return -1;
+      }
+
+      int b0 = bytes[index] & 0xFF;
+      if (b0 < 0x80) {
+        return b0;
+      }
+      int length;
+      int codePoint;
+      if (b0 >= 0xC2 && b0 < 0xE0) {
+        length = 2;
+        codePoint = b0 & 0x1F;
+      } else if (b0 >= 0xE0 && b0 < 0xF0) {
+        length = 3;
+        codePoint = b0 & 0x0F;
+      } else if (b0 >= 0xF0 && b0 < 0xF5) {
+        length = 4;
+        codePoint = b0 & 0x07;
       } else {
-        if (nonNamedMapper == null) throw new IllegalArgumentException("Unexpected non-named child: " + child);
-        return nonNamedMapper.apply(child);
+        return -1;
+      }
+      if (index + length > end) {
+        return -1;
+      }
+      for (int i = 1; i < length; i++) {
+        int b = bytes[index + i] & 0xFF;
+        if ((b & 0xC0) != 0x80) {
+          return -1;
+        }
+        codePoint = (codePoint << 6) | (b & 0x3F);
+      }
+      // Reject overlong encodings, surrogates and values outside of the Unicode range
+      if (byteLength(codePoint) != length || (codePoint >= 0xD800 && codePoint <= 0xDFFF) || codePoint > Character.MAX_CODE_POINT) {
+        return -1;
+      }
+      return codePoint;
+    }
+
+    private static boolean stringEquals(String decoded, CharSequence text, boolean isPrefix) {
+      return isPrefix ? decoded.startsWith(text.toString()) : decoded.contentEquals(text);
+    }
+
+    private boolean regionEquals(int start, int end, CharSequence text, boolean isPrefix) {
+      if (encoding == ENCODING_OTHER) {
+        return stringEquals(decode(start, end), text, isPrefix);
+      }
+
+      int index = start;
+      int textIndex = 0;
+      int textLength = text.length();
+      while (index < end && textIndex < textLength) {
+        int codePoint = codePointAt(index, end);
+        if (codePoint < 0) {
+          return stringEquals(decode(start, end), text, isPrefix);
+        }
+        if (Character.isBmpCodePoint(codePoint)) {
+          if (text.charAt(textIndex) != codePoint) {
+            return false;
+          }
+          textIndex++;
+        } else {
+          if (text.charAt(textIndex) != Character.highSurrogate(codePoint)) {
+            return false;
+          }
+          if (textIndex + 1 == textLength) {
+            return isPrefix;
+          }
+          if (text.charAt(textIndex + 1) != Character.lowSurrogate(codePoint)) {
+            return false;
+          }
+          textIndex += 2;
+        }
+        index += byteLength(codePoint);
       }
-    }).toList();
+      return textIndex == textLength && (isPrefix || index == end);
+    }
+
+    /**
+     * Computes the same hash code as {@link String#hashCode()} of the decoded text.
+     */
+    private int regionHashCode(int start, int end) {
+      if (encoding == ENCODING_OTHER) {
+        return decode(start, end).hashCode();
+      }
+
+      int hash = 0;
+      for (int index = start; index < end; ) {
+        int codePoint = codePointAt(index, end);
+        if (codePoint < 0) {
+          return decode(start, end).hashCode();
+        }
+        if (Character.isBmpCodePoint(codePoint)) {
+          hash = 31 * hash + codePoint;
+        } else {
+          hash = 31 * hash + Character.highSurrogate(codePoint);
+          hash = 31 * hash + Character.lowSurrogate(codePoint);
+        }
+        index += byteLength(codePoint);
+      }
+      return hash;
+    }
+
+    private CharSequence regionChars(int start, int end) {
+      if (isAsciiCompatible) {
+        boolean isAscii = true;
+        for (int i = start; i < end; i++) {
+          if (bytes[i] < 0) {
+            isAscii = false;
+            break;
+          }
+        }
+        if (isAscii) {
+          return new AsciiView(bytes, start, end);
+        }
+      }
+      return decode(start, end);
+    }
+
+    /**
+     * Checks if the text of the node is equal to, respectively starts with, the given text.
+     */
+    static boolean textEquals(Node node, CharSequence text, boolean isPrefix) {
+      var source = get(node);
+      if (source != null) {
+        return source.regionEquals(node.getStartByte(), node.getEndByte(), text, isPrefix);
+      }
+      var nodeText = node.getText();
+      return nodeText != null && stringEquals(nodeText, text, isPrefix);
+    }
+
+    static int textHashCode(Node node) {
+      var source = get(node);
+      if (source != null) {
+        return source.regionHashCode(node.getStartByte(), node.getEndByte());
+      }
+      return Objects.hashCode(node.getText());
+    }
+
+    static @Nullable ByteBuffer getTextBytes(Node node) {
+      var source = get(node);
+      if (source == null) {
+        return null;
+      }
+      int start = node.getStartByte();
+      return ByteBuffer.wrap(source.bytes).slice(start, node.getEndByte() - start).asReadOnlyBuffer();
+    }
+
+    static @Nullable CharSequence getTextView(Node node) {
+      var source = get(node);
+      if (source != null) {
+        return source.regionChars(node.getStartByte(), node.getEndByte());
+      }
+      return node.getText();
+    }
+
+    /**
+     * Weakly referenced tree, compared by identity. The hash code is computed eagerly so that it remains the same
+     * after the tree has been garbage collected.
+     */
+    private static final class TreeKey extends WeakReference<Tree> {
+      private final int hashCode;
+
+      TreeKey(Tree tree, @Nullable ReferenceQueue<Tree> queue) {
+        super(tree, queue);
+        this.hashCode = System.identityHashCode(tree);
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+        if (this == obj) {
+          return true;
+        }
+        if (obj instanceof TreeKey other) {
+          var tree = get();
+          return tree != null && tree == other.get();
+        }
+        return false;
+      }
+
+      @Override
+      public int hashCode() {
+        return hashCode;
+      }
+    }
+
+    /**
+     * {@code CharSequence} view of a range of ASCII bytes of the source code.
+     */
+    private static final class AsciiView implements CharSequence {
+      private final byte[] bytes;
+
+      private final int start;
+
+      private final int end;
+
+      AsciiView(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+      }
+
+      @Override
+      public int length() {
+        return end - start;
+      }
+
+      @Override
+      public char charAt(int index) {
+        return (char) bytes[start + Objects.checkIndex(index, length())];
+      }
+
+      @Override
+      public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length());
+        return new AsciiView(bytes, this.start + start, this.start + end);
+      }
+
+      @Override
+      public String toString() {
+        return new String(bytes, start, length(), StandardCharsets.ISO_8859_1);
+      }
+    }
   }
 
   /**
-   * @param namedNodeClass class of the named children; {@code null} if only non-named children are expected
-   * @param nonNamedMapper maps non-named children; {@code null} if only named children are expected
+   * Numeric type and field IDs, resolved once for a specific {@code Language}.
+   * This avoids repeatedly looking up type and field names, and comparing type names.
    */
-  public static <T extends TypedNode> List<T> mapChildren(List<Node> children,
-      Class<? extends T> namedNodeClass, Function<Node, ? extends T> nonNamedMapper) {
-    return mapChildren(children, n -> fromNodeThrowing(n, namedNodeClass), nonNamedMapper);
+  private static final class LanguageIds {
+    private static final Map<Language, LanguageIds> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Most recently used entry; avoids the map lookup in the common case that only a single language is used.
+     * Not {@code volatile} because all fields of {@code LanguageIds} are {@code final}, so other threads either
+     * see a fully initialized entry, or a stale entry or {@code null} in which case they perform the map lookup.
+     */
+    private static @Nullable LanguageIds lastUsed;
+
+    /**
+     * Weak reference, to not prevent the language from being garbage collected, see {@link #cache}
+     */
+    private final WeakReference<Language> language;
+
+    /**
+     * Indexed by the type index assigned at code generation time
+     */
+    private final short[] typeIds = new short[5];
+
+    /**
+     * Indexed by the field index assigned at code generation time
+     */
+    private final short[] fieldIds = new short[3];
+
+    /**
+     * Indexed by the numeric type ID; {@code null} elements for types without typed node class
+     */
+    private final Function<Node, TypedNode>[] typedNodeFactories;
+
+    /**
+     * Indexed by the numeric type ID
+     */
+    private final TypedNodeKind[] nodeKinds;
+
+    private LanguageIds(Language language) {
+      this.language = new WeakReference<>(language);
+      @SuppressWarnings("unchecked") var factories = (Function<Node, TypedNode>[]) new Function<?, ?>[language.getSymbolCount()];
+      this.typedNodeFactories = factories;
+      this.nodeKinds = new TypedNodeKind[language.getSymbolCount()];
+      Arrays.fill(nodeKinds, TypedNodeKind.OTHER);
+      addTypedNode(language, NodeSubA.TYPE_NAME, 0, NodeSubA::new, TypedNodeKind.NODE_SUB_A);
+      addTypedNode(language, NodeSubB.TYPE_NAME, 1, NodeSubB::new, TypedNodeKind.NODE_SUB_B);
+      addTypedNode(language, NodeContainedA.TYPE_NAME, 2, NodeContainedA::new, TypedNodeKind.NODE_CONTAINED_A);
+      addTypedNode(language, NodeContainedB.TYPE_NAME, 3, NodeContainedB::new, TypedNodeKind.NODE_CONTAINED_B);
+      addTypedNode(language, NodeWithChildren.TYPE_NAME, 4, NodeWithChildren::new, TypedNodeKind.NODE_WITH_CHILDREN);
+      fieldIds[0] = language.getFieldIdForName("same");
+      fieldIds[1] = language.getFieldIdForName("subtype_multiple_required");
+      fieldIds[2] = language.getFieldIdForName("subtype_single_optional");
+    }
+
+    private void addTypedNode(Language language, String typeName, int typeIndex,
+        Function<Node, TypedNode> factory, TypedNodeKind kind) {
+      short id = language.getSymbolForName(typeName, true);
+      typeIds[typeIndex] = id;
+      // ID 0 means that the type name is unknown, for example because the language version differs
+      if (id != 0) {
+        typedNodeFactories[Short.toUnsignedInt(id)] = factory;
+        nodeKinds[Short.toUnsignedInt(id)] = kind;
+      }
+    }
+
+    static LanguageIds forNode(Node node) {
+      var language = node.getTree().getLanguage();
+      var languageIds = lastUsed;
+      if (languageIds == null || languageIds.language.get() != language) {
+        languageIds = cache.computeIfAbsent(language, LanguageIds::new);
+        lastUsed = languageIds;
+      }
+      return languageIds;
+    }
   }
 
-  public static <T extends TypedNode> T requiredSingleChild(List<T> nodes) {
-    if (nodes.size() == 1) {
-      return nodes.getFirst();
+  /**
+   * Cache of compiled jtreesitter queries, keyed by the language and the query string. It is shared by all users of
+   * queries in the generated code, for example the query-based {@code findNodes} methods and typed queries.
+   * The least recently used queries are evicted once the cache exceeds its maximum size, which bounds the number of
+   * queries and languages it keeps reachable.
+   *
+   * <p>Users of a query {@linkplain #acquire acquire} it and {@linkplain #release release} it once they don't use it anymore.
+   * A compiled query is closed once it has been evicted and all users have released it.
+   * All methods of this class are thread-safe.
+   */
+  static final class QueryCache {
+    /**
+     * Guarded by the lock of {@code entries}; only read and written while holding that lock
+     */
+    private static int maxSize = 32;
+
+    /**
+     * Cached entries, in access order for LRU eviction
+     */
+    private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final LongAdder hits = new LongAdder();
+
+    private static final LongAdder misses = new LongAdder();
+
+    private static final LongAdder evictions = new LongAdder();
+
+    private QueryCache() {
+    }
+
+    private static Query createQuery(Language language, String queryString) {
+      try {
+        return new Query(language, queryString);
+      } catch (RuntimeException e) {
+        throw new RuntimeException("Failed creating query; verify that children and fields are specified in the right order; if you expect the query to be valid please report this to the jtreesitter-type-gen maintainers; query string:\n\t" + queryString, e);
+      }
+    }
+
+    private static void evictExcessEntries(int maxSize) {
+      // Caller must hold lock of `entries`
+      var iterator = entries.values().iterator();
+      while (entries.size() > maxSize && iterator.hasNext()) {
+        // Least recently used entries come first
+        var entry = iterator.next();
+        iterator.remove();
+        evictions.increment();
+        entry.isEvicted = true;
+        if (entry.refCount == 0) {
+          entry.query.close();
+        }
+      }
+    }
+
+    /**
+     * Returns the cached query, or creates it. The returned entry must be {@linkplain #release released} once it is not used anymore.
+     */
+    static Entry acquire(Language language, String queryString) {
+      var key = new Key(language, queryString);
+      synchronized (entries) {
+        var entry = entries.get(key);
+        if (entry != null) {
+          hits.increment();
+          entry.refCount++;
+          return entry;
+        }
+      }
+
+      misses.increment();
+      // Create the query without holding the lock, because this can be expensive for large queries
+      var query = createQuery(language, queryString);
+      synchronized (entries) {
+        var entry = entries.get(key);
+        if (entry != null) {
+          // Another thread has created the same query concurrently; prefer the cached one
+          query.close();
+        } else {
+          entry = new Entry(query);
+          if (maxSize > 0) {
+            entries.put(key, entry);
+            evictExcessEntries(maxSize);
+          } else {
+            // Caching is disabled
+            entry.isEvicted = true;
+          }
+        }
+        entry.refCount++;
+        return entry;
+      }
     }
-    throw new IllegalArgumentException("Unexpected nodes count: " + nodes);
-  }
 
-  public static <T extends TypedNode> @Nullable T optionalSingleChild(List<T> nodes) {
-    T result = null;
-    int size = nodes.size();
-    if (size == 1) {
-      result = nodes.getFirst();
-    } else if (size > 1) {
-      throw new IllegalArgumentException("Unexpected nodes count: " + nodes);
+    /**
+     * Releases an entry obtained from {@link #acquire}, closing its query if it is not cached anymore and not used
+     * by any other typed query.
+     */
+    static void release(Entry entry) {
+      synchronized (entries) {
+        entry.refCount--;
+        if (entry.refCount == 0 && entry.isEvicted) {
+          entry.query.close();
+        }
+      }
     }
-    return result;
-  }
 
-  public static <T extends TypedNode> List<T> atLeastOneChild(List<T> nodes) {
-    if (nodes.isEmpty()) {
-      throw new IllegalArgumentException("Expected at least one node");
+    private record Key(Language language, String queryString) {
+    }
+
+    /**
+     * Compiled query, together with its usage information; guarded by the lock of {@code entries}.
+     */
+    static final class Entry {
+      final Query query;
+
+      /**
+       * Number of users of the query
+       */
+      private int refCount = 0;
+
+      /**
+       * Whether the entry is not cached (anymore); the query is closed once it is not used anymore
+       */
+      private boolean isEvicted = false;
+
+      private Entry(Query query) {
+        this.query = query;
+      }
     }
-    return nodes;
   }
 }
 
@@ -125,8 +998,11 @@ package org.example;
 import io.github.treesitter.jtreesitter.Node;
 import io.github.treesitter.jtreesitter.Point;
 import io.github.treesitter.jtreesitter.Range;
+import java.lang.CharSequence;
 import java.lang.IllegalArgumentException;
 import java.lang.String;
+import java.nio.ByteBuffer;
+import java.util.Objects;
 import javax.annotation.processing.Generated;
 import org.jspecify.annotations.Nullable;
 
@@ -156,6 +1032,11 @@ public sealed interface TypedNode permits NodeSubA, NodeSubB, NodeContainedA, No
    */
   Node getNode();
 
+  /**
+   * Returns the kind of this node; {@link TypedNodeKind#OTHER} for typed nodes representing unnamed nodes.
+   */
+  TypedNodeKind kind();
+
   /**
    * Returns the source code of this node, if available.
    */
@@ -164,6 +1045,59 @@ public sealed interface TypedNode permits NodeSubA, NodeSubB, NodeContainedA, No
     return result;
   }
 
+  /**
+   * Returns whether the source code of this node is equal to the given text; {@code false} if the source
+   * code is not available.
+   *
+   * <p>This falls back to {@link #getText}, which creates an intermediate {@code String}.
+   */
+  default boolean textEquals(CharSequence text) {
+    Objects.requireNonNull(text);
+    return NodeUtils.SourceText.textEquals(getNode(), text, false);
+  }
+
+  /**
+   * Returns whether the source code of this node starts with the given prefix; {@code false} if the source
+   * code is not available.
+   *
+   * <p>This falls back to {@link #getText}, which creates an intermediate {@code String}.
+   */
+  default boolean textStartsWith(CharSequence prefix) {
+    Objects.requireNonNull(prefix);
+    return NodeUtils.SourceText.textEquals(getNode(), prefix, true);
+  }
+
+  /**
+   * Returns the same hash code as {@link String#hashCode()} for the source code of this node; {@code 0} if the
+   * source code is not available. Can for example be used together with {@link #textEquals} for looking up
+   * names in a hash table.
+   *
+   * <p>This falls back to {@link #getText}, which creates an intermediate {@code String}.
+   */
+  default int textHashCode() {
+    return NodeUtils.SourceText.textHashCode(getNode());
+  }
+
+  /**
+   * Returns a read-only view of the encoded source code of this node; {@code null} if the source code of the tree
+   * has not been retained. The bytes are encoded with the charset which was specified when retaining the source code.
+   */
+  default @Nullable ByteBuffer getTextBytes() {
+    var result = NodeUtils.SourceText.getTextBytes(getNode());
+    return result;
+  }
+
+  /**
+   * Returns the source code of this node as {@code CharSequence}, if available. For ASCII text this is a view
+   * of the retained source code, otherwise the text is decoded to a {@code String}.
+   *
+   * <p>This falls back to {@link #getText}, which creates an intermediate {@code String}.
+   */
+  default @Nullable CharSequence getTextView() {
+    var result = NodeUtils.SourceText.getTextView(getNode());
+    return result;
+  }
+
   /**
    * Returns the range of this node.
    */
@@ -199,15 +1133,7 @@ public sealed interface TypedNode permits NodeSubA, NodeSubB, NodeContainedA, No
    * @see #fromNodeThrowing
    */
   static @Nullable TypedNode fromNode(Node node) {
-    var result = switch (node.getType()) {
-      case NodeSubA.TYPE_NAME -> new NodeSubA(node);
-      case NodeSubB.TYPE_NAME -> new NodeSubB(node);
-      case NodeContainedA.TYPE_NAME -> new NodeContainedA(node);
-      case NodeContainedB.TYPE_NAME -> new NodeContainedB(node);
-      case NodeWithChildren.TYPE_NAME -> new NodeWithChildren(node);
-      default -> null;
-    }
-    ;
+    var result = NodeUtils.createTypedNode(node);
     return result;
   }
 
@@ -232,25 +1158,428 @@ public sealed interface TypedNode permits NodeSubA, NodeSubB, NodeContainedA, No
 
 package org.example;
 
-import java.lang.annotation.Documented;
-import java.lang.annotation.ElementType;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
-import java.lang.annotation.Target;
-import javax.annotation.processing.Generated;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import javax.annotation.processing.Generated;
+
+/**
+ * Indicates that the annotated container type will not be empty.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ ElementType.TYPE_USE })
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public @interface NonEmpty {
+}
+
+
+/* ==================== */ 
+
+package org.example;
+
+import io.github.treesitter.jtreesitter.Node;
+import java.util.Objects;
+import javax.annotation.processing.Generated;
+
+/**
+ * Kind of a typed node, with one constant for each named node type.
+ * The kind can be obtained with {@link TypedNode#kind()}, or for a jtreesitter node with {@link #of}.
+ *
+ * <p>Switching over the kind is more efficient than pattern matching over the typed node classes,
+ * and sets of kinds can be represented efficiently as {@code EnumSet}.
+ */
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public enum TypedNodeKind {
+  /**
+   * {@link NodeSubA sub_a}
+   */
+  NODE_SUB_A,
+
+  /**
+   * {@link NodeSubB sub_b}
+   */
+  NODE_SUB_B,
+
+  /**
+   * {@link NodeContainedA contained_a}
+   */
+  NODE_CONTAINED_A,
+
+  /**
+   * {@link NodeContainedB contained_b}
+   */
+  NODE_CONTAINED_B,
+
+  /**
+   * {@link NodeWithChildren with_children}
+   */
+  NODE_WITH_CHILDREN,
+
+  /**
+   * Node for which no dedicated typed node class exists, for example an unnamed node.
+   */
+  OTHER;
+
+  /**
+   * Gets the kind of the jtreesitter node, based on its numeric type ID. Returns {@link #OTHER} if no
+   * corresponding typed node class exists, for example for unnamed nodes.
+   */
+  public static TypedNodeKind of(Node node) {
+    Objects.requireNonNull(node);
+    return NodeUtils.getNodeKind(node);
+  }
+}
+
+
+/* ==================== */ 
+
+package org.example;
+
+import io.github.treesitter.jtreesitter.Point;
+import io.github.treesitter.jtreesitter.QueryCursor;
+import java.lang.ArithmeticException;
+import java.lang.IllegalArgumentException;
+import java.lang.Long;
+import java.lang.Override;
+import java.lang.String;
+import java.lang.System;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.annotation.processing.Generated;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Options restricting which nodes are considered when searching nodes with the {@code findNodes} methods of the typed nodes. Restricting the search to the relevant part of the tree avoids
+ * visiting nodes which are not of interest, for example when only the visible part of a large file is needed.
+ * The options can also limit the execution time, with a timeout or a cancellation token.
+ *
+ * <p>Instances are immutable; the {@code with...} methods return a new instance. Start with {@link #DEFAULT}.
+ *
+ * <h2>Example</h2>
+ * {@snippet lang=java :
+ * var options = QueryOptions.DEFAULT.withByteRange(startByte, endByte).withMaxStartDepth(2);
+ * }
+ */
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public final class QueryOptions {
+  /**
+   * Default options, which do not restrict the search.
+   */
+  public static final QueryOptions DEFAULT = new QueryOptions(0, -1, null, null, -1, -1, -1, null);
+
+  private final int startByte;
+
+  /**
+   * -1 if there is no byte range
+   */
+  private final int endByte;
+
+  private final @Nullable Point startPoint;
+
+  /**
+   * {@code null} if there is no point range
+   */
+  private final @Nullable Point endPoint;
+
+  /**
+   * -1 if unlimited
+   */
+  private final int maxStartDepth;
+
+  /**
+   * -1 if the tree-sitter default should be used
+   */
+  private final int matchLimit;
+
+  /**
+   * -1 if there is no timeout
+   */
+  private final long timeoutNanos;
+
+  private final @Nullable CancellationToken cancellationToken;
+
+  private QueryOptions(int startByte, int endByte, @Nullable Point startPoint,
+      @Nullable Point endPoint, int maxStartDepth, int matchLimit, long timeoutNanos,
+      @Nullable CancellationToken cancellationToken) {
+    this.startByte = startByte;
+    this.endByte = endByte;
+    this.startPoint = startPoint;
+    this.endPoint = endPoint;
+    this.maxStartDepth = maxStartDepth;
+    this.matchLimit = matchLimit;
+    this.timeoutNanos = timeoutNanos;
+    this.cancellationToken = cancellationToken;
+  }
+
+  /**
+   * Returns options which only consider nodes intersecting the given byte range.
+   *
+   * @param startByte start byte, inclusive
+   * @param endByte end byte, exclusive
+   * @throws IllegalArgumentException if the range is invalid
+   */
+  public QueryOptions withByteRange(int startByte, int endByte) {
+    if (startByte < 0 || endByte < startByte) {
+      throw new IllegalArgumentException("Invalid byte range: " + startByte + ", " + endByte);
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options which only consider nodes intersecting the given point (row and column) range.
+   *
+   * @param startPoint start point, inclusive
+   * @param endPoint end point, exclusive
+   * @throws IllegalArgumentException if the range is invalid
+   */
+  public QueryOptions withPointRange(Point startPoint, Point endPoint) {
+    Objects.requireNonNull(startPoint);
+    Objects.requireNonNull(endPoint);
+    if (startPoint.compareTo(endPoint) > 0) {
+      throw new IllegalArgumentException("Invalid point range: " + startPoint + ", " + endPoint);
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options which only consider nodes up to the given depth below the start node. The start node
+   * itself has depth 0, so a max start depth of 0 only considers the start node.
+   *
+   * @throws IllegalArgumentException if the depth is negative
+   */
+  public QueryOptions withMaxStartDepth(int maxStartDepth) {
+    if (maxStartDepth < 0) {
+      throw new IllegalArgumentException("Invalid max start depth: " + maxStartDepth);
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options with the given maximum number of in-progress matches of the tree-sitter query.
+   * If this limit is exceeded, tree-sitter drops the oldest in-progress matches, so some matches might be missing.
+   * A low limit reduces the memory usage and time spent on complex queries which have many in-progress matches.
+   *
+   * @throws IllegalArgumentException if the limit is not positive
+   */
+  public QueryOptions withMatchLimit(int matchLimit) {
+    if (matchLimit <= 0) {
+      throw new IllegalArgumentException("Invalid match limit: " + matchLimit);
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options which stop the execution once the given time has elapsed since it was started.
+   * The nodes found until then are still provided, but afterwards the {@code Stream} throws a {@link CancellationException}
+   * instead of ending normally, so that an incomplete result can be distinguished from a complete one.
+   *
+   * @throws IllegalArgumentException if the timeout is not positive
+   */
+  public QueryOptions withTimeout(Duration timeout) {
+    Objects.requireNonNull(timeout);
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("Invalid timeout: " + timeout);
+    }
+    long timeoutNanos;
+    try {
+      timeoutNanos = timeout.toNanos();
+    } catch (ArithmeticException e) {
+      // Timeout is too large to be represented in nanoseconds, so effectively there is no timeout
+      timeoutNanos = Long.MAX_VALUE;
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options which stop the execution once the given token has been cancelled, for example from
+   * a different thread. The nodes found until then are still provided, but afterwards the {@code Stream} throws
+   * a {@link CancellationException} instead of ending normally.
+   */
+  public QueryOptions withCancellationToken(CancellationToken cancellationToken) {
+    Objects.requireNonNull(cancellationToken);
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Applies these options to the query cursor. Only sets the options which differ from the defaults, to
+   * avoid native calls for the common case that no options are used.
+   */
+  void applyTo(QueryCursor queryCursor) {
+    if (endByte != -1) {
+      queryCursor.setByteRange(startByte, endByte);
+    }
+    if (endPoint != null) {
+      queryCursor.setPointRange(startPoint, endPoint);
+    }
+    if (maxStartDepth != -1) {
+      queryCursor.setMaxStartDepth(maxStartDepth);
+    }
+    if (matchLimit != -1) {
+      queryCursor.setMatchLimit(matchLimit);
+    }
+  }
+
+  /**
+   * Resets the options previously applied with {@link #applyTo} to the defaults, so that the query cursor
+   * can be reused.
+   */
+  void resetOn(QueryCursor queryCursor) {
+    if (endByte != -1) {
+      // 0 and -1 (as unsigned int) are the tree-sitter defaults
+      queryCursor.setByteRange(0, -1);
+    }
+    if (endPoint != null) {
+      queryCursor.setPointRange(Point.MIN, Point.MAX);
+    }
+    if (maxStartDepth != -1) {
+      queryCursor.setMaxStartDepth(-1);
+    }
+    if (matchLimit != -1) {
+      queryCursor.setMatchLimit(-1);
+    }
+  }
+
+  /**
+   * Starts an execution with these options, and returns the monitor which checks whether the execution
+   * should stop; {@code null} if there is neither a timeout nor a cancellation token.
+   */
+  @Nullable ExecutionMonitor startExecution() {
+    if (timeoutNanos == -1 && cancellationToken == null) {
+      return null;
+    }
+    return new ExecutionMonitor(timeoutNanos, cancellationToken);
+  }
+
+  @Override
+  public String toString() {
+    return "QueryOptions" + "[byteRange=" + startByte + ".." + endByte + ", pointRange=" + startPoint + ".." + endPoint + ", maxStartDepth=" + maxStartDepth + ", matchLimit=" + matchLimit + ", timeoutNanos=" + timeoutNanos + ", cancellationToken=" + cancellationToken + "]";
+  }
+
+  /**
+   * Token for cancelling executions which use it, see {@link QueryOptions#withCancellationToken}.
+   * The token can be shared by multiple executions. Once cancelled it remains cancelled; a new token has to be
+   * created for subsequent executions.
+   *
+   * <p>This class is thread-safe.
+   */
+  public static final class CancellationToken {
+    private volatile boolean isCancelled;
+
+    public CancellationToken() {
+    }
+
+    /**
+     * Cancels all executions using this token. They stop as soon as possible, but might not stop immediately.
+     */
+    public void cancel() {
+      isCancelled = true;
+    }
+
+    /**
+     * {@return whether {@link #cancel} has been called}
+     */
+    public boolean isCancelled() {
+      return isCancelled;
+    }
+  }
+
+  /**
+   * Monitors a single execution, and checks whether it should stop due to a timeout or cancellation.
+   * Not thread-safe; must only be used by the thread performing the execution.
+   */
+  static final class ExecutionMonitor implements Predicate<QueryCursor.State> {
+    private final long startNanos;
+
+    private final long timeoutNanos;
+
+    private final @Nullable CancellationToken cancellationToken;
+
+    /**
+     * Reason why the execution was stopped; {@code null} if it has not been stopped
+     */
+    private @Nullable String stopReason;
+
+    ExecutionMonitor(long timeoutNanos, @Nullable CancellationToken cancellationToken) {
+      this.startNanos = System.nanoTime();
+      this.timeoutNanos = timeoutNanos;
+      this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Checks whether the execution should stop; if so the reason is recorded for {@link #throwIfStopped}.
+     */
+    boolean shouldStop() {
+      if (cancellationToken != null && cancellationToken.isCancelled()) {
+        stopReason = "Execution was cancelled";
+        return true;
+      }
+      // Compare the elapsed time instead of computing a deadline, to be robust against `nanoTime()` overflow
+      if (timeoutNanos != -1 && System.nanoTime() - startNanos >= timeoutNanos) {
+        stopReason = "Execution timed out";
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Progress callback of the query cursor; returning {@code true} stops the execution of the query.
+     */
+    @Override
+    public boolean test(QueryCursor.State state) {
+      return shouldStop();
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the execution has been stopped.
+     */
+    void throwIfStopped() {
+      if (stopReason != null) {
+        throw new CancellationException(stopReason);
+      }
+    }
 
-/**
- * Indicates that the annotated container type will not be empty.
- */
-@Documented
-@Retention(RetentionPolicy.SOURCE)
-@Target({ ElementType.TYPE_USE })
-@Generated(
-    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
-    date = "1970-01-01T00:00:00Z",
-    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
-)
-public @interface NonEmpty {
+    /**
+     * Wraps the stream of an execution monitored by this object, so that it throws a {@link CancellationException} at
+     * the end if the execution has been stopped. Closing the returned stream closes the given stream.
+     */
+    <T> Stream<T> wrapStream(Stream<T> stream) {
+      var spliterator = stream.spliterator();
+      return StreamSupport.stream(new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+          if (spliterator.tryAdvance(action)) {
+            return true;
+          }
+          // The underlying stream also ends when the execution was stopped; report that instead of
+          // silently providing an incomplete result
+          throwIfStopped();
+          return false;
+        }
+      }, false).onClose(stream::close);
+    }
+  }
 }
 
 
@@ -259,13 +1588,14 @@ public @interface NonEmpty {
 package org.example;
 
 import io.github.treesitter.jtreesitter.Node;
-import io.github.treesitter.jtreesitter.Query;
 import io.github.treesitter.jtreesitter.QueryCursor;
 import java.lang.IllegalArgumentException;
 import java.lang.Long;
 import java.lang.Object;
 import java.lang.Override;
 import java.lang.String;
+import java.lang.Throwable;
+import java.lang.foreign.Arena;
 import java.lang.foreign.SegmentAllocator;
 import java.util.List;
 import java.util.Objects;
@@ -298,6 +1628,11 @@ public final class NodeSubA implements TypedNode, NodeSuper {
     return node;
   }
 
+  @Override
+  public TypedNodeKind kind() {
+    return TypedNodeKind.NODE_SUB_A;
+  }
+
   /**
    * Wraps a jtreesitter node as this node type, returning {@code null} if the node has the wrong type.
    *
@@ -305,7 +1640,7 @@ public final class NodeSubA implements TypedNode, NodeSuper {
    */
   public static @Nullable NodeSubA fromNode(Node node) {
     NodeSubA result = null;
-    if (TYPE_NAME.equals(node.getType())) {
+    if (node.getSymbol() == NodeUtils.getTypeId(node, 0)) {
       result = new NodeSubA(node);
     }
     return result;
@@ -333,23 +1668,43 @@ public final class NodeSubA implements TypedNode, NodeSuper {
    * In that case this method returns the keywords which appear in the parsed source code.
    */
   public List<String> getUnnamedChildren() {
-    return NodeUtils.getNonFieldChildren(node, false).stream().map(n -> n.getType()).toList();
+    try (var arena = Arena.ofConfined()) {
+      return NodeUtils.getNonFieldChildren(node, false, arena).stream().map(n -> n.getType()).toList();
+    }
   }
 
-  private static Stream<NodeSubA> findNodesImpl(TypedNode startNode, SegmentAllocator allocator) {
+  private static Stream<NodeSubA> findNodesImpl(TypedNode startNode,
+      @Nullable SegmentAllocator allocator, QueryOptions options) {
     var startNodeUnwrapped = startNode.getNode();
     var language = startNodeUnwrapped.getTree().getLanguage();
     // tree-sitter query which matches the nodes of this type, and captures them
     var captureName = "node";
     var queryString = "(" + NodeSubA.TYPE_NAME + ") @" + captureName;
-    var query = new Query(language, queryString);
-    var queryCursor = new QueryCursor(query);
-    var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped)
-        : queryCursor.findMatches(startNodeUnwrapped, allocator, null);
-    return stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeSubA::fromNodeThrowing).onClose(() -> {
-          queryCursor.close();
-          query.close();
-        });
+    var queryCacheEntry = NodeUtils.QueryCache.acquire(language, queryString);
+    QueryCursor queryCursor;
+    try {
+      queryCursor = new QueryCursor(queryCacheEntry.query);
+    } catch (Throwable e) {
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+
+    try {
+      options.applyTo(queryCursor);
+      var executionMonitor = options.startExecution();
+      var cursorOptions = executionMonitor == null ? null : new QueryCursor.Options(executionMonitor);
+      var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped, cursorOptions)
+          : queryCursor.findMatches(startNodeUnwrapped, allocator, cursorOptions);
+      var nodes = stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeSubA::fromNodeThrowing);
+      if (executionMonitor != null) {
+        nodes = executionMonitor.wrapStream(nodes);
+      }
+      return nodes.onClose(queryCursor::close).onClose(() -> NodeUtils.QueryCache.release(queryCacheEntry));
+    } catch (Throwable e) {
+      queryCursor.close();
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
   }
 
   /**
@@ -370,7 +1725,7 @@ public final class NodeSubA implements TypedNode, NodeSuper {
   public static Stream<NodeSubA> findNodes(TypedNode startNode, SegmentAllocator allocator) {
     Objects.requireNonNull(startNode);
     Objects.requireNonNull(allocator);
-    return findNodesImpl(startNode, allocator);
+    return findNodesImpl(startNode, allocator, QueryOptions.DEFAULT);
   }
 
   /**
@@ -392,7 +1747,57 @@ public final class NodeSubA implements TypedNode, NodeSuper {
    */
   public static Stream<NodeSubA> findNodes(TypedNode startNode) {
     Objects.requireNonNull(startNode);
-    return findNodesImpl(startNode, null);
+    return findNodesImpl(startNode, null, QueryOptions.DEFAULT);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeSubA.findNodes(start, allocator, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeSubA> findNodes(TypedNode startNode, SegmentAllocator allocator,
+      QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    Objects.requireNonNull(allocator);
+    return findNodesImpl(startNode, allocator, options);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
+   * including exceptions being thrown or possibly even a JVM crash.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator, QueryOptions)} to be able to access the nodes after the stream was closed.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeSubA.findNodes(start, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeSubA> findNodes(TypedNode startNode, QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    return findNodesImpl(startNode, null, options);
   }
 
   @Override
@@ -420,13 +1825,14 @@ public final class NodeSubA implements TypedNode, NodeSuper {
 package org.example;
 
 import io.github.treesitter.jtreesitter.Node;
-import io.github.treesitter.jtreesitter.Query;
 import io.github.treesitter.jtreesitter.QueryCursor;
 import java.lang.IllegalArgumentException;
 import java.lang.Long;
 import java.lang.Object;
 import java.lang.Override;
 import java.lang.String;
+import java.lang.Throwable;
+import java.lang.foreign.Arena;
 import java.lang.foreign.SegmentAllocator;
 import java.util.List;
 import java.util.Objects;
@@ -459,6 +1865,11 @@ public final class NodeSubB implements TypedNode, NodeSuper {
     return node;
   }
 
+  @Override
+  public TypedNodeKind kind() {
+    return TypedNodeKind.NODE_SUB_B;
+  }
+
   /**
    * Wraps a jtreesitter node as this node type, returning {@code null} if the node has the wrong type.
    *
@@ -466,7 +1877,7 @@ public final class NodeSubB implements TypedNode, NodeSuper {
    */
   public static @Nullable NodeSubB fromNode(Node node) {
     NodeSubB result = null;
-    if (TYPE_NAME.equals(node.getType())) {
+    if (node.getSymbol() == NodeUtils.getTypeId(node, 1)) {
       result = new NodeSubB(node);
     }
     return result;
@@ -494,23 +1905,43 @@ public final class NodeSubB implements TypedNode, NodeSuper {
    * In that case this method returns the keywords which appear in the parsed source code.
    */
   public List<String> getUnnamedChildren() {
-    return NodeUtils.getNonFieldChildren(node, false).stream().map(n -> n.getType()).toList();
+    try (var arena = Arena.ofConfined()) {
+      return NodeUtils.getNonFieldChildren(node, false, arena).stream().map(n -> n.getType()).toList();
+    }
   }
 
-  private static Stream<NodeSubB> findNodesImpl(TypedNode startNode, SegmentAllocator allocator) {
+  private static Stream<NodeSubB> findNodesImpl(TypedNode startNode,
+      @Nullable SegmentAllocator allocator, QueryOptions options) {
     var startNodeUnwrapped = startNode.getNode();
     var language = startNodeUnwrapped.getTree().getLanguage();
     // tree-sitter query which matches the nodes of this type, and captures them
     var captureName = "node";
     var queryString = "(" + NodeSubB.TYPE_NAME + ") @" + captureName;
-    var query = new Query(language, queryString);
-    var queryCursor = new QueryCursor(query);
-    var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped)
-        : queryCursor.findMatches(startNodeUnwrapped, allocator, null);
-    return stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeSubB::fromNodeThrowing).onClose(() -> {
-          queryCursor.close();
-          query.close();
-        });
+    var queryCacheEntry = NodeUtils.QueryCache.acquire(language, queryString);
+    QueryCursor queryCursor;
+    try {
+      queryCursor = new QueryCursor(queryCacheEntry.query);
+    } catch (Throwable e) {
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+
+    try {
+      options.applyTo(queryCursor);
+      var executionMonitor = options.startExecution();
+      var cursorOptions = executionMonitor == null ? null : new QueryCursor.Options(executionMonitor);
+      var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped, cursorOptions)
+          : queryCursor.findMatches(startNodeUnwrapped, allocator, cursorOptions);
+      var nodes = stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeSubB::fromNodeThrowing);
+      if (executionMonitor != null) {
+        nodes = executionMonitor.wrapStream(nodes);
+      }
+      return nodes.onClose(queryCursor::close).onClose(() -> NodeUtils.QueryCache.release(queryCacheEntry));
+    } catch (Throwable e) {
+      queryCursor.close();
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
   }
 
   /**
@@ -531,7 +1962,7 @@ public final class NodeSubB implements TypedNode, NodeSuper {
   public static Stream<NodeSubB> findNodes(TypedNode startNode, SegmentAllocator allocator) {
     Objects.requireNonNull(startNode);
     Objects.requireNonNull(allocator);
-    return findNodesImpl(startNode, allocator);
+    return findNodesImpl(startNode, allocator, QueryOptions.DEFAULT);
   }
 
   /**
@@ -553,7 +1984,57 @@ public final class NodeSubB implements TypedNode, NodeSuper {
    */
   public static Stream<NodeSubB> findNodes(TypedNode startNode) {
     Objects.requireNonNull(startNode);
-    return findNodesImpl(startNode, null);
+    return findNodesImpl(startNode, null, QueryOptions.DEFAULT);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeSubB.findNodes(start, allocator, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeSubB> findNodes(TypedNode startNode, SegmentAllocator allocator,
+      QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    Objects.requireNonNull(allocator);
+    return findNodesImpl(startNode, allocator, options);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
+   * including exceptions being thrown or possibly even a JVM crash.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator, QueryOptions)} to be able to access the nodes after the stream was closed.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeSubB.findNodes(start, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeSubB> findNodes(TypedNode startNode, QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    return findNodesImpl(startNode, null, options);
   }
 
   @Override
@@ -581,17 +2062,18 @@ public final class NodeSubB implements TypedNode, NodeSuper {
 package org.example;
 
 import io.github.treesitter.jtreesitter.Node;
-import io.github.treesitter.jtreesitter.Query;
 import io.github.treesitter.jtreesitter.QueryCursor;
 import java.lang.IllegalArgumentException;
 import java.lang.Long;
 import java.lang.Object;
 import java.lang.Override;
 import java.lang.String;
+import java.lang.Throwable;
+import java.lang.foreign.Arena;
 import java.lang.foreign.SegmentAllocator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.Function;
 import java.util.stream.Stream;
 import javax.annotation.processing.Generated;
 import org.jspecify.annotations.Nullable;
@@ -649,6 +2131,11 @@ public final class NodeContainedA implements TypedNode, NodeWithChildren.Child {
     return node;
   }
 
+  @Override
+  public TypedNodeKind kind() {
+    return TypedNodeKind.NODE_CONTAINED_A;
+  }
+
   /**
    * Wraps a jtreesitter node as this node type, returning {@code null} if the node has the wrong type.
    *
@@ -656,7 +2143,7 @@ public final class NodeContainedA implements TypedNode, NodeWithChildren.Child {
    */
   public static @Nullable NodeContainedA fromNode(Node node) {
     NodeContainedA result = null;
-    if (TYPE_NAME.equals(node.getType())) {
+    if (node.getSymbol() == NodeUtils.getTypeId(node, 2)) {
       result = new NodeContainedA(node);
     }
     return result;
@@ -685,9 +2172,41 @@ public final class NodeContainedA implements TypedNode, NodeWithChildren.Child {
    */
   public @Nullable NodeSubA getChild() {
     var children = NodeUtils.getNonFieldChildren(node, true);
-    Function<Node, NodeSubA> namedMapper = NodeSubA::fromNodeThrowing;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return NodeUtils.optionalSingleChild(childrenMapped);
+    @Nullable NodeSubA result = null;
+    if (!children.isEmpty()) {
+      // Verifies that there is at most one child
+      var child = NodeUtils.requiredSingleChild(children);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeSubA.fromNodeThrowing(child);
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link #getChild()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public @Nullable NodeSubA getChild(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var children = NodeUtils.getNonFieldChildren(node, true, allocator);
+    @Nullable NodeSubA result = null;
+    if (!children.isEmpty()) {
+      // Verifies that there is at most one child
+      var child = NodeUtils.requiredSingleChild(children);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeSubA.fromNodeThrowing(child);
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether {@link #getChild()} has a result. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public boolean hasChild() {
+    return NodeUtils.hasNonFieldChild(node, true);
   }
 
   /**
@@ -698,10 +2217,48 @@ public final class NodeContainedA implements TypedNode, NodeWithChildren.Child {
    * </ul>
    */
   public List<NodeSubA> getFieldSame() {
-    var children = node.getChildrenByFieldName(FIELD_SAME);
-    Function<Node, NodeSubA> namedMapper = NodeSubA::fromNodeThrowing;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return childrenMapped;
+    var children = node.getChildrenByFieldId(NodeUtils.getFieldId(node, 0));
+    var childrenMapped = new NodeSubA[children.size()];
+    for (int i = 0; i < childrenMapped.length; i++) {
+      var child = children.get(i);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      childrenMapped[i] = NodeSubA.fromNodeThrowing(child);
+    }
+    return List.of(childrenMapped);
+  }
+
+  /**
+   * Same as {@link #getFieldSame()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public List<NodeSubA> getFieldSame(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var children = NodeUtils.getFieldChildren(node, NodeUtils.getFieldId(node, 0), allocator);
+    var childrenMapped = new NodeSubA[children.size()];
+    for (int i = 0; i < childrenMapped.length; i++) {
+      var child = children.get(i);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      childrenMapped[i] = NodeSubA.fromNodeThrowing(child);
+    }
+    return List.of(childrenMapped);
+  }
+
+  /**
+   * Counts the nodes returned by {@link #getFieldSame()}. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public int countFieldSame() {
+    return NodeUtils.countFieldChildren(node, NodeUtils.getFieldId(node, 0));
+  }
+
+  /**
+   * Returns whether {@link #getFieldSame()} has a result. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public boolean hasFieldSame() {
+    return NodeUtils.countFieldChildren(node, NodeUtils.getFieldId(node, 0)) > 0;
   }
 
   /**
@@ -710,12 +2267,43 @@ public final class NodeContainedA implements TypedNode, NodeWithChildren.Child {
    * <li>multiple: false
    * <li>required: false
    * </ul>
+   *
+   * <p>The grammar allows at most one node for this field. If there are nonetheless multiple nodes,
+   * for example due to a parse error, an {@link IllegalArgumentException} is thrown, the same as by {@code readFields}.
    */
   public @Nullable NodeSubA getFieldSubtypeSingleOptional() {
-    var children = node.getChildrenByFieldName(FIELD_SUBTYPE_SINGLE_OPTIONAL);
-    Function<Node, NodeSubA> namedMapper = NodeSubA::fromNodeThrowing;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return NodeUtils.optionalSingleChild(childrenMapped);
+    var child = NodeUtils.getFieldChild(node, NodeUtils.getFieldId(node, 2), Arena.ofAuto());
+    @Nullable NodeSubA result = null;
+    if (child != null) {
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeSubA.fromNodeThrowing(child);
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link #getFieldSubtypeSingleOptional()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public @Nullable NodeSubA getFieldSubtypeSingleOptional(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var child = NodeUtils.getFieldChild(node, NodeUtils.getFieldId(node, 2), allocator);
+    @Nullable NodeSubA result = null;
+    if (child != null) {
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeSubA.fromNodeThrowing(child);
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether {@link #getFieldSubtypeSingleOptional()} has a result. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public boolean hasFieldSubtypeSingleOptional() {
+    return NodeUtils.countFieldChildren(node, NodeUtils.getFieldId(node, 2)) > 0;
   }
 
   /**
@@ -725,71 +2313,239 @@ public final class NodeContainedA implements TypedNode, NodeWithChildren.Child {
    * <li>required: true
    * </ul>
    */
-  public @NonEmpty List<NodeSubA> getFieldSubtypeMultipleRequired() {
-    var children = node.getChildrenByFieldName(FIELD_SUBTYPE_MULTIPLE_REQUIRED);
-    Function<Node, NodeSubA> namedMapper = NodeSubA::fromNodeThrowing;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return NodeUtils.atLeastOneChild(childrenMapped);
-  }
-
-  private static Stream<NodeContainedA> findNodesImpl(TypedNode startNode,
-      SegmentAllocator allocator) {
-    var startNodeUnwrapped = startNode.getNode();
-    var language = startNodeUnwrapped.getTree().getLanguage();
-    // tree-sitter query which matches the nodes of this type, and captures them
-    var captureName = "node";
-    var queryString = "(" + NodeContainedA.TYPE_NAME + ") @" + captureName;
-    var query = new Query(language, queryString);
-    var queryCursor = new QueryCursor(query);
-    var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped)
-        : queryCursor.findMatches(startNodeUnwrapped, allocator, null);
-    return stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeContainedA::fromNodeThrowing).onClose(() -> {
-          queryCursor.close();
-          query.close();
-        });
+  public @NonEmpty List<NodeSubA> getFieldSubtypeMultipleRequired() {
+    var children = node.getChildrenByFieldId(NodeUtils.getFieldId(node, 1));
+    var childrenMapped = new NodeSubA[children.size()];
+    for (int i = 0; i < childrenMapped.length; i++) {
+      var child = children.get(i);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      childrenMapped[i] = NodeSubA.fromNodeThrowing(child);
+    }
+    return NodeUtils.atLeastOneChild(List.of(childrenMapped));
+  }
+
+  /**
+   * Same as {@link #getFieldSubtypeMultipleRequired()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public @NonEmpty List<NodeSubA> getFieldSubtypeMultipleRequired(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var children = NodeUtils.getFieldChildren(node, NodeUtils.getFieldId(node, 1), allocator);
+    var childrenMapped = new NodeSubA[children.size()];
+    for (int i = 0; i < childrenMapped.length; i++) {
+      var child = children.get(i);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      childrenMapped[i] = NodeSubA.fromNodeThrowing(child);
+    }
+    return NodeUtils.atLeastOneChild(List.of(childrenMapped));
+  }
+
+  /**
+   * Counts the nodes returned by {@link #getFieldSubtypeMultipleRequired()}. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public int countFieldSubtypeMultipleRequired() {
+    return NodeUtils.countFieldChildren(node, NodeUtils.getFieldId(node, 1));
+  }
+
+  /**
+   * Reads the values of all fields, visiting the children of the node only once.
+   * This is more efficient than calling the individual field getter methods, when the values of multiple
+   * fields are needed.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the fields
+   */
+  public Fields readFields(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var fieldSameFieldId = NodeUtils.getFieldId(node, 0);
+    var fieldSubtypeSingleOptionalFieldId = NodeUtils.getFieldId(node, 2);
+    var fieldSubtypeMultipleRequiredFieldId = NodeUtils.getFieldId(node, 1);
+    var fieldSameNodes = new ArrayList<Node>();
+    var fieldSubtypeSingleOptionalNodes = new ArrayList<Node>();
+    var fieldSubtypeMultipleRequiredNodes = new ArrayList<Node>();
+    var cursor = NodeUtils.CursorCache.acquire(node);
+    try {
+      if (cursor.gotoFirstChild()) {
+        do {
+          var currentFieldId = cursor.getCurrentFieldId();
+          if (currentFieldId == 0) {
+            // Not a field child
+            continue;
+          }
+          if (currentFieldId == fieldSameFieldId) {
+            fieldSameNodes.add(cursor.getCurrentNode(allocator));
+          } else if (currentFieldId == fieldSubtypeSingleOptionalFieldId) {
+            fieldSubtypeSingleOptionalNodes.add(cursor.getCurrentNode(allocator));
+          } else if (currentFieldId == fieldSubtypeMultipleRequiredFieldId) {
+            fieldSubtypeMultipleRequiredNodes.add(cursor.getCurrentNode(allocator));
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      NodeUtils.CursorCache.release(cursor);
+    }
+    var fieldSameMapped = new NodeSubA[fieldSameNodes.size()];
+    for (int i = 0; i < fieldSameMapped.length; i++) {
+      var fieldSameChild = fieldSameNodes.get(i);
+      if (!fieldSameChild.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + fieldSameChild);
+      fieldSameMapped[i] = NodeSubA.fromNodeThrowing(fieldSameChild);
+    }
+    @Nullable NodeSubA fieldSubtypeSingleOptionalResult = null;
+    if (!fieldSubtypeSingleOptionalNodes.isEmpty()) {
+      // Verifies that there is at most one child
+      var fieldSubtypeSingleOptionalChild = NodeUtils.requiredSingleChild(fieldSubtypeSingleOptionalNodes);
+      if (!fieldSubtypeSingleOptionalChild.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + fieldSubtypeSingleOptionalChild);
+      fieldSubtypeSingleOptionalResult = NodeSubA.fromNodeThrowing(fieldSubtypeSingleOptionalChild);
+    }
+    var fieldSubtypeMultipleRequiredMapped = new NodeSubA[fieldSubtypeMultipleRequiredNodes.size()];
+    for (int i = 0; i < fieldSubtypeMultipleRequiredMapped.length; i++) {
+      var fieldSubtypeMultipleRequiredChild = fieldSubtypeMultipleRequiredNodes.get(i);
+      if (!fieldSubtypeMultipleRequiredChild.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + fieldSubtypeMultipleRequiredChild);
+      fieldSubtypeMultipleRequiredMapped[i] = NodeSubA.fromNodeThrowing(fieldSubtypeMultipleRequiredChild);
+    }
+    return new Fields(List.of(fieldSameMapped), fieldSubtypeSingleOptionalResult, NodeUtils.atLeastOneChild(List.of(fieldSubtypeMultipleRequiredMapped)));
+  }
+
+  /**
+   * Reads the values of all fields, visiting the children of the node only once.
+   * This is more efficient than calling the individual field getter methods, when the values of multiple
+   * fields are needed.
+   *
+   * <p>The underlying jtreesitter nodes are allocated with an automatic {@code Arena}.
+   *
+   * @see #readFields(SegmentAllocator)
+   */
+  public Fields readFields() {
+    var allocator = Arena.ofAuto();
+    return readFields(allocator);
+  }
+
+  private static Stream<NodeContainedA> findNodesImpl(TypedNode startNode,
+      @Nullable SegmentAllocator allocator, QueryOptions options) {
+    var startNodeUnwrapped = startNode.getNode();
+    var language = startNodeUnwrapped.getTree().getLanguage();
+    // tree-sitter query which matches the nodes of this type, and captures them
+    var captureName = "node";
+    var queryString = "(" + NodeContainedA.TYPE_NAME + ") @" + captureName;
+    var queryCacheEntry = NodeUtils.QueryCache.acquire(language, queryString);
+    QueryCursor queryCursor;
+    try {
+      queryCursor = new QueryCursor(queryCacheEntry.query);
+    } catch (Throwable e) {
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+
+    try {
+      options.applyTo(queryCursor);
+      var executionMonitor = options.startExecution();
+      var cursorOptions = executionMonitor == null ? null : new QueryCursor.Options(executionMonitor);
+      var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped, cursorOptions)
+          : queryCursor.findMatches(startNodeUnwrapped, allocator, cursorOptions);
+      var nodes = stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeContainedA::fromNodeThrowing);
+      if (executionMonitor != null) {
+        nodes = executionMonitor.wrapStream(nodes);
+      }
+      return nodes.onClose(queryCursor::close).onClose(() -> NodeUtils.QueryCache.release(queryCacheEntry));
+    } catch (Throwable e) {
+      queryCursor.close();
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeContainedA.findNodes(start, allocator)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   */
+  public static Stream<NodeContainedA> findNodes(TypedNode startNode, SegmentAllocator allocator) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(allocator);
+    return findNodesImpl(startNode, allocator, QueryOptions.DEFAULT);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
+   * including exceptions being thrown or possibly even a JVM crash.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator)} to be able to access the nodes after the stream was closed.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeContainedA.findNodes(start)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   */
+  public static Stream<NodeContainedA> findNodes(TypedNode startNode) {
+    Objects.requireNonNull(startNode);
+    return findNodesImpl(startNode, null, QueryOptions.DEFAULT);
   }
 
   /**
    * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
    *
    * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
    * It is recommended to use a try-with-resources statement.
    *
    * <h4>Example</h4>
    * {@snippet lang=java :
-   * try (var nodes = NodeContainedA.findNodes(start, allocator)) {
+   * try (var nodes = NodeContainedA.findNodes(start, allocator, options)) {
    *   List<String> texts = nodes.map(n -> n.getText()).toList();
    *   ...
    * }
    * }
    * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
    */
-  public static Stream<NodeContainedA> findNodes(TypedNode startNode, SegmentAllocator allocator) {
+  public static Stream<NodeContainedA> findNodes(TypedNode startNode, SegmentAllocator allocator,
+      QueryOptions options) {
     Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
     Objects.requireNonNull(allocator);
-    return findNodesImpl(startNode, allocator);
+    return findNodesImpl(startNode, allocator, options);
   }
 
   /**
    * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
    *
    * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
    * It is recommended to use a try-with-resources statement.
    * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
    * including exceptions being thrown or possibly even a JVM crash.
-   * Use {@link #findNodes(TypedNode, SegmentAllocator)} to be able to access the nodes after the stream was closed.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator, QueryOptions)} to be able to access the nodes after the stream was closed.
    *
    * <h4>Example</h4>
    * {@snippet lang=java :
-   * try (var nodes = NodeContainedA.findNodes(start)) {
+   * try (var nodes = NodeContainedA.findNodes(start, options)) {
    *   List<String> texts = nodes.map(n -> n.getText()).toList();
    *   ...
    * }
    * }
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
    */
-  public static Stream<NodeContainedA> findNodes(TypedNode startNode) {
+  public static Stream<NodeContainedA> findNodes(TypedNode startNode, QueryOptions options) {
     Objects.requireNonNull(startNode);
-    return findNodesImpl(startNode, null);
+    Objects.requireNonNull(options);
+    return findNodesImpl(startNode, null, options);
   }
 
   @Override
@@ -809,6 +2565,19 @@ public final class NodeContainedA implements TypedNode, NodeWithChildren.Child {
   public String toString() {
     return "NodeContainedA" + "[id=" + Long.toUnsignedString(node.getId()) + "]";
   }
+
+  /**
+   * Values of all fields of the node, obtained by {@link NodeContainedA#readFields}.
+   * Each component has the same value as the corresponding field getter method:
+   * <ul>
+   * <li>{@code fieldSame}: {@link NodeContainedA#getFieldSame()}
+   * <li>{@code fieldSubtypeSingleOptional}: {@link NodeContainedA#getFieldSubtypeSingleOptional()}
+   * <li>{@code fieldSubtypeMultipleRequired}: {@link NodeContainedA#getFieldSubtypeMultipleRequired()}
+   * </ul>
+   */
+  public record Fields(List<NodeSubA> fieldSame, @Nullable NodeSubA fieldSubtypeSingleOptional,
+      @NonEmpty List<NodeSubA> fieldSubtypeMultipleRequired) {
+  }
 }
 
 
@@ -817,17 +2586,18 @@ public final class NodeContainedA implements TypedNode, NodeWithChildren.Child {
 package org.example;
 
 import io.github.treesitter.jtreesitter.Node;
-import io.github.treesitter.jtreesitter.Query;
 import io.github.treesitter.jtreesitter.QueryCursor;
 import java.lang.IllegalArgumentException;
 import java.lang.Long;
 import java.lang.Object;
 import java.lang.Override;
 import java.lang.String;
+import java.lang.Throwable;
+import java.lang.foreign.Arena;
 import java.lang.foreign.SegmentAllocator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.Function;
 import java.util.stream.Stream;
 import javax.annotation.processing.Generated;
 import org.jspecify.annotations.Nullable;
@@ -885,6 +2655,11 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
     return node;
   }
 
+  @Override
+  public TypedNodeKind kind() {
+    return TypedNodeKind.NODE_CONTAINED_B;
+  }
+
   /**
    * Wraps a jtreesitter node as this node type, returning {@code null} if the node has the wrong type.
    *
@@ -892,7 +2667,7 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
    */
   public static @Nullable NodeContainedB fromNode(Node node) {
     NodeContainedB result = null;
-    if (TYPE_NAME.equals(node.getType())) {
+    if (node.getSymbol() == NodeUtils.getTypeId(node, 3)) {
       result = new NodeContainedB(node);
     }
     return result;
@@ -921,9 +2696,41 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
    */
   public @Nullable NodeSubA getChild() {
     var children = NodeUtils.getNonFieldChildren(node, true);
-    Function<Node, NodeSubA> namedMapper = NodeSubA::fromNodeThrowing;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return NodeUtils.optionalSingleChild(childrenMapped);
+    @Nullable NodeSubA result = null;
+    if (!children.isEmpty()) {
+      // Verifies that there is at most one child
+      var child = NodeUtils.requiredSingleChild(children);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeSubA.fromNodeThrowing(child);
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link #getChild()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public @Nullable NodeSubA getChild(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var children = NodeUtils.getNonFieldChildren(node, true, allocator);
+    @Nullable NodeSubA result = null;
+    if (!children.isEmpty()) {
+      // Verifies that there is at most one child
+      var child = NodeUtils.requiredSingleChild(children);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeSubA.fromNodeThrowing(child);
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether {@link #getChild()} has a result. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public boolean hasChild() {
+    return NodeUtils.hasNonFieldChild(node, true);
   }
 
   /**
@@ -934,10 +2741,48 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
    * </ul>
    */
   public List<NodeSubA> getFieldSame() {
-    var children = node.getChildrenByFieldName(FIELD_SAME);
-    Function<Node, NodeSubA> namedMapper = NodeSubA::fromNodeThrowing;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return childrenMapped;
+    var children = node.getChildrenByFieldId(NodeUtils.getFieldId(node, 0));
+    var childrenMapped = new NodeSubA[children.size()];
+    for (int i = 0; i < childrenMapped.length; i++) {
+      var child = children.get(i);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      childrenMapped[i] = NodeSubA.fromNodeThrowing(child);
+    }
+    return List.of(childrenMapped);
+  }
+
+  /**
+   * Same as {@link #getFieldSame()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public List<NodeSubA> getFieldSame(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var children = NodeUtils.getFieldChildren(node, NodeUtils.getFieldId(node, 0), allocator);
+    var childrenMapped = new NodeSubA[children.size()];
+    for (int i = 0; i < childrenMapped.length; i++) {
+      var child = children.get(i);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      childrenMapped[i] = NodeSubA.fromNodeThrowing(child);
+    }
+    return List.of(childrenMapped);
+  }
+
+  /**
+   * Counts the nodes returned by {@link #getFieldSame()}. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public int countFieldSame() {
+    return NodeUtils.countFieldChildren(node, NodeUtils.getFieldId(node, 0));
+  }
+
+  /**
+   * Returns whether {@link #getFieldSame()} has a result. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public boolean hasFieldSame() {
+    return NodeUtils.countFieldChildren(node, NodeUtils.getFieldId(node, 0)) > 0;
   }
 
   /**
@@ -946,12 +2791,43 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
    * <li>multiple: false
    * <li>required: false
    * </ul>
+   *
+   * <p>The grammar allows at most one node for this field. If there are nonetheless multiple nodes,
+   * for example due to a parse error, an {@link IllegalArgumentException} is thrown, the same as by {@code readFields}.
    */
   public @Nullable NodeSuper getFieldSubtypeSingleOptional() {
-    var children = node.getChildrenByFieldName(FIELD_SUBTYPE_SINGLE_OPTIONAL);
-    Function<Node, NodeSuper> namedMapper = NodeSuper::fromNodeThrowing;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return NodeUtils.optionalSingleChild(childrenMapped);
+    var child = NodeUtils.getFieldChild(node, NodeUtils.getFieldId(node, 2), Arena.ofAuto());
+    @Nullable NodeSuper result = null;
+    if (child != null) {
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeSuper.fromNodeThrowing(child);
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link #getFieldSubtypeSingleOptional()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public @Nullable NodeSuper getFieldSubtypeSingleOptional(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var child = NodeUtils.getFieldChild(node, NodeUtils.getFieldId(node, 2), allocator);
+    @Nullable NodeSuper result = null;
+    if (child != null) {
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeSuper.fromNodeThrowing(child);
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether {@link #getFieldSubtypeSingleOptional()} has a result. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public boolean hasFieldSubtypeSingleOptional() {
+    return NodeUtils.countFieldChildren(node, NodeUtils.getFieldId(node, 2)) > 0;
   }
 
   /**
@@ -962,27 +2838,145 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
    * </ul>
    */
   public @NonEmpty List<NodeSuper> getFieldSubtypeMultipleRequired() {
-    var children = node.getChildrenByFieldName(FIELD_SUBTYPE_MULTIPLE_REQUIRED);
-    Function<Node, NodeSuper> namedMapper = NodeSuper::fromNodeThrowing;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return NodeUtils.atLeastOneChild(childrenMapped);
+    var children = node.getChildrenByFieldId(NodeUtils.getFieldId(node, 1));
+    var childrenMapped = new NodeSuper[children.size()];
+    for (int i = 0; i < childrenMapped.length; i++) {
+      var child = children.get(i);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      childrenMapped[i] = NodeSuper.fromNodeThrowing(child);
+    }
+    return NodeUtils.atLeastOneChild(List.of(childrenMapped));
+  }
+
+  /**
+   * Same as {@link #getFieldSubtypeMultipleRequired()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public @NonEmpty List<NodeSuper> getFieldSubtypeMultipleRequired(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var children = NodeUtils.getFieldChildren(node, NodeUtils.getFieldId(node, 1), allocator);
+    var childrenMapped = new NodeSuper[children.size()];
+    for (int i = 0; i < childrenMapped.length; i++) {
+      var child = children.get(i);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      childrenMapped[i] = NodeSuper.fromNodeThrowing(child);
+    }
+    return NodeUtils.atLeastOneChild(List.of(childrenMapped));
+  }
+
+  /**
+   * Counts the nodes returned by {@link #getFieldSubtypeMultipleRequired()}. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public int countFieldSubtypeMultipleRequired() {
+    return NodeUtils.countFieldChildren(node, NodeUtils.getFieldId(node, 1));
+  }
+
+  /**
+   * Reads the values of all fields, visiting the children of the node only once.
+   * This is more efficient than calling the individual field getter methods, when the values of multiple
+   * fields are needed.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the fields
+   */
+  public Fields readFields(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var fieldSameFieldId = NodeUtils.getFieldId(node, 0);
+    var fieldSubtypeSingleOptionalFieldId = NodeUtils.getFieldId(node, 2);
+    var fieldSubtypeMultipleRequiredFieldId = NodeUtils.getFieldId(node, 1);
+    var fieldSameNodes = new ArrayList<Node>();
+    var fieldSubtypeSingleOptionalNodes = new ArrayList<Node>();
+    var fieldSubtypeMultipleRequiredNodes = new ArrayList<Node>();
+    var cursor = NodeUtils.CursorCache.acquire(node);
+    try {
+      if (cursor.gotoFirstChild()) {
+        do {
+          var currentFieldId = cursor.getCurrentFieldId();
+          if (currentFieldId == 0) {
+            // Not a field child
+            continue;
+          }
+          if (currentFieldId == fieldSameFieldId) {
+            fieldSameNodes.add(cursor.getCurrentNode(allocator));
+          } else if (currentFieldId == fieldSubtypeSingleOptionalFieldId) {
+            fieldSubtypeSingleOptionalNodes.add(cursor.getCurrentNode(allocator));
+          } else if (currentFieldId == fieldSubtypeMultipleRequiredFieldId) {
+            fieldSubtypeMultipleRequiredNodes.add(cursor.getCurrentNode(allocator));
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      NodeUtils.CursorCache.release(cursor);
+    }
+    var fieldSameMapped = new NodeSubA[fieldSameNodes.size()];
+    for (int i = 0; i < fieldSameMapped.length; i++) {
+      var fieldSameChild = fieldSameNodes.get(i);
+      if (!fieldSameChild.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + fieldSameChild);
+      fieldSameMapped[i] = NodeSubA.fromNodeThrowing(fieldSameChild);
+    }
+    @Nullable NodeSuper fieldSubtypeSingleOptionalResult = null;
+    if (!fieldSubtypeSingleOptionalNodes.isEmpty()) {
+      // Verifies that there is at most one child
+      var fieldSubtypeSingleOptionalChild = NodeUtils.requiredSingleChild(fieldSubtypeSingleOptionalNodes);
+      if (!fieldSubtypeSingleOptionalChild.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + fieldSubtypeSingleOptionalChild);
+      fieldSubtypeSingleOptionalResult = NodeSuper.fromNodeThrowing(fieldSubtypeSingleOptionalChild);
+    }
+    var fieldSubtypeMultipleRequiredMapped = new NodeSuper[fieldSubtypeMultipleRequiredNodes.size()];
+    for (int i = 0; i < fieldSubtypeMultipleRequiredMapped.length; i++) {
+      var fieldSubtypeMultipleRequiredChild = fieldSubtypeMultipleRequiredNodes.get(i);
+      if (!fieldSubtypeMultipleRequiredChild.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + fieldSubtypeMultipleRequiredChild);
+      fieldSubtypeMultipleRequiredMapped[i] = NodeSuper.fromNodeThrowing(fieldSubtypeMultipleRequiredChild);
+    }
+    return new Fields(List.of(fieldSameMapped), fieldSubtypeSingleOptionalResult, NodeUtils.atLeastOneChild(List.of(fieldSubtypeMultipleRequiredMapped)));
+  }
+
+  /**
+   * Reads the values of all fields, visiting the children of the node only once.
+   * This is more efficient than calling the individual field getter methods, when the values of multiple
+   * fields are needed.
+   *
+   * <p>The underlying jtreesitter nodes are allocated with an automatic {@code Arena}.
+   *
+   * @see #readFields(SegmentAllocator)
+   */
+  public Fields readFields() {
+    var allocator = Arena.ofAuto();
+    return readFields(allocator);
   }
 
   private static Stream<NodeContainedB> findNodesImpl(TypedNode startNode,
-      SegmentAllocator allocator) {
+      @Nullable SegmentAllocator allocator, QueryOptions options) {
     var startNodeUnwrapped = startNode.getNode();
     var language = startNodeUnwrapped.getTree().getLanguage();
     // tree-sitter query which matches the nodes of this type, and captures them
     var captureName = "node";
     var queryString = "(" + NodeContainedB.TYPE_NAME + ") @" + captureName;
-    var query = new Query(language, queryString);
-    var queryCursor = new QueryCursor(query);
-    var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped)
-        : queryCursor.findMatches(startNodeUnwrapped, allocator, null);
-    return stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeContainedB::fromNodeThrowing).onClose(() -> {
-          queryCursor.close();
-          query.close();
-        });
+    var queryCacheEntry = NodeUtils.QueryCache.acquire(language, queryString);
+    QueryCursor queryCursor;
+    try {
+      queryCursor = new QueryCursor(queryCacheEntry.query);
+    } catch (Throwable e) {
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+
+    try {
+      options.applyTo(queryCursor);
+      var executionMonitor = options.startExecution();
+      var cursorOptions = executionMonitor == null ? null : new QueryCursor.Options(executionMonitor);
+      var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped, cursorOptions)
+          : queryCursor.findMatches(startNodeUnwrapped, allocator, cursorOptions);
+      var nodes = stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeContainedB::fromNodeThrowing);
+      if (executionMonitor != null) {
+        nodes = executionMonitor.wrapStream(nodes);
+      }
+      return nodes.onClose(queryCursor::close).onClose(() -> NodeUtils.QueryCache.release(queryCacheEntry));
+    } catch (Throwable e) {
+      queryCursor.close();
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
   }
 
   /**
@@ -1003,7 +2997,7 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
   public static Stream<NodeContainedB> findNodes(TypedNode startNode, SegmentAllocator allocator) {
     Objects.requireNonNull(startNode);
     Objects.requireNonNull(allocator);
-    return findNodesImpl(startNode, allocator);
+    return findNodesImpl(startNode, allocator, QueryOptions.DEFAULT);
   }
 
   /**
@@ -1025,7 +3019,57 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
    */
   public static Stream<NodeContainedB> findNodes(TypedNode startNode) {
     Objects.requireNonNull(startNode);
-    return findNodesImpl(startNode, null);
+    return findNodesImpl(startNode, null, QueryOptions.DEFAULT);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeContainedB.findNodes(start, allocator, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeContainedB> findNodes(TypedNode startNode, SegmentAllocator allocator,
+      QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    Objects.requireNonNull(allocator);
+    return findNodesImpl(startNode, allocator, options);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
+   * including exceptions being thrown or possibly even a JVM crash.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator, QueryOptions)} to be able to access the nodes after the stream was closed.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeContainedB.findNodes(start, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeContainedB> findNodes(TypedNode startNode, QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    return findNodesImpl(startNode, null, options);
   }
 
   @Override
@@ -1045,6 +3089,19 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
   public String toString() {
     return "NodeContainedB" + "[id=" + Long.toUnsignedString(node.getId()) + "]";
   }
+
+  /**
+   * Values of all fields of the node, obtained by {@link NodeContainedB#readFields}.
+   * Each component has the same value as the corresponding field getter method:
+   * <ul>
+   * <li>{@code fieldSame}: {@link NodeContainedB#getFieldSame()}
+   * <li>{@code fieldSubtypeSingleOptional}: {@link NodeContainedB#getFieldSubtypeSingleOptional()}
+   * <li>{@code fieldSubtypeMultipleRequired}: {@link NodeContainedB#getFieldSubtypeMultipleRequired()}
+   * </ul>
+   */
+  public record Fields(List<NodeSubA> fieldSame, @Nullable NodeSuper fieldSubtypeSingleOptional,
+      @NonEmpty List<NodeSuper> fieldSubtypeMultipleRequired) {
+  }
 }
 
 
@@ -1053,13 +3110,14 @@ public final class NodeContainedB implements TypedNode, NodeWithChildren.Child {
 package org.example;
 
 import io.github.treesitter.jtreesitter.Node;
-import io.github.treesitter.jtreesitter.Query;
 import io.github.treesitter.jtreesitter.QueryCursor;
 import java.lang.IllegalArgumentException;
 import java.lang.Long;
 import java.lang.Object;
 import java.lang.Override;
 import java.lang.String;
+import java.lang.Throwable;
+import java.lang.foreign.Arena;
 import java.lang.foreign.SegmentAllocator;
 import java.util.List;
 import java.util.Objects;
@@ -1093,6 +3151,11 @@ public final class NodeWithChildren implements TypedNode {
     return node;
   }
 
+  @Override
+  public TypedNodeKind kind() {
+    return TypedNodeKind.NODE_WITH_CHILDREN;
+  }
+
   /**
    * Wraps a jtreesitter node as this node type, returning {@code null} if the node has the wrong type.
    *
@@ -1100,7 +3163,7 @@ public final class NodeWithChildren implements TypedNode {
    */
   public static @Nullable NodeWithChildren fromNode(Node node) {
     NodeWithChildren result = null;
-    if (TYPE_NAME.equals(node.getType())) {
+    if (node.getSymbol() == NodeUtils.getTypeId(node, 4)) {
       result = new NodeWithChildren(node);
     }
     return result;
@@ -1129,9 +3192,41 @@ public final class NodeWithChildren implements TypedNode {
    */
   public @Nullable Child getChild() {
     var children = NodeUtils.getNonFieldChildren(node, true);
-    var namedMapper = Child.class;
-    var childrenMapped = NodeUtils.mapChildren(children, namedMapper, null);
-    return NodeUtils.optionalSingleChild(childrenMapped);
+    @Nullable Child result = null;
+    if (!children.isEmpty()) {
+      // Verifies that there is at most one child
+      var child = NodeUtils.requiredSingleChild(children);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeUtils.fromNodeThrowing(child, Child.class);
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link #getChild()}, except that the underlying jtreesitter nodes are allocated with the given allocator.
+   * For example using a confined {@code Arena} allows deterministically releasing the memory of the nodes,
+   * instead of relying on the garbage collector.
+   * @param allocator allocator to use for the underlying jtreesitter nodes of the children
+   */
+  public @Nullable Child getChild(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var children = NodeUtils.getNonFieldChildren(node, true, allocator);
+    @Nullable Child result = null;
+    if (!children.isEmpty()) {
+      // Verifies that there is at most one child
+      var child = NodeUtils.requiredSingleChild(children);
+      if (!child.isNamed()) throw new IllegalArgumentException("Unexpected non-named child: " + child);
+      result = NodeUtils.fromNodeThrowing(child, Child.class);
+    }
+    return result;
+  }
+
+  /**
+   * Returns whether {@link #getChild()} has a result. This is more efficient than calling that method,
+   * because no typed nodes are created.
+   */
+  public boolean hasChild() {
+    return NodeUtils.hasNonFieldChild(node, true);
   }
 
   /**
@@ -1142,24 +3237,43 @@ public final class NodeWithChildren implements TypedNode {
    * In that case this method returns the keywords which appear in the parsed source code.
    */
   public List<String> getUnnamedChildren() {
-    return NodeUtils.getNonFieldChildren(node, false).stream().map(n -> n.getType()).toList();
+    try (var arena = Arena.ofConfined()) {
+      return NodeUtils.getNonFieldChildren(node, false, arena).stream().map(n -> n.getType()).toList();
+    }
   }
 
   private static Stream<NodeWithChildren> findNodesImpl(TypedNode startNode,
-      SegmentAllocator allocator) {
+      @Nullable SegmentAllocator allocator, QueryOptions options) {
     var startNodeUnwrapped = startNode.getNode();
     var language = startNodeUnwrapped.getTree().getLanguage();
     // tree-sitter query which matches the nodes of this type, and captures them
     var captureName = "node";
     var queryString = "(" + NodeWithChildren.TYPE_NAME + ") @" + captureName;
-    var query = new Query(language, queryString);
-    var queryCursor = new QueryCursor(query);
-    var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped)
-        : queryCursor.findMatches(startNodeUnwrapped, allocator, null);
-    return stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeWithChildren::fromNodeThrowing).onClose(() -> {
-          queryCursor.close();
-          query.close();
-        });
+    var queryCacheEntry = NodeUtils.QueryCache.acquire(language, queryString);
+    QueryCursor queryCursor;
+    try {
+      queryCursor = new QueryCursor(queryCacheEntry.query);
+    } catch (Throwable e) {
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+
+    try {
+      options.applyTo(queryCursor);
+      var executionMonitor = options.startExecution();
+      var cursorOptions = executionMonitor == null ? null : new QueryCursor.Options(executionMonitor);
+      var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped, cursorOptions)
+          : queryCursor.findMatches(startNodeUnwrapped, allocator, cursorOptions);
+      var nodes = stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeWithChildren::fromNodeThrowing);
+      if (executionMonitor != null) {
+        nodes = executionMonitor.wrapStream(nodes);
+      }
+      return nodes.onClose(queryCursor::close).onClose(() -> NodeUtils.QueryCache.release(queryCacheEntry));
+    } catch (Throwable e) {
+      queryCursor.close();
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
   }
 
   /**
@@ -1181,7 +3295,7 @@ public final class NodeWithChildren implements TypedNode {
       SegmentAllocator allocator) {
     Objects.requireNonNull(startNode);
     Objects.requireNonNull(allocator);
-    return findNodesImpl(startNode, allocator);
+    return findNodesImpl(startNode, allocator, QueryOptions.DEFAULT);
   }
 
   /**
@@ -1203,7 +3317,57 @@ public final class NodeWithChildren implements TypedNode {
    */
   public static Stream<NodeWithChildren> findNodes(TypedNode startNode) {
     Objects.requireNonNull(startNode);
-    return findNodesImpl(startNode, null);
+    return findNodesImpl(startNode, null, QueryOptions.DEFAULT);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeWithChildren.findNodes(start, allocator, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeWithChildren> findNodes(TypedNode startNode, SegmentAllocator allocator,
+      QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    Objects.requireNonNull(allocator);
+    return findNodesImpl(startNode, allocator, options);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
+   * including exceptions being thrown or possibly even a JVM crash.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator, QueryOptions)} to be able to access the nodes after the stream was closed.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeWithChildren.findNodes(start, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeWithChildren> findNodes(TypedNode startNode, QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    return findNodesImpl(startNode, null, options);
   }
 
   @Override
@@ -1269,10 +3433,10 @@ public final class NodeWithChildren implements TypedNode {
 package org.example;
 
 import io.github.treesitter.jtreesitter.Node;
-import io.github.treesitter.jtreesitter.Query;
 import io.github.treesitter.jtreesitter.QueryCursor;
 import java.lang.IllegalArgumentException;
 import java.lang.String;
+import java.lang.Throwable;
 import java.lang.foreign.SegmentAllocator;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -1303,12 +3467,10 @@ public sealed interface NodeSuper extends TypedNode permits NodeSubA, NodeSubB {
    * @see #fromNodeThrowing
    */
   static @Nullable NodeSuper fromNode(Node node) {
-    var result = switch (node.getType()) {
-      case NodeSubA.TYPE_NAME -> new NodeSubA(node);
-      case NodeSubB.TYPE_NAME -> new NodeSubB(node);
-      default -> null;
+    NodeSuper result = null;
+    if (NodeUtils.createTypedNode(node) instanceof NodeSuper typedNode) {
+      result = typedNode;
     }
-    ;
     return result;
   }
 
@@ -1326,7 +3488,8 @@ public sealed interface NodeSuper extends TypedNode permits NodeSubA, NodeSubB {
     return typedNode;
   }
 
-  private static Stream<NodeSuper> findNodesImpl(TypedNode startNode, SegmentAllocator allocator) {
+  private static Stream<NodeSuper> findNodesImpl(TypedNode startNode,
+      @Nullable SegmentAllocator allocator, QueryOptions options) {
     var startNodeUnwrapped = startNode.getNode();
     var language = startNodeUnwrapped.getTree().getLanguage();
     // tree-sitter query which matches the nodes of this type, and captures them
@@ -1335,14 +3498,31 @@ public sealed interface NodeSuper extends TypedNode permits NodeSubA, NodeSubB {
         + "(" + NodeSubA.TYPE_NAME + ")"
         + "(" + NodeSubB.TYPE_NAME + ")"
         + "] @" + captureName;
-    var query = new Query(language, queryString);
-    var queryCursor = new QueryCursor(query);
-    var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped)
-        : queryCursor.findMatches(startNodeUnwrapped, allocator, null);
-    return stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeSuper::fromNodeThrowing).onClose(() -> {
-          queryCursor.close();
-          query.close();
-        });
+    var queryCacheEntry = NodeUtils.QueryCache.acquire(language, queryString);
+    QueryCursor queryCursor;
+    try {
+      queryCursor = new QueryCursor(queryCacheEntry.query);
+    } catch (Throwable e) {
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+
+    try {
+      options.applyTo(queryCursor);
+      var executionMonitor = options.startExecution();
+      var cursorOptions = executionMonitor == null ? null : new QueryCursor.Options(executionMonitor);
+      var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped, cursorOptions)
+          : queryCursor.findMatches(startNodeUnwrapped, allocator, cursorOptions);
+      var nodes = stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeSuper::fromNodeThrowing);
+      if (executionMonitor != null) {
+        nodes = executionMonitor.wrapStream(nodes);
+      }
+      return nodes.onClose(queryCursor::close).onClose(() -> NodeUtils.QueryCache.release(queryCacheEntry));
+    } catch (Throwable e) {
+      queryCursor.close();
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
   }
 
   /**
@@ -1363,7 +3543,7 @@ public sealed interface NodeSuper extends TypedNode permits NodeSubA, NodeSubB {
   static Stream<NodeSuper> findNodes(TypedNode startNode, SegmentAllocator allocator) {
     Objects.requireNonNull(startNode);
     Objects.requireNonNull(allocator);
-    return findNodesImpl(startNode, allocator);
+    return findNodesImpl(startNode, allocator, QueryOptions.DEFAULT);
   }
 
   /**
@@ -1385,7 +3565,57 @@ public sealed interface NodeSuper extends TypedNode permits NodeSubA, NodeSubB {
    */
   static Stream<NodeSuper> findNodes(TypedNode startNode) {
     Objects.requireNonNull(startNode);
-    return findNodesImpl(startNode, null);
+    return findNodesImpl(startNode, null, QueryOptions.DEFAULT);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeSuper.findNodes(start, allocator, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  static Stream<NodeSuper> findNodes(TypedNode startNode, SegmentAllocator allocator,
+      QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    Objects.requireNonNull(allocator);
+    return findNodesImpl(startNode, allocator, options);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
+   * including exceptions being thrown or possibly even a JVM crash.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator, QueryOptions)} to be able to access the nodes after the stream was closed.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeSuper.findNodes(start, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  static Stream<NodeSuper> findNodes(TypedNode startNode, QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    return findNodesImpl(startNode, null, options);
   }
 }
 
@@ -1,12 +1,43 @@
 package org.example;
 
+import io.github.treesitter.jtreesitter.Language;
 import io.github.treesitter.jtreesitter.Node;
+import io.github.treesitter.jtreesitter.Query;
+import io.github.treesitter.jtreesitter.Tree;
+import io.github.treesitter.jtreesitter.TreeCursor;
+import io.github.treesitter.jtreesitter.Unsigned;
+import java.lang.CharSequence;
+import java.lang.Character;
 import java.lang.Class;
 import java.lang.IllegalArgumentException;
 import java.lang.IllegalStateException;
+import java.lang.Object;
+import java.lang.Override;
+import java.lang.RuntimeException;
+import java.lang.Short;
+import java.lang.String;
+import java.lang.SuppressWarnings;
+import java.lang.System;
+import java.lang.ThreadLocal;
 import java.lang.foreign.Arena;
+import java.lang.foreign.SegmentAllocator;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import javax.annotation.processing.Generated;
 import org.jspecify.annotations.Nullable;
@@ -20,6 +51,11 @@ import org.jspecify.annotations.Nullable;
     comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
 )
 final class NodeUtils {
+  /**
+   * Allocator of the allocation session which is currently open on the thread, if any
+   */
+  private static final ThreadLocal<SegmentAllocator> sessionAllocator = new ThreadLocal<>();
+
   private NodeUtils() {
   }
 
@@ -36,20 +72,42 @@ final class NodeUtils {
     }
   }
 
+  /**
+   * Gets the allocator of the allocation session which is currently open on this thread; {@code null} if there is none.
+   */
+  public static @Nullable SegmentAllocator getSessionAllocator() {
+    return sessionAllocator.get();
+  }
+
+  /**
+   * Sets the allocator of the allocation session for this thread, and returns the previous allocator.
+   */
+  public static @Nullable SegmentAllocator setSessionAllocator(
+      @Nullable SegmentAllocator allocator) {
+    var previous = sessionAllocator.get();
+    if (allocator == null) {
+      sessionAllocator.remove();
+    } else {
+      sessionAllocator.set(allocator);
+    }
+    return previous;
+  }
+
   /**
    * Gets all non-field children of the node.
    * @param named whether to return named or non-named children
+   * @param allocator allocator to use for the children node objects
    */
-  public static List<Node> getNonFieldChildren(Node node, boolean named) {
+  public static List<Node> getNonFieldChildren(Node node, boolean named,
+      SegmentAllocator allocator) {
     var children = new ArrayList<Node>();
-    // Use custom allocator to ensure that nodes are usable after cursor was closed
-    var arena = Arena.ofAuto();
-    try (var cursor = node.walk()) {
+    var cursor = CursorCache.acquire(node);
+    try {
       if (cursor.gotoFirstChild()) {
         do {
           // Only consider non-field children
           if (cursor.getCurrentFieldId() == 0) {
-            var currentNode = cursor.getCurrentNode(arena);
+            var currentNode = cursor.getCurrentNode(allocator);
             if (currentNode.isError() || currentNode.isMissing()) {
               throw new IllegalStateException("Child is error or missing node: " + currentNode);
             }
@@ -59,241 +117,1545 @@ final class NodeUtils {
           }
         } while (cursor.gotoNextSibling());
       }
+    } finally {
+      CursorCache.release(cursor);
     }
     return children;
   }
 
   /**
-   * Maps the children of a node (in the form of jtreesitter nodes) to typed nodes.
-   * This differentiates between named and non-named children, since separate typed node classes are used for them.
-   * @param namedMapper maps named children; {@code null} if only non-named children are expected
-   * @param nonNamedMapper maps non-named children; {@code null} if only named children are expected
+   * Gets all non-field children of the node, allocated with the allocator of the current session,
+   * or with an automatic {@code Arena} if no session is open.
+   * @param named whether to return named or non-named children
    */
-  public static <T extends TypedNode> List<T> mapChildren(List<Node> children,
-      Function<Node, ? extends T> namedMapper, Function<Node, ? extends T> nonNamedMapper) {
-    return children.stream().map(child -> {
-      if (child.isNamed()) {
-        if (namedMapper == null) throw new IllegalArgumentException("Unexpected named child: " + child);
-        return namedMapper.apply(child);
-      } else {
-        if (nonNamedMapper == null) throw new IllegalArgumentException("Unexpected non-named child: " + child);
-        return nonNamedMapper.apply(child);
-      }
-    }).toList();
+  public static List<Node> getNonFieldChildren(Node node, boolean named) {
+    var allocator = getSessionAllocator();
+    return getNonFieldChildren(node, named, allocator == null ? Arena.ofAuto() : allocator);
   }
 
   /**
-   * @param namedNodeClass class of the named children; {@code null} if only non-named children are expected
-   * @param nonNamedMapper maps non-named children; {@code null} if only named children are expected
+   * Counts the non-field children of the node; the result is the same as the size of the list returned by
+   * {@code getNonFieldChildren}, but no nodes are allocated for the children.
+   * @param named whether to count named or non-named children
    */
-  public static <T extends TypedNode> List<T> mapChildren(List<Node> children,
-      Class<? extends T> namedNodeClass, Function<Node, ? extends T> nonNamedMapper) {
-    return mapChildren(children, n -> fromNodeThrowing(n, namedNodeClass), nonNamedMapper);
+  public static int countNonFieldChildren(Node node, boolean named) {
+    int count = 0;
+    var cursor = CursorCache.acquire(node);
+    try {
+      // jtreesitter provides no direct access to the properties of the current node, so use transient nodes
+      // which all reuse the same memory
+      var scratchAllocator = CursorCache.scratchAllocator();
+      if (cursor.gotoFirstChild()) {
+        do {
+          // Only consider non-field children
+          if (cursor.getCurrentFieldId() == 0) {
+            var currentNode = cursor.getCurrentNode(scratchAllocator);
+            if (currentNode.isError() || currentNode.isMissing()) {
+              throw new IllegalStateException("Child is error or missing node: " + currentNode);
+            }
+            if (currentNode.isNamed() == named && !currentNode.isExtra()) {
+              count++;
+            }
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return count;
   }
 
-  public static <T extends TypedNode> T requiredSingleChild(List<T> nodes) {
-    if (nodes.size() == 1) {
-      return nodes.getFirst();
+  /**
+   * Returns whether the node has at least one non-field child; the result is the same as checking whether the
+   * list returned by {@code getNonFieldChildren} is non-empty, but no nodes are allocated for the children.
+   * @param named whether to check for named or non-named children
+   */
+  public static boolean hasNonFieldChild(Node node, boolean named) {
+    var cursor = CursorCache.acquire(node);
+    try {
+      // jtreesitter provides no direct access to the properties of the current node, so use transient nodes
+      // which all reuse the same memory
+      var scratchAllocator = CursorCache.scratchAllocator();
+      if (cursor.gotoFirstChild()) {
+        do {
+          // Only consider non-field children
+          if (cursor.getCurrentFieldId() == 0) {
+            var currentNode = cursor.getCurrentNode(scratchAllocator);
+            if (currentNode.isError() || currentNode.isMissing()) {
+              throw new IllegalStateException("Child is error or missing node: " + currentNode);
+            }
+            if (currentNode.isNamed() == named && !currentNode.isExtra()) {
+              return true;
+            }
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
     }
-    throw new IllegalArgumentException("Unexpected nodes count: " + nodes);
+    return false;
   }
 
-  public static <T extends TypedNode> @Nullable T optionalSingleChild(List<T> nodes) {
-    T result = null;
-    int size = nodes.size();
-    if (size == 1) {
-      result = nodes.getFirst();
-    } else if (size > 1) {
-      throw new IllegalArgumentException("Unexpected nodes count: " + nodes);
+  /**
+   * Gets all children of the node for the field with the given ID.
+   * Same as {@link Node#getChildrenByFieldId}, except that the nodes are allocated with the given allocator.
+   * @param fieldId numeric ID of the field; {@code 0} if the field is unknown
+   * @param allocator allocator to use for the children node objects
+   */
+  public static List<Node> getFieldChildren(Node node, @Unsigned short fieldId,
+      SegmentAllocator allocator) {
+    if (fieldId == 0) {
+      return List.of();
     }
-    return result;
+    var children = new ArrayList<Node>();
+    var cursor = CursorCache.acquire(node);
+    try {
+      if (cursor.gotoFirstChild()) {
+        do {
+          if (cursor.getCurrentFieldId() == fieldId) {
+            children.add(cursor.getCurrentNode(allocator));
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return children;
   }
 
-  public static <T extends TypedNode> List<T> atLeastOneChild(List<T> nodes) {
-    if (nodes.isEmpty()) {
-      throw new IllegalArgumentException("Expected at least one node");
+  /**
+   * Gets all children of the node for the field with the given ID, allocated with the allocator of the current session,
+   * or as determined by jtreesitter if no session is open.
+   */
+  public static List<Node> getFieldChildren(Node node, @Unsigned short fieldId) {
+    var allocator = getSessionAllocator();
+    if (allocator == null) {
+      return node.getChildrenByFieldId(fieldId);
     }
-    return nodes;
+    return getFieldChildren(node, fieldId, allocator);
   }
-}
-
-
-/* ==================== */ 
 
-package org.example;
-
-import io.github.treesitter.jtreesitter.Node;
-import io.github.treesitter.jtreesitter.Point;
-import io.github.treesitter.jtreesitter.Range;
-import java.lang.IllegalArgumentException;
-import java.lang.String;
-import javax.annotation.processing.Generated;
-import org.example.custom.CustomMethods;
-import org.jspecify.annotations.Nullable;
-
-/**
- * Base type for all 'typed nodes'.
- * A jtreesitter {@link Node} can be converted to a typed node with {@link #fromNode} or {@link #fromNodeThrowing},
- * or with the corresponding methods on the specific typed node classes.
- *
- * <p>Custom methods:
- * <ul>
- * <li>{@link #typedNodeCustom(int, String)}
- * </ul>
- *
- * <h2>Node subtypes</h2>
- * <ul>
- * <li>{@link NodeContainedA contained_a}
- * </ul>
- */
-@Generated(
-    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
-    date = "1970-01-01T00:00:00Z",
-    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
-)
-public sealed interface TypedNode permits NodeContainedA {
   /**
-   * Returns the underlying jtreesitter node.
+   * Gets the single child of the node for the field with the given ID; {@code null} if there is none.
+   * Similar to {@link Node#getChildByFieldId}, except that the node is allocated with the given allocator, and that
+   * the remaining children are checked as well, without allocating nodes for them.
+   *
+   * @throws IllegalArgumentException if the node has multiple children for the field
+   * @param fieldId numeric ID of the field; {@code 0} if the field is unknown
+   * @param allocator allocator to use for the children node objects
    */
-  Node getNode();
+  public static @Nullable Node getFieldChild(Node node, @Unsigned short fieldId,
+      SegmentAllocator allocator) {
+    if (fieldId == 0) {
+      return null;
+    }
+    @Nullable Node child = null;
+    var cursor = CursorCache.acquire(node);
+    try {
+      if (cursor.gotoFirstChild()) {
+        do {
+          if (cursor.getCurrentFieldId() == fieldId) {
+            if (child != null) {
+              throw new IllegalArgumentException("Unexpected multiple children for field ID " + fieldId);
+            }
+            child = cursor.getCurrentNode(allocator);
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return child;
+  }
 
   /**
-   * Returns the source code of this node, if available.
+   * Gets the single child of the node for the field with the given ID, allocated with the allocator of the current session,
+   * or with an automatic {@code Arena} if no session is open; {@code null} if there is no such child.
+   *
+   * @throws IllegalArgumentException if the node has multiple children for the field
    */
-  default @Nullable String getText() {
-    var result = getNode().getText();
-    return result;
+  public static @Nullable Node getFieldChild(Node node, @Unsigned short fieldId) {
+    var allocator = getSessionAllocator();
+    return getFieldChild(node, fieldId, allocator == null ? Arena.ofAuto() : allocator);
   }
 
   /**
-   * Returns the range of this node.
+   * Counts the children of the node for the field with the given ID.
+   * @param fieldId numeric ID of the field; {@code 0} if the field is unknown
    */
-  default Range getRange() {
-    return getNode().getRange();
+  public static int countFieldChildren(Node node, @Unsigned short fieldId) {
+    if (fieldId == 0) {
+      return 0;
+    }
+    int count = 0;
+    var cursor = CursorCache.acquire(node);
+    try {
+      if (cursor.gotoFirstChild()) {
+        do {
+          if (cursor.getCurrentFieldId() == fieldId) {
+            count++;
+          }
+        } while (cursor.gotoNextSibling());
+      }
+    } finally {
+      CursorCache.release(cursor);
+    }
+    return count;
+  }
+
+  public static <T> T requiredSingleChild(List<T> nodes) {
+    if (nodes.size() == 1) {
+      return nodes.getFirst();
+    }
+    throw new IllegalArgumentException("Unexpected nodes count: " + nodes);
+  }
+
+  public static <T extends TypedNode> List<T> atLeastOneChild(List<T> nodes) {
+    if (nodes.isEmpty()) {
+      throw new IllegalArgumentException("Expected at least one node");
+    }
+    return nodes;
   }
 
   /**
-   * Returns the start point of this node.
+   * Gets the numeric ID of the named node type with the given index assigned at code generation time,
+   * for the language of the given node. Returns 0 if the language does not know the node type.
    */
-  default Point getStartPoint() {
-    return getNode().getStartPoint();
+  public static @Unsigned short getTypeId(Node node, int typeIndex) {
+    return LanguageIds.forNode(node).typeIds[typeIndex];
   }
 
   /**
-   * Returns the end point of this node.
+   * Gets the numeric ID of the field with the given index assigned at code generation time,
+   * for the language of the given node. Returns 0 if the language does not know the field.
    */
-  default Point getEndPoint() {
-    return getNode().getEndPoint();
+  public static @Unsigned short getFieldId(Node node, int fieldIndex) {
+    return LanguageIds.forNode(node).fieldIds[fieldIndex];
   }
 
   /**
-   * Returns whether this node or any of its child nodes represents an ERROR.
+   * Wraps a jtreesitter node as typed node, based on the numeric type ID of the node.
+   * Returns {@code null} if no corresponding typed node class exists.
    */
-  default boolean hasError() {
-    return getNode().hasError();
+  public static @Nullable TypedNode createTypedNode(Node node) {
+    var factories = LanguageIds.forNode(node).typedNodeFactories;
+    int typeId = Short.toUnsignedInt(node.getSymbol());
+    if (typeId < factories.length) {
+      var factory = factories[typeId];
+      if (factory != null) {
+        return TypedTree.NodeCache.wrap(node, TypedNode.class, factory);
+      }
+    }
+    return null;
   }
 
   /**
-   * Wraps a jtreesitter node as typed node, returning {@code null} if no corresponding typed node class exists.
-   * Only works for <i>named</i> node types.
-   *
-   * @see #fromNodeThrowing
+   * Gets the kind of the jtreesitter node, based on its numeric type ID.
    */
-  static @Nullable TypedNode fromNode(Node node) {
-    var result = switch (node.getType()) {
-      case NodeContainedA.TYPE_NAME -> new NodeContainedA(node);
-      default -> null;
-    }
-    ;
-    return result;
+  public static TypedNodeKind getNodeKind(Node node) {
+    var kinds = LanguageIds.forNode(node).nodeKinds;
+    int typeId = Short.toUnsignedInt(node.getSymbol());
+    return typeId < kinds.length ? kinds[typeId] : TypedNodeKind.OTHER;
   }
 
   /**
-   * Wraps a jtreesitter node as typed node, throwing an {@link IllegalArgumentException} if no corresponding typed node class exists.
-   * Only works for <i>named</i> node types.
+   * Per-thread cache of a jtreesitter {@code TreeCursor}, which avoids allocating a new native cursor every time
+   * the children of a node are iterated.
    *
-   * @see #fromNode
+   * <p>Rules for using the cache:
+   * <ul>
+   * <li>the cursor returned by {@link #acquire} must always be passed to {@link #release} in a {@code finally} block</li>
+   * <li>the cursor must not escape the method which acquired it, and must only be used for iterating over
+   *   the direct children of the node</li>
+   * <li>reentrant calls on the same thread while the cached cursor is in use, for example by a custom
+   *   {@code SegmentAllocator}, get a separate cursor which is closed on release</li>
+   * <li>the cached cursor is only reused for nodes of the same {@code Tree} (compared by identity) because a
+   *   cursor is bound to its tree; for nodes of a different tree the cached cursor is closed and replaced</li>
+   * <li>the cached cursor and its tree are referenced strongly, so each thread keeps at most one tree reachable
+   *   until it uses nodes of a different tree; once the thread has terminated the cursor is closed by a {@code Cleaner}</li>
+   * </ul>
    */
-  static TypedNode fromNodeThrowing(Node node) {
-    var typedNodeOptional = fromNode(node);
-    var typedNode = typedNodeOptional;
-    if (typedNode == null) {
-      throw new IllegalArgumentException("Unknown node type: " + node.getType());
+  static final class CursorCache {
+    /**
+     * Closes cached cursors once they are not referenced anymore
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final ThreadLocal<CursorCache> CACHED = ThreadLocal.withInitial(CursorCache::new);
+
+    /**
+     * Allocator for transient nodes, which always returns the same memory; the memory is freed once the thread has terminated
+     */
+    private static final ThreadLocal<SegmentAllocator> SCRATCH_ALLOCATOR = ThreadLocal.withInitial(CursorCache::createScratchAllocator);
+
+    /**
+     * Cached cursor of this thread, if any
+     */
+    private @Nullable Entry entry;
+
+    /**
+     * Whether the cached cursor is currently used
+     */
+    private boolean inUse;
+
+    /**
+     * Gets a cursor positioned at the given node. The cursor must be passed to {@link #release} afterwards,
+     * and must not be used anymore then.
+     */
+    static TreeCursor acquire(Node node) {
+      var cache = CACHED.get();
+      if (cache.inUse) {
+        // Reentrant call, for example from a custom allocator; use a separate cursor
+        return node.walk();
+      }
+      var tree = node.getTree();
+      var entry = cache.entry;
+      // A cursor can only be reset to nodes of the tree it was created for
+      if (entry != null && entry.tree == tree) {
+        entry.cursor.reset(node);
+      } else {
+        if (entry != null) {
+          entry.cleanable.clean();
+        }
+        entry = new Entry(tree, node.walk());
+        cache.entry = entry;
+      }
+      cache.inUse = true;
+      return entry.cursor;
+    }
+
+    /**
+     * Releases a cursor obtained from {@link #acquire}.
+     */
+    static void release(TreeCursor cursor) {
+      var cache = CACHED.get();
+      var entry = cache.entry;
+      if (cache.inUse && entry != null && entry.cursor == cursor) {
+        // Keep the cursor open for reuse
+        cache.inUse = false;
+        return;
+      }
+      cursor.close();
+    }
+
+    private static SegmentAllocator createScratchAllocator() {
+      return SegmentAllocator.prefixAllocator(Arena.ofAuto().allocate(64, 8));
+    }
+
+    /**
+     * Gets an allocator for transient nodes of the current thread. Every allocation returns the same memory,
+     * so an allocated node is only valid until the next allocation, and it must not escape the calling method.
+     * The allocator must not be used while calling code which might itself use it.
+     */
+    static SegmentAllocator scratchAllocator() {
+      return SCRATCH_ALLOCATOR.get();
+    }
+
+    /**
+     * Cached cursor, together with the tree it was created for
+     */
+    private static final class Entry {
+      private final Tree tree;
+
+      private final TreeCursor cursor;
+
+      private final Cleaner.Cleanable cleanable;
+
+      private Entry(Tree tree, TreeCursor cursor) {
+        this.tree = tree;
+        this.cursor = cursor;
+        // Cleaning action must not refer to `this`, otherwise this object would never become unreachable
+        this.cleanable = CLEANER.register(this, cursor::close);
+      }
     }
-    return typedNode;
   }
 
   /**
-   * typed node javadoc
-   * with link {@link java.lang.String#length()}
+   * Source code of a tree, retained so that the text of its nodes can be compared, hashed and viewed based
+   * on the byte offsets of the nodes, without creating an intermediate {@code String}. UTF-8 and UTF-16 are
+   * decoded incrementally; for other charsets, and for malformed source code, the text is decoded to a
+   * {@code String} to get the same result as {@code Node#getText()}.
+   *
+   * <p>If the source code of a tree is not retained, the methods fall back to {@code Node#getText()}.
    */
-  default void typedNodeCustom(int a, String b) {
-    CustomMethods.typedNode(this, a, b);
-  }
-}
+  static final class SourceText {
+    /**
+     * Retained source code by tree; uses weak keys so that the source code can be garbage collected once the
+     * tree is not reachable anymore. A concurrent map is used because the text methods look up the source code
+     * on every call, possibly from many threads, and must not contend on a lock.
+     */
+    private static final ConcurrentHashMap<TreeKey, SourceText> RETAINED = new ConcurrentHashMap<>();
 
+    /**
+     * Keys of {@link #RETAINED} whose tree has been garbage collected, and whose entries must be removed
+     */
+    private static final ReferenceQueue<Tree> CLEARED_KEYS = new ReferenceQueue<>();
 
-/* ==================== */ 
+    private static final int ENCODING_OTHER = 0;
 
-package org.example;
+    private static final int ENCODING_UTF_8 = 1;
 
-import java.lang.annotation.Documented;
-import java.lang.annotation.ElementType;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
-import java.lang.annotation.Target;
-import javax.annotation.processing.Generated;
+    private static final int ENCODING_UTF_16LE = 2;
 
-/**
- * Indicates that the annotated container type will not be empty.
- */
-@Documented
-@Retention(RetentionPolicy.SOURCE)
-@Target({ ElementType.TYPE_USE })
-@Generated(
-    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
-    date = "1970-01-01T00:00:00Z",
-    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
-)
-public @interface NonEmpty {
-}
+    private static final int ENCODING_UTF_16BE = 3;
 
+    private final byte[] bytes;
 
-/* ==================== */ 
+    private final Charset charset;
 
-package org.example;
+    private final int encoding;
 
-import io.github.treesitter.jtreesitter.Node;
-import io.github.treesitter.jtreesitter.Query;
-import io.github.treesitter.jtreesitter.QueryCursor;
-import java.lang.IllegalArgumentException;
-import java.lang.Long;
-import java.lang.Object;
-import java.lang.Override;
-import java.lang.String;
-import java.lang.foreign.SegmentAllocator;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Stream;
-import javax.annotation.processing.Generated;
-import org.example.custom.CustomMethods;
-import org.jspecify.annotations.Nullable;
+    /**
+     * Whether ASCII chars are encoded as single byte with the same value
+     */
+    private final boolean isAsciiCompatible;
 
-/**
- * Type {@value #TYPE_NAME}.
- *
- * <p>Custom methods:
- * <ul>
- * <li>{@link #nodeTypeCustom(int)}
- * </ul>
- */
-@Generated(
-    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
-    date = "1970-01-01T00:00:00Z",
-    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
-)
-public final class NodeContainedA implements TypedNode {
-  /**
+    private SourceText(byte[] bytes, Charset charset) {
+      this.bytes = bytes;
+      this.charset = charset;
+      if (charset.equals(StandardCharsets.UTF_8)) {
+        this.encoding = ENCODING_UTF_8;
+      } else if (charset.equals(StandardCharsets.UTF_16LE)) {
+        this.encoding = ENCODING_UTF_16LE;
+      } else if (charset.equals(StandardCharsets.UTF_16BE)) {
+        this.encoding = ENCODING_UTF_16BE;
+      } else {
+        this.encoding = ENCODING_OTHER;
+      }
+      this.isAsciiCompatible = encoding == ENCODING_UTF_8 || charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Removes the entries whose tree has been garbage collected. Cheap if there are none, because polling an
+     * empty {@code ReferenceQueue} does not acquire a lock.
+     */
+    private static void expungeClearedKeys() {
+      Reference<? extends Tree> key;
+      while ((key = CLEARED_KEYS.poll()) != null) {
+        RETAINED.remove(key);
+      }
+    }
+
+    /**
+     * Retains the source code of the tree, encoded with the given charset.
+     */
+    static void retain(Tree tree, Charset charset) {
+      var text = tree.getText();
+      if (text == null) {
+        throw new IllegalStateException("Source code of the tree is not available");
+      }
+      expungeClearedKeys();
+      RETAINED.put(new TreeKey(tree, CLEARED_KEYS), new SourceText(text.getBytes(charset), charset));
+    }
+
+    /**
+     * Releases the retained source code of the tree, if any.
+     */
+    static void release(Tree tree) {
+      expungeClearedKeys();
+      RETAINED.remove(new TreeKey(tree, null));
+    }
+
+    /**
+     * Gets the retained source code of the tree of the node; {@code null} if the source code is not retained,
+     * or if it does not cover the node.
+     */
+    private static @Nullable SourceText get(Node node) {
+      expungeClearedKeys();
+      if (RETAINED.isEmpty()) {
+        return null;
+      }
+      var source = RETAINED.get(new TreeKey(node.getTree(), null));
+      if (source == null || node.getEndByte() > source.bytes.length) {
+        return null;
+      }
+      return source;
+    }
+
+    private String decode(int start, int end) {
+      return new String(bytes, start, end - start, charset);
+    }
+
+    /**
+     * Gets the number of bytes of the encoded code point.
+     */
+    private int byteLength(int codePoint) {
+      if (encoding != ENCODING_UTF_8) {
+        return Character.charCount(codePoint) * 2;
+      }
+      return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private char utf16CharAt(int index) {
+      int b0 = bytes[index] & 0xFF;
+      int b1 = bytes[index + 1] & 0xFF;
+      return (char) (encoding == ENCODING_UTF_16LE ? (b1 << 8) | b0 : (b0 << 8) | b1);
+    }
+
+    /**
+     * Decodes the code point at the byte index; returns -1 if the bytes are malformed, in which case callers
+     * should fall back to decoding the text to a {@code String}, to get the same result as {@code getText()}.
+     */
+    private int codePointAt(int index, int end) {
+      if (encoding != ENCODING_UTF_8) {
+        if (index + 2 > end) {
+          return -1;
+        }
+        char c = utf16CharAt(index);
+        if (!Character.isSurrogate(c)) {
+          return c;
+        }
+        if (Character.isHighSurrogate(c) && index + 4 <= end) {
+          char low = utf16CharAt(index + 2);
+          if (Character.isLowSurrogate(low)) {
+            return Character.toCodePoint(c, low);
+          }
+        }
+        return -1;
+      }
+
+      int b0 = bytes[index] & 0xFF;
+      if (b0 < 0x80) {
+        return b0;
+      }
+      int length;
+      int codePoint;
+      if (b0 >= 0xC2 && b0 < 0xE0) {
+        length = 2;
+        codePoint = b0 & 0x1F;
+      } else if (b0 >= 0xE0 && b0 < 0xF0) {
+        length = 3;
+        codePoint = b0 & 0x0F;
+      } else if (b0 >= 0xF0 && b0 < 0xF5) {
+        length = 4;
+        codePoint = b0 & 0x07;
+      } else {
+        return -1;
+      }
+      if (index + length > end) {
+        return -1;
+      }
+      for (int i = 1; i < length; i++) {
+        int b = bytes[index + i] & 0xFF;
+        if ((b & 0xC0) != 0x80) {
+          return -1;
+        }
+        codePoint = (codePoint << 6) | (b & 0x3F);
+      }
+      // Reject overlong encodings, surrogates and values outside of the Unicode range
+      if (byteLength(codePoint) != length || (codePoint >= 0xD800 && codePoint <= 0xDFFF) || codePoint > Character.MAX_CODE_POINT) {
+        return -1;
+      }
+      return codePoint;
+    }
+
+    private static boolean stringEquals(String decoded, CharSequence text, boolean isPrefix) {
+      return isPrefix ? decoded.startsWith(text.toString()) : decoded.contentEquals(text);
+    }
+
+    private boolean regionEquals(int start, int end, CharSequence text, boolean isPrefix) {
+      if (encoding == ENCODING_OTHER) {
+        return stringEquals(decode(start, end), text, isPrefix);
+      }
+
+      int index = start;
+      int textIndex = 0;
+      int textLength = text.length();
+      while (index < end && textIndex < textLength) {
+        int codePoint = codePointAt(index, end);
+        if (codePoint < 0) {
+          return stringEquals(decode(start, end), text, isPrefix);
+        }
+        if (Character.isBmpCodePoint(codePoint)) {
+          if (text.charAt(textIndex) != codePoint) {
+            return false;
+          }
+          textIndex++;
+        } else {
+          if (text.charAt(textIndex) != Character.highSurrogate(codePoint)) {
+            return false;
+          }
+          if (textIndex + 1 == textLength) {
+            return isPrefix;
+          }
+          if (text.charAt(textIndex + 1) != Character.lowSurrogate(codePoint)) {
+            return false;
+          }
+          textIndex += 2;
+        }
+        index += byteLength(codePoint);
+      }
+      return textIndex == textLength && (isPrefix || index == end);
+    }
+
+    /**
+     * Computes the same hash code as {@link String#hashCode()} of the decoded text.
+     */
+    private int regionHashCode(int start, int end) {
+      if (encoding == ENCODING_OTHER) {
+        return decode(start, end).hashCode();
+      }
+
+      int hash = 0;
+      for (int index = start; index < end; ) {
+        int codePoint = codePointAt(index, end);
+        if (codePoint < 0) {
+          return decode(start, end).hashCode();
+        }
+        if (Character.isBmpCodePoint(codePoint)) {
+          hash = 31 * hash + codePoint;
+        } else {
+          hash = 31 * hash + Character.highSurrogate(codePoint);
+          hash = 31 * hash + Character.lowSurrogate(codePoint);
+        }
+        index += byteLength(codePoint);
+      }
+      return hash;
+    }
+
+    private CharSequence regionChars(int start, int end) {
+      if (isAsciiCompatible) {
+        boolean isAscii = true;
+        for (int i = start; i < end; i++) {
+          if (bytes[i] < 0) {
+            isAscii = false;
+            break;
+          }
+        }
+        if (isAscii) {
+          return new AsciiView(bytes, start, end);
+        }
+      }
+      return decode(start, end);
+    }
+
+    /**
+     * Checks if the text of the node is equal to, respectively starts with, the given text.
+     */
+    static boolean textEquals(Node node, CharSequence text, boolean isPrefix) {
+      var source = get(node);
+      if (source != null) {
+        return source.regionEquals(node.getStartByte(), node.getEndByte(), text, isPrefix);
+      }
+      var nodeText = node.getText();
+      return nodeText != null && stringEquals(nodeText, text, isPrefix);
+    }
+
+    static int textHashCode(Node node) {
+      var source = get(node);
+      if (source != null) {
+        return source.regionHashCode(node.getStartByte(), node.getEndByte());
+      }
+      return Objects.hashCode(node.getText());
+    }
+
+    static @Nullable ByteBuffer getTextBytes(Node node) {
+      var source = get(node);
+      if (source == null) {
+        return null;
+      }
+      int start = node.getStartByte();
+      return ByteBuffer.wrap(source.bytes).slice(start, node.getEndByte() - start).asReadOnlyBuffer();
+    }
+
+    static @Nullable CharSequence getTextView(Node node) {
+      var source = get(node);
+      if (source != null) {
+        return source.regionChars(node.getStartByte(), node.getEndByte());
+      }
+      return node.getText();
+    }
+
+    /**
+     * Weakly referenced tree, compared by identity. The hash code is computed eagerly so that it remains the same
+     * after the tree has been garbage collected.
+     */
+    private static final class TreeKey extends WeakReference<Tree> {
+      private final int hashCode;
+
+      TreeKey(Tree tree, @Nullable ReferenceQueue<Tree> queue) {
+        super(tree, queue);
+        this.hashCode = System.identityHashCode(tree);
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+        if (this == obj) {
+          return true;
+        }
+        if (obj instanceof TreeKey other) {
+          var tree = get();
+          return tree != null && tree == other.get();
+        }
+        return false;
+      }
+
+      @Override
+      public int hashCode() {
+        return hashCode;
+      }
+    }
+
+    /**
+     * {@code CharSequence} view of a range of ASCII bytes of the source code.
+     */
+    private static final class AsciiView implements CharSequence {
+      private final byte[] bytes;
+
+      private final int start;
+
+      private final int end;
+
+      AsciiView(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+      }
+
+      @Override
+      public int length() {
+        return end - start;
+      }
+
+      @Override
+      public char charAt(int index) {
+        return (char) bytes[start + Objects.checkIndex(index, length())];
+      }
+
+      @Override
+      public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length());
+        return new AsciiView(bytes, this.start + start, this.start + end);
+      }
+
+      @Override
+      public String toString() {
+        return new String(bytes, start, length(), StandardCharsets.ISO_8859_1);
+      }
+    }
+  }
+
+  /**
+   * Numeric type and field IDs, resolved once for a specific {@code Language}.
+   * This avoids repeatedly looking up type and field names, and comparing type names.
+   */
+  private static final class LanguageIds {
+    private static final Map<Language, LanguageIds> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Most recently used entry; avoids the map lookup in the common case that only a single language is used.
+     * Not {@code volatile} because all fields of {@code LanguageIds} are {@code final}, so other threads either
+     * see a fully initialized entry, or a stale entry or {@code null} in which case they perform the map lookup.
+     */
+    private static @Nullable LanguageIds lastUsed;
+
+    /**
+     * Weak reference, to not prevent the language from being garbage collected, see {@link #cache}
+     */
+    private final WeakReference<Language> language;
+
+    /**
+     * Indexed by the type index assigned at code generation time
+     */
+    private final short[] typeIds = new short[1];
+
+    /**
+     * Indexed by the field index assigned at code generation time
+     */
+    private final short[] fieldIds = new short[0];
+
+    /**
+     * Indexed by the numeric type ID; {@code null} elements for types without typed node class
+     */
+    private final Function<Node, TypedNode>[] typedNodeFactories;
+
+    /**
+     * Indexed by the numeric type ID
+     */
+    private final TypedNodeKind[] nodeKinds;
+
+    private LanguageIds(Language language) {
+      this.language = new WeakReference<>(language);
+      @SuppressWarnings("unchecked") var factories = (Function<Node, TypedNode>[]) new Function<?, ?>[language.getSymbolCount()];
+      this.typedNodeFactories = factories;
+      this.nodeKinds = new TypedNodeKind[language.getSymbolCount()];
+      Arrays.fill(nodeKinds, TypedNodeKind.OTHER);
+      addTypedNode(language, NodeContainedA.TYPE_NAME, 0, NodeContainedA::new, TypedNodeKind.NODE_CONTAINED_A);
+    }
+
+    private void addTypedNode(Language language, String typeName, int typeIndex,
+        Function<Node, TypedNode> factory, TypedNodeKind kind) {
+      short id = language.getSymbolForName(typeName, true);
+      typeIds[typeIndex] = id;
+      // ID 0 means that the type name is unknown, for example because the language version differs
+      if (id != 0) {
+        typedNodeFactories[Short.toUnsignedInt(id)] = factory;
+        nodeKinds[Short.toUnsignedInt(id)] = kind;
+      }
+    }
+
+    static LanguageIds forNode(Node node) {
+      var language = node.getTree().getLanguage();
+      var languageIds = lastUsed;
+      if (languageIds == null || languageIds.language.get() != language) {
+        languageIds = cache.computeIfAbsent(language, LanguageIds::new);
+        lastUsed = languageIds;
+      }
+      return languageIds;
+    }
+  }
+
+  /**
+   * Cache of compiled jtreesitter queries, keyed by the language and the query string. It is shared by all users of
+   * queries in the generated code, for example the query-based {@code findNodes} methods and typed queries.
+   * The least recently used queries are evicted once the cache exceeds its maximum size, which bounds the number of
+   * queries and languages it keeps reachable.
+   *
+   * <p>Users of a query {@linkplain #acquire acquire} it and {@linkplain #release release} it once they don't use it anymore.
+   * A compiled query is closed once it has been evicted and all users have released it.
+   * All methods of this class are thread-safe.
+   */
+  static final class QueryCache {
+    /**
+     * Guarded by the lock of {@code entries}; only read and written while holding that lock
+     */
+    private static int maxSize = 32;
+
+    /**
+     * Cached entries, in access order for LRU eviction
+     */
+    private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final LongAdder hits = new LongAdder();
+
+    private static final LongAdder misses = new LongAdder();
+
+    private static final LongAdder evictions = new LongAdder();
+
+    private QueryCache() {
+    }
+
+    private static Query createQuery(Language language, String queryString) {
+      try {
+        return new Query(language, queryString);
+      } catch (RuntimeException e) {
+        throw new RuntimeException("Failed creating query; verify that children and fields are specified in the right order; if you expect the query to be valid please report this to the jtreesitter-type-gen maintainers; query string:\n\t" + queryString, e);
+      }
+    }
+
+    private static void evictExcessEntries(int maxSize) {
+      // Caller must hold lock of `entries`
+      var iterator = entries.values().iterator();
+      while (entries.size() > maxSize && iterator.hasNext()) {
+        // Least recently used entries come first
+        var entry = iterator.next();
+        iterator.remove();
+        evictions.increment();
+        entry.isEvicted = true;
+        if (entry.refCount == 0) {
+          entry.query.close();
+        }
+      }
+    }
+
+    /**
+     * Returns the cached query, or creates it. The returned entry must be {@linkplain #release released} once it is not used anymore.
+     */
+    static Entry acquire(Language language, String queryString) {
+      var key = new Key(language, queryString);
+      synchronized (entries) {
+        var entry = entries.get(key);
+        if (entry != null) {
+          hits.increment();
+          entry.refCount++;
+          return entry;
+        }
+      }
+
+      misses.increment();
+      // Create the query without holding the lock, because this can be expensive for large queries
+      var query = createQuery(language, queryString);
+      synchronized (entries) {
+        var entry = entries.get(key);
+        if (entry != null) {
+          // Another thread has created the same query concurrently; prefer the cached one
+          query.close();
+        } else {
+          entry = new Entry(query);
+          if (maxSize > 0) {
+            entries.put(key, entry);
+            evictExcessEntries(maxSize);
+          } else {
+            // Caching is disabled
+            entry.isEvicted = true;
+          }
+        }
+        entry.refCount++;
+        return entry;
+      }
+    }
+
+    /**
+     * Releases an entry obtained from {@link #acquire}, closing its query if it is not cached anymore and not used
+     * by any other typed query.
+     */
+    static void release(Entry entry) {
+      synchronized (entries) {
+        entry.refCount--;
+        if (entry.refCount == 0 && entry.isEvicted) {
+          entry.query.close();
+        }
+      }
+    }
+
+    private record Key(Language language, String queryString) {
+    }
+
+    /**
+     * Compiled query, together with its usage information; guarded by the lock of {@code entries}.
+     */
+    static final class Entry {
+      final Query query;
+
+      /**
+       * Number of users of the query
+       */
+      private int refCount = 0;
+
+      /**
+       * Whether the entry is not cached (anymore); the query is closed once it is not used anymore
+       */
+      private boolean isEvicted = false;
+
+      private Entry(Query query) {
+        this.query = query;
+      }
+    }
+  }
+}
+
+
+/* ==================== */ 
+
+package org.example;
+
+import io.github.treesitter.jtreesitter.Node;
+import io.github.treesitter.jtreesitter.Point;
+import io.github.treesitter.jtreesitter.Range;
+import java.lang.CharSequence;
+import java.lang.IllegalArgumentException;
+import java.lang.String;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import javax.annotation.processing.Generated;
+import org.example.custom.CustomMethods;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Base type for all 'typed nodes'.
+ * A jtreesitter {@link Node} can be converted to a typed node with {@link #fromNode} or {@link #fromNodeThrowing},
+ * or with the corresponding methods on the specific typed node classes.
+ *
+ * <p>Custom methods:
+ * <ul>
+ * <li>{@link #typedNodeCustom(int, String)}
+ * </ul>
+ *
+ * <h2>Node subtypes</h2>
+ * <ul>
+ * <li>{@link NodeContainedA contained_a}
+ * </ul>
+ */
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public sealed interface TypedNode permits NodeContainedA {
+  /**
+   * Returns the underlying jtreesitter node.
+   */
+  Node getNode();
+
+  /**
+   * Returns the kind of this node; {@link TypedNodeKind#OTHER} for typed nodes representing unnamed nodes.
+   */
+  TypedNodeKind kind();
+
+  /**
+   * Returns the source code of this node, if available.
+   */
+  default @Nullable String getText() {
+    var result = getNode().getText();
+    return result;
+  }
+
+  /**
+   * Returns whether the source code of this node is equal to the given text; {@code false} if the source
+   * code is not available.
+   *
+   * <p>If the source code of the tree has been retained with {@link TypedTree#retainSource}, no intermediate {@code String}
+   * is created; otherwise this falls back to {@link #getText}.
+   */
+  default boolean textEquals(CharSequence text) {
+    Objects.requireNonNull(text);
+    return NodeUtils.SourceText.textEquals(getNode(), text, false);
+  }
+
+  /**
+   * Returns whether the source code of this node starts with the given prefix; {@code false} if the source
+   * code is not available.
+   *
+   * <p>If the source code of the tree has been retained with {@link TypedTree#retainSource}, no intermediate {@code String}
+   * is created; otherwise this falls back to {@link #getText}.
+   */
+  default boolean textStartsWith(CharSequence prefix) {
+    Objects.requireNonNull(prefix);
+    return NodeUtils.SourceText.textEquals(getNode(), prefix, true);
+  }
+
+  /**
+   * Returns the same hash code as {@link String#hashCode()} for the source code of this node; {@code 0} if the
+   * source code is not available. Can for example be used together with {@link #textEquals} for looking up
+   * names in a hash table.
+   *
+   * <p>If the source code of the tree has been retained with {@link TypedTree#retainSource}, no intermediate {@code String}
+   * is created; otherwise this falls back to {@link #getText}.
+   */
+  default int textHashCode() {
+    return NodeUtils.SourceText.textHashCode(getNode());
+  }
+
+  /**
+   * Returns a read-only view of the encoded source code of this node; {@code null} if the source code of the tree
+   * has not been retained. The bytes are encoded with the charset which was specified when retaining the source code.
+   */
+  default @Nullable ByteBuffer getTextBytes() {
+    var result = NodeUtils.SourceText.getTextBytes(getNode());
+    return result;
+  }
+
+  /**
+   * Returns the source code of this node as {@code CharSequence}, if available. For ASCII text this is a view
+   * of the retained source code, otherwise the text is decoded to a {@code String}.
+   *
+   * <p>If the source code of the tree has been retained with {@link TypedTree#retainSource}, no intermediate {@code String}
+   * is created; otherwise this falls back to {@link #getText}.
+   */
+  default @Nullable CharSequence getTextView() {
+    var result = NodeUtils.SourceText.getTextView(getNode());
+    return result;
+  }
+
+  /**
+   * Returns the range of this node.
+   */
+  default Range getRange() {
+    return getNode().getRange();
+  }
+
+  /**
+   * Returns the start point of this node.
+   */
+  default Point getStartPoint() {
+    return getNode().getStartPoint();
+  }
+
+  /**
+   * Returns the end point of this node.
+   */
+  default Point getEndPoint() {
+    return getNode().getEndPoint();
+  }
+
+  /**
+   * Returns whether this node or any of its child nodes represents an ERROR.
+   */
+  default boolean hasError() {
+    return getNode().hasError();
+  }
+
+  /**
+   * Wraps a jtreesitter node as typed node, returning {@code null} if no corresponding typed node class exists.
+   * Only works for <i>named</i> node types.
+   *
+   * @see #fromNodeThrowing
+   */
+  static @Nullable TypedNode fromNode(Node node) {
+    var result = NodeUtils.createTypedNode(node);
+    return result;
+  }
+
+  /**
+   * Wraps a jtreesitter node as typed node, throwing an {@link IllegalArgumentException} if no corresponding typed node class exists.
+   * Only works for <i>named</i> node types.
+   *
+   * @see #fromNode
+   */
+  static TypedNode fromNodeThrowing(Node node) {
+    var typedNodeOptional = fromNode(node);
+    var typedNode = typedNodeOptional;
+    if (typedNode == null) {
+      throw new IllegalArgumentException("Unknown node type: " + node.getType());
+    }
+    return typedNode;
+  }
+
+  /**
+   * typed node javadoc
+   * with link {@link java.lang.String#length()}
+   */
+  default void typedNodeCustom(int a, String b) {
+    CustomMethods.typedNode(this, a, b);
+  }
+}
+
+
+/* ==================== */ 
+
+package org.example;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import javax.annotation.processing.Generated;
+
+/**
+ * Indicates that the annotated container type will not be empty.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ ElementType.TYPE_USE })
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public @interface NonEmpty {
+}
+
+
+/* ==================== */ 
+
+package org.example;
+
+import io.github.treesitter.jtreesitter.Node;
+import java.util.Objects;
+import javax.annotation.processing.Generated;
+
+/**
+ * Kind of a typed node, with one constant for each named node type.
+ * The kind can be obtained with {@link TypedNode#kind()}, or for a jtreesitter node with {@link #of}.
+ *
+ * <p>Switching over the kind is more efficient than pattern matching over the typed node classes,
+ * and sets of kinds can be represented efficiently as {@code EnumSet}.
+ */
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public enum TypedNodeKind {
+  /**
+   * {@link NodeContainedA contained_a}
+   */
+  NODE_CONTAINED_A,
+
+  /**
+   * Node for which no dedicated typed node class exists, for example an unnamed node.
+   */
+  OTHER;
+
+  /**
+   * Gets the kind of the jtreesitter node, based on its numeric type ID. Returns {@link #OTHER} if no
+   * corresponding typed node class exists, for example for unnamed nodes.
+   */
+  public static TypedNodeKind of(Node node) {
+    Objects.requireNonNull(node);
+    return NodeUtils.getNodeKind(node);
+  }
+}
+
+
+/* ==================== */ 
+
+package org.example;
+
+import io.github.treesitter.jtreesitter.Point;
+import io.github.treesitter.jtreesitter.QueryCursor;
+import java.lang.ArithmeticException;
+import java.lang.IllegalArgumentException;
+import java.lang.Long;
+import java.lang.Override;
+import java.lang.String;
+import java.lang.System;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.annotation.processing.Generated;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Options restricting which nodes are considered when searching nodes with the {@code findNodes} methods of the typed nodes. Restricting the search to the relevant part of the tree avoids
+ * visiting nodes which are not of interest, for example when only the visible part of a large file is needed.
+ * The options can also limit the execution time, with a timeout or a cancellation token.
+ *
+ * <p>Instances are immutable; the {@code with...} methods return a new instance. Start with {@link #DEFAULT}.
+ *
+ * <h2>Example</h2>
+ * {@snippet lang=java :
+ * var options = QueryOptions.DEFAULT.withByteRange(startByte, endByte).withMaxStartDepth(2);
+ * }
+ */
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public final class QueryOptions {
+  /**
+   * Default options, which do not restrict the search.
+   */
+  public static final QueryOptions DEFAULT = new QueryOptions(0, -1, null, null, -1, -1, -1, null);
+
+  private final int startByte;
+
+  /**
+   * -1 if there is no byte range
+   */
+  private final int endByte;
+
+  private final @Nullable Point startPoint;
+
+  /**
+   * {@code null} if there is no point range
+   */
+  private final @Nullable Point endPoint;
+
+  /**
+   * -1 if unlimited
+   */
+  private final int maxStartDepth;
+
+  /**
+   * -1 if the tree-sitter default should be used
+   */
+  private final int matchLimit;
+
+  /**
+   * -1 if there is no timeout
+   */
+  private final long timeoutNanos;
+
+  private final @Nullable CancellationToken cancellationToken;
+
+  private QueryOptions(int startByte, int endByte, @Nullable Point startPoint,
+      @Nullable Point endPoint, int maxStartDepth, int matchLimit, long timeoutNanos,
+      @Nullable CancellationToken cancellationToken) {
+    this.startByte = startByte;
+    this.endByte = endByte;
+    this.startPoint = startPoint;
+    this.endPoint = endPoint;
+    this.maxStartDepth = maxStartDepth;
+    this.matchLimit = matchLimit;
+    this.timeoutNanos = timeoutNanos;
+    this.cancellationToken = cancellationToken;
+  }
+
+  /**
+   * Returns options which only consider nodes intersecting the given byte range.
+   *
+   * @param startByte start byte, inclusive
+   * @param endByte end byte, exclusive
+   * @throws IllegalArgumentException if the range is invalid
+   */
+  public QueryOptions withByteRange(int startByte, int endByte) {
+    if (startByte < 0 || endByte < startByte) {
+      throw new IllegalArgumentException("Invalid byte range: " + startByte + ", " + endByte);
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options which only consider nodes intersecting the given point (row and column) range.
+   *
+   * @param startPoint start point, inclusive
+   * @param endPoint end point, exclusive
+   * @throws IllegalArgumentException if the range is invalid
+   */
+  public QueryOptions withPointRange(Point startPoint, Point endPoint) {
+    Objects.requireNonNull(startPoint);
+    Objects.requireNonNull(endPoint);
+    if (startPoint.compareTo(endPoint) > 0) {
+      throw new IllegalArgumentException("Invalid point range: " + startPoint + ", " + endPoint);
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options which only consider nodes up to the given depth below the start node. The start node
+   * itself has depth 0, so a max start depth of 0 only considers the start node.
+   *
+   * @throws IllegalArgumentException if the depth is negative
+   */
+  public QueryOptions withMaxStartDepth(int maxStartDepth) {
+    if (maxStartDepth < 0) {
+      throw new IllegalArgumentException("Invalid max start depth: " + maxStartDepth);
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options with the given maximum number of in-progress matches of the tree-sitter query.
+   * If this limit is exceeded, tree-sitter drops the oldest in-progress matches, so some matches might be missing.
+   * A low limit reduces the memory usage and time spent on complex queries which have many in-progress matches.
+   *
+   * @throws IllegalArgumentException if the limit is not positive
+   */
+  public QueryOptions withMatchLimit(int matchLimit) {
+    if (matchLimit <= 0) {
+      throw new IllegalArgumentException("Invalid match limit: " + matchLimit);
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options which stop the execution once the given time has elapsed since it was started.
+   * The nodes found until then are still provided, but afterwards the {@code Stream} throws a {@link CancellationException}
+   * instead of ending normally, so that an incomplete result can be distinguished from a complete one.
+   *
+   * @throws IllegalArgumentException if the timeout is not positive
+   */
+  public QueryOptions withTimeout(Duration timeout) {
+    Objects.requireNonNull(timeout);
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("Invalid timeout: " + timeout);
+    }
+    long timeoutNanos;
+    try {
+      timeoutNanos = timeout.toNanos();
+    } catch (ArithmeticException e) {
+      // Timeout is too large to be represented in nanoseconds, so effectively there is no timeout
+      timeoutNanos = Long.MAX_VALUE;
+    }
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Returns options which stop the execution once the given token has been cancelled, for example from
+   * a different thread. The nodes found until then are still provided, but afterwards the {@code Stream} throws
+   * a {@link CancellationException} instead of ending normally.
+   */
+  public QueryOptions withCancellationToken(CancellationToken cancellationToken) {
+    Objects.requireNonNull(cancellationToken);
+    return new QueryOptions(startByte, endByte, startPoint, endPoint, maxStartDepth, matchLimit, timeoutNanos, cancellationToken);
+  }
+
+  /**
+   * Applies these options to the query cursor. Only sets the options which differ from the defaults, to
+   * avoid native calls for the common case that no options are used.
+   */
+  void applyTo(QueryCursor queryCursor) {
+    if (endByte != -1) {
+      queryCursor.setByteRange(startByte, endByte);
+    }
+    if (endPoint != null) {
+      queryCursor.setPointRange(startPoint, endPoint);
+    }
+    if (maxStartDepth != -1) {
+      queryCursor.setMaxStartDepth(maxStartDepth);
+    }
+    if (matchLimit != -1) {
+      queryCursor.setMatchLimit(matchLimit);
+    }
+  }
+
+  /**
+   * Resets the options previously applied with {@link #applyTo} to the defaults, so that the query cursor
+   * can be reused.
+   */
+  void resetOn(QueryCursor queryCursor) {
+    if (endByte != -1) {
+      // 0 and -1 (as unsigned int) are the tree-sitter defaults
+      queryCursor.setByteRange(0, -1);
+    }
+    if (endPoint != null) {
+      queryCursor.setPointRange(Point.MIN, Point.MAX);
+    }
+    if (maxStartDepth != -1) {
+      queryCursor.setMaxStartDepth(-1);
+    }
+    if (matchLimit != -1) {
+      queryCursor.setMatchLimit(-1);
+    }
+  }
+
+  /**
+   * Starts an execution with these options, and returns the monitor which checks whether the execution
+   * should stop; {@code null} if there is neither a timeout nor a cancellation token.
+   */
+  @Nullable ExecutionMonitor startExecution() {
+    if (timeoutNanos == -1 && cancellationToken == null) {
+      return null;
+    }
+    return new ExecutionMonitor(timeoutNanos, cancellationToken);
+  }
+
+  @Override
+  public String toString() {
+    return "QueryOptions" + "[byteRange=" + startByte + ".." + endByte + ", pointRange=" + startPoint + ".." + endPoint + ", maxStartDepth=" + maxStartDepth + ", matchLimit=" + matchLimit + ", timeoutNanos=" + timeoutNanos + ", cancellationToken=" + cancellationToken + "]";
+  }
+
+  /**
+   * Token for cancelling executions which use it, see {@link QueryOptions#withCancellationToken}.
+   * The token can be shared by multiple executions. Once cancelled it remains cancelled; a new token has to be
+   * created for subsequent executions.
+   *
+   * <p>This class is thread-safe.
+   */
+  public static final class CancellationToken {
+    private volatile boolean isCancelled;
+
+    public CancellationToken() {
+    }
+
+    /**
+     * Cancels all executions using this token. They stop as soon as possible, but might not stop immediately.
+     */
+    public void cancel() {
+      isCancelled = true;
+    }
+
+    /**
+     * {@return whether {@link #cancel} has been called}
+     */
+    public boolean isCancelled() {
+      return isCancelled;
+    }
+  }
+
+  /**
+   * Monitors a single execution, and checks whether it should stop due to a timeout or cancellation.
+   * Not thread-safe; must only be used by the thread performing the execution.
+   */
+  static final class ExecutionMonitor implements Predicate<QueryCursor.State> {
+    private final long startNanos;
+
+    private final long timeoutNanos;
+
+    private final @Nullable CancellationToken cancellationToken;
+
+    /**
+     * Reason why the execution was stopped; {@code null} if it has not been stopped
+     */
+    private @Nullable String stopReason;
+
+    ExecutionMonitor(long timeoutNanos, @Nullable CancellationToken cancellationToken) {
+      this.startNanos = System.nanoTime();
+      this.timeoutNanos = timeoutNanos;
+      this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Checks whether the execution should stop; if so the reason is recorded for {@link #throwIfStopped}.
+     */
+    boolean shouldStop() {
+      if (cancellationToken != null && cancellationToken.isCancelled()) {
+        stopReason = "Execution was cancelled";
+        return true;
+      }
+      // Compare the elapsed time instead of computing a deadline, to be robust against `nanoTime()` overflow
+      if (timeoutNanos != -1 && System.nanoTime() - startNanos >= timeoutNanos) {
+        stopReason = "Execution timed out";
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Progress callback of the query cursor; returning {@code true} stops the execution of the query.
+     */
+    @Override
+    public boolean test(QueryCursor.State state) {
+      return shouldStop();
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the execution has been stopped.
+     */
+    void throwIfStopped() {
+      if (stopReason != null) {
+        throw new CancellationException(stopReason);
+      }
+    }
+
+    /**
+     * Wraps the stream of an execution monitored by this object, so that it throws a {@link CancellationException} at
+     * the end if the execution has been stopped. Closing the returned stream closes the given stream.
+     */
+    <T> Stream<T> wrapStream(Stream<T> stream) {
+      var spliterator = stream.spliterator();
+      return StreamSupport.stream(new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+          if (spliterator.tryAdvance(action)) {
+            return true;
+          }
+          // The underlying stream also ends when the execution was stopped; report that instead of
+          // silently providing an incomplete result
+          throwIfStopped();
+          return false;
+        }
+      }, false).onClose(stream::close);
+    }
+  }
+}
+
+
+/* ==================== */ 
+
+package org.example;
+
+import io.github.treesitter.jtreesitter.Node;
+import io.github.treesitter.jtreesitter.QueryCursor;
+import java.lang.IllegalArgumentException;
+import java.lang.Long;
+import java.lang.Object;
+import java.lang.Override;
+import java.lang.String;
+import java.lang.Throwable;
+import java.lang.foreign.Arena;
+import java.lang.foreign.SegmentAllocator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import javax.annotation.processing.Generated;
+import org.example.custom.CustomMethods;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Type {@value #TYPE_NAME}.
+ *
+ * <p>Custom methods:
+ * <ul>
+ * <li>{@link #nodeTypeCustom(int)}
+ * </ul>
+ */
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public final class NodeContainedA implements TypedNode {
+  /**
    * Type name of this node, as defined in the grammar.
    */
   public static final String TYPE_NAME = "contained_a";
@@ -309,6 +1671,11 @@ public final class NodeContainedA implements TypedNode {
     return node;
   }
 
+  @Override
+  public TypedNodeKind kind() {
+    return TypedNodeKind.NODE_CONTAINED_A;
+  }
+
   /**
    * Wraps a jtreesitter node as this node type, returning {@code null} if the node has the wrong type.
    *
@@ -316,8 +1683,8 @@ public final class NodeContainedA implements TypedNode {
    */
   public static @Nullable NodeContainedA fromNode(Node node) {
     NodeContainedA result = null;
-    if (TYPE_NAME.equals(node.getType())) {
-      result = new NodeContainedA(node);
+    if (node.getSymbol() == NodeUtils.getTypeId(node, 0)) {
+      result = TypedTree.NodeCache.wrap(node, NodeContainedA.class, NodeContainedA::new);
     }
     return result;
   }
@@ -344,89 +1711,825 @@ public final class NodeContainedA implements TypedNode {
    * In that case this method returns the keywords which appear in the parsed source code.
    */
   public List<String> getUnnamedChildren() {
-    return NodeUtils.getNonFieldChildren(node, false).stream().map(n -> n.getType()).toList();
+    try (var arena = Arena.ofConfined()) {
+      return NodeUtils.getNonFieldChildren(node, false, arena).stream().map(n -> n.getType()).toList();
+    }
   }
 
   private static Stream<NodeContainedA> findNodesImpl(TypedNode startNode,
-      SegmentAllocator allocator) {
+      @Nullable SegmentAllocator allocator, QueryOptions options) {
     var startNodeUnwrapped = startNode.getNode();
     var language = startNodeUnwrapped.getTree().getLanguage();
     // tree-sitter query which matches the nodes of this type, and captures them
     var captureName = "node";
     var queryString = "(" + NodeContainedA.TYPE_NAME + ") @" + captureName;
-    var query = new Query(language, queryString);
-    var queryCursor = new QueryCursor(query);
-    var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped)
-        : queryCursor.findMatches(startNodeUnwrapped, allocator, null);
-    return stream.flatMap(m -> m.findNodes(captureName).stream()).map(NodeContainedA::fromNodeThrowing).onClose(() -> {
-          queryCursor.close();
-          query.close();
-        });
+    var queryCacheEntry = NodeUtils.QueryCache.acquire(language, queryString);
+    QueryCursor queryCursor;
+    try {
+      queryCursor = new QueryCursor(queryCacheEntry.query);
+    } catch (Throwable e) {
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+
+    try {
+      options.applyTo(queryCursor);
+      var executionMonitor = options.startExecution();
+      var cursorOptions = executionMonitor == null ? null : new QueryCursor.Options(executionMonitor);
+      var stream = allocator == null ? queryCursor.findMatches(startNodeUnwrapped, cursorOptions)
+          : queryCursor.findMatches(startNodeUnwrapped, allocator, cursorOptions);
+      var nodes = stream.flatMap(m -> m.findNodes(captureName).stream()).map(n -> TypedTree.NodeCache.runUncached(() -> NodeContainedA.fromNodeThrowing(n)));
+      if (executionMonitor != null) {
+        nodes = executionMonitor.wrapStream(nodes);
+      }
+      return nodes.onClose(queryCursor::close).onClose(() -> NodeUtils.QueryCache.release(queryCacheEntry));
+    } catch (Throwable e) {
+      queryCursor.close();
+      NodeUtils.QueryCache.release(queryCacheEntry);
+      throw e;
+    }
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeContainedA.findNodes(start, allocator)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   */
+  public static Stream<NodeContainedA> findNodes(TypedNode startNode, SegmentAllocator allocator) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(allocator);
+    return findNodesImpl(startNode, allocator, QueryOptions.DEFAULT);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
+   * including exceptions being thrown or possibly even a JVM crash.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator)} to be able to access the nodes after the stream was closed.
+   * If an allocation session is open on the current thread (see {@link TypedTree#openSession}), the nodes are allocated with its arena instead.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeContainedA.findNodes(start)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   */
+  public static Stream<NodeContainedA> findNodes(TypedNode startNode) {
+    Objects.requireNonNull(startNode);
+    return findNodesImpl(startNode, NodeUtils.getSessionAllocator(), QueryOptions.DEFAULT);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeContainedA.findNodes(start, allocator, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeContainedA> findNodes(TypedNode startNode, SegmentAllocator allocator,
+      QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    Objects.requireNonNull(allocator);
+    return findNodesImpl(startNode, allocator, options);
+  }
+
+  /**
+   * Gets all nodes of this type, starting at the given node.
+   * Only nodes matching the given options are considered.
+   *
+   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
+   * It is recommended to use a try-with-resources statement.
+   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
+   * including exceptions being thrown or possibly even a JVM crash.
+   * Use {@link #findNodes(TypedNode, SegmentAllocator, QueryOptions)} to be able to access the nodes after the stream was closed.
+   * If an allocation session is open on the current thread (see {@link TypedTree#openSession}), the nodes are allocated with its arena instead.
+   *
+   * <h4>Example</h4>
+   * {@snippet lang=java :
+   * try (var nodes = NodeContainedA.findNodes(start, options)) {
+   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   *   ...
+   * }
+   * }
+   * @param options options restricting which nodes are considered, for example to a byte range, or limiting the execution time
+   */
+  public static Stream<NodeContainedA> findNodes(TypedNode startNode, QueryOptions options) {
+    Objects.requireNonNull(startNode);
+    Objects.requireNonNull(options);
+    return findNodesImpl(startNode, NodeUtils.getSessionAllocator(), options);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof NodeContainedA other) {
+      return node.equals(other.node);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return node.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "NodeContainedA" + "[id=" + Long.toUnsignedString(node.getId()) + "]";
+  }
+
+  public void nodeTypeCustom(int a) {
+    CustomMethods.nodeType(this, a, "contained_a");
+  }
+}
+
+
+/* ==================== */ 
+
+package org.example;
+
+import io.github.treesitter.jtreesitter.Node;
+import io.github.treesitter.jtreesitter.Tree;
+import io.github.treesitter.jtreesitter.TreeCursor;
+import java.lang.AssertionError;
+import java.lang.AutoCloseable;
+import java.lang.Boolean;
+import java.lang.CharSequence;
+import java.lang.Class;
+import java.lang.ClassValue;
+import java.lang.IllegalArgumentException;
+import java.lang.IllegalStateException;
+import java.lang.Long;
+import java.lang.NoSuchMethodException;
+import java.lang.Object;
+import java.lang.Override;
+import java.lang.Short;
+import java.lang.String;
+import java.lang.SuppressWarnings;
+import java.lang.Thread;
+import java.lang.ThreadLocal;
+import java.lang.foreign.Arena;
+import java.lang.foreign.SegmentAllocator;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.processing.Generated;
+import org.example.custom.CustomMethods;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A 'typed parse-tree', with expected root node {@link NodeContainedA contained_a}. A jtreesitter {@link Tree} can be converted to a typed tree with {@link #fromTree}.
+ *
+ * <p>Individual jtreesitter nodes can be converted to a typed node with {@link TypedNode#fromNode}, or the {@code fromNode} method of the specific typed node classes.
+ *
+ * <p>Custom methods:
+ * <ul>
+ * <li>{@link #typedTreeCustom(List)}
+ * </ul>
+ */
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public final class TypedTree implements AutoCloseable {
+  /**
+   * Overridden visitor methods, computed once per visitor class.
+   */
+  private static final ClassValue<VisitorHooks> VISITOR_HOOKS = new ClassValue<VisitorHooks>() {
+    @Override
+    protected VisitorHooks computeValue(Class<?> visitorClass) {
+      return getVisitorHooks(visitorClass);
+    }
+  };
+
+  private final Tree tree;
+
+  TypedTree(Tree tree) {
+    this.tree = tree;
+  }
+
+  /**
+   * Returns the underlying jtreesitter tree.
+   */
+  public Tree getTree() {
+    return tree;
+  }
+
+  /**
+   * Wraps a jtreesitter tree as a typed tree, throwing an {@link IllegalArgumentException} if the tree has an unexpected root node.
+   */
+  public static TypedTree fromTree(Tree tree) {
+    var rootType = tree.getRootNode().getType();
+    if (rootType.equals("contained_a")) {
+      return new TypedTree(tree);
+    }
+    throw new IllegalArgumentException("Wrong node type: " + rootType);
+  }
+
+  /**
+   * Returns the typed root node.
+   */
+  public NodeContainedA getRootNode() {
+    var rootNode = tree.getRootNode();
+    var result = NodeContainedA.fromNodeThrowing(rootNode);
+    return result;
+  }
+
+  /**
+   * Returns the source code of the syntax tree, if available.
+   */
+  public @Nullable String getText() {
+    var result = tree.getText();
+    return result;
+  }
+
+  /**
+   * Retains the source code of this tree, so that the text of its typed nodes can be compared and viewed
+   * without creating an intermediate {@code String}, for example with {@link TypedNode#textEquals}.
+   * The source code is encoded once with the given charset, and is kept until {@link #releaseSource} or {@link #close}
+   * is called, or until this tree is garbage collected.
+   *
+   * <p>The charset must be the one which was used for parsing the source code, otherwise the byte offsets of
+   * the nodes do not match; by default jtreesitter parses source code as {@code UTF-8}. If the underlying jtreesitter
+   * tree is edited, the source code has to be released, and can only be retained again for the new tree.
+   *
+   * @throws IllegalStateException if the source code of the tree is not available
+   */
+  public void retainSource(Charset charset) {
+    Objects.requireNonNull(charset);
+    NodeUtils.SourceText.retain(tree, charset);
+  }
+
+  /**
+   * Releases the source code retained by {@link #retainSource}, if any.
+   */
+  public void releaseSource() {
+    NodeUtils.SourceText.release(tree);
+  }
+
+  /**
+   * Returns whether this tree contains any nodes with errors.
+   */
+  public boolean hasError() {
+    return tree.getRootNode().hasError();
+  }
+
+  /**
+   * Creates a typed tree cursor starting at the root node.
+   */
+  public TypedTreeCursor walk() {
+    return new TypedTreeCursor(tree.getRootNode().walk());
+  }
+
+  /**
+   * Gets the indices of all classes in {@code nodeClasses} which the typed node is an instance of.
+   */
+  private static int[] getClassIndices(Class<?>[] nodeClasses, @Nullable TypedNode typedNode) {
+    var classIndices = new BitSet(nodeClasses.length);
+    if (typedNode != null) {
+      for (int i = 0; i < nodeClasses.length; i++) {
+        if (nodeClasses[i].isInstance(typedNode)) {
+          classIndices.set(i);
+        }
+      }
+    }
+    return classIndices.stream().toArray();
+  }
+
+  /**
+   * Finds all nodes of the given node classes in a single traversal of the tree, and groups them by node class.
+   * This is more efficient than separately calling the {@code findNodes} methods of multiple node classes,
+   * since each of these calls traverses the tree. If a node is an instance of multiple of the given
+   * node classes, it is included in the results for all of them.
+   * @param nodeClasses node classes to index; can also be node supertype interfaces
+   */
+  public NodeIndex buildIndex(Set<Class<? extends TypedNode>> nodeClasses) {
+    var nodeClassesArray = nodeClasses.toArray(Class<?>[]::new);
+    var buckets = new ArrayList<List<TypedNode>>(nodeClassesArray.length);
+    for (int i = 0; i < nodeClassesArray.length; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    // Indexed by numeric type ID; lazily computed to only create typed nodes for matching nodes
+    var classIndicesByTypeId = new int[tree.getLanguage().getSymbolCount()][];
+    // Use allocator of current session, or otherwise custom allocator to ensure that nodes are usable after cursor was closed
+    var allocator = NodeUtils.getSessionAllocator();
+    if (allocator == null) {
+      allocator = Arena.ofAuto();
+    }
+    // Allocator for transient nodes which are only used to determine the type ID; reuses the same memory for every node
+    var scratchAllocator = SegmentAllocator.prefixAllocator(Arena.ofAuto().allocate(64, 8));
+    try (var cursor = tree.getRootNode().walk()) {
+      boolean done = false;
+      while (!done) {
+        // Only the matching nodes are allocated with `allocator`
+        var node = cursor.getCurrentNode(scratchAllocator);
+        int typeId = Short.toUnsignedInt(node.getSymbol());
+        if (typeId < classIndicesByTypeId.length) {
+          var classIndices = classIndicesByTypeId[typeId];
+          if (classIndices == null) {
+            // Determine the classes using the transient node; its typed node must not be cached because its memory is reused
+            classIndices = getClassIndices(nodeClassesArray, NodeCache.runUncached(() -> NodeUtils.createTypedNode(node)));
+            classIndicesByTypeId[typeId] = classIndices;
+          }
+          if (classIndices.length > 0) {
+            var typedNode = NodeUtils.createTypedNode(cursor.getCurrentNode(allocator));
+            for (int classIndex : classIndices) {
+              buckets.get(classIndex).add(typedNode);
+            }
+          }
+        }
+
+        // Visit nodes in pre-order: first child, otherwise next sibling of this node or of the closest ancestor
+        if (cursor.gotoFirstChild()) {
+          continue;
+        }
+        while (!cursor.gotoNextSibling()) {
+          if (!cursor.gotoParent()) {
+            done = true;
+            break;
+          }
+        }
+      }
+    }
+
+    var nodesByClass = new HashMap<Class<?>, List<? extends TypedNode>>();
+    for (int i = 0; i < nodeClassesArray.length; i++) {
+      nodesByClass.put(nodeClassesArray[i], List.copyOf(buckets.get(i)));
+    }
+    return new NodeIndex(nodesByClass);
+  }
+
+  private static boolean isVisitorMethodOverridden(Class<?> visitorClass, String methodName,
+      Class<?> parameterType) {
+    try {
+      return visitorClass.getMethod(methodName, parameterType).getDeclaringClass() != TypedVisitor.class;
+    } catch (NoSuchMethodException e) {
+      throw new AssertionError("Visitor method not found", e);
+    }
+  }
+
+  private static VisitorHooks getVisitorHooks(Class<?> visitorClass) {
+    int kindsCount = TypedNodeKind.values().length;
+    var visit = new boolean[kindsCount];
+    var leave = new boolean[kindsCount];
+    boolean defaultVisit = isVisitorMethodOverridden(visitorClass, "defaultVisit", TypedNode.class);
+    boolean defaultLeave = isVisitorMethodOverridden(visitorClass, "defaultLeave", TypedNode.class);
+    visit[TypedNodeKind.NODE_CONTAINED_A.ordinal()] = defaultVisit || isVisitorMethodOverridden(visitorClass, "visitNodeContainedA", NodeContainedA.class);
+    leave[TypedNodeKind.NODE_CONTAINED_A.ordinal()] = defaultLeave || isVisitorMethodOverridden(visitorClass, "leaveNodeContainedA", NodeContainedA.class);
+    return new VisitorHooks(visit, leave);
+  }
+
+  private static TypedVisitor.Action dispatchVisit(TypedVisitor visitor, TypedNodeKind kind,
+      TypedNode node) {
+    return switch (kind) {
+      case NODE_CONTAINED_A -> visitor.visitNodeContainedA((NodeContainedA) node);
+      default -> throw new AssertionError("Unexpected node kind: " + kind);
+    };
+  }
+
+  private static TypedVisitor.Action dispatchLeave(TypedVisitor visitor, TypedNodeKind kind,
+      TypedNode node) {
+    return switch (kind) {
+      case NODE_CONTAINED_A -> visitor.leaveNodeContainedA((NodeContainedA) node);
+      default -> throw new AssertionError("Unexpected node kind: " + kind);
+    };
+  }
+
+  /**
+   * Calls the leave method for the current node of the cursor, if overridden. Returns {@code false} if the traversal
+   * should stop.
+   */
+  private static boolean leaveCurrent(TypedVisitor visitor, VisitorHooks hooks, TreeCursor cursor,
+      SegmentAllocator scratchAllocator, SegmentAllocator allocator) {
+    var kind = NodeUtils.getNodeKind(cursor.getCurrentNode(scratchAllocator));
+    if (!hooks.leave()[kind.ordinal()]) {
+      return true;
+    }
+    var typedNode = NodeUtils.createTypedNode(cursor.getCurrentNode(allocator));
+    return dispatchLeave(visitor, kind, typedNode) != TypedVisitor.Action.STOP;
   }
 
   /**
-   * Gets all nodes of this type, starting at the given node.
+   * Traverses the tree in pre-order with the given visitor, starting at the root node. Returns {@code false} if the
+   * traversal was stopped by the visitor, {@code true} otherwise.
    *
-   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
-   * It is recommended to use a try-with-resources statement.
+   * <p>The tree is traversed with a single jtreesitter {@link TreeCursor}. Typed nodes are only created for nodes
+   * for which the visitor overrides the corresponding visit or leave method.
    *
-   * <h4>Example</h4>
-   * {@snippet lang=java :
-   * try (var nodes = NodeContainedA.findNodes(start, allocator)) {
-   *   List<String> texts = nodes.map(n -> n.getText()).toList();
-   *   ...
-   * }
-   * }
-   * @param allocator allocator to use for the found node objects; allows interacting with the nodes after the stream has been closed
+   * @see TypedVisitor
    */
-  public static Stream<NodeContainedA> findNodes(TypedNode startNode, SegmentAllocator allocator) {
-    Objects.requireNonNull(startNode);
-    Objects.requireNonNull(allocator);
-    return findNodesImpl(startNode, allocator);
+  public boolean accept(TypedVisitor visitor) {
+    Objects.requireNonNull(visitor);
+    var hooks = VISITOR_HOOKS.get(visitor.getClass());
+    // Use allocator of current session, or otherwise custom allocator to ensure that nodes are usable after cursor was closed
+    var allocator = NodeUtils.getSessionAllocator();
+    if (allocator == null) {
+      allocator = Arena.ofAuto();
+    }
+    // Allocator for transient nodes which are only used to determine the node kind; reuses the same memory for every node
+    var scratchAllocator = SegmentAllocator.prefixAllocator(Arena.ofAuto().allocate(64, 8));
+    try (var cursor = tree.getRootNode().walk()) {
+      while (true) {
+        var kind = NodeUtils.getNodeKind(cursor.getCurrentNode(scratchAllocator));
+        var action = TypedVisitor.Action.CONTINUE;
+        if (hooks.visit()[kind.ordinal()]) {
+          var typedNode = NodeUtils.createTypedNode(cursor.getCurrentNode(allocator));
+          action = dispatchVisit(visitor, kind, typedNode);
+          if (action == TypedVisitor.Action.STOP) {
+            return false;
+          }
+        }
+        if (action != TypedVisitor.Action.SKIP_SUBTREE && cursor.gotoFirstChild()) {
+          continue;
+        }
+
+        // Leave this node, and all ancestors for which this was the last child, then move to the next sibling
+        while (true) {
+          if (!leaveCurrent(visitor, hooks, cursor, scratchAllocator, allocator)) {
+            return false;
+          }
+          if (cursor.gotoNextSibling()) {
+            break;
+          }
+          if (!cursor.gotoParent()) {
+            return true;
+          }
+        }
+      }
+    }
   }
 
   /**
-   * Gets all nodes of this type, starting at the given node.
+   * Opens an allocation session for the current thread. Until the session is closed, the jtreesitter nodes
+   * obtained on the current thread by the methods of typed nodes, such as the children and field getters and the
+   * {@code findNodes} methods, are allocated with the given arena, unless a method has an explicit allocator parameter.
+   * Closing the session closes the arena, releasing the memory of all these nodes at once.
    *
-   * <p><b>Important:</b> The {@code Stream} must be closed to release resources.
-   * It is recommended to use a try-with-resources statement.
-   * After the stream was closed the resulting nodes should not be used anymore, otherwise the behavior is undefined,
-   * including exceptions being thrown or possibly even a JVM crash.
-   * Use {@link #findNodes(TypedNode, SegmentAllocator)} to be able to access the nodes after the stream was closed.
+   * <p>Sessions can be nested, but must be closed in the reverse order in which they were opened.
+   * The session applies to all nodes obtained on the current thread, not only to the nodes of this tree.
    *
    * <h4>Example</h4>
    * {@snippet lang=java :
-   * try (var nodes = NodeContainedA.findNodes(start)) {
-   *   List<String> texts = nodes.map(n -> n.getText()).toList();
+   * try (var session = typedTree.openSession(Arena.ofConfined())) {
+   *   var rootNode = typedTree.getRootNode();
    *   ...
    * }
    * }
+   * @param arena arena to allocate the nodes with; it is closed when the session is closed
    */
-  public static Stream<NodeContainedA> findNodes(TypedNode startNode) {
-    Objects.requireNonNull(startNode);
-    return findNodesImpl(startNode, null);
+  public Session openSession(Arena arena) {
+    Objects.requireNonNull(arena);
+    return new Session(arena);
+  }
+
+  /**
+   * Opens a cache of typed nodes for the nodes of this tree. While the cache is open, wrapping the same jtreesitter
+   * node of this tree as typed node returns the same typed node object, for example when the typed node is obtained
+   * from a children or field getter, or through {@code fromNode}. Nodes are identified by {@link Node#getId}.
+   * The cache applies to all threads.
+   *
+   * <p>Only typed nodes whose jtreesitter node is managed by the garbage collector are cached, because a cached typed
+   * node must not outlive the memory of its jtreesitter node. Therefore typed nodes are created without the cache if
+   * their jtreesitter nodes are allocated with a custom {@code SegmentAllocator}, or if they are obtained from a
+   * {@code findNodes} method or a query, whose nodes might only be valid until the stream is closed.
+   * The same applies while an allocation session is open on the current thread, see {@link #openSession}.
+   * When passing a jtreesitter node to {@code fromNode}, it must remain valid while the cache is open.
+   *
+   * <p>The cache keeps the typed nodes, and their jtreesitter nodes, reachable until it is closed; closing this tree
+   * closes the cache as well. At most one cache can be open for a tree at a time.
+   *
+   * @throws IllegalStateException if a cache is already open for this tree
+   */
+  public NodeCache openNodeCache() {
+    return NodeCache.open(tree);
+  }
+
+  /**
+   * Closes the underlying jtreesitter tree, releasing the resources it holds, and releases the retained source code.
+   * Also closes the node cache of this tree, if any.
+   */
+  @Override
+  public void close() {
+    releaseSource();
+    NodeCache.closeForTree(tree);
+    tree.close();
   }
 
   @Override
   public boolean equals(Object obj) {
-    if (obj instanceof NodeContainedA other) {
-      return node.equals(other.node);
+    if (obj instanceof TypedTree other) {
+      return tree.equals(other.tree);
     }
     return false;
   }
 
   @Override
   public int hashCode() {
-    return node.hashCode();
+    return tree.hashCode();
   }
 
   @Override
   public String toString() {
-    return "NodeContainedA" + "[id=" + Long.toUnsignedString(node.getId()) + "]";
+    return "TypedTree";
   }
 
-  public void nodeTypeCustom(int a) {
-    CustomMethods.nodeType(this, a, "contained_a");
+  /**
+   * custom javadoc
+   * with line break
+   */
+  public <E extends CharSequence> boolean typedTreeCustom(List<@Nullable E> a) {
+    return CustomMethods.typedTree(this, a);
+  }
+
+  /**
+   * Nodes of a tree, grouped by node class. Created by {@link TypedTree#buildIndex}.
+   */
+  public static final class NodeIndex {
+    private final Map<Class<?>, List<? extends TypedNode>> nodesByClass;
+
+    private NodeIndex(Map<Class<?>, List<? extends TypedNode>> nodesByClass) {
+      this.nodesByClass = nodesByClass;
+    }
+
+    /**
+     * Gets all nodes of the given node class, in the order in which they appear in the tree.
+     *
+     * @throws IllegalArgumentException if the node class was not specified when building the index
+     */
+    public <T extends TypedNode> List<T> getNodes(Class<T> nodeClass) {
+      var nodes = nodesByClass.get(nodeClass);
+      if (nodes == null) {
+        throw new IllegalArgumentException("Node class was not indexed: " + nodeClass);
+      }
+      @SuppressWarnings("unchecked") var result = (List<T>) nodes;
+      return result;
+    }
+  }
+
+  /**
+   * Whether a visitor class overrides the visit respectively leave method for a node kind; indexed by {@link TypedNodeKind#ordinal()}.
+   */
+  private record VisitorHooks(boolean[] visit, boolean[] leave) {
+  }
+
+  /**
+   * Allocation session, created by {@link TypedTree#openSession}. Must be closed by the thread which opened it.
+   */
+  public static final class Session implements AutoCloseable {
+    private final Arena arena;
+
+    private final Thread thread;
+
+    private final @Nullable SegmentAllocator previousAllocator;
+
+    private boolean closed;
+
+    private Session(Arena arena) {
+      this.arena = arena;
+      this.thread = Thread.currentThread();
+      this.previousAllocator = NodeUtils.setSessionAllocator(arena);
+    }
+
+    /**
+     * Gets the arena which is used for allocating the nodes.
+     */
+    public Arena getArena() {
+      return arena;
+    }
+
+    /**
+     * Ends the session and closes its arena. Afterwards all nodes which were obtained during the session must not be used anymore.
+     *
+     * @throws IllegalStateException if this method is not called by the thread which opened the session,
+     *     or if sessions are not closed in the reverse order in which they were opened
+     */
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      if (Thread.currentThread() != thread) {
+        throw new IllegalStateException("Session must be closed by the thread which opened it");
+      }
+      if (NodeUtils.getSessionAllocator() != arena) {
+        throw new IllegalStateException("Nested session has not been closed yet");
+      }
+      closed = true;
+      NodeUtils.setSessionAllocator(previousAllocator);
+      arena.close();
+    }
+  }
+
+  /**
+   * Cache of typed nodes for the nodes of a tree, created by {@link TypedTree#openNodeCache}. Must be closed once it is not needed anymore.
+   * Can be used concurrently by multiple threads.
+   *
+   * <p>Open caches are registered globally. A cache which is never closed, and whose tree is never closed either,
+   * therefore keeps the tree and all typed nodes it has cached reachable forever, even once the tree is not used anymore.
+   */
+  public static final class NodeCache implements AutoCloseable {
+    /**
+     * Open caches by tree; copied on write so that creating typed nodes does not require synchronization
+     */
+    private static volatile Map<Tree, NodeCache> openCaches = Map.of();
+
+    /**
+     * Whether the current thread is within {@link #runUncached}
+     */
+    private static final ThreadLocal<Boolean> uncached = ThreadLocal.withInitial(() -> false);
+
+    private final Tree tree;
+
+    /**
+     * Typed nodes by the ID of their jtreesitter node
+     */
+    private final ConcurrentHashMap<Long, TypedNode> nodes = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private NodeCache(Tree tree) {
+      this.tree = tree;
+    }
+
+    private static synchronized NodeCache open(Tree tree) {
+      if (openCaches.containsKey(tree)) {
+        throw new IllegalStateException("Node cache is already open for the tree");
+      }
+      var cache = new NodeCache(tree);
+      var caches = new HashMap<>(openCaches);
+      caches.put(tree, cache);
+      openCaches = Map.copyOf(caches);
+      return cache;
+    }
+
+    private static synchronized void remove(NodeCache cache) {
+      if (openCaches.get(cache.tree) == cache) {
+        var caches = new HashMap<>(openCaches);
+        caches.remove(cache.tree);
+        openCaches = Map.copyOf(caches);
+      }
+    }
+
+    /**
+     * Closes the cache which is open for the tree, if any.
+     */
+    static void closeForTree(Tree tree) {
+      var cache = openCaches.get(tree);
+      if (cache != null) {
+        cache.close();
+      }
+    }
+
+    /**
+     * Wraps the jtreesitter node as typed node using the factory, or returns the cached typed node if a cache is
+     * open for the tree of the node. If the cached typed node is not an instance of {@code nodeClass}, for example because
+     * the node was previously wrapped as a different typed node class, a new typed node is created with the factory
+     * without replacing the cached one.
+     *
+     * <p>Typed nodes are only cached if the memory of their jtreesitter node is managed by the garbage collector;
+     * otherwise a cached typed node could outlive the memory of its jtreesitter node. Therefore the cache is
+     * bypassed within {@link #runUncached}, which the generated code uses for nodes allocated with a custom allocator
+     * or by a stream, and while an allocation session is open.
+     */
+    static <T extends TypedNode> T wrap(Node node, Class<T> nodeClass,
+        Function<Node, ? extends T> factory) {
+      var caches = openCaches;
+      if (caches.isEmpty()) {
+        return factory.apply(node);
+      }
+      var cache = caches.get(node.getTree());
+      if (cache == null || uncached.get() || NodeUtils.getSessionAllocator() != null) {
+        return factory.apply(node);
+      }
+
+      long id = node.getId();
+      TypedNode result = cache.nodes.get(id);
+      if (result != null) {
+        cache.hits.increment();
+      } else {
+        cache.misses.increment();
+        T created = factory.apply(node);
+        // Another thread might have created the typed node concurrently; prefer the one which was cached first
+        result = cache.nodes.putIfAbsent(id, created);
+        if (result == null) {
+          return created;
+        }
+      }
+
+      if (nodeClass.isInstance(result)) {
+        return nodeClass.cast(result);
+      }
+      // Cached typed node has a different class; don't fail with a ClassCastException but create a new typed node
+      return factory.apply(node);
+    }
+
+    /**
+     * Runs the action without using any cache; typed nodes created by the action are neither looked up in nor added
+     * to the caches. Must be used when creating typed nodes whose jtreesitter node might be freed before the cache
+     * is closed, for example nodes allocated with a custom allocator, or nodes which are only valid until a stream
+     * is closed.
+     */
+    static <R> R runUncached(Supplier<R> action) {
+      if (uncached.get()) {
+        return action.get();
+      }
+      uncached.set(true);
+      try {
+        return action.get();
+      } finally {
+        uncached.set(false);
+      }
+    }
+
+    /**
+     * Returns whether the current thread is within {@link #runUncached}.
+     */
+    static boolean isUncached() {
+      return uncached.get();
+    }
+
+    /**
+     * Returns the number of times a cached typed node was reused.
+     */
+    public long getHitCount() {
+      return hits.sum();
+    }
+
+    /**
+     * Returns the number of times a typed node was created because it was not cached yet.
+     */
+    public long getMissCount() {
+      return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of cache hits to all requests for typed nodes, between 0.0 and 1.0; 0.0 if there were no
+     * requests yet.
+     */
+    public double getHitRate() {
+      long hitCount = getHitCount();
+      long totalCount = hitCount + getMissCount();
+      return totalCount == 0 ? 0.0 : (double) hitCount / totalCount;
+    }
+
+    /**
+     * Returns the number of cached typed nodes.
+     */
+    public int size() {
+      return nodes.size();
+    }
+
+    /**
+     * Closes this cache and discards the cached typed nodes. Afterwards typed nodes are created again for every
+     * request. The statistics remain available. Does nothing if the cache is already closed.
+     */
+    @Override
+    public void close() {
+      remove(this);
+      nodes.clear();
+    }
+
+    @Override
+    public String toString() {
+      return "NodeCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+    }
   }
 }
 
@@ -435,114 +2538,225 @@ public final class NodeContainedA implements TypedNode {
 
 package org.example;
 
-import io.github.treesitter.jtreesitter.Tree;
+import io.github.treesitter.jtreesitter.Node;
+import io.github.treesitter.jtreesitter.TreeCursor;
+import io.github.treesitter.jtreesitter.Unsigned;
 import java.lang.AutoCloseable;
-import java.lang.CharSequence;
-import java.lang.IllegalArgumentException;
-import java.lang.Object;
 import java.lang.Override;
-import java.lang.String;
-import java.util.List;
+import java.lang.foreign.Arena;
+import java.lang.foreign.SegmentAllocator;
+import java.util.Objects;
 import javax.annotation.processing.Generated;
-import org.example.custom.CustomMethods;
 import org.jspecify.annotations.Nullable;
 
 /**
- * A 'typed parse-tree', with expected root node {@link NodeContainedA contained_a}. A jtreesitter {@link Tree} can be converted to a typed tree with {@link #fromTree}.
+ * A 'typed' tree cursor, wrapping a jtreesitter {@link TreeCursor}. Can be created with {@link TypedTree#walk} or {@link #create}.
  *
- * <p>Individual jtreesitter nodes can be converted to a typed node with {@link TypedNode#fromNode}, or the {@code fromNode} method of the specific typed node classes.
+ * <p>In contrast to navigating with the methods of the typed nodes, this cursor allows checking the type
+ * (see {@link #currentKind}) and field (see {@link #currentFieldId}) of the current node without creating a typed node object.
+ * The typed node is only created when {@link #current} is called.
  *
- * <p>Custom methods:
- * <ul>
- * <li>{@link #typedTreeCustom(List)}
- * </ul>
+ * <p>Like the jtreesitter {@code TreeCursor}, instances of this class are not thread-safe and have to be closed
+ * once they are not needed anymore.
  */
 @Generated(
     value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
     date = "1970-01-01T00:00:00Z",
     comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
 )
-public final class TypedTree implements AutoCloseable {
-  private final Tree tree;
+public final class TypedTreeCursor implements AutoCloseable {
+  private final TreeCursor cursor;
 
-  TypedTree(Tree tree) {
-    this.tree = tree;
+  /**
+   * Allocator for transient jtreesitter nodes which do not escape this class; reuses the same memory for every node.
+   */
+  private final SegmentAllocator scratchAllocator;
+
+  TypedTreeCursor(TreeCursor cursor) {
+    this.cursor = cursor;
+    this.scratchAllocator = SegmentAllocator.prefixAllocator(Arena.ofAuto().allocate(64, 8));
   }
 
   /**
-   * Returns the underlying jtreesitter tree.
+   * Creates a cursor starting at the given node.
    */
-  public Tree getTree() {
-    return tree;
+  public static TypedTreeCursor create(TypedNode startNode) {
+    Objects.requireNonNull(startNode);
+    return new TypedTreeCursor(startNode.getNode().walk());
   }
 
   /**
-   * Wraps a jtreesitter tree as a typed tree, throwing an {@link IllegalArgumentException} if the tree has an unexpected root node.
+   * Returns the underlying jtreesitter tree cursor.
    */
-  public static TypedTree fromTree(Tree tree) {
-    var rootType = tree.getRootNode().getType();
-    if (rootType.equals("contained_a")) {
-      return new TypedTree(tree);
-    }
-    throw new IllegalArgumentException("Wrong node type: " + rootType);
+  public TreeCursor getTreeCursor() {
+    return cursor;
   }
 
   /**
-   * Returns the typed root node.
+   * @see TreeCursor#gotoFirstChild
    */
-  public NodeContainedA getRootNode() {
-    var rootNode = tree.getRootNode();
-    var result = NodeContainedA.fromNodeThrowing(rootNode);
-    return result;
+  public boolean gotoFirstChild() {
+    return cursor.gotoFirstChild();
   }
 
   /**
-   * Returns the source code of the syntax tree, if available.
+   * @see TreeCursor#gotoNextSibling
    */
-  public @Nullable String getText() {
-    var result = tree.getText();
+  public boolean gotoNextSibling() {
+    return cursor.gotoNextSibling();
+  }
+
+  /**
+   * @see TreeCursor#gotoParent
+   */
+  public boolean gotoParent() {
+    return cursor.gotoParent();
+  }
+
+  /**
+   * Gets the kind of the current node, without creating a typed node.
+   *
+   * <p>Each call creates a transient jtreesitter {@code Node} object; its native memory is provided by
+   * a scratch allocator of this cursor, which reuses the same memory for every call.
+   *
+   * @see TypedNodeKind#of
+   */
+  public TypedNodeKind currentKind() {
+    // jtreesitter provides no direct access to the type of the current node, so create a transient node
+    var transientNode = cursor.getCurrentNode(scratchAllocator);
+    return NodeUtils.getNodeKind(transientNode);
+  }
+
+  /**
+   * Gets the numeric type ID of the current node, without creating a typed node. The result can be compared
+   * with the grammar symbol ID of other nodes, as returned by {@link Node#getSymbol()}.
+   *
+   * <p>Each call creates a transient jtreesitter {@code Node} object; its native memory is provided by
+   * a scratch allocator of this cursor, which reuses the same memory for every call.
+   */
+  public @Unsigned short currentTypeId() {
+    // jtreesitter provides no direct access to the type of the current node, so create a transient node
+    return cursor.getCurrentNode(scratchAllocator).getSymbol();
+  }
+
+  /**
+   * Gets the numeric field ID of the current node; {@code 0} if the node is not the child of a field.
+   *
+   * @see TreeCursor#getCurrentFieldId
+   */
+  public @Unsigned short currentFieldId() {
+    return cursor.getCurrentFieldId();
+  }
+
+  /**
+   * Gets the current node as typed node; {@code null} if there is no typed node class for it, for example for
+   * unnamed nodes. The underlying jtreesitter node is allocated with the given allocator.
+   * @param allocator allocator to use for the underlying jtreesitter node
+   */
+  public @Nullable TypedNode current(SegmentAllocator allocator) {
+    Objects.requireNonNull(allocator);
+    var result = TypedTree.NodeCache.runUncached(() -> NodeUtils.createTypedNode(cursor.getCurrentNode(allocator)));
     return result;
   }
 
   /**
-   * Returns whether this tree contains any nodes with errors.
+   * Gets the current node as typed node; {@code null} if there is no typed node class for it, for example for
+   * unnamed nodes. The underlying jtreesitter node is allocated with an automatic {@code Arena}, so the typed node
+   * remains usable after this cursor was closed.
+   * If an allocation session is open on the current thread (see {@link TypedTree#openSession}), the nodes are allocated with its arena instead.
    */
-  public boolean hasError() {
-    return tree.getRootNode().hasError();
+  public @Nullable TypedNode current() {
+    var allocator = NodeUtils.getSessionAllocator();
+    if (allocator == null) {
+      allocator = Arena.ofAuto();
+    }
+    var result = NodeUtils.createTypedNode(cursor.getCurrentNode(allocator));
+    return result;
   }
 
   /**
-   * Closes the underlying jtreesitter tree, releasing the resources it holds.
+   * Closes the underlying jtreesitter tree cursor.
    */
   @Override
   public void close() {
-    tree.close();
+    cursor.close();
   }
+}
 
-  @Override
-  public boolean equals(Object obj) {
-    if (obj instanceof TypedTree other) {
-      return tree.equals(other.tree);
-    }
-    return false;
+
+/* ==================== */ 
+
+package org.example;
+
+import javax.annotation.processing.Generated;
+
+/**
+ * Visitor for the nodes of a typed tree, see {@link TypedTree#accept}.
+ * The visitor has a {@code visit...} and a {@code leave...} method for each typed node class, which are called
+ * before respectively after the children of a node are visited. By default these methods delegate to the
+ * generic {@link #defaultVisit} and {@link #defaultLeave} methods.
+ *
+ * <p>Typed nodes are only created for nodes whose visit or leave method (or the corresponding generic method)
+ * is overridden, so visitors which are only interested in a few node types traverse the tree efficiently.
+ * Nodes for which no typed node class exists, for example unnamed nodes, are traversed but not passed to the visitor.
+ */
+@Generated(
+    value = "marcono1234.jtreesitter.type_gen.CodeGenerator",
+    date = "1970-01-01T00:00:00Z",
+    comments = "code-generator-version=0.0.0 (0000000000000000000000000000000000000000); custom comment"
+)
+public interface TypedVisitor {
+  /**
+   * Called before the children of a node are visited, unless the node type specific visit method is overridden.
+   * Returns {@link Action#CONTINUE} by default.
+   */
+  default Action defaultVisit(TypedNode node) {
+    return Action.CONTINUE;
   }
 
-  @Override
-  public int hashCode() {
-    return tree.hashCode();
+  /**
+   * Called after the children of a node were visited, unless the node type specific leave method is overridden.
+   * Returns {@link Action#CONTINUE} by default.
+   */
+  default Action defaultLeave(TypedNode node) {
+    return Action.CONTINUE;
   }
 
-  @Override
-  public String toString() {
-    return "TypedTree";
+  /**
+   * Called before the children of a {@link NodeContainedA contained_a} node are visited.
+   * Delegates to {@link #defaultVisit} by default.
+   */
+  default Action visitNodeContainedA(NodeContainedA node) {
+    return defaultVisit(node);
   }
 
   /**
-   * custom javadoc
-   * with line break
+   * Called after the children of a {@link NodeContainedA contained_a} node were visited.
+   * Delegates to {@link #defaultLeave} by default.
    */
-  public <E extends CharSequence> boolean typedTreeCustom(List<@Nullable E> a) {
-    return CustomMethods.typedTree(this, a);
+  default Action leaveNodeContainedA(NodeContainedA node) {
+    return defaultLeave(node);
+  }
+
+  /**
+   * Determines how the traversal continues after a visitor method was called.
+   */
+  enum Action {
+    /**
+     * Continue the traversal normally.
+     */
+    CONTINUE,
+
+    /**
+     * Skip the children of the node; the leave method of the node is still called.
+     * When returned by a leave method, this has the same effect as {@link #CONTINUE}.
+     */
+    SKIP_SUBTREE,
+
+    /**
+     * Stop the traversal; no further visitor methods are called.
+     */
+    STOP
   }
 }
 